@@ -0,0 +1,372 @@
+/**
+ * Dianping.com Inc.
+ * Copyright (c) 2003-2013 All Rights Reserved.
+ */
+package com.dianping.pigeon.timer;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.apache.logging.log4j.Logger;
+
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.threadpool.DefaultThreadFactory;
+
+/**
+ * 时间轮定时器，用于大量短周期、绝大多数会被取消的超时任务(如请求超时)。
+ * <p>
+ * 新增和取消都是O(1)，每个tick只处理当前槽位中的任务，到期任务在工作线程中执行。
+ * 超时精度为一个tick。
+ */
+public class HashedWheelTimer {
+
+	private static final Logger logger = LoggerLoader.getLogger(HashedWheelTimer.class);
+
+	private static final int STATE_INIT = 0;
+	private static final int STATE_STARTED = 1;
+	private static final int STATE_SHUTDOWN = 2;
+
+	private final AtomicInteger state = new AtomicInteger(STATE_INIT);
+
+	private final long tickDuration;
+
+	private final Bucket[] wheel;
+
+	private final int mask;
+
+	private final Queue<WheelTimeout> pendingTimeouts = new ConcurrentLinkedQueue<WheelTimeout>();
+
+	private final Queue<WheelTimeout> cancelledTimeouts = new ConcurrentLinkedQueue<WheelTimeout>();
+
+	private final AtomicInteger pendingCount = new AtomicInteger();
+
+	private final Thread workerThread;
+
+	private volatile long startTime;
+
+	private final Set<Timeout> unprocessedTimeouts = new HashSet<Timeout>();
+
+	public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+		this(new DefaultThreadFactory(name), tickDuration, unit, ticksPerWheel);
+	}
+
+	public HashedWheelTimer(ThreadFactory threadFactory, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+		if (tickDuration <= 0) {
+			throw new IllegalArgumentException("tickDuration must be greater than 0: " + tickDuration);
+		}
+		if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) {
+			throw new IllegalArgumentException("ticksPerWheel must be in (0, 2^30]: " + ticksPerWheel);
+		}
+		int size = 1;
+		while (size < ticksPerWheel) {
+			size <<= 1;
+		}
+		this.wheel = new Bucket[size];
+		for (int i = 0; i < size; i++) {
+			wheel[i] = new Bucket();
+		}
+		this.mask = size - 1;
+		this.tickDuration = unit.toNanos(tickDuration);
+		this.workerThread = threadFactory.newThread(new Worker());
+	}
+
+	public void start() {
+		switch (state.get()) {
+		case STATE_INIT:
+			if (state.compareAndSet(STATE_INIT, STATE_STARTED)) {
+				startTime = System.nanoTime();
+				if (startTime == 0) {
+					startTime = 1;
+				}
+				workerThread.start();
+			}
+			break;
+		case STATE_STARTED:
+			break;
+		default:
+			throw new IllegalStateException("timer has been stopped");
+		}
+		while (startTime == 0) {
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * 停止工作线程，返回还没有到期也没有取消的任务，这些任务不会再执行
+	 */
+	public Set<Timeout> stop() {
+		if (Thread.currentThread() == workerThread) {
+			throw new IllegalStateException("stop() can not be called from " + TimerTask.class.getSimpleName());
+		}
+		if (state.getAndSet(STATE_SHUTDOWN) != STATE_STARTED) {
+			return Collections.emptySet();
+		}
+		boolean interrupted = false;
+		while (workerThread.isAlive()) {
+			workerThread.interrupt();
+			try {
+				workerThread.join(100);
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		return Collections.unmodifiableSet(unprocessedTimeouts);
+	}
+
+	public Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+		if (task == null) {
+			throw new IllegalArgumentException("task can not be null");
+		}
+		start();
+		long deadline = System.nanoTime() + unit.toNanos(delay) - startTime;
+		WheelTimeout timeout = new WheelTimeout(task, deadline);
+		pendingCount.incrementAndGet();
+		pendingTimeouts.add(timeout);
+		return timeout;
+	}
+
+	public int pendingTimeouts() {
+		return pendingCount.get();
+	}
+
+	private final class Worker implements Runnable {
+
+		private long tick;
+
+		@Override
+		public void run() {
+			while (state.get() == STATE_STARTED) {
+				long deadline = waitForNextTick();
+				if (deadline < 0) {
+					continue;
+				}
+				processCancelled();
+				transferPending();
+				Bucket bucket = wheel[(int) (tick & mask)];
+				bucket.expire(deadline);
+				tick++;
+			}
+			// 工作线程退出后才由stop()读取
+			for (Bucket bucket : wheel) {
+				bucket.clear(unprocessedTimeouts);
+			}
+			while (true) {
+				WheelTimeout timeout = pendingTimeouts.poll();
+				if (timeout == null) {
+					break;
+				}
+				if (!timeout.isCancelled()) {
+					unprocessedTimeouts.add(timeout);
+				}
+			}
+		}
+
+		private long waitForNextTick() {
+			long deadline = tickDuration * (tick + 1);
+			while (true) {
+				long current = System.nanoTime() - startTime;
+				long sleepMillis = (deadline - current + 999999) / 1000000;
+				if (sleepMillis <= 0) {
+					return current;
+				}
+				try {
+					Thread.sleep(sleepMillis);
+				} catch (InterruptedException e) {
+					if (state.get() == STATE_SHUTDOWN) {
+						return -1;
+					}
+				}
+			}
+		}
+
+		private void transferPending() {
+			// 每个tick最多转移10万个，避免新增过多时工作线程一直无法推进
+			for (int i = 0; i < 100000; i++) {
+				WheelTimeout timeout = pendingTimeouts.poll();
+				if (timeout == null) {
+					break;
+				}
+				if (timeout.state() == WheelTimeout.ST_CANCELLED) {
+					continue;
+				}
+				long calculated = timeout.deadline / tickDuration;
+				timeout.remainingRounds = (calculated - tick) / wheel.length;
+				// 已经过期的任务放到当前槽位，本次tick即执行
+				long ticks = Math.max(calculated, tick);
+				wheel[(int) (ticks & mask)].add(timeout);
+			}
+		}
+
+		private void processCancelled() {
+			while (true) {
+				WheelTimeout timeout = cancelledTimeouts.poll();
+				if (timeout == null) {
+					break;
+				}
+				Bucket bucket = timeout.bucket;
+				if (bucket != null) {
+					bucket.remove(timeout);
+				}
+			}
+		}
+	}
+
+	private final class WheelTimeout implements Timeout {
+
+		private static final int ST_INIT = 0;
+		private static final int ST_CANCELLED = 1;
+		private static final int ST_EXPIRED = 2;
+
+		private final TimerTask task;
+
+		private final long deadline;
+
+		// 由STATE_UPDATER更新，不能声明为private
+		volatile int state = ST_INIT;
+
+		long remainingRounds;
+
+		WheelTimeout next;
+
+		WheelTimeout prev;
+
+		Bucket bucket;
+
+		WheelTimeout(TimerTask task, long deadline) {
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		int state() {
+			return state;
+		}
+
+		boolean compareAndSetState(int expected, int state) {
+			return STATE_UPDATER.compareAndSet(this, expected, state);
+		}
+
+		@Override
+		public TimerTask getTask() {
+			return task;
+		}
+
+		@Override
+		public boolean isExpired() {
+			return state == ST_EXPIRED;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return state == ST_CANCELLED;
+		}
+
+		@Override
+		public boolean cancel() {
+			if (!compareAndSetState(ST_INIT, ST_CANCELLED)) {
+				return false;
+			}
+			pendingCount.decrementAndGet();
+			// 由工作线程从槽位中摘除，这里只做标记
+			cancelledTimeouts.add(this);
+			return true;
+		}
+
+		void expire() {
+			if (!compareAndSetState(ST_INIT, ST_EXPIRED)) {
+				return;
+			}
+			pendingCount.decrementAndGet();
+			try {
+				task.run(this);
+			} catch (Throwable t) {
+				logger.warn("error while running timer task " + task, t);
+			}
+		}
+	}
+
+	private static final AtomicIntegerFieldUpdater<WheelTimeout> STATE_UPDATER = AtomicIntegerFieldUpdater
+			.newUpdater(WheelTimeout.class, "state");
+
+	/**
+	 * 槽位中的双向链表，只在工作线程中访问
+	 */
+	private static final class Bucket {
+
+		private WheelTimeout head;
+
+		private WheelTimeout tail;
+
+		void add(WheelTimeout timeout) {
+			timeout.bucket = this;
+			if (head == null) {
+				head = tail = timeout;
+			} else {
+				tail.next = timeout;
+				timeout.prev = tail;
+				tail = timeout;
+			}
+		}
+
+		void expire(long deadline) {
+			WheelTimeout timeout = head;
+			while (timeout != null) {
+				WheelTimeout next = timeout.next;
+				if (timeout.remainingRounds <= 0 && timeout.deadline <= deadline) {
+					remove(timeout);
+					timeout.expire();
+				} else if (timeout.isCancelled()) {
+					remove(timeout);
+				} else if (timeout.remainingRounds > 0) {
+					timeout.remainingRounds--;
+				}
+				timeout = next;
+			}
+		}
+
+		void clear(Set<Timeout> unprocessed) {
+			while (head != null) {
+				WheelTimeout timeout = head;
+				remove(timeout);
+				if (!timeout.isExpired() && !timeout.isCancelled()) {
+					unprocessed.add(timeout);
+				}
+			}
+		}
+
+		void remove(WheelTimeout timeout) {
+			if (timeout.bucket != this) {
+				return;
+			}
+			WheelTimeout next = timeout.next;
+			if (timeout.prev != null) {
+				timeout.prev.next = next;
+			}
+			if (timeout.next != null) {
+				timeout.next.prev = timeout.prev;
+			}
+			if (timeout == head) {
+				if (timeout == tail) {
+					head = null;
+					tail = null;
+				} else {
+					head = next;
+				}
+			} else if (timeout == tail) {
+				tail = timeout.prev;
+			}
+			timeout.prev = null;
+			timeout.next = null;
+			timeout.bucket = null;
+		}
+	}
+}
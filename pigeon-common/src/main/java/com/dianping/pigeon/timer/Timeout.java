@@ -0,0 +1,20 @@
+/**
+ * Dianping.com Inc.
+ * Copyright (c) 2003-2013 All Rights Reserved.
+ */
+package com.dianping.pigeon.timer;
+
+public interface Timeout {
+
+	TimerTask getTask();
+
+	boolean isExpired();
+
+	boolean isCancelled();
+
+	/**
+	 * 取消尚未执行的任务，已执行或已取消时返回false
+	 */
+	boolean cancel();
+
+}
@@ -0,0 +1,14 @@
+/**
+ * Dianping.com Inc.
+ * Copyright (c) 2003-2013 All Rights Reserved.
+ */
+package com.dianping.pigeon.timer;
+
+public interface TimerTask {
+
+	/**
+	 * 在timer的工作线程中执行，不能有耗时操作
+	 */
+	void run(Timeout timeout) throws Exception;
+
+}
@@ -52,12 +52,14 @@ public final class ContextUtils {
 		return context.get(key);
 	}
 
+	/**
+	 * 本地上下文不会传给其他线程或对象，只清空内容，保留线程上的map，下一个请求不需要重新分配
+	 */
 	public static void clearLocalContext() {
 		Map context = localContext.get();
-		if (context != null) {
+		if (context != null && !context.isEmpty()) {
 			context.clear();
 		}
-		localContext.remove();
 	}
 
 	public static void putGlobalContext(String key, Serializable value) {
@@ -89,8 +91,8 @@ public final class ContextUtils {
 		Map<String, Serializable> context = globalContext.get();
 		if (context != null) {
 			context.clear();
+			globalContext.remove();
 		}
-		globalContext.remove();
 	}
 
 	public static void putRequestContext(String key, Serializable value) {
@@ -118,8 +120,8 @@ public final class ContextUtils {
 		Map<String, Serializable> context = requestContext.get();
 		if (context != null) {
 			context.clear();
+			requestContext.remove();
 		}
-		requestContext.remove();
 	}
 
 	public static void putResponseContext(String key, Serializable value) {
@@ -151,7 +153,7 @@ public final class ContextUtils {
 		Map<String, Serializable> context = responseContext.get();
 		if (context != null) {
 			context.clear();
+			responseContext.remove();
 		}
-		responseContext.remove();
 	}
 }
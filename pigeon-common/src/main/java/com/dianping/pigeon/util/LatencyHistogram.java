@@ -0,0 +1,170 @@
+package com.dianping.pigeon.util;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 无锁的延迟直方图，按HdrHistogram的方式分桶：每个2的幂区间再等分为16个子桶，相对误差不超过1/16。
+ *
+ * 记录只做一次数组元素的原子加，可以在请求路径上调用；读取分位数时遍历全部桶，只在统计展示时调用。
+ *
+ * 每个2的幂区间的16个子桶在第一次记录到该区间时才分配（约150字节），全部分配时约6KB。
+ * 延迟通常集中在少数几个区间，一个直方图一般只占用1KB左右
+ */
+public final class LatencyHistogram implements Serializable {
+
+	private static final long serialVersionUID = 4405374564893417219L;
+
+	private static final int SUB_BUCKET_BITS = 4;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	// 超过2^40的值记入最后一个桶
+	private static final int MAX_EXPONENT = 40;
+
+	private static final int RANGES = MAX_EXPONENT - SUB_BUCKET_BITS + 2;
+
+	private static final int BUCKETS = RANGES * SUB_BUCKETS;
+
+	// 按2的幂区间分组的计数，未记录过的区间为null
+	private final AtomicReferenceArray<AtomicLongArray> counts = new AtomicReferenceArray<AtomicLongArray>(RANGES);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong sum = new AtomicLong();
+
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		int index = index(value);
+		range(index / SUB_BUCKETS).incrementAndGet(index % SUB_BUCKETS);
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		for (;;) {
+			long current = max.get();
+			if (value <= current || max.compareAndSet(current, value)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * 把另一个直方图的数据累加进来，用于合并多个时间窗口
+	 */
+	public void add(LatencyHistogram other) {
+		for (int r = 0; r < RANGES; r++) {
+			AtomicLongArray otherRange = other.counts.get(r);
+			if (otherRange == null) {
+				continue;
+			}
+			for (int i = 0; i < SUB_BUCKETS; i++) {
+				long c = otherRange.get(i);
+				if (c > 0) {
+					range(r).addAndGet(i, c);
+				}
+			}
+		}
+		count.addAndGet(other.count.get());
+		sum.addAndGet(other.sum.get());
+		long otherMax = other.max.get();
+		for (;;) {
+			long current = max.get();
+			if (otherMax <= current || max.compareAndSet(current, otherMax)) {
+				break;
+			}
+		}
+	}
+
+	public void reset() {
+		for (int r = 0; r < RANGES; r++) {
+			AtomicLongArray range = counts.get(r);
+			if (range != null) {
+				for (int i = 0; i < SUB_BUCKETS; i++) {
+					range.set(i, 0);
+				}
+			}
+		}
+		count.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public double getMean() {
+		long c = count.get();
+		return c == 0 ? 0 : (double) sum.get() / c;
+	}
+
+	/**
+	 * @param percentile
+	 *            0到100之间，如99.9
+	 * @return 分位数所在桶的上界，不超过记录到的最大值
+	 */
+	public long getPercentile(double percentile) {
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			total += countAt(i);
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(total * Math.min(percentile, 100) / 100));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += countAt(i);
+			if (seen >= rank) {
+				return Math.min(upperBound(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	private AtomicLongArray range(int r) {
+		AtomicLongArray range = counts.get(r);
+		if (range == null) {
+			range = new AtomicLongArray(SUB_BUCKETS);
+			if (!counts.compareAndSet(r, null, range)) {
+				range = counts.get(r);
+			}
+		}
+		return range;
+	}
+
+	private long countAt(int index) {
+		AtomicLongArray range = counts.get(index / SUB_BUCKETS);
+		return range == null ? 0 : range.get(index % SUB_BUCKETS);
+	}
+
+	static int index(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		if (exponent > MAX_EXPONENT) {
+			return BUCKETS - 1;
+		}
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	static long upperBound(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+		return lower + (1L << shift) - 1;
+	}
+}
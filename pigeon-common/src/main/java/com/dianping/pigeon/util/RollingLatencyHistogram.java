@@ -0,0 +1,69 @@
+package com.dianping.pigeon.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 按时间窗口滚动的延迟直方图，保留最近若干个窗口，读取时合并为一个LatencyHistogram。
+ *
+ * 窗口在第一次记录时创建并替换掉同一槽位上过期的窗口，不需要定时清理，长时间没有调用时不占用新的内存
+ */
+public final class RollingLatencyHistogram {
+
+	private final long windowMillis;
+
+	private final AtomicReferenceArray<Window> windows;
+
+	public RollingLatencyHistogram(long windowMillis, int windows) {
+		this.windowMillis = windowMillis;
+		this.windows = new AtomicReferenceArray<Window>(windows);
+	}
+
+	public void record(long now, long value) {
+		long id = now / windowMillis;
+		int slot = (int) (id % windows.length());
+		Window window = windows.get(slot);
+		if (window == null || window.id < id) {
+			Window newWindow = new Window(id);
+			if (windows.compareAndSet(slot, window, newWindow)) {
+				window = newWindow;
+			} else {
+				window = windows.get(slot);
+			}
+		}
+		window.histogram.record(value);
+	}
+
+	/**
+	 * 合并最近windows个窗口（含当前窗口）
+	 */
+	public LatencyHistogram snapshot(long now) {
+		long id = now / windowMillis;
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < windows.length(); i++) {
+			Window window = windows.get(i);
+			if (window != null && window.id > id - windows.length()) {
+				histogram.add(window.histogram);
+			}
+		}
+		return histogram;
+	}
+
+	public long getWindowMillis() {
+		return windowMillis;
+	}
+
+	public int getWindows() {
+		return windows.length();
+	}
+
+	private static final class Window {
+
+		final long id;
+
+		final LatencyHistogram histogram = new LatencyHistogram();
+
+		Window(long id) {
+			this.id = id;
+		}
+	}
+}
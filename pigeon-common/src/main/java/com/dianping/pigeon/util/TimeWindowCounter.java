@@ -0,0 +1,96 @@
+package com.dianping.pigeon.util;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 按固定时间窗口（秒、分钟、天）计数，槽位循环使用。
+ *
+ * 每个槽位是一个long，高32位是所属时间窗口的序号，低32位是计数，一次CAS同时完成换窗口和计数，不需要定时清零；
+ * 读取时只统计序号匹配的槽位。槽位按线程分段，减少多个线程同时计数时的竞争
+ */
+public final class TimeWindowCounter implements Serializable {
+
+	private static final long serialVersionUID = -2870433245473514624L;
+
+	private static final int STRIPES = stripes();
+
+	private final long windowMillis;
+
+	private final long offsetMillis;
+
+	private final int slots;
+
+	// 下标为stripe * slots + slot，同一槽位的不同分段相隔slots个long，不会落在同一缓存行
+	private final AtomicLongArray cells;
+
+	public TimeWindowCounter(long windowMillis, int slots) {
+		this(windowMillis, slots, 0);
+	}
+
+	/**
+	 * @param offsetMillis
+	 *            加到时间戳上再划分窗口，按天计数时传入时区偏移
+	 */
+	public TimeWindowCounter(long windowMillis, int slots, long offsetMillis) {
+		this.windowMillis = windowMillis;
+		this.slots = slots;
+		this.offsetMillis = offsetMillis;
+		this.cells = new AtomicLongArray(STRIPES * slots);
+	}
+
+	public void increment(long now) {
+		long window = window(now);
+		long tag = window & 0xFFFFFFFFL;
+		int index = (int) (Thread.currentThread().getId() & (STRIPES - 1)) * slots + (int) (window % slots);
+		for (;;) {
+			long value = cells.get(index);
+			long next = (value >>> 32) == tag ? value + 1 : (tag << 32) | 1;
+			if (cells.compareAndSet(index, value, next)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @param windowsAgo
+	 *            0为当前窗口，1为上一个窗口，不能超过槽位数
+	 */
+	public int get(long now, int windowsAgo) {
+		long window = window(now) - windowsAgo;
+		long tag = window & 0xFFFFFFFFL;
+		int slot = (int) (window % slots);
+		int count = 0;
+		for (int stripe = 0; stripe < STRIPES; stripe++) {
+			long value = cells.get(stripe * slots + slot);
+			if ((value >>> 32) == tag) {
+				count += (int) value;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * 当前窗口在槽位中的下标，按秒/分钟计数时与Calendar.SECOND/Calendar.MINUTE一致
+	 */
+	public int getSlot(long now) {
+		return (int) (window(now) % slots);
+	}
+
+	public int getSlots() {
+		return slots;
+	}
+
+	private long window(long now) {
+		return (now + offsetMillis) / windowMillis;
+	}
+
+	private static int stripes() {
+		int processors = Math.min(Runtime.getRuntime().availableProcessors(), 8);
+		int stripes = 1;
+		while (stripes < processors) {
+			stripes <<= 1;
+		}
+		return stripes;
+	}
+}
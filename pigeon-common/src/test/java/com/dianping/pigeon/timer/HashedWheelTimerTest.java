@@ -0,0 +1,170 @@
+package com.dianping.pigeon.timer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HashedWheelTimerTest {
+
+	private HashedWheelTimer timer;
+
+	@After
+	public void tearDown() {
+		if (timer != null) {
+			timer.stop();
+		}
+	}
+
+	@Test
+	public void testExpireOrder() throws Exception {
+		timer = new HashedWheelTimer("test-order", 10, TimeUnit.MILLISECONDS, 8);
+		final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+		final CountDownLatch latch = new CountDownLatch(3);
+		for (final int delay : new int[] { 60, 20, 40 }) {
+			timer.newTimeout(new TimerTask() {
+
+				@Override
+				public void run(Timeout timeout) {
+					order.add(delay);
+					latch.countDown();
+				}
+			}, delay, TimeUnit.MILLISECONDS);
+		}
+		Assert.assertTrue(latch.await(2, TimeUnit.SECONDS));
+		Assert.assertEquals(20, (int) order.get(0));
+		Assert.assertEquals(40, (int) order.get(1));
+		Assert.assertEquals(60, (int) order.get(2));
+		Assert.assertEquals(0, timer.pendingTimeouts());
+	}
+
+	@Test
+	public void testNotExpiredEarly() throws Exception {
+		// 一圈40ms，超时时间跨越多圈
+		timer = new HashedWheelTimer("test-rounds", 10, TimeUnit.MILLISECONDS, 4);
+		final CountDownLatch latch = new CountDownLatch(1);
+		final long[] expired = new long[1];
+		long begin = System.nanoTime();
+		Timeout timeout = timer.newTimeout(new TimerTask() {
+
+			@Override
+			public void run(Timeout timeout) {
+				expired[0] = System.nanoTime();
+				latch.countDown();
+			}
+		}, 150, TimeUnit.MILLISECONDS);
+		Assert.assertTrue(latch.await(2, TimeUnit.SECONDS));
+		Assert.assertTrue(timeout.isExpired());
+		Assert.assertTrue(expired[0] - begin >= TimeUnit.MILLISECONDS.toNanos(150));
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		timer = new HashedWheelTimer("test-cancel", 10, TimeUnit.MILLISECONDS, 8);
+		final AtomicInteger runs = new AtomicInteger();
+		TimerTask task = new TimerTask() {
+
+			@Override
+			public void run(Timeout timeout) {
+				runs.incrementAndGet();
+			}
+		};
+		Timeout cancelled = timer.newTimeout(task, 50, TimeUnit.MILLISECONDS);
+		Timeout expired = timer.newTimeout(task, 20, TimeUnit.MILLISECONDS);
+		Assert.assertEquals(2, timer.pendingTimeouts());
+		Assert.assertTrue(cancelled.cancel());
+		Assert.assertFalse(cancelled.cancel());
+		Assert.assertTrue(cancelled.isCancelled());
+		Assert.assertEquals(1, timer.pendingTimeouts());
+		Thread.sleep(150);
+		Assert.assertEquals(1, runs.get());
+		Assert.assertTrue(expired.isExpired());
+		Assert.assertFalse(expired.cancel());
+		Assert.assertFalse(cancelled.isExpired());
+		Assert.assertEquals(0, timer.pendingTimeouts());
+	}
+
+	@Test
+	public void testStop() throws Exception {
+		timer = new HashedWheelTimer("test-stop", 10, TimeUnit.MILLISECONDS, 8);
+		final AtomicInteger runs = new AtomicInteger();
+		TimerTask task = new TimerTask() {
+
+			@Override
+			public void run(Timeout timeout) {
+				runs.incrementAndGet();
+			}
+		};
+		Timeout first = timer.newTimeout(task, 10, TimeUnit.SECONDS);
+		Timeout second = timer.newTimeout(task, 20, TimeUnit.SECONDS);
+		Timeout cancelled = timer.newTimeout(task, 10, TimeUnit.SECONDS);
+		cancelled.cancel();
+		// 等待任务进入槽位，再加一个仍在队列中的任务
+		Thread.sleep(50);
+		Timeout queued = timer.newTimeout(task, 10, TimeUnit.SECONDS);
+		Set<Timeout> unprocessed = timer.stop();
+		Assert.assertEquals(3, unprocessed.size());
+		Assert.assertTrue(unprocessed.contains(first));
+		Assert.assertTrue(unprocessed.contains(second));
+		Assert.assertTrue(unprocessed.contains(queued));
+		Assert.assertEquals(0, runs.get());
+		Assert.assertTrue(timer.stop().isEmpty());
+		try {
+			timer.newTimeout(task, 10, TimeUnit.MILLISECONDS);
+			Assert.fail("stopped timer should not accept new timeouts");
+		} catch (IllegalStateException e) {
+		}
+		timer = null;
+	}
+
+	@Test
+	public void testConcurrentNewTimeout() throws Exception {
+		timer = new HashedWheelTimer("test-concurrent", 1, TimeUnit.MILLISECONDS, 16);
+		final int threads = 4;
+		final int timeoutsPerThread = 2000;
+		final AtomicInteger runs = new AtomicInteger();
+		final CountDownLatch expired = new CountDownLatch(threads * timeoutsPerThread);
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		final TimerTask task = new TimerTask() {
+
+			@Override
+			public void run(Timeout timeout) {
+				runs.incrementAndGet();
+				expired.countDown();
+			}
+		};
+		// 工作线程在推进tick的同时，多个线程不断新增
+		timer.start();
+		for (int t = 0; t < threads; t++) {
+			new Thread() {
+
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int i = 0; i < timeoutsPerThread; i++) {
+							timer.newTimeout(task, i % 50, TimeUnit.MILLISECONDS);
+						}
+					} catch (InterruptedException e) {
+					} finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		start.countDown();
+		Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+		Assert.assertTrue(expired.await(5, TimeUnit.SECONDS));
+		Thread.sleep(20);
+		Assert.assertEquals(threads * timeoutsPerThread, runs.get());
+		Assert.assertEquals(0, timer.pendingTimeouts());
+	}
+}
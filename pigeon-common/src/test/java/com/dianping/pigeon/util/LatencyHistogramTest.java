@@ -0,0 +1,87 @@
+package com.dianping.pigeon.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void testSmallValues() {
+		// 小于16的值每个值一个桶
+		for (long value = 0; value < 16; value++) {
+			Assert.assertEquals(value, LatencyHistogram.index(value));
+			Assert.assertEquals(value, LatencyHistogram.upperBound(LatencyHistogram.index(value)));
+		}
+	}
+
+	@Test
+	public void testBucketBounds() {
+		Assert.assertEquals(16, LatencyHistogram.upperBound(LatencyHistogram.index(16)));
+		Assert.assertEquals(LatencyHistogram.index(32), LatencyHistogram.index(33));
+		Assert.assertEquals(33, LatencyHistogram.upperBound(LatencyHistogram.index(32)));
+		Assert.assertEquals(1023, LatencyHistogram.upperBound(LatencyHistogram.index(1000)));
+		int last = LatencyHistogram.index(Long.MAX_VALUE);
+		Assert.assertEquals(last, LatencyHistogram.index(1L << 41));
+		for (long value = 16; value < (1L << 40); value = value * 3 / 2 + 1) {
+			long upper = LatencyHistogram.upperBound(LatencyHistogram.index(value));
+			Assert.assertTrue(value + " -> " + upper, upper >= value);
+			// 相对误差不超过1/16
+			Assert.assertTrue(value + " -> " + upper, upper - value <= value / 16);
+			Assert.assertTrue(LatencyHistogram.index(value) < last);
+		}
+	}
+
+	@Test
+	public void testPercentile() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		Assert.assertEquals(0, histogram.getPercentile(99));
+		for (long value = 1; value <= 100; value++) {
+			histogram.record(value);
+		}
+		Assert.assertEquals(100, histogram.getCount());
+		Assert.assertEquals(100, histogram.getMax());
+		Assert.assertEquals(50.5, histogram.getMean(), 0.001);
+		assertPercentile(50, histogram.getPercentile(50));
+		assertPercentile(90, histogram.getPercentile(90));
+		assertPercentile(99, histogram.getPercentile(99));
+		// 不超过记录到的最大值
+		Assert.assertEquals(100, histogram.getPercentile(100));
+		Assert.assertEquals(1, histogram.getPercentile(0));
+	}
+
+	@Test
+	public void testNegativeValue() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(-5);
+		Assert.assertEquals(1, histogram.getCount());
+		Assert.assertEquals(0, histogram.getPercentile(100));
+	}
+
+	@Test
+	public void testAddAndReset() {
+		LatencyHistogram first = new LatencyHistogram();
+		LatencyHistogram second = new LatencyHistogram();
+		for (int i = 0; i < 90; i++) {
+			first.record(10);
+		}
+		for (int i = 0; i < 10; i++) {
+			second.record(5000);
+		}
+		LatencyHistogram merged = new LatencyHistogram();
+		merged.add(first);
+		merged.add(second);
+		Assert.assertEquals(100, merged.getCount());
+		Assert.assertEquals(5000, merged.getMax());
+		Assert.assertEquals(10, merged.getPercentile(90));
+		assertPercentile(5000, merged.getPercentile(95));
+
+		merged.reset();
+		Assert.assertEquals(0, merged.getCount());
+		Assert.assertEquals(0, merged.getMax());
+		Assert.assertEquals(0, merged.getPercentile(50));
+	}
+
+	private static void assertPercentile(long expected, long actual) {
+		Assert.assertTrue(expected + " -> " + actual, actual >= expected && actual - expected <= expected / 16);
+	}
+}
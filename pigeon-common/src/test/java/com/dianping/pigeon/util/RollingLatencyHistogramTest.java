@@ -0,0 +1,50 @@
+package com.dianping.pigeon.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RollingLatencyHistogramTest {
+
+	@Test
+	public void testMergeWindows() {
+		RollingLatencyHistogram histogram = new RollingLatencyHistogram(1000, 3);
+		histogram.record(0, 10);
+		histogram.record(1500, 20);
+		histogram.record(1999, 30);
+		LatencyHistogram snapshot = histogram.snapshot(1999);
+		Assert.assertEquals(3, snapshot.getCount());
+		Assert.assertEquals(30, snapshot.getMax());
+	}
+
+	@Test
+	public void testExpiredWindows() {
+		RollingLatencyHistogram histogram = new RollingLatencyHistogram(1000, 3);
+		histogram.record(0, 10);
+		histogram.record(1500, 20);
+		// 窗口0已经不在最近3个窗口内
+		LatencyHistogram snapshot = histogram.snapshot(3500);
+		Assert.assertEquals(1, snapshot.getCount());
+		Assert.assertEquals(20, snapshot.getMax());
+
+		Assert.assertEquals(0, histogram.snapshot(10000).getCount());
+	}
+
+	@Test
+	public void testRotation() {
+		RollingLatencyHistogram histogram = new RollingLatencyHistogram(1000, 3);
+		histogram.record(0, 10);
+		histogram.record(1000, 20);
+		histogram.record(2000, 30);
+		// 窗口3替换掉同一槽位上的窗口0
+		histogram.record(3000, 40);
+		LatencyHistogram snapshot = histogram.snapshot(3000);
+		Assert.assertEquals(3, snapshot.getCount());
+		Assert.assertEquals(40, snapshot.getMax());
+		Assert.assertEquals(20, snapshot.getPercentile(1));
+
+		histogram.record(3001, 50);
+		snapshot = histogram.snapshot(3001);
+		Assert.assertEquals(4, snapshot.getCount());
+		Assert.assertEquals(50, snapshot.getMax());
+	}
+}
@@ -17,8 +17,10 @@ import com.dianping.pigeon.console.servlet.ServiceOnlineServlet;
 import com.dianping.pigeon.console.servlet.ServicePublishServlet;
 import com.dianping.pigeon.console.servlet.ServiceServlet;
 import com.dianping.pigeon.console.servlet.ServiceUnpublishServlet;
+import com.dianping.pigeon.console.servlet.json.CompressJsonServlet;
 import com.dianping.pigeon.console.servlet.json.DependencyJsonServlet;
 import com.dianping.pigeon.console.servlet.json.InvokeJsonServlet;
+import com.dianping.pigeon.console.servlet.json.LatencyJsonServlet;
 import com.dianping.pigeon.console.servlet.json.ServiceJsonServlet;
 import com.dianping.pigeon.console.servlet.json.ServiceStatusJsonServlet;
 import com.dianping.pigeon.console.servlet.json.StatisticsJsonServlet;
@@ -43,6 +45,8 @@ public class JettyConsoleProcessor implements JettyHttpServerProcessor {
 		context.addServlet(new ServletHolder(new ServiceOnlineServlet(serverConfig, port)), "/services.online");
 		context.addServlet(new ServletHolder(new ServiceOfflineServlet(serverConfig, port)), "/services.offline");
 		context.addServlet(new ServletHolder(new StatisticsJsonServlet(serverConfig, port)), "/stats.json");
+		context.addServlet(new ServletHolder(new LatencyJsonServlet(serverConfig, port)), "/latency.json");
+		context.addServlet(new ServletHolder(new CompressJsonServlet(serverConfig, port)), "/compress.json");
 
 		ServletHolder holder = new ServletHolder(new DefaultServlet());
 		URL url = JettyConsoleProcessor.class.getClassLoader().getResource("statics");
@@ -0,0 +1,18 @@
+package com.dianping.pigeon.console.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class Compression {
+
+	private List<CompressorStatistics> compressors = new ArrayList<CompressorStatistics>();
+
+	public List<CompressorStatistics> getCompressors() {
+		return compressors;
+	}
+
+	public void setCompressors(List<CompressorStatistics> compressors) {
+		this.compressors = compressors;
+	}
+
+}
@@ -0,0 +1,119 @@
+package com.dianping.pigeon.console.domain;
+
+import java.io.Serializable;
+
+import com.dianping.pigeon.remoting.common.monitor.CompressStatistics;
+
+/**
+ * 单个压缩算法从进程启动开始的累计统计，耗时单位微秒
+ */
+public class CompressorStatistics implements Serializable {
+
+	private static final long serialVersionUID = 6870126548031127254L;
+
+	private String name;
+
+	private long compressCount;
+
+	private long uselessCount;
+
+	private long rawBytes;
+
+	private long compressedBytes;
+
+	private double ratio;
+
+	private long compressMicros;
+
+	private long decompressCount;
+
+	private long decompressMicros;
+
+	public CompressorStatistics() {
+	}
+
+	public CompressorStatistics(CompressStatistics statistics) {
+		this.name = statistics.getName();
+		this.compressCount = statistics.getCompressCount();
+		this.uselessCount = statistics.getUselessCount();
+		this.rawBytes = statistics.getRawBytes();
+		this.compressedBytes = statistics.getCompressedBytes();
+		this.ratio = statistics.getRatio();
+		this.compressMicros = statistics.getCompressNanos() / 1000;
+		this.decompressCount = statistics.getDecompressCount();
+		this.decompressMicros = statistics.getDecompressNanos() / 1000;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public long getCompressCount() {
+		return compressCount;
+	}
+
+	public void setCompressCount(long compressCount) {
+		this.compressCount = compressCount;
+	}
+
+	public long getUselessCount() {
+		return uselessCount;
+	}
+
+	public void setUselessCount(long uselessCount) {
+		this.uselessCount = uselessCount;
+	}
+
+	public long getRawBytes() {
+		return rawBytes;
+	}
+
+	public void setRawBytes(long rawBytes) {
+		this.rawBytes = rawBytes;
+	}
+
+	public long getCompressedBytes() {
+		return compressedBytes;
+	}
+
+	public void setCompressedBytes(long compressedBytes) {
+		this.compressedBytes = compressedBytes;
+	}
+
+	public double getRatio() {
+		return ratio;
+	}
+
+	public void setRatio(double ratio) {
+		this.ratio = ratio;
+	}
+
+	public long getCompressMicros() {
+		return compressMicros;
+	}
+
+	public void setCompressMicros(long compressMicros) {
+		this.compressMicros = compressMicros;
+	}
+
+	public long getDecompressCount() {
+		return decompressCount;
+	}
+
+	public void setDecompressCount(long decompressCount) {
+		this.decompressCount = decompressCount;
+	}
+
+	public long getDecompressMicros() {
+		return decompressMicros;
+	}
+
+	public void setDecompressMicros(long decompressMicros) {
+		this.decompressMicros = decompressMicros;
+	}
+
+}
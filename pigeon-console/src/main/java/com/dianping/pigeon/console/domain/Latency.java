@@ -0,0 +1,48 @@
+package com.dianping.pigeon.console.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class Latency {
+
+	private long windowMillis;
+
+	private List<MethodLatency> providerLatencies = new ArrayList<MethodLatency>();
+
+	private List<MethodLatency> providerQueueWaits = new ArrayList<MethodLatency>();
+
+	private List<MethodLatency> invokerLatencies = new ArrayList<MethodLatency>();
+
+	public long getWindowMillis() {
+		return windowMillis;
+	}
+
+	public void setWindowMillis(long windowMillis) {
+		this.windowMillis = windowMillis;
+	}
+
+	public List<MethodLatency> getProviderLatencies() {
+		return providerLatencies;
+	}
+
+	public void setProviderLatencies(List<MethodLatency> providerLatencies) {
+		this.providerLatencies = providerLatencies;
+	}
+
+	public List<MethodLatency> getProviderQueueWaits() {
+		return providerQueueWaits;
+	}
+
+	public void setProviderQueueWaits(List<MethodLatency> providerQueueWaits) {
+		this.providerQueueWaits = providerQueueWaits;
+	}
+
+	public List<MethodLatency> getInvokerLatencies() {
+		return invokerLatencies;
+	}
+
+	public void setInvokerLatencies(List<MethodLatency> invokerLatencies) {
+		this.invokerLatencies = invokerLatencies;
+	}
+
+}
@@ -0,0 +1,97 @@
+package com.dianping.pigeon.console.domain;
+
+import java.io.Serializable;
+
+import com.dianping.pigeon.util.LatencyHistogram;
+
+/**
+ * 单个方法最近一段时间的延迟分布，单位微秒
+ */
+public class MethodLatency implements Serializable {
+
+	private static final long serialVersionUID = -1290384452016843212L;
+
+	private String method;
+
+	private long count;
+
+	private long mean;
+
+	private long p50;
+
+	private long p99;
+
+	private long p999;
+
+	private long max;
+
+	public MethodLatency() {
+	}
+
+	public MethodLatency(String method, LatencyHistogram histogram) {
+		this.method = method;
+		this.count = histogram.getCount();
+		this.mean = Math.round(histogram.getMean());
+		this.p50 = histogram.getPercentile(50);
+		this.p99 = histogram.getPercentile(99);
+		this.p999 = histogram.getPercentile(99.9);
+		this.max = histogram.getMax();
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	public void setMethod(String method) {
+		this.method = method;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public void setCount(long count) {
+		this.count = count;
+	}
+
+	public long getMean() {
+		return mean;
+	}
+
+	public void setMean(long mean) {
+		this.mean = mean;
+	}
+
+	public long getP50() {
+		return p50;
+	}
+
+	public void setP50(long p50) {
+		this.p50 = p50;
+	}
+
+	public long getP99() {
+		return p99;
+	}
+
+	public void setP99(long p99) {
+		this.p99 = p99;
+	}
+
+	public long getP999() {
+		return p999;
+	}
+
+	public void setP999(long p999) {
+		this.p999 = p999;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	public void setMax(long max) {
+		this.max = max;
+	}
+
+}
@@ -0,0 +1,41 @@
+/**
+ * 
+ */
+package com.dianping.pigeon.console.servlet.json;
+
+import javax.servlet.http.HttpServletRequest;
+
+import com.dianping.pigeon.console.domain.Compression;
+import com.dianping.pigeon.console.domain.CompressorStatistics;
+import com.dianping.pigeon.console.servlet.ServiceServlet;
+import com.dianping.pigeon.remoting.common.monitor.CompressStatistics;
+import com.dianping.pigeon.remoting.provider.config.ServerConfig;
+
+/**
+ * 各压缩算法的压缩率和压缩、解压的累计耗时，调用端和服务端合并统计
+ */
+public class CompressJsonServlet extends ServiceServlet {
+
+	private static final long serialVersionUID = -4362190876470384112L;
+
+	public CompressJsonServlet(ServerConfig serverConfig, int port) {
+		super(serverConfig, port);
+	}
+
+	@Override
+	public String getView() {
+		return "CompressJson.ftl";
+	}
+
+	public String getContentType() {
+		return "application/json; charset=UTF-8";
+	}
+
+	protected void initServicePage(HttpServletRequest request) {
+		Compression compression = new Compression();
+		for (CompressStatistics statistics : CompressStatistics.getAllStatistics().values()) {
+			compression.getCompressors().add(new CompressorStatistics(statistics));
+		}
+		this.model = compression;
+	}
+}
@@ -0,0 +1,59 @@
+/**
+ * 
+ */
+package com.dianping.pigeon.console.servlet.json;
+
+import java.util.List;
+import java.util.Map.Entry;
+
+import javax.servlet.http.HttpServletRequest;
+
+import com.dianping.pigeon.console.domain.Latency;
+import com.dianping.pigeon.console.domain.MethodLatency;
+import com.dianping.pigeon.console.servlet.ServiceServlet;
+import com.dianping.pigeon.remoting.common.monitor.LatencyStatistics;
+import com.dianping.pigeon.remoting.invoker.process.statistics.InvokerStatisticsHolder;
+import com.dianping.pigeon.remoting.provider.config.ServerConfig;
+import com.dianping.pigeon.remoting.provider.process.statistics.ProviderStatisticsHolder;
+import com.dianping.pigeon.util.LatencyHistogram;
+import com.dianping.pigeon.util.RollingLatencyHistogram;
+
+/**
+ * 各方法最近几个统计窗口内的延迟分布（微秒），包括服务端处理耗时、服务端线程池排队耗时和调用端同步调用耗时
+ */
+public class LatencyJsonServlet extends ServiceServlet {
+
+	private static final long serialVersionUID = 2536519412741253398L;
+
+	public LatencyJsonServlet(ServerConfig serverConfig, int port) {
+		super(serverConfig, port);
+	}
+
+	@Override
+	public String getView() {
+		return "LatencyJson.ftl";
+	}
+
+	public String getContentType() {
+		return "application/json; charset=UTF-8";
+	}
+
+	protected void initServicePage(HttpServletRequest request) {
+		Latency latency = new Latency();
+		long now = System.currentTimeMillis();
+		addLatencies(latency.getProviderLatencies(), ProviderStatisticsHolder.getLatencyStatistics(), now);
+		addLatencies(latency.getProviderQueueWaits(), ProviderStatisticsHolder.getQueueWaitStatistics(), now);
+		addLatencies(latency.getInvokerLatencies(), InvokerStatisticsHolder.getLatencyStatistics(), now);
+		latency.setWindowMillis(ProviderStatisticsHolder.getLatencyStatistics().getRangeMillis());
+		this.model = latency;
+	}
+
+	private void addLatencies(List<MethodLatency> latencies, LatencyStatistics statistics, long now) {
+		for (Entry<String, RollingLatencyHistogram> entry : statistics.getHistograms().entrySet()) {
+			LatencyHistogram histogram = entry.getValue().snapshot(now);
+			if (histogram.getCount() > 0) {
+				latencies.add(new MethodLatency(entry.getKey(), histogram));
+			}
+		}
+	}
+}
@@ -0,0 +1,17 @@
+{"unit": "us",
+"compressors": [
+<#list compressors as x>
+	{
+		"name": "${x.name}",
+		"compressCount": ${x.compressCount?c},
+		"uselessCount": ${x.uselessCount?c},
+		"rawBytes": ${x.rawBytes?c},
+		"compressedBytes": ${x.compressedBytes?c},
+		"ratio": ${x.ratio?c},
+		"compressTime": ${x.compressMicros?c},
+		"decompressCount": ${x.decompressCount?c},
+		"decompressTime": ${x.decompressMicros?c}
+	}<#if x_has_next>,</#if>
+</#list>
+]
+}
@@ -0,0 +1,23 @@
+<#macro latencies list>
+<#list list as x>
+	{
+		"method": "${x.method}",
+		"count": ${x.count?c},
+		"mean": ${x.mean?c},
+		"p50": ${x.p50?c},
+		"p99": ${x.p99?c},
+		"p999": ${x.p999?c},
+		"max": ${x.max?c}
+	}<#if x_has_next>,</#if>
+</#list>
+</#macro>
+{"unit": "us",
+"windowMillis": ${windowMillis?c},
+"providerLatencies": [
+<@latencies providerLatencies/>
+],"providerQueueWaits": [
+<@latencies providerQueueWaits/>
+],"invokerLatencies": [
+<@latencies invokerLatencies/>
+]
+}
@@ -5,6 +5,7 @@
 package com.dianping.pigeon.remoting.netty.codec;
 
 import static org.jboss.netty.buffer.ChannelBuffers.dynamicBuffer;
+import static org.jboss.netty.buffer.ChannelBuffers.wrappedBuffer;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -20,10 +21,16 @@ import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.handler.codec.oneone.OneToOneDecoder;
 
+import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.codec.RequestBody;
+import com.dianping.pigeon.remoting.common.codec.compress.CompressorFactory;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.common.domain.InvocationSerializable;
 import com.dianping.pigeon.remoting.common.exception.SerializationException;
+import com.dianping.pigeon.remoting.common.monitor.CompressStatistics;
 import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.provider.util.ProviderUtils;
 
@@ -31,29 +38,48 @@ public abstract class AbstractDecoder extends OneToOneDecoder implements Decoder
 
 	private static final Logger logger = LoggerLoader.getLogger(AbstractDecoder.class);
 
-	public abstract Object doInitMsg(Object message, Channel channel, long receiveTime);
+	// 解压前按帧中声明的长度分配内存，限制长度避免异常数据占满内存
+	private static final int maxDecompressedLength = ConfigManagerLoader.getConfigManager().getIntValue(
+			"pigeon.codec.compress.maxlength", 64 * 1024 * 1024);
+
+	/**
+	 * @param receiveTime
+	 *            收到数据的时间，System.currentTimeMillis()
+	 * @param receiveNanos
+	 *            收到数据的时间，System.nanoTime()，用于记录时间线
+	 */
+	public abstract Object doInitMsg(Object message, Channel channel, long receiveTime, long receiveNanos);
 
 	public abstract void doFailResponse(Channel channel, InvocationResponse response);
 
 	public abstract Object deserialize(byte serializerType, InputStream is);
 
+	/**
+	 * 零拷贝模式：半包通过composite buffer拼接，帧通过slice切出，反序列化前不做任何拷贝
+	 */
+	private final boolean zeroCopy;
+
 	public AbstractDecoder() {
+		this(false);
+	}
+
+	public AbstractDecoder(boolean zeroCopy) {
+		this.zeroCopy = zeroCopy;
+	}
+
+	public boolean isZeroCopy() {
+		return zeroCopy;
 	}
 
 	public Object decode(ChannelHandlerContext ctx, Channel channel, Object msg) throws IOException,
 			ClassNotFoundException {
 		long receiveTime = System.currentTimeMillis();
+		long receiveNanos = System.nanoTime();
 		if (!(msg instanceof ChannelBuffer)) {
 			return msg;
 		}
 
-		ChannelBuffer cb = (ChannelBuffer) NettyCodecUtils.getAttachment(ctx, Constants.ATTACHMENT_BYTEBUFFER);
-		ChannelBuffer cb_ = (ChannelBuffer) msg;
-		if (cb == null) {
-			cb = cb_;
-		} else {
-			cb.writeBytes(cb_);
-		}
+		ChannelBuffer cb = cumulate(ctx, (ChannelBuffer) msg);
 
 		List<Object> messages = null;
 		int lastReadIndex = cb.readerIndex();
@@ -73,11 +99,12 @@ public abstract class AbstractDecoder extends OneToOneDecoder implements Decoder
 						+ msg);
 			}
 
-			byte serializable = cb.readByte();
+			byte flags = cb.readByte();
+			byte serializable = (byte) (flags & Constants.MESSAGE_SERIALIZE_MASK);
 			boolean isException = false;
 			Object message = null;
 			try {
-				message = _decode(serializable, ctx, channel, cb);
+				message = _decode(flags, ctx, channel, cb);
 			} catch (Throwable e) {
 				isException = true;
 				SerializationException se = new SerializationException(e);
@@ -100,7 +127,7 @@ public abstract class AbstractDecoder extends OneToOneDecoder implements Decoder
 				if (messages == null) {
 					messages = new ArrayList<Object>();
 				}
-				messages.add(doInitMsg(message, channel, receiveTime));
+				messages.add(doInitMsg(message, channel, receiveTime, receiveNanos));
 				lastReadIndex = cb.readerIndex();
 			} else if (isException) {
 				lastReadIndex = cb.readerIndex();
@@ -113,9 +140,23 @@ public abstract class AbstractDecoder extends OneToOneDecoder implements Decoder
 		return messages;
 	}
 
+	private ChannelBuffer cumulate(ChannelHandlerContext ctx, ChannelBuffer input) {
+		ChannelBuffer cumulation = (ChannelBuffer) NettyCodecUtils.getAttachment(ctx, Constants.ATTACHMENT_BYTEBUFFER);
+		if (cumulation == null) {
+			return input;
+		}
+		if (zeroCopy) {
+			// nested composite buffers are decomposed, so the component list
+			// only grows with the number of reads of a single frame
+			return wrappedBuffer(cumulation, input);
+		}
+		cumulation.writeBytes(input);
+		return cumulation;
+	}
+
 	private void setAttachment(ChannelHandlerContext ctx, Channel channel, ChannelBuffer cb, int lastReadIndex) {
 		cb.readerIndex(lastReadIndex);
-		if (!(cb instanceof DynamicChannelBuffer) || cb.writerIndex() > 102400) {
+		if (!zeroCopy && (!(cb instanceof DynamicChannelBuffer) || cb.writerIndex() > 102400)) {
 			ChannelBuffer db = dynamicBuffer(cb.readableBytes() * 2, channel.getConfig().getBufferFactory());
 			db.writeBytes(cb);
 			cb = db;
@@ -131,7 +172,19 @@ public abstract class AbstractDecoder extends OneToOneDecoder implements Decoder
 		if (frame == null) {
 			return null;
 		}
-		Object obj = deserialize(serializerType, new ChannelBufferInputStream(frame));
+		byte serialize = (byte) (serializerType & Constants.MESSAGE_SERIALIZE_MASK);
+		if ((serializerType & Constants.MESSAGE_FLAG_COMPRESSED) != 0) {
+			frame = decompress(frame);
+		}
+		Object obj = null;
+		if ((serializerType & Constants.MESSAGE_FLAG_REQUEST_HEADER) != 0) {
+			obj = deserializeWithHeader(ctx, serialize, frame);
+		} else {
+			obj = deserialize(serialize, new ChannelBufferInputStream(frame));
+		}
+		if ((serializerType & Constants.MESSAGE_FLAG_ACCEPT_COMPRESSED) != 0 && obj instanceof InvocationRequest) {
+			((InvocationRequest) obj).setAttachment(Constants.REQ_ATTACH_ACCEPT_COMPRESSED, Boolean.TRUE);
+		}
 		if (obj instanceof InvocationSerializable) {
 			int msgType = ((InvocationSerializable) obj).getMessageType();
 			if (msgType == Constants.MESSAGE_TYPE_SERVICE && size > 0) {
@@ -141,6 +194,53 @@ public abstract class AbstractDecoder extends OneToOneDecoder implements Decoder
 		return obj;
 	}
 
+	/**
+	 * 压缩的帧在IO线程中解压，请求头也在压缩范围内
+	 */
+	private ChannelBuffer decompress(ChannelBuffer frame) throws IOException {
+		byte type = frame.readByte();
+		int length = frame.readInt();
+		if (length < 0 || length > maxDecompressedLength) {
+			throw new IllegalArgumentException("invalid decompressed length:" + length);
+		}
+		int compressedLength = frame.readableBytes();
+		byte[] data;
+		int offset;
+		if (frame.hasArray()) {
+			data = frame.array();
+			offset = frame.arrayOffset() + frame.readerIndex();
+		} else {
+			data = new byte[compressedLength];
+			frame.getBytes(frame.readerIndex(), data);
+			offset = 0;
+		}
+		long begin = System.nanoTime();
+		byte[] decompressed = CompressorFactory.getCompressor(type).decompress(data, offset, compressedLength, length);
+		CompressStatistics.getStatistics(type).recordDecompress(System.nanoTime() - begin);
+		return wrappedBuffer(decompressed);
+	}
+
+	/**
+	 * 带请求头的帧，默认立即反序列化请求体，provider可以只解析请求头，推迟反序列化
+	 */
+	protected Object deserializeWithHeader(ChannelHandlerContext ctx, byte serializerType, ChannelBuffer frame) {
+		DefaultRequest request = readRequestHeader(ctx, serializerType, frame);
+		request.decodeBody();
+		return request;
+	}
+
+	/**
+	 * 请求头中的字符串可能引用连接字典，必须在IO线程中按帧的顺序解析
+	 */
+	protected DefaultRequest readRequestHeader(ChannelHandlerContext ctx, byte serializerType, ChannelBuffer frame) {
+		DefaultRequest request = RequestHeaderCodec.read(frame, serializerType,
+				NettyCodecUtils.getDictionary(ctx, StringDictionary.MAX_SIZE));
+		byte[] body = new byte[RequestHeaderCodec.getBodyLength(frame)];
+		frame.getBytes(frame.readerIndex(), body);
+		request.setBody(new RequestBody(serializerType, body));
+		return request;
+	}
+
 	private final static int fieldLenth = 4;
 
 	protected ChannelBuffer beforeDo(ChannelHandlerContext ctx, ChannelBuffer buffer) {
@@ -178,10 +278,10 @@ public abstract class AbstractDecoder extends OneToOneDecoder implements Decoder
 	 */
 	private int parseExpand(ChannelHandlerContext ctx, ChannelBuffer buffer, int frameLengthInt) {
 		int msgLen = frameLengthInt;
-		byte[] expandFlag = new byte[3];
-		buffer.getBytes(buffer.readerIndex() + frameLengthInt - 3, expandFlag);
-		if (expandFlag[0] == Constants.EXPAND_FLAG_FIRST && expandFlag[1] == Constants.EXPAND_FLAG_SECOND
-				&& expandFlag[2] == Constants.EXPAND_FLAG_THIRD) {
+		int flagIndex = buffer.readerIndex() + frameLengthInt - 3;
+		if (buffer.getByte(flagIndex) == Constants.EXPAND_FLAG_FIRST
+				&& buffer.getByte(flagIndex + 1) == Constants.EXPAND_FLAG_SECOND
+				&& buffer.getByte(flagIndex + 2) == Constants.EXPAND_FLAG_THIRD) {
 			msgLen = frameLengthInt - AbstractEncoder.EXPAND_LANGTH;
 			long seq = buffer.getLong(buffer.readerIndex() + msgLen);
 			NettyCodecUtils.setAttachment(ctx, Constants.ATTACHMENT_REQUEST_SEQ, seq);
@@ -10,22 +10,68 @@ import java.io.IOException;
 
 import org.apache.logging.log4j.Logger;
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferFactory;
 import org.jboss.netty.buffer.ChannelBufferOutputStream;
 import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.handler.codec.oneone.OneToOneEncoder;
 
+import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.codec.compress.CompressPolicy;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.common.domain.InvocationSerializable;
 import com.dianping.pigeon.remoting.common.exception.SerializationException;
+import com.dianping.pigeon.remoting.common.monitor.CompressStatistics;
 import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.common.util.InvocationUtils;
 import com.dianping.pigeon.remoting.provider.util.ProviderUtils;
 
 public abstract class AbstractEncoder extends OneToOneEncoder implements Encoder {
 
 	private static final Logger log = LoggerLoader.getLogger(AbstractEncoder.class);
 
+	private static final boolean sizePredictEnable = ConfigManagerLoader.getConfigManager().getBooleanValue(
+			"pigeon.codec.encoder.sizepredict", true);
+
+	private static final boolean pooledEnable = ConfigManagerLoader.getConfigManager().getBooleanValue(
+			"pigeon.codec.encoder.pooled", false);
+
+	private static final EncodedSizePredictor sizePredictor = EncodedSizePredictor.getInstance();
+
+	@Override
+	public void handleDownstream(ChannelHandlerContext ctx, ChannelEvent evt) throws Exception {
+		if (!pooledEnable || !(evt instanceof MessageEvent)) {
+			super.handleDownstream(ctx, evt);
+			return;
+		}
+		MessageEvent e = (MessageEvent) evt;
+		Object originalMessage = e.getMessage();
+		Object encodedMessage = encode(ctx, e.getChannel(), originalMessage);
+		if (originalMessage == encodedMessage) {
+			ctx.sendDownstream(evt);
+		} else if (encodedMessage != null) {
+			if (encodedMessage instanceof ChannelBuffer) {
+				// 写出完成(成功或失败)后buffer不再被netty引用，归还给pool
+				final ChannelBuffer buffer = (ChannelBuffer) encodedMessage;
+				e.getFuture().addListener(new ChannelFutureListener() {
+
+					@Override
+					public void operationComplete(ChannelFuture future) throws Exception {
+						PooledBufferFactory.getInstance().release(buffer);
+					}
+				});
+			}
+			Channels.write(ctx, e.getFuture(), encodedMessage, e.getRemoteAddress());
+		}
+	}
+
 	public abstract void serialize(byte serializerType, ChannelBufferOutputStream os, Object obj, Channel channel)
 			throws IOException;
 
@@ -36,7 +82,8 @@ public abstract class AbstractEncoder extends OneToOneEncoder implements Encoder
 				ChannelBuffer buffer = (ChannelBuffer) _encode(message.getSerialize(), ctx, channel,
 						message.getObject());
 				buffer.setBytes(0, Constants.MESSAGE_HEAD);
-				buffer.setByte(2, message.getSerialize());
+				// afterDo中可能已经设置了标志位
+				buffer.setByte(2, buffer.getByte(2) | message.getSerialize());
 				buffer.readerIndex(0);
 
 				int msgType = ((InvocationSerializable) msg).getMessageType();
@@ -64,17 +111,46 @@ public abstract class AbstractEncoder extends OneToOneEncoder implements Encoder
 	private final int estimatedLength = 512;
 
 	public Object _encode(byte serializerType, ChannelHandlerContext ctx, Channel channel, Object msg) throws Exception {
-		ChannelBufferOutputStream bout = new ChannelBufferOutputStream(dynamicBuffer(estimatedLength, ctx.getChannel()
-				.getConfig().getBufferFactory()));
+		String sizeKey = sizePredictEnable ? getSizeKey(msg) : null;
+		int initialLength = sizeKey != null ? sizePredictor.predict(sizeKey) : estimatedLength;
+		ChannelBufferFactory bufferFactory = pooledEnable ? PooledBufferFactory.getInstance() : ctx.getChannel()
+				.getConfig().getBufferFactory();
+		ChannelBufferOutputStream bout = new ChannelBufferOutputStream(dynamicBuffer(initialLength, bufferFactory));
 		beforeDo(bout);
 		serialize(serializerType, bout, msg, channel);
 		ChannelBuffer encoded = bout.buffer();
-		afterDo(encoded, msg);
+		int serializedLength = encoded.writerIndex();
+		afterDo(ctx, encoded, msg);
+		if (sizeKey != null) {
+			// 压缩后的长度可能小于序列化需要的缓冲区
+			sizePredictor.record(sizeKey, initialLength, Math.max(serializedLength, encoded.writerIndex()));
+		}
 		return encoded;
 	}
 
+	/**
+	 * request按service#method预估，response没有方法信息，按返回值类型预估；key都是缓存的字符串，编码时不再分配
+	 */
+	protected String getSizeKey(Object msg) {
+		if (msg instanceof InvocationRequest) {
+			InvocationRequest request = (InvocationRequest) msg;
+			if (request.getMessageType() == Constants.MESSAGE_TYPE_SERVICE) {
+				return InvocationUtils.getMethodKey(request.getServiceName(), request.getMethodName());
+			}
+		} else if (msg instanceof InvocationResponse) {
+			InvocationResponse response = (InvocationResponse) msg;
+			if (response.getMessageType() == Constants.MESSAGE_TYPE_SERVICE && response.getResponse() != null) {
+				return response.getResponse().getClass().getName();
+			}
+		}
+		return null;
+	}
+
 	protected static final byte[] LENGTH_PLACEHOLDER = new byte[7];
 
+	// 压缩类型(1)和压缩前长度(4)
+	public static final int COMPRESS_HEAD_LENGTH = 1 + 4;
+
 	// +3是在结尾写入扩展表示EXPEND_FLAG
 	// +8是由于后面要写入long类型的扩展字段seq
 	public static final int EXPAND_LANGTH = 3 + 8;
@@ -90,13 +166,63 @@ public abstract class AbstractEncoder extends OneToOneEncoder implements Encoder
 
 	}
 
-	protected void afterDo(ChannelBuffer cb, Object msg) {
+	protected void afterDo(ChannelHandlerContext ctx, ChannelBuffer cb, Object msg) {
+		compress(cb, msg);
 
 		// -7是由于减去占位符的长度，
 		cb.setInt(3, cb.writerIndex() - 7 + EXPAND_LANGTH);
 		expand(cb, msg);
 	}
 
+	/**
+	 * @return 为null时不压缩，对端不支持解压时必须返回null
+	 */
+	protected CompressPolicy getCompressPolicy(Object msg) {
+		return null;
+	}
+
+	/**
+	 * 占位符之后的内容（序列化结果和请求头）替换为：压缩类型(1) 压缩前长度(4) 压缩后的内容，
+	 * 并在帧头设置MESSAGE_FLAG_COMPRESSED。压缩后没有变小时按原样发送
+	 */
+	private void compress(ChannelBuffer cb, Object msg) {
+		CompressPolicy policy = getCompressPolicy(msg);
+		int start = LENGTH_PLACEHOLDER.length;
+		int length = cb.writerIndex() - start;
+		if (policy == null || length < policy.getThreshold()) {
+			return;
+		}
+		byte[] data;
+		int offset;
+		if (cb.hasArray()) {
+			data = cb.array();
+			offset = cb.arrayOffset() + start;
+		} else {
+			data = new byte[length];
+			cb.getBytes(start, data);
+			offset = 0;
+		}
+		long begin = System.nanoTime();
+		byte[] compressed;
+		try {
+			compressed = policy.getCompressor().compress(data, offset, length);
+		} catch (IOException e) {
+			log.warn("failed to compress message with " + policy + ":" + e.getMessage());
+			return;
+		}
+		int compressedLength = compressed.length + COMPRESS_HEAD_LENGTH;
+		CompressStatistics.getStatistics(policy.getType()).recordCompress(length, compressedLength,
+				System.nanoTime() - begin);
+		if (compressedLength >= length) {
+			return;
+		}
+		cb.writerIndex(start);
+		cb.writeByte(policy.getType());
+		cb.writeInt(length);
+		cb.writeBytes(compressed);
+		cb.setByte(2, cb.getByte(2) | Constants.MESSAGE_FLAG_COMPRESSED);
+	}
+
 	private void expand(ChannelBuffer cb, Object msg) {
 		// 将msg的seq写入序列化外的数据流中，便于在序列化出问题是使用
 		cb.writeLong(getSeq(msg));
@@ -0,0 +1,111 @@
+/**
+ * Dianping.com Inc.
+ * Copyright (c) 2003-2013 All Rights Reserved.
+ */
+package com.dianping.pigeon.remoting.netty.codec;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按service#method记录最近编码长度的EWMA，用于预估encoder的初始buffer大小
+ */
+public final class EncodedSizePredictor {
+
+	public static final int MIN_CAPACITY = 512;
+
+	public static final int MAX_CAPACITY = 4 * 1024 * 1024;
+
+	private final ConcurrentHashMap<String, AtomicInteger> estimates = new ConcurrentHashMap<String, AtomicInteger>();
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong resizes = new AtomicLong();
+
+	private static class PredictorHolder {
+		public static final EncodedSizePredictor INSTANCE = new EncodedSizePredictor();
+	}
+
+	public static EncodedSizePredictor getInstance() {
+		return PredictorHolder.INSTANCE;
+	}
+
+	private EncodedSizePredictor() {
+	}
+
+	public int predict(String key) {
+		AtomicInteger estimate = estimates.get(key);
+		if (estimate == null) {
+			return MIN_CAPACITY;
+		}
+		int size = estimate.get();
+		// 预留1/8的余量，并对齐到2的幂，和dynamic buffer的扩容方式保持一致
+		return normalize(size + (size >>> 3));
+	}
+
+	public void record(String key, int initialCapacity, int size) {
+		AtomicInteger estimate = estimates.get(key);
+		if (estimate == null) {
+			estimate = new AtomicInteger(size);
+			AtomicInteger old = estimates.putIfAbsent(key, estimate);
+			if (old != null) {
+				estimate = old;
+			}
+		}
+		while (true) {
+			int current = estimate.get();
+			int next = current + ((size - current) >> 2);
+			if (estimate.compareAndSet(current, next)) {
+				break;
+			}
+		}
+		if (size <= initialCapacity) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+			int capacity = initialCapacity;
+			int count = 0;
+			while (capacity < size && capacity > 0) {
+				capacity <<= 1;
+				count++;
+			}
+			resizes.addAndGet(count);
+		}
+	}
+
+	static int normalize(int size) {
+		if (size <= MIN_CAPACITY) {
+			return MIN_CAPACITY;
+		}
+		if (size >= MAX_CAPACITY) {
+			return MAX_CAPACITY;
+		}
+		return Integer.highestOneBit(size - 1) << 1;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getResizes() {
+		return resizes.get();
+	}
+
+	public int getEstimate(String key) {
+		AtomicInteger estimate = estimates.get(key);
+		return estimate == null ? 0 : estimate.get();
+	}
+
+	@Override
+	public String toString() {
+		return "hits:" + hits.get() + ",misses:" + misses.get() + ",resizes:" + resizes.get() + ",keys:"
+				+ estimates.size();
+	}
+}
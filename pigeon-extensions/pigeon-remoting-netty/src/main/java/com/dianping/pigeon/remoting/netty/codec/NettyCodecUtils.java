@@ -9,6 +9,8 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import org.jboss.netty.channel.ChannelHandlerContext;
 
+import com.dianping.pigeon.remoting.common.util.Constants;
+
 public final class NettyCodecUtils {
 
 	private NettyCodecUtils() {
@@ -43,6 +45,23 @@ public final class NettyCodecUtils {
 		return attachments.remove(seq);
 	}
 
+	/**
+	 * 连接的字符串字典，编码端和解码端各自挂在自己的handler上
+	 */
+	public static StringDictionary getDictionary(ChannelHandlerContext ctx, int capacity) {
+		StringDictionary dictionary = (StringDictionary) getAttachmentNotRemove(ctx, Constants.ATTACHMENT_DICTIONARY);
+		if (dictionary == null) {
+			synchronized (ctx) {
+				dictionary = (StringDictionary) getAttachmentNotRemove(ctx, Constants.ATTACHMENT_DICTIONARY);
+				if (dictionary == null) {
+					dictionary = new StringDictionary(capacity);
+					setAttachment(ctx, Constants.ATTACHMENT_DICTIONARY, dictionary);
+				}
+			}
+		}
+		return dictionary;
+	}
+
 	@SuppressWarnings("unchecked")
 	private static Map<Integer, Object> createAttachment(ChannelHandlerContext ctx) {
 		synchronized (ctx) {
@@ -0,0 +1,133 @@
+/**
+ * Dianping.com Inc.
+ * Copyright (c) 2003-2013 All Rights Reserved.
+ */
+package com.dianping.pigeon.remoting.netty.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.netty.buffer.AbstractChannelBufferFactory;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.buffer.HeapChannelBufferFactory;
+
+import com.dianping.pigeon.config.ConfigManagerLoader;
+
+/**
+ * 按2的幂分级缓存heap数组的buffer factory，encoder写出完成后通过release归还
+ */
+public class PooledBufferFactory extends AbstractChannelBufferFactory {
+
+	private static final int MIN_SHIFT = 9;
+
+	private static final int MAX_SHIFT = 22;
+
+	private static final int poolBytesPerClass = ConfigManagerLoader.getConfigManager().getIntValue(
+			"pigeon.codec.encoder.pool.bytesperclass", 4 * 1024 * 1024);
+
+	private final Queue<byte[]>[] pools;
+
+	private final AtomicInteger[] pooledCounts;
+
+	private final AtomicLong allocated = new AtomicLong();
+
+	private final AtomicLong reused = new AtomicLong();
+
+	private static class FactoryHolder {
+		public static final PooledBufferFactory INSTANCE = new PooledBufferFactory();
+	}
+
+	public static PooledBufferFactory getInstance() {
+		return FactoryHolder.INSTANCE;
+	}
+
+	@SuppressWarnings("unchecked")
+	private PooledBufferFactory() {
+		super(ByteOrder.BIG_ENDIAN);
+		int classes = MAX_SHIFT - MIN_SHIFT + 1;
+		pools = new Queue[classes];
+		pooledCounts = new AtomicInteger[classes];
+		for (int i = 0; i < classes; i++) {
+			pools[i] = new ConcurrentLinkedQueue<byte[]>();
+			pooledCounts[i] = new AtomicInteger();
+		}
+	}
+
+	@Override
+	public ChannelBuffer getBuffer(ByteOrder order, int capacity) {
+		int index = indexOf(capacity);
+		byte[] array = null;
+		if (index >= 0) {
+			array = pools[index].poll();
+			if (array != null) {
+				pooledCounts[index].decrementAndGet();
+				reused.incrementAndGet();
+			} else {
+				array = new byte[1 << (index + MIN_SHIFT)];
+				allocated.incrementAndGet();
+			}
+		} else {
+			array = new byte[capacity];
+			allocated.incrementAndGet();
+		}
+		ChannelBuffer buffer = ChannelBuffers.wrappedBuffer(order, array);
+		buffer.clear();
+		return buffer;
+	}
+
+	@Override
+	public ChannelBuffer getBuffer(ByteOrder order, byte[] array, int offset, int length) {
+		return HeapChannelBufferFactory.getInstance(order).getBuffer(order, array, offset, length);
+	}
+
+	@Override
+	public ChannelBuffer getBuffer(ByteBuffer nioBuffer) {
+		return HeapChannelBufferFactory.getInstance(nioBuffer.order()).getBuffer(nioBuffer);
+	}
+
+	/**
+	 * 只能在buffer不再被引用(写出完成)后调用
+	 */
+	public void release(ChannelBuffer buffer) {
+		if (buffer == null || !buffer.hasArray() || buffer.arrayOffset() != 0) {
+			return;
+		}
+		byte[] array = buffer.array();
+		int index = indexOf(array.length);
+		if (index < 0 || array.length != (1 << (index + MIN_SHIFT))) {
+			return;
+		}
+		int limit = Math.max(4, poolBytesPerClass >>> (index + MIN_SHIFT));
+		if (pooledCounts[index].incrementAndGet() <= limit) {
+			pools[index].offer(array);
+		} else {
+			pooledCounts[index].decrementAndGet();
+		}
+	}
+
+	private static int indexOf(int capacity) {
+		if (capacity <= 0 || capacity > (1 << MAX_SHIFT)) {
+			return -1;
+		}
+		int shift = 32 - Integer.numberOfLeadingZeros(capacity - 1);
+		return Math.max(shift, MIN_SHIFT) - MIN_SHIFT;
+	}
+
+	public long getAllocated() {
+		return allocated.get();
+	}
+
+	public long getReused() {
+		return reused.get();
+	}
+
+	@Override
+	public String toString() {
+		return "allocated:" + allocated.get() + ",reused:" + reused.get();
+	}
+}
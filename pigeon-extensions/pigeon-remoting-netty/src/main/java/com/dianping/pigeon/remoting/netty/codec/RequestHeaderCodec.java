@@ -0,0 +1,184 @@
+/**
+ * Dianping.com Inc.
+ * Copyright (c) 2003-2013 All Rights Reserved.
+ */
+package com.dianping.pigeon.remoting.netty.codec;
+
+import java.nio.charset.Charset;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.util.Constants;
+
+/**
+ * 请求头编解码。请求头写在序列化后的请求之后、扩展字段之前，带上路由和限流需要的字段：
+ *
+ * <pre>
+ * version(1) seq(8) callType(4) messageType(4) timeout(4) serviceName app methodName length(4)
+ * </pre>
+ *
+ * 字符串为2字节长度加UTF-8内容，null的长度为-1；启用连接字典时，-2后跟2字节id表示引用，
+ * -3后跟2字节id、长度和内容表示定义并使用。帧头序列化类型字节带MESSAGE_FLAG_REQUEST_HEADER标志，
+ * 请求头中的字段以请求头为准，请求体中不再重复，provider在IO线程只解析请求头，请求体等请求被线程池接收后再反序列化
+ */
+public final class RequestHeaderCodec {
+
+	private static final byte VERSION = 1;
+
+	private static final short STRING_NULL = -1;
+
+	private static final short STRING_REFERENCE = -2;
+
+	private static final short STRING_DEFINE = -3;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private RequestHeaderCodec() {
+	}
+
+	public static boolean isSupported(Object msg) {
+		return msg instanceof InvocationRequest
+				&& ((InvocationRequest) msg).getMessageType() == Constants.MESSAGE_TYPE_SERVICE;
+	}
+
+	/**
+	 * ContextPrepareInvokeFilter确认服务端版本支持请求头后才设置附件
+	 */
+	public static boolean isEnabled(Object msg) {
+		return isSupported(msg)
+				&& Boolean.TRUE.equals(((InvocationRequest) msg).getAttachment(Constants.REQ_ATTACH_REQUEST_HEADER));
+	}
+
+	/**
+	 * 请求头中的字符串是否使用连接字典，同样由ContextPrepareInvokeFilter按服务端版本设置
+	 */
+	public static boolean isDictionaryEnabled(Object msg) {
+		return isEnabled(msg)
+				&& Boolean.TRUE.equals(((InvocationRequest) msg).getAttachment(Constants.REQ_ATTACH_DICTIONARY));
+	}
+
+	/**
+	 * 请求体只写参数、版本和上下文，服务名、方法名和app以请求头为准
+	 */
+	public static DefaultRequest createBody(InvocationRequest request) {
+		DefaultRequest body = new DefaultRequest(null, null, request.getParameters(), request.getSerialize(),
+				request.getMessageType(), request.getTimeout(), null);
+		body.setSequence(request.getSequence());
+		body.setCallType(request.getCallType());
+		body.setVersion(request.getVersion());
+		body.setApp(null);
+		body.setGlobalValues(request.getGlobalValues());
+		body.setRequestValues(request.getRequestValues());
+		return body;
+	}
+
+	/**
+	 * @param dictionary
+	 *            连接的编码字典，为null时直接写出字符串
+	 */
+	public static void write(ChannelBuffer cb, InvocationRequest request, StringDictionary dictionary) {
+		int start = cb.writerIndex();
+		cb.writeByte(VERSION);
+		cb.writeLong(request.getSequence());
+		cb.writeInt(request.getCallType());
+		cb.writeInt(request.getMessageType());
+		cb.writeInt(request.getTimeout());
+		writeString(cb, request.getServiceName(), dictionary);
+		writeString(cb, request.getApp(), dictionary);
+		writeString(cb, request.getMethodName(), dictionary);
+		cb.writeInt(cb.writerIndex() - start);
+	}
+
+	/**
+	 * @param frame
+	 *            序列化后的请求加请求头，不含扩展字段
+	 * @return 请求体的长度
+	 */
+	public static int getBodyLength(ChannelBuffer frame) {
+		int headerLength = frame.getInt(frame.writerIndex() - 4);
+		int bodyLength = frame.readableBytes() - 4 - headerLength;
+		if (headerLength <= 0 || bodyLength < 0) {
+			throw new IllegalArgumentException("invalid request header length:" + headerLength);
+		}
+		return bodyLength;
+	}
+
+	/**
+	 * 读取请求头，返回的请求还没有参数和上下文
+	 * 
+	 * @param dictionary
+	 *            连接的解码字典，只能在IO线程中按帧的顺序调用
+	 */
+	public static DefaultRequest read(ChannelBuffer frame, byte serialize, StringDictionary dictionary) {
+		ChannelBuffer header = frame.slice(frame.readerIndex() + getBodyLength(frame),
+				frame.getInt(frame.writerIndex() - 4));
+		byte version = header.readByte();
+		if (version != VERSION) {
+			throw new IllegalArgumentException("unsupported request header version:" + version);
+		}
+		DefaultRequest request = new DefaultRequest();
+		request.setSerialize(serialize);
+		request.setSequence(header.readLong());
+		request.setCallType(header.readInt());
+		request.setMessageType(header.readInt());
+		request.setTimeout(header.readInt());
+		request.setServiceName(readString(header, dictionary));
+		request.setApp(readString(header, dictionary));
+		request.setMethodName(readString(header, dictionary));
+		return request;
+	}
+
+	private static void writeString(ChannelBuffer cb, String value, StringDictionary dictionary) {
+		if (value == null) {
+			cb.writeShort(STRING_NULL);
+			return;
+		}
+		StringDictionary.Entry entry = dictionary != null ? dictionary.lookup(value) : null;
+		if (entry != null && entry.isConfirmed()) {
+			cb.writeShort(STRING_REFERENCE);
+			cb.writeShort(entry.getId());
+			return;
+		}
+		byte[] bytes = value.getBytes(UTF8);
+		if (bytes.length > Short.MAX_VALUE) {
+			throw new IllegalArgumentException("request header field too long:" + value);
+		}
+		if (entry != null) {
+			cb.writeShort(STRING_DEFINE);
+			cb.writeShort(entry.getId());
+		}
+		cb.writeShort(bytes.length);
+		cb.writeBytes(bytes);
+	}
+
+	private static String readString(ChannelBuffer cb, StringDictionary dictionary) {
+		short length = cb.readShort();
+		if (length == STRING_NULL) {
+			return null;
+		}
+		short id = -1;
+		if (length == STRING_REFERENCE || length == STRING_DEFINE) {
+			if (dictionary == null) {
+				throw new IllegalArgumentException("string dictionary is not available");
+			}
+			id = cb.readShort();
+			if (length == STRING_REFERENCE) {
+				return dictionary.get(id);
+			}
+			length = cb.readShort();
+		}
+		if (length < 0) {
+			throw new IllegalArgumentException("invalid request header string length:" + length);
+		}
+		byte[] bytes = new byte[length];
+		cb.readBytes(bytes);
+		String value = new String(bytes, UTF8);
+		if (id >= 0) {
+			dictionary.define(id, value);
+			return dictionary.get(id);
+		}
+		return value;
+	}
+}
@@ -0,0 +1,117 @@
+/**
+ * Dianping.com Inc.
+ * Copyright (c) 2003-2013 All Rights Reserved.
+ */
+package com.dianping.pigeon.remoting.netty.codec;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 连接级别的字符串字典，用于请求头中的服务名、方法名和app。
+ *
+ * 编码端：字符串第一次出现时分配id，在写出成功前每个帧都带上id和完整内容（多个线程同时编码时，
+ * 后编码的帧可能先写出），写出成功后只发送id。解码端：在IO线程中按帧的顺序记录id对应的字符串，
+ * 同一个字符串每次解码出的都是同一个实例，后续按服务名查找时不需要重新计算hash
+ */
+public final class StringDictionary {
+
+	public static final int MAX_SIZE = Short.MAX_VALUE;
+
+	private final int capacity;
+
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	private final AtomicInteger nextId = new AtomicInteger();
+
+	private String[] values = new String[16];
+
+	public StringDictionary(int capacity) {
+		this.capacity = Math.min(capacity, MAX_SIZE);
+	}
+
+	/**
+	 * @return 字典已满时返回null，直接发送字符串
+	 */
+	public Entry lookup(String value) {
+		Entry entry = entries.get(value);
+		if (entry == null) {
+			if (nextId.get() >= capacity) {
+				return null;
+			}
+			int id = nextId.getAndIncrement();
+			if (id >= capacity) {
+				return null;
+			}
+			Entry newEntry = new Entry((short) id);
+			entry = entries.putIfAbsent(value, newEntry);
+			if (entry == null) {
+				entry = newEntry;
+			}
+		}
+		return entry;
+	}
+
+	/**
+	 * 带有该字符串的帧已经写出，对端一定已经收到定义
+	 */
+	public void confirm(String value) {
+		if (value == null) {
+			return;
+		}
+		Entry entry = entries.get(value);
+		if (entry != null && !entry.confirmed) {
+			entry.confirmed = true;
+		}
+	}
+
+	public boolean isConfirmed(String value) {
+		if (value == null) {
+			return true;
+		}
+		Entry entry = entries.get(value);
+		return entry == null || entry.confirmed;
+	}
+
+	public void define(short id, String value) {
+		if (id < 0) {
+			throw new IllegalArgumentException("invalid dictionary id:" + id);
+		}
+		if (id >= values.length) {
+			String[] newValues = new String[Math.max(values.length * 2, id + 1)];
+			System.arraycopy(values, 0, newValues, 0, values.length);
+			values = newValues;
+		}
+		String current = values[id];
+		if (current == null || !current.equals(value)) {
+			values[id] = value;
+		}
+	}
+
+	public String get(short id) {
+		String value = id >= 0 && id < values.length ? values[id] : null;
+		if (value == null) {
+			throw new IllegalArgumentException("undefined dictionary id:" + id);
+		}
+		return value;
+	}
+
+	public static final class Entry {
+
+		private final short id;
+
+		private volatile boolean confirmed;
+
+		Entry(short id) {
+			this.id = id;
+		}
+
+		public short getId() {
+			return id;
+		}
+
+		public boolean isConfirmed() {
+			return confirmed;
+		}
+	}
+}
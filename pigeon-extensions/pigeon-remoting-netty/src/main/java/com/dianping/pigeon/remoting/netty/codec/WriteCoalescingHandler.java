@@ -0,0 +1,184 @@
+/**
+ * Dianping.com Inc.
+ * Copyright (c) 2003-2013 All Rights Reserved.
+ */
+package com.dianping.pigeon.remoting.netty.codec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.ChannelDownstreamHandler;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.threadpool.DefaultThreadFactory;
+
+/**
+ * 合并同一连接上短时间内写出的消息，用一次写操作发送。
+ *
+ * 放在pipeline的最前面（最靠近socket），收到的是encoder编码后的ChannelBuffer。第一条消息缓存后在window微秒后写出，
+ * 缓存的字节数达到上限时立即写出；其他下行事件（如close）之前先写出已缓存的消息，保证顺序。
+ * 合并写出的结果会回填到每条消息原来的future上，原有的写失败处理不受影响。每个连接一个实例
+ */
+public class WriteCoalescingHandler implements ChannelDownstreamHandler {
+
+	private static final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+
+	private static final long DEFAULT_WINDOW_MICROS = configManager.getLongValue(
+			"pigeon.netty.write.coalesce.window.micros", 100);
+
+	private static final int DEFAULT_MAX_BYTES = configManager.getIntValue("pigeon.netty.write.coalesce.bytes",
+			64 * 1024);
+
+	private static final ScheduledExecutorService flusher = Executors
+			.newSingleThreadScheduledExecutor(new DefaultThreadFactory("Pigeon-Netty-Write-Flusher"));
+
+	private static final AtomicLong batches = new AtomicLong();
+
+	private static final AtomicLong messages = new AtomicLong();
+
+	private static final AtomicLong bytes = new AtomicLong();
+
+	private static final AtomicLong delayNanos = new AtomicLong();
+
+	private final long windowMicros;
+
+	private final int maxBytes;
+
+	private final Object lock = new Object();
+
+	private List<MessageEvent> pending = new ArrayList<MessageEvent>();
+
+	private int pendingBytes;
+
+	private long firstPendingTime;
+
+	private boolean flushScheduled;
+
+	public WriteCoalescingHandler() {
+		this(DEFAULT_WINDOW_MICROS, DEFAULT_MAX_BYTES);
+	}
+
+	public WriteCoalescingHandler(long windowMicros, int maxBytes) {
+		this.windowMicros = windowMicros;
+		this.maxBytes = maxBytes;
+	}
+
+	@Override
+	public void handleDownstream(final ChannelHandlerContext ctx, ChannelEvent e) throws Exception {
+		if (!(e instanceof MessageEvent) || !(((MessageEvent) e).getMessage() instanceof ChannelBuffer)) {
+			flush(ctx);
+			ctx.sendDownstream(e);
+			return;
+		}
+		MessageEvent event = (MessageEvent) e;
+		boolean flushNow = false;
+		boolean schedule = false;
+		synchronized (lock) {
+			if (pending.isEmpty()) {
+				firstPendingTime = System.nanoTime();
+			}
+			pending.add(event);
+			pendingBytes += ((ChannelBuffer) event.getMessage()).readableBytes();
+			if (pendingBytes >= maxBytes) {
+				flushNow = true;
+			} else if (!flushScheduled) {
+				flushScheduled = true;
+				schedule = true;
+			}
+		}
+		if (flushNow) {
+			flush(ctx);
+		} else if (schedule) {
+			flusher.schedule(new Runnable() {
+
+				@Override
+				public void run() {
+					flush(ctx);
+				}
+			}, windowMicros, TimeUnit.MICROSECONDS);
+		}
+	}
+
+	/**
+	 * 在锁内写出，保证并发flush时消息的先后顺序
+	 */
+	void flush(ChannelHandlerContext ctx) {
+		synchronized (lock) {
+			flushScheduled = false;
+			if (pending.isEmpty()) {
+				return;
+			}
+			List<MessageEvent> batch = pending;
+			pending = new ArrayList<MessageEvent>(batch.size());
+			batches.incrementAndGet();
+			messages.addAndGet(batch.size());
+			bytes.addAndGet(pendingBytes);
+			delayNanos.addAndGet(System.nanoTime() - firstPendingTime);
+			pendingBytes = 0;
+			if (batch.size() == 1) {
+				ctx.sendDownstream(batch.get(0));
+				return;
+			}
+			ChannelBuffer[] buffers = new ChannelBuffer[batch.size()];
+			for (int i = 0; i < buffers.length; i++) {
+				buffers[i] = (ChannelBuffer) batch.get(i).getMessage();
+			}
+			ChannelFuture future = Channels.future(ctx.getChannel());
+			future.addListener(new BatchWriteListener(batch));
+			Channels.write(ctx, future, ChannelBuffers.wrappedBuffer(buffers), batch.get(0).getRemoteAddress());
+		}
+	}
+
+	public static long getBatches() {
+		return batches.get();
+	}
+
+	public static long getMessages() {
+		return messages.get();
+	}
+
+	public static long getBytes() {
+		return bytes.get();
+	}
+
+	public static String getStatistics() {
+		long b = batches.get();
+		long m = messages.get();
+		return "batches:" + b + ", messages:" + m + ", bytes:" + bytes.get() + ", avg batch size:"
+				+ (b == 0 ? 0 : m / (double) b) + ", avg delay(us):"
+				+ (b == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(delayNanos.get() / b));
+	}
+
+	private static class BatchWriteListener implements ChannelFutureListener {
+
+		private final List<MessageEvent> batch;
+
+		BatchWriteListener(List<MessageEvent> batch) {
+			this.batch = batch;
+		}
+
+		@Override
+		public void operationComplete(ChannelFuture future) throws Exception {
+			for (MessageEvent event : batch) {
+				if (future.isSuccess()) {
+					event.getFuture().setSuccess();
+				} else {
+					event.getFuture().setFailure(future.getCause());
+				}
+			}
+		}
+	}
+}
@@ -8,6 +8,7 @@ import java.net.InetSocketAddress;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.logging.log4j.Logger;
 import org.jboss.netty.bootstrap.ClientBootstrap;
@@ -42,7 +43,9 @@ public class NettyClient extends AbstractClient {
 
 	private ClientBootstrap bootstrap;
 
-	private Channel channel;
+	private final PooledChannel[] channels;
+
+	private final AtomicInteger nextChannel = new AtomicInteger();
 
 	private String host;
 
@@ -79,6 +82,19 @@ public class NettyClient extends AbstractClient {
 	private static final int connectTimeout = configManager.getIntValue(Constants.KEY_CONNECT_TIMEOUT,
 			Constants.DEFAULT_CONNECT_TIMEOUT);
 
+	private static final boolean poolEnable = configManager.getBooleanValue("pigeon.invoker.netty.pool.enable",
+			false);
+
+	private static final int poolConnections = configManager.getIntValue("pigeon.invoker.netty.pool.connections",
+			CLIENT_CONNECTIONS);
+
+	// leastpending或roundrobin
+	private static final boolean selectLeastPending = "leastpending".equals(configManager.getStringValue(
+			"pigeon.invoker.netty.pool.select", "leastpending"));
+
+	// 请求发出时所用的连接，收到响应或者超时时直接从该连接的等待数中去掉
+	static final String REQ_ATTACH_POOLED_CHANNEL = "POOLED_CHANNEL";
+
 	public int getWriteBufferHighWater() {
 		return configManager.getIntValue(Constants.KEY_WRITE_BUFFER_HIGH_WATER,
 				Constants.DEFAULT_WRITE_BUFFER_HIGH_WATER);
@@ -94,6 +110,11 @@ public class NettyClient extends AbstractClient {
 		this.port = connectInfo.getPort();
 		this.connectInfo = connectInfo;
 		this.address = host + ":" + port;
+		int connections = poolEnable && poolConnections > 1 ? poolConnections : 1;
+		this.channels = new PooledChannel[connections];
+		for (int i = 0; i < connections; i++) {
+			this.channels[i] = new PooledChannel();
+		}
 
 		this.bootstrap = new ClientBootstrap(channelFactory);
 		this.bootstrap.setPipelineFactory(new NettyClientPipelineFactory(this));
@@ -105,10 +126,25 @@ public class NettyClient extends AbstractClient {
 		this.bootstrap.setOption("writeBufferLowWaterMark", getWriteBufferLowWater());
 	}
 
+	/**
+	 * 连接池模式下只重连断开的连接，有一个连接可用即认为已连接。
+	 * 每个新连接由NioClientSocketChannelFactory轮流分配worker线程，多个连接自然分散到不同的worker上
+	 */
 	public synchronized void connect() {
 		if (this.connected) {
 			return;
 		}
+		boolean anyConnected = false;
+		for (PooledChannel pooledChannel : channels) {
+			if (!pooledChannel.isAvailable()) {
+				connect(pooledChannel);
+			}
+			anyConnected |= pooledChannel.isAvailable();
+		}
+		this.connected = anyConnected;
+	}
+
+	private void connect(PooledChannel pooledChannel) {
 		logger.info("client is connecting to " + this.host + ":" + this.port);
 		ChannelFuture future = null;
 		try {
@@ -118,7 +154,7 @@ public class NettyClient extends AbstractClient {
 					Channel newChannel = future.getChannel();
 					try {
 						// 关闭旧的连接
-						Channel oldChannel = this.channel;
+						Channel oldChannel = pooledChannel.channel;
 						if (oldChannel != null) {
 							logger.info("close old netty channel " + oldChannel);
 							try {
@@ -127,10 +163,10 @@ public class NettyClient extends AbstractClient {
 							}
 						}
 					} finally {
-						this.channel = newChannel;
+						pooledChannel.channel = newChannel;
+						pooledChannel.connected = true;
 					}
 					logger.info("client is connected to " + this.host + ":" + this.port);
-					this.connected = true;
 				} else {
 					logger.info("client is not connected to " + this.host + ":" + this.port);
 				}
@@ -146,27 +182,96 @@ public class NettyClient extends AbstractClient {
 	public InvocationResponse doWrite(InvocationRequest request, Callback callback) throws NetworkException {
 		Object[] msg = new Object[] { request, callback };
 		ChannelFuture future = null;
+		PooledChannel pooledChannel = selectChannel();
+		Channel channel = pooledChannel.channel;
 		if (channel == null) {
 			logger.error("channel is null ^^^^^^^^^^^^^^");
 		} else {
+			boolean countPending = isCountPending(request);
+			if (countPending) {
+				request.setAttachment(REQ_ATTACH_POOLED_CHANNEL, pooledChannel);
+				pooledChannel.incrementPending();
+			}
 			try {
 				future = channel.write(msg);
 			} catch (Exception e) {
+				if (countPending) {
+					request.setAttachment(REQ_ATTACH_POOLED_CHANNEL, null);
+					pooledChannel.decrementPending();
+				}
 				throw new NetworkException("remote call failed:" + request, e);
 			}
 			if (request.getMessageType() == Constants.MESSAGE_TYPE_SERVICE
 					|| request.getMessageType() == Constants.MESSAGE_TYPE_HEART) {
-				future.addListener(new MsgWriteListener(request));
+				future.addListener(new MsgWriteListener(request, pooledChannel));
 			}
 		}
 		return null;
 	}
 
+	/**
+	 * 只统计在等待表中有记录的请求，这些请求收到响应或者超时时都会回调requestCompleted
+	 */
+	private boolean isCountPending(InvocationRequest request) {
+		return channels.length > 1
+				&& selectLeastPending
+				&& request.getCallType() == Constants.CALLTYPE_REPLY
+				&& (request.getMessageType() == Constants.MESSAGE_TYPE_SERVICE
+						|| request.getMessageType() == Constants.MESSAGE_TYPE_HEART);
+	}
+
+	/**
+	 * 在可用的连接中选择等待响应最少的连接，或者轮询选择；没有可用连接时退回第一个连接
+	 */
+	private PooledChannel selectChannel() {
+		if (channels.length == 1) {
+			return channels[0];
+		}
+		int start = nextChannel.getAndIncrement() & Integer.MAX_VALUE;
+		PooledChannel selected = null;
+		int minPending = Integer.MAX_VALUE;
+		for (int i = 0; i < channels.length; i++) {
+			PooledChannel pooledChannel = channels[(start + i) % channels.length];
+			if (!pooledChannel.isAvailable()) {
+				continue;
+			}
+			if (!selectLeastPending) {
+				return pooledChannel;
+			}
+			int pending = pooledChannel.getPending();
+			if (pending < minPending) {
+				minPending = pending;
+				selected = pooledChannel;
+			}
+		}
+		return selected != null ? selected : channels[0];
+	}
+
+	/**
+	 * 响应和超时只有一方能从等待表中摘除调用，所以每个请求只会在这里减一次
+	 */
+	@Override
+	public void requestCompleted(InvocationRequest request) {
+		PooledChannel pooledChannel = (PooledChannel) request.getAttachment(REQ_ATTACH_POOLED_CHANNEL);
+		if (pooledChannel != null) {
+			pooledChannel.decrementPending();
+		}
+	}
+
 	public void connectionException(Object attachment, Throwable e) {
 		this.connected = false;
 		connectionException(this, attachment, e);
 	}
 
+	public void connectionException(Channel channel, Object attachment, Throwable e) {
+		for (PooledChannel pooledChannel : channels) {
+			if (pooledChannel.channel == channel) {
+				pooledChannel.connected = false;
+			}
+		}
+		connectionException(attachment, e);
+	}
+
 	private void connectionException(Client client, Object attachment, Throwable e) {
 		logger.info("exception while connecting to " + client, e);
 		if (attachment == null) {
@@ -209,7 +314,12 @@ public class NettyClient extends AbstractClient {
 
 	@Override
 	public boolean isWritable() {
-		return this.channel.isWritable();
+		for (PooledChannel pooledChannel : channels) {
+			if (pooledChannel.isAvailable() && pooledChannel.channel.isWritable()) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	/**
@@ -249,7 +359,12 @@ public class NettyClient extends AbstractClient {
 	public void close() {
 		logger.info("close client:" + this.host + ":" + this.port);
 		closed = true;
-		channel.close();
+		for (PooledChannel pooledChannel : channels) {
+			Channel channel = pooledChannel.channel;
+			if (channel != null) {
+				channel.close();
+			}
+		}
 	}
 
 	@Override
@@ -261,8 +376,15 @@ public class NettyClient extends AbstractClient {
 
 		private InvocationRequest request;
 
+		private PooledChannel pooledChannel;
+
 		public MsgWriteListener(InvocationRequest request) {
+			this(request, channels[0]);
+		}
+
+		MsgWriteListener(InvocationRequest request, PooledChannel pooledChannel) {
 			this.request = request;
+			this.pooledChannel = pooledChannel;
 		}
 
 		public void operationComplete(ChannelFuture future) throws Exception {
@@ -271,7 +393,9 @@ public class NettyClient extends AbstractClient {
 			if (future.isSuccess()) {
 				return;
 			}
+			// 等待数在失败响应处理时通过requestCompleted减掉
 			if (request.getMessageType() != Constants.MESSAGE_TYPE_HEART) {
+				pooledChannel.connected = false;
 				connected = false;
 			}
 			InvocationResponse response = ProviderUtils.createFailResponse(request, future.getCause());
@@ -299,4 +423,34 @@ public class NettyClient extends AbstractClient {
 	public String getProtocol() {
 		return Constants.PROTOCOL_DEFAULT;
 	}
+
+	/**
+	 * 连接池中的一个连接，pending为已发出还未收到响应的请求数。
+	 * 请求收到响应、写失败或者超时时各减一次，重连时不清零，旧连接上的请求超时后自然减掉
+	 */
+	static final class PooledChannel {
+
+		volatile Channel channel;
+
+		volatile boolean connected;
+
+		private final AtomicInteger pending = new AtomicInteger();
+
+		boolean isAvailable() {
+			Channel ch = channel;
+			return connected && ch != null && ch.isConnected();
+		}
+
+		int getPending() {
+			return pending.get();
+		}
+
+		void incrementPending() {
+			pending.incrementAndGet();
+		}
+
+		void decrementPending() {
+			pending.decrementAndGet();
+		}
+	}
 }
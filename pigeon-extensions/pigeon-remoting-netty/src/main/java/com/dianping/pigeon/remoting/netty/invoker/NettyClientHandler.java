@@ -70,7 +70,7 @@ public class NettyClientHandler extends SimpleChannelUpstreamHandler {
 			e.getChannel().close();
 			Runnable task = new Runnable() {
 				public void run() {
-					client.connectionException(attachment, e_.getCause());
+					client.connectionException(e_.getChannel(), attachment, e_.getCause());
 				}
 			};
 			exceptionProcessThreadPool.execute(task);
@@ -10,6 +10,8 @@ import org.jboss.netty.channel.ChannelHandler;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelPipelineFactory;
 
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.remoting.netty.codec.WriteCoalescingHandler;
 import com.dianping.pigeon.remoting.netty.invoker.codec.InvokerDecoder;
 import com.dianping.pigeon.remoting.netty.invoker.codec.InvokerEncoder;
 
@@ -20,15 +22,24 @@ public class NettyClientPipelineFactory implements ChannelPipelineFactory {
 	private ChannelHandler encoder;
 	private ChannelHandler handler;
 
+	private static final boolean zeroCopyDecoder = ConfigManagerLoader.getConfigManager().getBooleanValue(
+			"pigeon.invoker.netty.decoder.zerocopy", false);
+
+	private static final boolean writeCoalesce = ConfigManagerLoader.getConfigManager().getBooleanValue(
+			"pigeon.invoker.netty.write.coalesce", false);
+
 	public NettyClientPipelineFactory(NettyClient client) {
 		this.client = client;
-		this.decoder = new InvokerDecoder();
+		this.decoder = new InvokerDecoder(zeroCopyDecoder);
 		this.encoder = new InvokerEncoder();
 		this.handler = new NettyClientHandler(this.client);
 	}
 
 	public ChannelPipeline getPipeline() throws Exception {
 		ChannelPipeline pipeline = pipeline();
+		if (writeCoalesce) {
+			pipeline.addLast("coalescer", new WriteCoalescingHandler());
+		}
 		pipeline.addLast("decoder", decoder);
 		pipeline.addLast("encoder", encoder);
 		pipeline.addLast("handler", handler);
@@ -20,8 +20,19 @@ import com.dianping.pigeon.remoting.netty.codec.AbstractDecoder;
 
 public class InvokerDecoder extends AbstractDecoder {
 
+	public InvokerDecoder() {
+		super();
+	}
+
+	public InvokerDecoder(boolean zeroCopy) {
+		super(zeroCopy);
+	}
+
 	@Override
-	public Object doInitMsg(Object message, Channel channel, long receiveTime) {
+	public Object doInitMsg(Object message, Channel channel, long receiveTime, long receiveNanos) {
+		// TIMELINE_client_received
+		TimelineUtils.time((InvocationSerializable) message, TimelineUtils.getLocalIp(), Phase.ClientReceived,
+				receiveNanos);
 		// TIMELINE_client_decoded
 		TimelineUtils.time((InvocationSerializable) message, TimelineUtils.getLocalIp(), Phase.ClientDecoded);
 		return message;
@@ -8,12 +8,20 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBufferOutputStream;
 import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
 
+import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.codec.compress.CompressPolicy;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.common.domain.InvocationSerializable;
 import com.dianping.pigeon.remoting.common.util.Constants;
@@ -21,9 +29,15 @@ import com.dianping.pigeon.remoting.common.util.TimelineUtils;
 import com.dianping.pigeon.remoting.common.util.TimelineUtils.Phase;
 import com.dianping.pigeon.remoting.netty.codec.AbstractEncoder;
 import com.dianping.pigeon.remoting.netty.codec.NettyCodecUtils;
+import com.dianping.pigeon.remoting.netty.codec.RequestHeaderCodec;
+import com.dianping.pigeon.remoting.netty.codec.StringDictionary;
 
 public class InvokerEncoder extends AbstractEncoder {
 
+	// 请求头中服务名、方法名和app的连接字典大小，0表示不使用字典
+	private static final int dictionarySize = ConfigManagerLoader.getConfigManager().getIntValue(
+			"pigeon.codec.dictionary.size", 1024);
+
 	public InvokerEncoder() {
 		super();
 	}
@@ -32,11 +46,73 @@ public class InvokerEncoder extends AbstractEncoder {
 		NettyCodecUtils.setAttachment(ctx, Constants.ATTACHMENT_RETRY, msg);
 		Object[] message = (Object[]) msg;
 		Object encoded = super.encode(ctx, channel, message[0]);
+		if (RequestHeaderCodec.isEnabled(message[0])) {
+			ChannelBuffer buffer = (ChannelBuffer) encoded;
+			buffer.setByte(2, buffer.getByte(2) | Constants.MESSAGE_FLAG_REQUEST_HEADER);
+		}
+		if (message[0] instanceof InvocationRequest
+				&& ((InvocationRequest) message[0]).getAttachment(Constants.REQ_ATTACH_ACCEPT_COMPRESSED) != null) {
+			ChannelBuffer buffer = (ChannelBuffer) encoded;
+			buffer.setByte(2, buffer.getByte(2) | Constants.MESSAGE_FLAG_ACCEPT_COMPRESSED);
+		}
 		// TIMELINE_client_encoded
 		TimelineUtils.time((InvocationSerializable) message[0], TimelineUtils.getLocalIp(), Phase.ClientEncoded);
 		return encoded;
 	}
 
+	@Override
+	public void handleDownstream(ChannelHandlerContext ctx, ChannelEvent evt) throws Exception {
+		super.handleDownstream(ctx, evt);
+		if (dictionarySize <= 0 || !(evt instanceof MessageEvent)) {
+			return;
+		}
+		Object msg = ((MessageEvent) evt).getMessage();
+		if (!(msg instanceof Object[]) || !RequestHeaderCodec.isDictionaryEnabled(((Object[]) msg)[0])) {
+			return;
+		}
+		final InvocationRequest request = (InvocationRequest) ((Object[]) msg)[0];
+		final StringDictionary dictionary = NettyCodecUtils.getDictionary(ctx, dictionarySize);
+		if (dictionary.isConfirmed(request.getServiceName()) && dictionary.isConfirmed(request.getApp())
+				&& dictionary.isConfirmed(request.getMethodName())) {
+			return;
+		}
+		// 带有定义的帧写出成功后，后续的帧才能只发送id
+		((MessageEvent) evt).getFuture().addListener(new ChannelFutureListener() {
+
+			@Override
+			public void operationComplete(ChannelFuture future) throws Exception {
+				if (future.isSuccess()) {
+					dictionary.confirm(request.getServiceName());
+					dictionary.confirm(request.getApp());
+					dictionary.confirm(request.getMethodName());
+				}
+			}
+		});
+	}
+
+	@Override
+	protected void afterDo(ChannelHandlerContext ctx, ChannelBuffer cb, Object msg) {
+		if (RequestHeaderCodec.isEnabled(msg)) {
+			StringDictionary dictionary = null;
+			if (dictionarySize > 0 && RequestHeaderCodec.isDictionaryEnabled(msg)) {
+				dictionary = NettyCodecUtils.getDictionary(ctx, dictionarySize);
+			}
+			RequestHeaderCodec.write(cb, (InvocationRequest) msg, dictionary);
+		}
+		super.afterDo(ctx, cb, msg);
+	}
+
+	/**
+	 * ContextPrepareInvokeFilter确认服务端支持压缩后才设置
+	 */
+	@Override
+	protected CompressPolicy getCompressPolicy(Object msg) {
+		if (msg instanceof InvocationRequest) {
+			return (CompressPolicy) ((InvocationRequest) msg).getAttachment(Constants.REQ_ATTACH_COMPRESS);
+		}
+		return null;
+	}
+
 	@Override
 	public void doFailResponse(Channel channel, InvocationResponse response) {
 		List<InvocationResponse> respList = new ArrayList<InvocationResponse>();
@@ -47,6 +123,9 @@ public class InvokerEncoder extends AbstractEncoder {
 	@Override
 	public void serialize(byte serializerType, ChannelBufferOutputStream os, Object obj, Channel channel)
 			throws IOException {
+		if (RequestHeaderCodec.isEnabled(obj)) {
+			obj = RequestHeaderCodec.createBody((InvocationRequest) obj);
+		}
 		SerializerFactory.getSerializer(serializerType).serializeRequest(os, obj);
 	}
 
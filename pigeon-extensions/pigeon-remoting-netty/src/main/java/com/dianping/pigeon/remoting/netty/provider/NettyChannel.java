@@ -10,9 +10,12 @@ import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelFutureListener;
 
+import com.dianping.pigeon.monitor.Monitor;
+import com.dianping.pigeon.monitor.MonitorLoader;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.common.util.TimelineUtils;
 import com.dianping.pigeon.remoting.common.util.TimelineUtils.Phase;
+import com.dianping.pigeon.remoting.common.util.TimelineUtils.Timeline;
 import com.dianping.pigeon.remoting.provider.domain.ProviderChannel;
 
 public class NettyChannel implements ProviderChannel {
@@ -20,6 +23,8 @@ public class NettyChannel implements ProviderChannel {
 	private Channel channel = null;
 
 	private static final String protocol = "default";
+
+	private static final Monitor monitor = MonitorLoader.getMonitor();
 	
 	public NettyChannel(Channel channel) {
 		this.channel = channel;
@@ -33,9 +38,16 @@ public class NettyChannel implements ProviderChannel {
 			@Override
 			public void operationComplete(ChannelFuture future)
 					throws Exception {
-				String ip = ((InetSocketAddress)channel.getRemoteAddress()).getAddress().getHostAddress();
-				// TIMELINE_server_sent
-				TimelineUtils.time(response, ip, Phase.ServerSent);
+				if (TimelineUtils.isEnabled()) {
+					String ip = ((InetSocketAddress) channel.getRemoteAddress()).getAddress().getHostAddress();
+					// TIMELINE_server_sent
+					TimelineUtils.time(response, ip, Phase.ServerSent);
+					// 发送完成后服务端的时间线才完整，异常的时间线写入监控
+					Timeline timeline = TimelineUtils.removeTimeline(response, ip);
+					if (timeline != null && timeline.isAbnormal()) {
+						monitor.logEvent("PigeonService.timeline", ip, timeline.toString());
+					}
+				}
 			}
 			
 		});
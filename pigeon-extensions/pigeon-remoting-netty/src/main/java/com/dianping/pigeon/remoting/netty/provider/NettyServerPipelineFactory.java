@@ -9,6 +9,8 @@ import static org.jboss.netty.channel.Channels.pipeline;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelPipelineFactory;
 
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.remoting.netty.codec.WriteCoalescingHandler;
 import com.dianping.pigeon.remoting.netty.provider.codec.ProviderDecoder;
 import com.dianping.pigeon.remoting.netty.provider.codec.ProviderEncoder;
 
@@ -16,13 +18,22 @@ public class NettyServerPipelineFactory implements ChannelPipelineFactory {
 
 	private NettyServer server;
 
+	private static final boolean zeroCopyDecoder = ConfigManagerLoader.getConfigManager().getBooleanValue(
+			"pigeon.provider.netty.decoder.zerocopy", false);
+
+	private static final boolean writeCoalesce = ConfigManagerLoader.getConfigManager().getBooleanValue(
+			"pigeon.provider.netty.write.coalesce", false);
+
 	public NettyServerPipelineFactory(NettyServer server) {
 		this.server = server;
 	}
 
 	public ChannelPipeline getPipeline() {
 		ChannelPipeline pipeline = pipeline();
-		pipeline.addLast("decoder", new ProviderDecoder());
+		if (writeCoalesce) {
+			pipeline.addLast("coalescer", new WriteCoalescingHandler());
+		}
+		pipeline.addLast("decoder", new ProviderDecoder(zeroCopyDecoder));
 		pipeline.addLast("encoder", new ProviderEncoder());
 		pipeline.addLast("handler", new NettyServerHandler(server));
 		return pipeline;
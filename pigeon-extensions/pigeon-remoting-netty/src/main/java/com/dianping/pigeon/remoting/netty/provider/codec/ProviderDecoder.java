@@ -7,7 +7,9 @@ package com.dianping.pigeon.remoting.netty.provider.codec;
 import java.io.InputStream;
 import java.net.InetSocketAddress;
 
+import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
 
 import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
@@ -19,14 +21,23 @@ import com.dianping.pigeon.remoting.netty.provider.NettyChannel;
 
 public class ProviderDecoder extends AbstractDecoder {
 
+	public ProviderDecoder() {
+		super();
+	}
+
+	public ProviderDecoder(boolean zeroCopy) {
+		super(zeroCopy);
+	}
+
 	@Override
-	public Object doInitMsg(Object message, Channel channel, long receiveTime) {
+	public Object doInitMsg(Object message, Channel channel, long receiveTime, long receiveNanos) {
 		if (message == null) {
 			return null;
 		}
 		InvocationRequest request = (InvocationRequest) message;
-		// TIMELINE_server_received: DebugUtil.getTimestamp()
 		String remoteIp = ((InetSocketAddress) channel.getRemoteAddress()).getAddress().getHostAddress();
+		// TIMELINE_server_received
+		TimelineUtils.time(request, remoteIp, Phase.ServerReceived, receiveNanos);
 		// TIMELINE_server_decoded
 		TimelineUtils.time(request, remoteIp, Phase.ServerDecoded);
 		request.setCreateMillisTime(receiveTime);
@@ -45,4 +56,12 @@ public class ProviderDecoder extends AbstractDecoder {
 		return decoded;
 	}
 
+	/**
+	 * 只解析请求头，请求体拷贝出来留给处理线程反序列化，线程池拒绝的请求不再占用IO线程做反序列化
+	 */
+	@Override
+	protected Object deserializeWithHeader(ChannelHandlerContext ctx, byte serializerType, ChannelBuffer frame) {
+		return readRequestHeader(ctx, serializerType, frame);
+	}
+
 }
@@ -13,6 +13,8 @@ import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.Channels;
 
 import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.codec.compress.CompressPolicy;
+import com.dianping.pigeon.remoting.common.domain.DefaultResponse;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.common.domain.InvocationSerializable;
 import com.dianping.pigeon.remoting.common.util.TimelineUtils;
@@ -33,6 +35,17 @@ public class ProviderEncoder extends AbstractEncoder {
 		return encoded;
 	}
 
+	/**
+	 * 只有请求帧声明可以解压时才会设置
+	 */
+	@Override
+	protected CompressPolicy getCompressPolicy(Object msg) {
+		if (msg instanceof DefaultResponse) {
+			return ((DefaultResponse) msg).getCompressPolicy();
+		}
+		return null;
+	}
+
 	@Override
 	public void doFailResponse(Channel channel, InvocationResponse response) {
 		Channels.write(channel, response);
@@ -0,0 +1,46 @@
+package com.dianping.pigeon.remoting.netty.codec;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 对比默认decoder与zero copy decoder在大包分片到达时的吞吐及内存分配
+ */
+public class DecoderBenchmarkTest {
+
+	private static final int FRAME_SIZE = 256 * 1024;
+	private static final int CHUNK_SIZE = 8 * 1024;
+	private static final int FRAMES = 200;
+
+	@Test
+	public void benchmark() {
+		byte[] stream = DecoderTest.createStream(FRAME_SIZE, FRAMES);
+		// warm up
+		DecoderTest.decode(false, stream, CHUNK_SIZE);
+		DecoderTest.decode(true, stream, CHUNK_SIZE);
+
+		run("default", false, stream);
+		run("zerocopy", true, stream);
+	}
+
+	private void run(String name, boolean zeroCopy, byte[] stream) {
+		long allocated = allocatedBytes();
+		long start = System.nanoTime();
+		int frames = DecoderTest.decode(zeroCopy, stream, CHUNK_SIZE);
+		long cost = System.nanoTime() - start;
+		allocated = allocatedBytes() - allocated;
+		Assert.assertEquals(FRAMES, frames);
+		System.out.println(name + " decoder: " + (stream.length * 1000L / cost) + " MB/s, allocated "
+				+ (allocated / 1024) + " KB for " + frames + " frames");
+	}
+
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,100 @@
+package com.dianping.pigeon.remoting.netty.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.util.Constants;
+
+public class DecoderTest {
+
+	private static final int FRAME_SIZE = 256 * 1024;
+	private static final int CHUNK_SIZE = 8 * 1024;
+
+	@Test
+	public void testDecode() {
+		byte[] stream = createStream(FRAME_SIZE, 20);
+		Assert.assertEquals(20, decode(false, stream, CHUNK_SIZE));
+		Assert.assertEquals(20, decode(true, stream, CHUNK_SIZE));
+		// 每次只到达几个字节，帧头也会被拆开
+		byte[] small = createStream(1024, 20);
+		Assert.assertEquals(20, decode(false, small, 7));
+		Assert.assertEquals(20, decode(true, small, 7));
+	}
+
+	static int decode(boolean zeroCopy, byte[] stream, int chunkSize) {
+		DecoderEmbedder<Object> embedder = new DecoderEmbedder<Object>(new CountingDecoder(zeroCopy));
+		int frames = 0;
+		for (int i = 0; i < stream.length; i += chunkSize) {
+			int length = Math.min(chunkSize, stream.length - i);
+			embedder.offer(ChannelBuffers.wrappedBuffer(copy(stream, i, length)));
+			Object decoded;
+			while ((decoded = embedder.poll()) != null) {
+				frames += ((List<?>) decoded).size();
+			}
+		}
+		embedder.finish();
+		return frames;
+	}
+
+	private static byte[] copy(byte[] stream, int offset, int length) {
+		// netty allocates a fresh buffer per read, so does the benchmark
+		byte[] chunk = new byte[length];
+		System.arraycopy(stream, offset, chunk, 0, length);
+		return chunk;
+	}
+
+	static byte[] createStream(int bodySize, int frames) {
+		ChannelBuffer buffer = ChannelBuffers.dynamicBuffer((bodySize + 18) * frames);
+		for (int i = 0; i < frames; i++) {
+			buffer.writeBytes(Constants.MESSAGE_HEAD);
+			buffer.writeByte(2);
+			buffer.writeInt(bodySize + AbstractEncoder.EXPAND_LANGTH);
+			buffer.writeZero(bodySize);
+			buffer.writeLong(i);
+			buffer.writeBytes(Constants.EXPAND_FLAG);
+		}
+		byte[] stream = new byte[buffer.readableBytes()];
+		buffer.readBytes(stream);
+		return stream;
+	}
+
+	private static class CountingDecoder extends AbstractDecoder {
+
+		public CountingDecoder(boolean zeroCopy) {
+			super(zeroCopy);
+		}
+
+		@Override
+		public Object doInitMsg(Object message, Channel channel, long receiveTime, long receiveNanos) {
+			return message;
+		}
+
+		@Override
+		public void doFailResponse(Channel channel, InvocationResponse response) {
+		}
+
+		@Override
+		public Object deserialize(byte serializerType, InputStream is) {
+			byte[] buf = new byte[1024];
+			int total = 0;
+			try {
+				int n;
+				while ((n = is.read(buf)) > 0) {
+					total += n;
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+			return total;
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package com.dianping.pigeon.remoting.netty.codec;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EncodedSizePredictorTest {
+
+	private final EncodedSizePredictor predictor = EncodedSizePredictor.getInstance();
+
+	@Test
+	public void testNormalize() {
+		Assert.assertEquals(EncodedSizePredictor.MIN_CAPACITY, EncodedSizePredictor.normalize(1));
+		Assert.assertEquals(EncodedSizePredictor.MIN_CAPACITY, EncodedSizePredictor.normalize(512));
+		Assert.assertEquals(1024, EncodedSizePredictor.normalize(513));
+		Assert.assertEquals(1024, EncodedSizePredictor.normalize(1024));
+		Assert.assertEquals(2048, EncodedSizePredictor.normalize(1025));
+		Assert.assertEquals(EncodedSizePredictor.MAX_CAPACITY,
+				EncodedSizePredictor.normalize(EncodedSizePredictor.MAX_CAPACITY + 1));
+	}
+
+	@Test
+	public void testPredict() {
+		String key = "testPredict#" + System.nanoTime();
+		Assert.assertEquals(EncodedSizePredictor.MIN_CAPACITY, predictor.predict(key));
+
+		long misses = predictor.getMisses();
+		long resizes = predictor.getResizes();
+		predictor.record(key, 512, 3000);
+		Assert.assertEquals(3000, predictor.getEstimate(key));
+		Assert.assertEquals(misses + 1, predictor.getMisses());
+		// 512 -> 1024 -> 2048 -> 4096
+		Assert.assertEquals(resizes + 3, predictor.getResizes());
+		// 预留1/8后对齐到2的幂
+		Assert.assertEquals(4096, predictor.predict(key));
+
+		long hits = predictor.getHits();
+		predictor.record(key, 4096, 1000);
+		Assert.assertEquals(hits + 1, predictor.getHits());
+		// EWMA权重1/4
+		Assert.assertEquals(2500, predictor.getEstimate(key));
+		Assert.assertEquals(4096, predictor.predict(key));
+		for (int i = 0; i < 20; i++) {
+			predictor.record(key, 4096, 1000);
+		}
+		Assert.assertEquals(2048, predictor.predict(key));
+	}
+}
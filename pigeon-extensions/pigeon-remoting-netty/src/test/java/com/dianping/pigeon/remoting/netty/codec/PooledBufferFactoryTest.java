@@ -0,0 +1,47 @@
+package com.dianping.pigeon.remoting.netty.codec;
+
+import java.nio.ByteOrder;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PooledBufferFactoryTest {
+
+	private final PooledBufferFactory factory = PooledBufferFactory.getInstance();
+
+	@Test
+	public void testReuse() {
+		// 用其他测试不会用到的大小，避免共享的pool中已有数组
+		ChannelBuffer buffer = factory.getBuffer(ByteOrder.BIG_ENDIAN, 3 * 1024 * 1024 - 1);
+		Assert.assertEquals(4 * 1024 * 1024, buffer.capacity());
+		Assert.assertEquals(0, buffer.writerIndex());
+		buffer.writeInt(42);
+		byte[] array = buffer.array();
+		factory.release(buffer);
+
+		long reused = factory.getReused();
+		ChannelBuffer next = factory.getBuffer(ByteOrder.BIG_ENDIAN, 3 * 1024 * 1024);
+		Assert.assertEquals(reused + 1, factory.getReused());
+		Assert.assertSame(array, next.array());
+		Assert.assertEquals(0, next.writerIndex());
+		Assert.assertEquals(0, next.readerIndex());
+	}
+
+	@Test
+	public void testReleaseIgnoresForeignBuffers() {
+		long allocated = factory.getAllocated();
+		ChannelBuffer large = factory.getBuffer(ByteOrder.BIG_ENDIAN, 5 * 1024 * 1024);
+		Assert.assertEquals(allocated + 1, factory.getAllocated());
+		Assert.assertEquals(5 * 1024 * 1024, large.capacity());
+		factory.release(large);
+		factory.release(ChannelBuffers.wrappedBuffer(new byte[2048], 1, 1024));
+		factory.release(ChannelBuffers.wrappedBuffer(new byte[1000]));
+		factory.release(null);
+
+		long reused = factory.getReused();
+		factory.getBuffer(ByteOrder.BIG_ENDIAN, 5 * 1024 * 1024);
+		Assert.assertEquals(reused, factory.getReused());
+	}
+}
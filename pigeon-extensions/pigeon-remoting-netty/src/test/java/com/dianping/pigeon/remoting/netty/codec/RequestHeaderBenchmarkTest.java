@@ -0,0 +1,30 @@
+package com.dianping.pigeon.remoting.netty.codec;
+
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+
+/**
+ * 对比IO线程上完整反序列化请求与只解析请求头的耗时
+ */
+public class RequestHeaderBenchmarkTest {
+
+	private static final int FRAMES = 20000;
+
+	@Test
+	public void benchmark() throws Exception {
+		DefaultRequest request = RequestHeaderTest.createRequest(1);
+		byte[] eager = RequestHeaderTest.createStream(request, false, FRAMES, null);
+		byte[] lazy = RequestHeaderTest.createStream(request, true, FRAMES, new StringDictionary(16));
+		for (int round = 0; round < 3; round++) {
+			long begin = System.nanoTime();
+			RequestHeaderTest.decode(eager);
+			long eagerCost = System.nanoTime() - begin;
+			begin = System.nanoTime();
+			RequestHeaderTest.decode(lazy);
+			long lazyCost = System.nanoTime() - begin;
+			System.out.println("decode on io thread, full: " + eagerCost / FRAMES + " ns/request, header only: "
+					+ lazyCost / FRAMES + " ns/request");
+		}
+	}
+}
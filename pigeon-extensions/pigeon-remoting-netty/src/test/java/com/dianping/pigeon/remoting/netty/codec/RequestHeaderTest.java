@@ -0,0 +1,132 @@
+package com.dianping.pigeon.remoting.netty.codec;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferOutputStream;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.netty.provider.codec.ProviderDecoder;
+
+public class RequestHeaderTest {
+
+	@Test
+	public void testDecode() throws Exception {
+		DefaultRequest request = createRequest(7);
+		byte[] stream = createStream(request, true, 1, null);
+		DefaultRequest decoded = (DefaultRequest) decode(stream).get(0);
+		Assert.assertEquals(7, decoded.getSequence());
+		Assert.assertEquals(request.getServiceName(), decoded.getServiceName());
+		Assert.assertEquals(request.getMethodName(), decoded.getMethodName());
+		Assert.assertEquals(request.getApp(), decoded.getApp());
+		Assert.assertEquals(request.getTimeout(), decoded.getTimeout());
+		Assert.assertEquals(SerializerFactory.SERIALIZE_HESSIAN, decoded.getSerialize());
+		Assert.assertNull(decoded.getParameters());
+
+		decoded.decodeBody();
+		Assert.assertEquals(2, decoded.getParameters().length);
+		Assert.assertEquals("hello", decoded.getParameters()[0]);
+		Assert.assertEquals("1.0.0", decoded.getVersion());
+
+		// 不带请求头的帧仍然完整反序列化
+		decoded = (DefaultRequest) decode(createStream(request, false, 1, null)).get(0);
+		Assert.assertEquals(2, decoded.getParameters().length);
+	}
+
+	@Test
+	public void testDictionary() throws Exception {
+		DefaultRequest request = createRequest(7);
+		StringDictionary dictionary = new StringDictionary(16);
+		// 第一帧写出成功前，第二帧仍然带定义
+		byte[] stream = createStream(request, true, 2, dictionary);
+		List<Object> decoded = decode(stream);
+		Assert.assertEquals(2, decoded.size());
+		dictionary.confirm(request.getServiceName());
+		dictionary.confirm(request.getApp());
+		dictionary.confirm(request.getMethodName());
+		byte[] referenced = createStream(request, true, 1, dictionary);
+		Assert.assertTrue(referenced.length < stream.length / 2);
+
+		ChannelBuffer both = ChannelBuffers.wrappedBuffer(stream, referenced);
+		byte[] bytes = new byte[both.readableBytes()];
+		both.readBytes(bytes);
+		decoded = decode(bytes);
+		Assert.assertEquals(3, decoded.size());
+		DefaultRequest first = (DefaultRequest) decoded.get(0);
+		DefaultRequest last = (DefaultRequest) decoded.get(2);
+		Assert.assertEquals(request.getServiceName(), last.getServiceName());
+		Assert.assertEquals(request.getMethodName(), last.getMethodName());
+		Assert.assertEquals(request.getApp(), last.getApp());
+		Assert.assertSame(first.getServiceName(), last.getServiceName());
+
+		last.decodeBody();
+		Assert.assertEquals("hello", last.getParameters()[0]);
+		Assert.assertEquals(request.getServiceName(), last.getServiceName());
+	}
+
+	static DefaultRequest createRequest(long seq) {
+		List<String> items = new ArrayList<String>();
+		for (int i = 0; i < 50; i++) {
+			items.add("item-" + i);
+		}
+		DefaultRequest request = new DefaultRequest("http://service.dianping.com/testService/EchoService_1.0.0",
+				"echo", new Object[] { "hello", items }, SerializerFactory.SERIALIZE_HESSIAN,
+				Constants.MESSAGE_TYPE_SERVICE, 1000, null);
+		request.setSequence(seq);
+		request.setApp("test-app");
+		request.setVersion("1.0.0");
+		return request;
+	}
+
+	static byte[] createStream(DefaultRequest request, boolean withHeader, int frames, StringDictionary dictionary) {
+		ChannelBuffer stream = ChannelBuffers.dynamicBuffer();
+		for (int i = 0; i < frames; i++) {
+			ChannelBufferOutputStream os = new ChannelBufferOutputStream(ChannelBuffers.dynamicBuffer());
+			SerializerFactory.getSerializer(request.getSerialize()).serializeRequest(os,
+					withHeader ? RequestHeaderCodec.createBody(request) : request);
+			ChannelBuffer frame = os.buffer();
+			if (withHeader) {
+				RequestHeaderCodec.write(frame, request, dictionary);
+			}
+			stream.writeBytes(Constants.MESSAGE_HEAD);
+			stream.writeByte(withHeader ? request.getSerialize() | Constants.MESSAGE_FLAG_REQUEST_HEADER : request
+					.getSerialize());
+			stream.writeInt(frame.readableBytes() + AbstractEncoder.EXPAND_LANGTH);
+			stream.writeBytes(frame);
+			stream.writeLong(request.getSequence());
+			stream.writeBytes(Constants.EXPAND_FLAG);
+		}
+		byte[] bytes = new byte[stream.readableBytes()];
+		stream.readBytes(bytes);
+		return bytes;
+	}
+
+	static List<Object> decode(byte[] stream) {
+		DecoderEmbedder<Object> embedder = new DecoderEmbedder<Object>(new TestDecoder());
+		embedder.offer(ChannelBuffers.wrappedBuffer(stream));
+		List<Object> requests = new ArrayList<Object>();
+		Object decoded;
+		while ((decoded = embedder.poll()) != null) {
+			requests.addAll((List<?>) decoded);
+		}
+		embedder.finish();
+		return requests;
+	}
+
+	private static class TestDecoder extends ProviderDecoder {
+
+		@Override
+		public Object doInitMsg(Object message, Channel channel, long receiveTime, long receiveNanos) {
+			// embedder的channel没有socket地址，跳过timeline
+			return message;
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package com.dianping.pigeon.remoting.netty.codec;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * 对比开启写合并前后到达socket的写操作次数（近似系统调用次数），消息顺序与future的校验见WriteCoalescingHandlerTest
+ */
+public class WriteCoalescingBenchmarkTest {
+
+	private static final int THREADS = 4;
+	private static final int MESSAGES = 20000;
+
+	@Test
+	public void benchmark() throws Exception {
+		run("default", false);
+		run("coalescing", true);
+		System.out.println("coalescer statistics: " + WriteCoalescingHandler.getStatistics());
+	}
+
+	private void run(String name, boolean coalesce) throws Exception {
+		long start = System.nanoTime();
+		long socketWrites = WriteCoalescingHandlerTest.run(coalesce, THREADS, MESSAGES);
+		long cost = System.nanoTime() - start;
+		System.out.println(name + ": " + (THREADS * MESSAGES) + " messages, " + socketWrites + " socket writes, "
+				+ TimeUnit.NANOSECONDS.toMillis(cost) + " ms");
+	}
+}
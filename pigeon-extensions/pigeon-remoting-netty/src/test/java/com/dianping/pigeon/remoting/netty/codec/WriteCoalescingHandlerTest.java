@@ -0,0 +1,157 @@
+package com.dianping.pigeon.remoting.netty.codec;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelDownstreamHandler;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.jboss.netty.handler.codec.frame.FixedLengthFrameDecoder;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WriteCoalescingHandlerTest {
+
+	private static final int MESSAGE_SIZE = 16;
+
+	@Test
+	public void testOrderAndFutures() throws Exception {
+		// 多个线程并发写，合并后每条消息的future都完成，同一线程写出的消息保持顺序
+		long socketWrites = run(true, 4, 2000);
+		Assert.assertTrue(socketWrites <= 4 * 2000);
+	}
+
+	@Test
+	public void testWithoutCoalescing() throws Exception {
+		Assert.assertEquals(4 * 2000, run(false, 4, 2000));
+	}
+
+	/**
+	 * 校验消息顺序、字节数和每条消息的future
+	 * 
+	 * @return 到达socket的写操作次数
+	 */
+	static long run(final boolean coalesce, final int threads, final int messages) throws Exception {
+		final AtomicLong received = new AtomicLong();
+		final AtomicInteger disorders = new AtomicInteger();
+		final CountDownLatch done = new CountDownLatch(1);
+		final long total = (long) MESSAGE_SIZE * threads * messages;
+
+		ServerBootstrap server = new ServerBootstrap(new NioServerSocketChannelFactory(
+				Executors.newCachedThreadPool(), Executors.newCachedThreadPool()));
+		server.setPipelineFactory(new ChannelPipelineFactory() {
+
+			@Override
+			public ChannelPipeline getPipeline() throws Exception {
+				final int[] lastSeq = new int[threads];
+				return Channels.pipeline(new FixedLengthFrameDecoder(MESSAGE_SIZE), new SimpleChannelUpstreamHandler() {
+
+					@Override
+					public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) {
+						ChannelBuffer frame = (ChannelBuffer) e.getMessage();
+						int thread = frame.readInt();
+						int seq = frame.readInt();
+						if (seq != lastSeq[thread] + 1) {
+							disorders.incrementAndGet();
+						}
+						lastSeq[thread] = seq;
+						if (received.addAndGet(MESSAGE_SIZE) == total) {
+							done.countDown();
+						}
+					}
+				});
+			}
+		});
+		Channel serverChannel = server.bind(new InetSocketAddress("127.0.0.1", 0));
+
+		final AtomicLong sinkWrites = new AtomicLong();
+		ClientBootstrap client = new ClientBootstrap(new NioClientSocketChannelFactory(
+				Executors.newCachedThreadPool(), Executors.newCachedThreadPool()));
+		client.setPipelineFactory(new ChannelPipelineFactory() {
+
+			@Override
+			public ChannelPipeline getPipeline() throws Exception {
+				ChannelPipeline pipeline = Channels.pipeline();
+				pipeline.addLast("counter", new ChannelDownstreamHandler() {
+
+					@Override
+					public void handleDownstream(ChannelHandlerContext ctx, ChannelEvent e) throws Exception {
+						if (e instanceof MessageEvent) {
+							sinkWrites.incrementAndGet();
+						}
+						ctx.sendDownstream(e);
+					}
+				});
+				if (coalesce) {
+					pipeline.addLast("coalescer", new WriteCoalescingHandler(100, 64 * 1024));
+				}
+				return pipeline;
+			}
+		});
+		final Channel channel = client.connect(serverChannel.getLocalAddress()).awaitUninterruptibly().getChannel();
+
+		final AtomicInteger failures = new AtomicInteger();
+		final CountDownLatch written = new CountDownLatch(threads * messages);
+		final ChannelFutureListener listener = new ChannelFutureListener() {
+
+			@Override
+			public void operationComplete(ChannelFuture future) throws Exception {
+				if (!future.isSuccess()) {
+					failures.incrementAndGet();
+				}
+				written.countDown();
+			}
+		};
+		Thread[] writers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int thread = t;
+			writers[t] = new Thread() {
+
+				@Override
+				public void run() {
+					for (int seq = 1; seq <= messages; seq++) {
+						ChannelBuffer buffer = ChannelBuffers.buffer(MESSAGE_SIZE);
+						buffer.writeInt(thread);
+						buffer.writeInt(seq);
+						buffer.writeLong(0L);
+						channel.write(buffer).addListener(listener);
+					}
+				}
+			};
+			writers[t].start();
+		}
+		for (Thread writer : writers) {
+			writer.join();
+		}
+		Assert.assertTrue(written.await(30, TimeUnit.SECONDS));
+		Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+
+		Assert.assertEquals(0, failures.get());
+		Assert.assertEquals(0, disorders.get());
+		Assert.assertEquals(total, received.get());
+
+		channel.close().awaitUninterruptibly();
+		serverChannel.close().awaitUninterruptibly();
+		client.releaseExternalResources();
+		server.releaseExternalResources();
+		return sinkWrites.get();
+	}
+}
@@ -0,0 +1,51 @@
+package com.dianping.pigeon.remoting.netty.invoker;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.invoker.domain.ConnectInfo;
+import com.dianping.pigeon.remoting.netty.invoker.NettyClient.PooledChannel;
+
+public class PooledChannelTest {
+
+	private static NettyClient newClient() {
+		return new NettyClient(new ConnectInfo("PooledChannelTest", "127.0.0.1", 4080, 1));
+	}
+
+	private static InvocationRequest send(PooledChannel pooledChannel) {
+		InvocationRequest request = new DefaultRequest();
+		request.setAttachment(NettyClient.REQ_ATTACH_POOLED_CHANNEL, pooledChannel);
+		pooledChannel.incrementPending();
+		return request;
+	}
+
+	@Test
+	public void testCompletedDecrementsItsChannel() {
+		NettyClient client = newClient();
+		PooledChannel first = new PooledChannel();
+		PooledChannel second = new PooledChannel();
+		InvocationRequest request1 = send(first);
+		send(first);
+		InvocationRequest request3 = send(second);
+		Assert.assertEquals(2, first.getPending());
+		Assert.assertEquals(1, second.getPending());
+
+		// 收到响应和超时走同一个回调，只减请求所在的连接
+		client.requestCompleted(request1);
+		client.requestCompleted(request3);
+		Assert.assertEquals(1, first.getPending());
+		Assert.assertEquals(0, second.getPending());
+	}
+
+	@Test
+	public void testUncountedRequest() {
+		NettyClient client = newClient();
+		PooledChannel pooledChannel = new PooledChannel();
+		send(pooledChannel);
+		// 没有统计等待数的请求(单连接、roundrobin或者不需要响应)不影响任何连接
+		client.requestCompleted(new DefaultRequest());
+		Assert.assertEquals(1, pooledChannel.getPending());
+	}
+}
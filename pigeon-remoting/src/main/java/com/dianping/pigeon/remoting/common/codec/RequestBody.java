@@ -0,0 +1,41 @@
+/**
+ * Dianping.com Inc.
+ * Copyright (c) 2003-2013 All Rights Reserved.
+ */
+package com.dianping.pigeon.remoting.common.codec;
+
+import java.io.ByteArrayInputStream;
+
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.exception.SerializationException;
+
+/**
+ * 尚未反序列化的请求体，由IO线程从帧中拷贝出来，请求被线程池接收后在处理线程中解码
+ */
+public final class RequestBody {
+
+	private final byte serialize;
+
+	private final byte[] bytes;
+
+	public RequestBody(byte serialize, byte[] bytes) {
+		this.serialize = serialize;
+		this.bytes = bytes;
+	}
+
+	public byte getSerialize() {
+		return serialize;
+	}
+
+	public int getLength() {
+		return bytes.length;
+	}
+
+	public InvocationRequest decode() throws SerializationException {
+		Object decoded = SerializerFactory.getSerializer(serialize).deserializeRequest(new ByteArrayInputStream(bytes));
+		if (!(decoded instanceof InvocationRequest)) {
+			throw new SerializationException("invalid request body:" + decoded);
+		}
+		return (InvocationRequest) decoded;
+	}
+}
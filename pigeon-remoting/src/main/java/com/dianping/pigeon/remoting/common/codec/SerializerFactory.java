@@ -10,6 +10,7 @@ import org.apache.commons.lang.ClassUtils;
 import org.apache.logging.log4j.Logger;
 
 import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.codec.binary.BinarySerializer;
 import com.dianping.pigeon.remoting.common.codec.fst.FstSerializer;
 import com.dianping.pigeon.remoting.common.codec.hessian.Hessian1Serializer;
 import com.dianping.pigeon.remoting.common.codec.hessian.HessianSerializer;
@@ -34,6 +35,7 @@ public final class SerializerFactory {
 	public static final byte SERIALIZE_HESSIAN1 = 6;
 	public static final byte SERIALIZE_JSON = 7;
 	public static final byte SERIALIZE_FST = 8;
+	public static final byte SERIALIZE_BINARY = 9;
 
 	public static final String HESSIAN = "hessian";
 	public static final String JAVA = "java";
@@ -41,6 +43,7 @@ public final class SerializerFactory {
 	public static final String JSON = "json";
 	public static final String PROTO = "proto";
 	public static final String FST = "fst";
+	public static final String BINARY = "binary";
 
 	private static volatile boolean isInitialized = false;
 
@@ -57,6 +60,7 @@ public final class SerializerFactory {
 			registerSerializer(SERIALIZE_HESSIAN1, new Hessian1Serializer());
 			registerSerializer(SERIALIZE_PROTO, new ProtostuffSerializer());
 			registerSerializer(SERIALIZE_FST, new FstSerializer());
+			registerSerializer(SERIALIZE_BINARY, new BinarySerializer());
 
 			boolean supportJackson = true;
 			try {
@@ -88,8 +92,10 @@ public final class SerializerFactory {
 			return SerializerFactory.SERIALIZE_PROTO;
 		} else if (FST.equalsIgnoreCase(serialize)) {
 			return SerializerFactory.SERIALIZE_FST;
+		} else if (BINARY.equalsIgnoreCase(serialize)) {
+			return SerializerFactory.SERIALIZE_BINARY;
 		} else {
-			throw new InvalidParameterException("Only hessian/java/proto/fst serialize type supported");
+			throw new InvalidParameterException("Only hessian/java/proto/fst/binary serialize type supported");
 		}
 	}
 
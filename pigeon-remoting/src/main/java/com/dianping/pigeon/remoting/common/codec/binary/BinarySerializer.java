@@ -0,0 +1,304 @@
+/**
+ * Dianping.com Inc.
+ * Copyright (c) 2003-2013 All Rights Reserved.
+ */
+package com.dianping.pigeon.remoting.common.codec.binary;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.logging.log4j.Logger;
+
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.codec.DefaultAbstractSerializer;
+import com.dianping.pigeon.remoting.common.codec.Serializer;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.DefaultResponse;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.exception.SerializationException;
+
+/**
+ * 请求和响应的信封按固定的二进制格式编码，只有参数、返回值和非字符串的上下文值交给body序列化器（默认hessian）。
+ * 通用序列化器每次都要写出DefaultRequest的类名、字段名和类型描述，这里只写字段值：
+ *
+ * <pre>
+ * request:  version(1) seq(8) callType messageType timeout serviceName methodName app version
+ *           globalValues requestValues parameters
+ * response: version(1) seq(8) messageType responseValues response
+ * </pre>
+ *
+ * 整数为varint，字符串为varint长度(null为0，否则长度+1)加UTF-8内容，对象值为1字节标记加内容，
+ * 交给body序列化器的对象先写varint长度，body序列化器读取时可能预读，不能和信封共用一个流
+ */
+public class BinarySerializer extends DefaultAbstractSerializer {
+
+	private static final Logger logger = LoggerLoader.getLogger(BinarySerializer.class);
+
+	private static final byte VERSION = 1;
+
+	private static final byte VALUE_NULL = 0;
+
+	private static final byte VALUE_STRING = 1;
+
+	private static final byte VALUE_OBJECT = 2;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final String bodySerialize = ConfigManagerLoader.getConfigManager().getStringValue(
+			"pigeon.codec.binary.body", SerializerFactory.HESSIAN);
+
+	// 按varint长度分配内存，限制长度避免异常数据占满内存
+	private static final int maxLength = ConfigManagerLoader.getConfigManager().getIntValue(
+			"pigeon.codec.binary.maxlength", 64 * 1024 * 1024);
+
+	private volatile Serializer bodySerializer;
+
+	public BinarySerializer() {
+	}
+
+	public BinarySerializer(Serializer bodySerializer) {
+		this.bodySerializer = bodySerializer;
+	}
+
+	// 在SerializerFactory初始化完成后才能取到其他序列化器
+	private Serializer getBodySerializer() {
+		Serializer serializer = bodySerializer;
+		if (serializer == null) {
+			serializer = SerializerFactory.getSerializer(getBodySerialize(bodySerialize));
+			bodySerializer = serializer;
+		}
+		return serializer;
+	}
+
+	/**
+	 * body序列化器要能序列化任意对象，只支持hessian、hessian1、java和fst，其他配置使用hessian
+	 */
+	private static byte getBodySerialize(String serialize) {
+		if (SerializerFactory.HESSIAN.equalsIgnoreCase(serialize)
+				|| SerializerFactory.HESSIAN1.equalsIgnoreCase(serialize)
+				|| SerializerFactory.JAVA.equalsIgnoreCase(serialize)
+				|| SerializerFactory.FST.equalsIgnoreCase(serialize)) {
+			return SerializerFactory.getSerialize(serialize);
+		}
+		logger.warn("unsupported binary body serialize:" + serialize + ", use hessian instead");
+		return SerializerFactory.SERIALIZE_HESSIAN;
+	}
+
+	@Override
+	public void serializeRequest(OutputStream os, Object obj) throws SerializationException {
+		if (!(obj instanceof InvocationRequest)) {
+			throw new SerializationException("invalid request:" + obj);
+		}
+		InvocationRequest request = (InvocationRequest) obj;
+		try {
+			DataOutputStream out = new DataOutputStream(os);
+			out.writeByte(VERSION);
+			out.writeLong(request.getSequence());
+			writeVarInt(out, request.getCallType());
+			writeVarInt(out, request.getMessageType());
+			writeVarInt(out, request.getTimeout());
+			writeString(out, request.getServiceName());
+			writeString(out, request.getMethodName());
+			writeString(out, request.getApp());
+			writeString(out, request.getVersion());
+			writeMap(out, request.getGlobalValues());
+			writeMap(out, request.getRequestValues());
+			writeValue(out, request.getParameters());
+			out.flush();
+		} catch (SerializationException e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new SerializationException(t);
+		}
+	}
+
+	@Override
+	public Object deserializeRequest(InputStream is) throws SerializationException {
+		try {
+			DataInputStream in = new DataInputStream(is);
+			checkVersion(in.readByte());
+			long seq = in.readLong();
+			int callType = readVarInt(in);
+			int messageType = readVarInt(in);
+			int timeout = readVarInt(in);
+			String serviceName = readString(in);
+			String methodName = readString(in);
+			String app = readString(in);
+			String version = readString(in);
+			Map<String, Serializable> globalValues = readMap(in);
+			Map<String, Serializable> requestValues = readMap(in);
+			Object[] parameters = (Object[]) readValue(in);
+			DefaultRequest request = new DefaultRequest(serviceName, methodName, parameters,
+					SerializerFactory.SERIALIZE_BINARY, messageType, timeout, null);
+			request.setSequence(seq);
+			request.setCallType(callType);
+			request.setApp(app);
+			request.setVersion(version);
+			request.setGlobalValues(globalValues);
+			request.setRequestValues(requestValues);
+			return request;
+		} catch (SerializationException e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new SerializationException(t);
+		}
+	}
+
+	@Override
+	public void serializeResponse(OutputStream os, Object obj) throws SerializationException {
+		if (!(obj instanceof InvocationResponse)) {
+			throw new SerializationException("invalid response:" + obj);
+		}
+		InvocationResponse response = (InvocationResponse) obj;
+		try {
+			DataOutputStream out = new DataOutputStream(os);
+			out.writeByte(VERSION);
+			out.writeLong(response.getSequence());
+			writeVarInt(out, response.getMessageType());
+			writeMap(out, response.getResponseValues());
+			writeValue(out, response.getResponse());
+			out.flush();
+		} catch (SerializationException e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new SerializationException(t);
+		}
+	}
+
+	@Override
+	public Object deserializeResponse(InputStream is) throws SerializationException {
+		try {
+			DataInputStream in = new DataInputStream(is);
+			checkVersion(in.readByte());
+			long seq = in.readLong();
+			int messageType = readVarInt(in);
+			Map<String, Serializable> responseValues = readMap(in);
+			DefaultResponse response = new DefaultResponse(SerializerFactory.SERIALIZE_BINARY, seq, messageType,
+					readValue(in));
+			response.setResponseValues(responseValues);
+			return response;
+		} catch (SerializationException e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new SerializationException(t);
+		}
+	}
+
+	private void checkVersion(byte version) {
+		if (version != VERSION) {
+			throw new SerializationException("unsupported binary codec version:" + version);
+		}
+	}
+
+	private void writeMap(DataOutputStream out, Map<String, Serializable> map) throws IOException {
+		if (map == null) {
+			writeVarInt(out, 0);
+			return;
+		}
+		writeVarInt(out, map.size() + 1);
+		for (Map.Entry<String, Serializable> entry : map.entrySet()) {
+			writeString(out, entry.getKey());
+			writeValue(out, entry.getValue());
+		}
+	}
+
+	private Map<String, Serializable> readMap(DataInputStream in) throws IOException {
+		int size = readVarInt(in) - 1;
+		if (size < 0) {
+			return null;
+		}
+		Map<String, Serializable> map = new HashMap<String, Serializable>();
+		for (int i = 0; i < size; i++) {
+			map.put(readString(in), (Serializable) readValue(in));
+		}
+		return map;
+	}
+
+	private void writeValue(DataOutputStream out, Object value) throws IOException {
+		if (value == null) {
+			out.writeByte(VALUE_NULL);
+		} else if (value instanceof String) {
+			out.writeByte(VALUE_STRING);
+			writeString(out, (String) value);
+		} else {
+			out.writeByte(VALUE_OBJECT);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+			getBodySerializer().serializeRequest(bytes, value);
+			writeVarInt(out, bytes.size());
+			bytes.writeTo(out);
+		}
+	}
+
+	private Object readValue(DataInputStream in) throws IOException {
+		byte tag = in.readByte();
+		if (tag == VALUE_NULL) {
+			return null;
+		} else if (tag == VALUE_STRING) {
+			return readString(in);
+		} else if (tag == VALUE_OBJECT) {
+			byte[] bytes = new byte[checkLength(readVarInt(in))];
+			in.readFully(bytes);
+			return getBodySerializer().deserializeRequest(new ByteArrayInputStream(bytes));
+		}
+		throw new SerializationException("invalid value tag:" + tag);
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			writeVarInt(out, 0);
+			return;
+		}
+		byte[] bytes = value.getBytes(UTF8);
+		writeVarInt(out, bytes.length + 1);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = readVarInt(in);
+		if (length == 0) {
+			return null;
+		}
+		byte[] bytes = new byte[checkLength(length - 1)];
+		in.readFully(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	private static int checkLength(int length) {
+		if (length < 0 || length > maxLength) {
+			throw new SerializationException("invalid binary codec length:" + length);
+		}
+		return length;
+	}
+
+	static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7f) != 0) {
+			out.writeByte((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte b = in.readByte();
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new SerializationException("malformed varint");
+	}
+}
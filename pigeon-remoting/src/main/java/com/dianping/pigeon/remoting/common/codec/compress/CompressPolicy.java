@@ -0,0 +1,50 @@
+/**
+ * Dianping.com Inc.
+ * Copyright (c) 2003-2013 All Rights Reserved.
+ */
+package com.dianping.pigeon.remoting.common.codec.compress;
+
+/**
+ * 服务或方法的压缩配置：序列化后不小于阈值的消息用指定算法压缩，在发布服务或第一次调用方法时确定
+ */
+public final class CompressPolicy {
+
+	private final byte type;
+
+	private final Compressor compressor;
+
+	private final int threshold;
+
+	private CompressPolicy(byte type, int threshold) {
+		this.type = type;
+		this.compressor = CompressorFactory.getCompressor(type);
+		this.threshold = threshold;
+	}
+
+	/**
+	 * @return 阈值不大于0时不压缩，返回null
+	 */
+	public static CompressPolicy create(String compressType, int threshold) {
+		if (threshold <= 0) {
+			return null;
+		}
+		return new CompressPolicy(CompressorFactory.getCompressType(compressType), threshold);
+	}
+
+	public byte getType() {
+		return type;
+	}
+
+	public Compressor getCompressor() {
+		return compressor;
+	}
+
+	public int getThreshold() {
+		return threshold;
+	}
+
+	@Override
+	public String toString() {
+		return CompressorFactory.getName(type) + ">=" + threshold;
+	}
+}
@@ -0,0 +1,22 @@
+/**
+ * Dianping.com Inc.
+ * Copyright (c) 2003-2013 All Rights Reserved.
+ */
+package com.dianping.pigeon.remoting.common.codec.compress;
+
+import java.io.IOException;
+
+/**
+ * 帧内容的压缩算法，实现必须是线程安全的
+ */
+public interface Compressor {
+
+	byte[] compress(byte[] data, int offset, int length) throws IOException;
+
+	/**
+	 * @param originalLength
+	 *            压缩前的长度，由发送端写在帧中
+	 */
+	byte[] decompress(byte[] data, int offset, int length, int originalLength) throws IOException;
+
+}
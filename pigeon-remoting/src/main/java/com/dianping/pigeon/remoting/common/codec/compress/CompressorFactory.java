@@ -0,0 +1,69 @@
+/**
+ * Dianping.com Inc.
+ * Copyright (c) 2003-2013 All Rights Reserved.
+ */
+package com.dianping.pigeon.remoting.common.codec.compress;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.dianping.pigeon.remoting.common.exception.InvalidParameterException;
+
+/**
+ * 压缩算法的类型写在压缩后的帧中，类型和名称一经分配不能修改
+ */
+public final class CompressorFactory {
+
+	public static final byte COMPRESS_DEFLATE = 1;
+	public static final byte COMPRESS_LZF = 2;
+
+	public static final String DEFLATE = "deflate";
+	public static final String LZF = "lzf";
+
+	private final static ConcurrentHashMap<Byte, Compressor> compressors = new ConcurrentHashMap<Byte, Compressor>();
+
+	private final static ConcurrentHashMap<String, Byte> types = new ConcurrentHashMap<String, Byte>();
+
+	private final static ConcurrentHashMap<Byte, String> names = new ConcurrentHashMap<Byte, String>();
+
+	static {
+		registerCompressor(COMPRESS_DEFLATE, DEFLATE, new DeflateCompressor());
+		registerCompressor(COMPRESS_LZF, LZF, new LzfCompressor());
+	}
+
+	private CompressorFactory() {
+	}
+
+	public static void registerCompressor(byte type, String name, Compressor compressor) {
+		if (compressor == null) {
+			throw new InvalidParameterException("the compressor is null");
+		}
+		if (type <= 0) {
+			throw new InvalidParameterException("invalid compress type:" + type);
+		}
+		if (compressors.putIfAbsent(type, compressor) == null) {
+			types.putIfAbsent(name.toLowerCase(), type);
+			names.putIfAbsent(type, name);
+		}
+	}
+
+	public static Compressor getCompressor(byte type) {
+		Compressor compressor = compressors.get(type);
+		if (compressor == null) {
+			throw new InvalidParameterException("no compressor found for type:" + type);
+		}
+		return compressor;
+	}
+
+	public static byte getCompressType(String name) {
+		Byte type = name == null ? null : types.get(name.trim().toLowerCase());
+		if (type == null) {
+			throw new InvalidParameterException("unsupported compress type:" + name);
+		}
+		return type;
+	}
+
+	public static String getName(byte type) {
+		String name = names.get(type);
+		return name != null ? name : String.valueOf(type);
+	}
+}
@@ -0,0 +1,80 @@
+/**
+ * Dianping.com Inc.
+ * Copyright (c) 2003-2013 All Rights Reserved.
+ */
+package com.dianping.pigeon.remoting.common.codec.compress;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.dianping.pigeon.config.ConfigManagerLoader;
+
+/**
+ * JDK自带的deflate，压缩率较高，适合跨机房的大响应。Deflater/Inflater持有本地内存，每个线程复用一个
+ */
+public class DeflateCompressor implements Compressor {
+
+	private static final int level = ConfigManagerLoader.getConfigManager().getIntValue(
+			"pigeon.codec.compress.deflate.level", Deflater.BEST_SPEED);
+
+	private static final ThreadLocal<Deflater> deflaters = new ThreadLocal<Deflater>() {
+
+		@Override
+		protected Deflater initialValue() {
+			return new Deflater(level);
+		}
+	};
+
+	private static final ThreadLocal<Inflater> inflaters = new ThreadLocal<Inflater>() {
+
+		@Override
+		protected Inflater initialValue() {
+			return new Inflater();
+		}
+	};
+
+	@Override
+	public byte[] compress(byte[] data, int offset, int length) throws IOException {
+		Deflater deflater = deflaters.get();
+		deflater.reset();
+		deflater.setInput(data, offset, length);
+		deflater.finish();
+		byte[] out = new byte[(length >>> 1) + 64];
+		int size = 0;
+		while (!deflater.finished()) {
+			if (size == out.length) {
+				out = Arrays.copyOf(out, out.length << 1);
+			}
+			size += deflater.deflate(out, size, out.length - size);
+		}
+		return Arrays.copyOf(out, size);
+	}
+
+	@Override
+	public byte[] decompress(byte[] data, int offset, int length, int originalLength) throws IOException {
+		Inflater inflater = inflaters.get();
+		inflater.reset();
+		inflater.setInput(data, offset, length);
+		byte[] out = new byte[originalLength];
+		int size = 0;
+		try {
+			while (size < originalLength) {
+				int n = inflater.inflate(out, size, originalLength - size);
+				if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				size += n;
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("invalid deflate data:" + e.getMessage());
+		}
+		if (size != originalLength) {
+			throw new IOException("deflate data length mismatch, expected:" + originalLength + ", actual:" + size);
+		}
+		return out;
+	}
+
+}
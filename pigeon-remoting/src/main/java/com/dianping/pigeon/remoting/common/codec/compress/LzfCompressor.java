@@ -0,0 +1,142 @@
+/**
+ * Dianping.com Inc.
+ * Copyright (c) 2003-2013 All Rights Reserved.
+ */
+package com.dianping.pigeon.remoting.common.codec.compress;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 纯Java实现的LZF，格式与liblzf一致。压缩率低于deflate，但压缩和解压都快很多，适合同机房的中等大小消息。
+ *
+ * 控制字节小于32表示后面跟(ctrl+1)个原始字节；否则高3位为匹配长度-2（为7时再读1字节累加），
+ * 低5位和下一个字节为向前的距离-1
+ */
+public class LzfCompressor implements Compressor {
+
+	private static final int HASH_LOG = 14;
+
+	private static final int MAX_LITERAL = 1 << 5;
+
+	private static final int MAX_OFFSET = 1 << 13;
+
+	private static final int MAX_REFERENCE = (1 << 8) + (1 << 3);
+
+	// 只存位置，命中后还要比较内容，表中残留的上一次输入的位置不影响正确性，不需要清空
+	private static final ThreadLocal<int[]> hashTables = new ThreadLocal<int[]>() {
+
+		@Override
+		protected int[] initialValue() {
+			return new int[1 << HASH_LOG];
+		}
+	};
+
+	@Override
+	public byte[] compress(byte[] data, int offset, int length) throws IOException {
+		int[] table = hashTables.get();
+		byte[] out = new byte[length + (length >>> 5) + 8];
+		int ip = offset;
+		int end = offset + length;
+		// op指向当前字面量段之后，字面量段的控制字节在op-literals-1
+		int op = 1;
+		int literals = 0;
+		while (ip < end - 2) {
+			int value = (data[ip] & 0xff) << 16 | (data[ip + 1] & 0xff) << 8 | (data[ip + 2] & 0xff);
+			int h = value * -1640531535 >>> (32 - HASH_LOG);
+			int ref = table[h];
+			table[h] = ip;
+			int distance = ip - ref - 1;
+			if (ref >= offset && ref < ip && distance < MAX_OFFSET && data[ref] == data[ip]
+					&& data[ref + 1] == data[ip + 1] && data[ref + 2] == data[ip + 2]) {
+				int maxLength = Math.min(end - ip, MAX_REFERENCE);
+				int matched = 3;
+				while (matched < maxLength && data[ref + matched] == data[ip + matched]) {
+					matched++;
+				}
+				if (literals > 0) {
+					out[op - literals - 1] = (byte) (literals - 1);
+				} else {
+					op--;
+				}
+				int len = matched - 2;
+				if (len < 7) {
+					out[op++] = (byte) ((len << 5) + (distance >>> 8));
+				} else {
+					out[op++] = (byte) ((7 << 5) + (distance >>> 8));
+					out[op++] = (byte) (len - 7);
+				}
+				out[op++] = (byte) distance;
+				ip += matched;
+				literals = 0;
+				op++;
+			} else {
+				out[op++] = data[ip++];
+				if (++literals == MAX_LITERAL) {
+					out[op - literals - 1] = (byte) (literals - 1);
+					literals = 0;
+					op++;
+				}
+			}
+		}
+		while (ip < end) {
+			out[op++] = data[ip++];
+			if (++literals == MAX_LITERAL) {
+				out[op - literals - 1] = (byte) (literals - 1);
+				literals = 0;
+				op++;
+			}
+		}
+		if (literals > 0) {
+			out[op - literals - 1] = (byte) (literals - 1);
+		} else {
+			op--;
+		}
+		return Arrays.copyOf(out, op);
+	}
+
+	@Override
+	public byte[] decompress(byte[] data, int offset, int length, int originalLength) throws IOException {
+		byte[] out = new byte[originalLength];
+		int ip = offset;
+		int end = offset + length;
+		int op = 0;
+		while (ip < end) {
+			int ctrl = data[ip++] & 0xff;
+			if (ctrl < MAX_LITERAL) {
+				int run = ctrl + 1;
+				if (ip + run > end || op + run > originalLength) {
+					throw new IOException("invalid lzf literal run at:" + (ip - offset));
+				}
+				System.arraycopy(data, ip, out, op, run);
+				ip += run;
+				op += run;
+			} else {
+				int len = ctrl >>> 5;
+				if (len == 7) {
+					if (ip >= end) {
+						throw new IOException("truncated lzf data");
+					}
+					len += data[ip++] & 0xff;
+				}
+				if (ip >= end) {
+					throw new IOException("truncated lzf data");
+				}
+				int ref = op - ((ctrl & 0x1f) << 8) - (data[ip++] & 0xff) - 1;
+				len += 2;
+				if (ref < 0 || op + len > originalLength) {
+					throw new IOException("invalid lzf back reference at:" + (ip - offset));
+				}
+				// 匹配区域可能和输出重叠，逐字节拷贝
+				for (int i = 0; i < len; i++) {
+					out[op++] = out[ref++];
+				}
+			}
+		}
+		if (op != originalLength) {
+			throw new IOException("lzf data length mismatch, expected:" + originalLength + ", actual:" + op);
+		}
+		return out;
+	}
+
+}
@@ -10,6 +10,7 @@ import java.io.OutputStream;
 
 import com.caucho.hessian.io.HessianInput;
 import com.caucho.hessian.io.HessianOutput;
+import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.remoting.common.codec.DefaultAbstractSerializer;
 import com.dianping.pigeon.remoting.common.exception.SerializationException;
 
@@ -22,6 +23,17 @@ public class Hessian1Serializer extends DefaultAbstractSerializer {
 
 	HessianSerializerFactory sessianSerializerFactory = new HessianSerializerFactory();
 
+	private static final boolean reuse = ConfigManagerLoader.getConfigManager().getBooleanValue(
+			"pigeon.codec.hessian.reuse", true);
+
+	/**
+	 * HessianInput/HessianOutput按线程复用，每个消息开始时用init重置引用表，hessian1没有读写缓冲区。
+	 * 使用期间从线程中取走，嵌套调用时新建；编解码失败的实例直接丢弃
+	 */
+	private final ThreadLocal<HessianInput> inputs = new ThreadLocal<HessianInput>();
+
+	private final ThreadLocal<HessianOutput> outputs = new ThreadLocal<HessianOutput>();
+
 	@Override
 	public Object deserializeResponse(InputStream is) throws SerializationException {
 		return deserializeRequest(is);
@@ -29,10 +41,19 @@ public class Hessian1Serializer extends DefaultAbstractSerializer {
 
 	@Override
 	public Object deserializeRequest(InputStream is) throws SerializationException {
-		HessianInput hin = new HessianInput(is);
-		hin.setSerializerFactory(sessianSerializerFactory);
+		HessianInput hin = reuse ? inputs.get() : null;
+		if (hin == null) {
+			hin = new HessianInput(is);
+			hin.setSerializerFactory(sessianSerializerFactory);
+		} else {
+			inputs.set(null);
+			hin.init(is);
+		}
+		boolean success = false;
 		try {
-			return hin.readObject();
+			Object obj = hin.readObject();
+			success = true;
+			return obj;
 		} catch (Throwable t) {
 			throw new SerializationException(t);
 		} finally {
@@ -41,6 +62,9 @@ public class Hessian1Serializer extends DefaultAbstractSerializer {
 			} catch (Exception e) {
 				throw new SerializationException(e);
 			}
+			if (success && reuse) {
+				inputs.set(hin);
+			}
 		}
 	}
 
@@ -51,11 +75,19 @@ public class Hessian1Serializer extends DefaultAbstractSerializer {
 
 	@Override
 	public void serializeRequest(OutputStream os, Object obj) throws SerializationException {
-		HessianOutput hout = new HessianOutput(os);
-		hout.setSerializerFactory(sessianSerializerFactory);
+		HessianOutput hout = reuse ? outputs.get() : null;
+		if (hout == null) {
+			hout = new HessianOutput(os);
+			hout.setSerializerFactory(sessianSerializerFactory);
+		} else {
+			outputs.set(null);
+			hout.init(os);
+		}
+		boolean success = false;
 		try {
 			hout.writeObject(obj);
 			hout.flush();
+			success = true;
 		} catch (Throwable t) {
 			throw new SerializationException(t);
 		} finally {
@@ -64,6 +96,9 @@ public class Hessian1Serializer extends DefaultAbstractSerializer {
 			} catch (IOException e) {
 				throw new SerializationException(e);
 			}
+			if (success && reuse) {
+				outputs.set(hout);
+			}
 		}
 	}
 
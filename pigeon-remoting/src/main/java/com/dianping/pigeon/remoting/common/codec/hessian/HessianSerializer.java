@@ -20,8 +20,10 @@ import com.dianping.pigeon.remoting.common.exception.SerializationException;
  */
 public class HessianSerializer extends DefaultAbstractSerializer {
 
+	// hessian 3.1.5的Hessian2Input/Hessian2Output不能复用：init不重置状态，close后流为null，
+	// resetReferences也不清类定义表，所以每个消息新建实例，只共享serializer factory
 	HessianSerializerFactory sessianSerializerFactory = new HessianSerializerFactory();
-	
+
 	@Override
 	public Object deserializeResponse(InputStream is) throws SerializationException {
 		return deserializeRequest(is);
@@ -7,50 +7,87 @@ import io.protostuff.runtime.RuntimeSchema;
 
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.concurrent.ConcurrentHashMap;
+import java.lang.reflect.Modifier;
 
+import org.apache.logging.log4j.Logger;
 import org.objenesis.Objenesis;
 import org.objenesis.ObjenesisStd;
 
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.remoting.common.codec.DefaultAbstractSerializer;
 import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
 import com.dianping.pigeon.remoting.common.domain.DefaultResponse;
 import com.dianping.pigeon.remoting.common.exception.SerializationException;
 
+/**
+ * 编码时直接写入编码器的输出流，不再先生成完整的字节数组；编解码使用线程本地的LinkedBuffer，
+ * 流式写出时缓冲区写满即刷到输出流，不会随消息变大而增长
+ */
 public class ProtostuffSerializer extends DefaultAbstractSerializer {
 
-	private static ConcurrentHashMap<Class<?>, Schema<?>> cachedSchema = new ConcurrentHashMap<Class<?>, Schema<?>>();
+	private static final Logger logger = LoggerLoader.getLogger(ProtostuffSerializer.class);
+
+	private static final int bufferSize = ConfigManagerLoader.getConfigManager().getIntValue(
+			"pigeon.codec.proto.buffersize", 4096);
+
 	private static Objenesis objenesis = new ObjenesisStd(true);
 
+	private static final ThreadLocal<LinkedBuffer> writeBuffer = new ThreadLocal<LinkedBuffer>() {
+		@Override
+		protected LinkedBuffer initialValue() {
+			return LinkedBuffer.allocate(bufferSize);
+		}
+	};
+
+	private static final ThreadLocal<LinkedBuffer> readBuffer = new ThreadLocal<LinkedBuffer>() {
+		@Override
+		protected LinkedBuffer initialValue() {
+			return LinkedBuffer.allocate(bufferSize);
+		}
+	};
+
 	public ProtostuffSerializer() {
 		Schema<DefaultRequest> requestSchema = RuntimeSchema.createFrom(DefaultRequest.class);
 		RuntimeSchema.register(DefaultRequest.class, requestSchema);
-		cachedSchema.put(DefaultRequest.class, requestSchema);
 
 		Schema<DefaultResponse> responseSchema = RuntimeSchema.createFrom(DefaultResponse.class);
 		RuntimeSchema.register(DefaultResponse.class, responseSchema);
-		cachedSchema.put(DefaultResponse.class, responseSchema);
 	}
 
+	/**
+	 * RuntimeSchema的注册表本身就是缓存，参数和返回值作为嵌套对象编解码时用的也是同一个schema
+	 */
 	private static <T> Schema<T> getSchema(Class<T> cls) {
-		Schema<T> schema = (Schema<T>) cachedSchema.get(cls);
-		if (schema == null) {
-			schema = RuntimeSchema.createFrom(cls);
-			if (schema != null) {
-				cachedSchema.putIfAbsent(cls, schema);
-			}
+		return RuntimeSchema.getSchema(cls);
+	}
+
+	/**
+	 * 发布服务时预先生成参数和返回值类型的schema，避免第一次调用时在IO线程或业务线程中反射建立
+	 */
+	public static void registerClass(Class<?> type) {
+		if (type == null || type.isPrimitive() || type.isArray() || type.isInterface()
+				|| Modifier.isAbstract(type.getModifiers()) || type.getName().startsWith("java.")) {
+			return;
+		}
+		try {
+			getSchema(type);
+		} catch (Throwable t) {
+			logger.warn("failed to create protostuff schema for " + type.getName() + ":" + t.getMessage());
 		}
-		return schema;
 	}
 
 	public Object deserializeObject(InputStream is, Class<?> type) throws SerializationException {
+		LinkedBuffer buffer = readBuffer.get();
 		try {
 			Object message = objenesis.newInstance(type);
 			Schema schema = getSchema(type);
-			ProtostuffIOUtil.mergeFrom(is, message, schema);
+			ProtostuffIOUtil.mergeFrom(is, message, schema, buffer);
 			return message;
 		} catch (Throwable e) {
 			throw new SerializationException(e.getMessage(), e);
+		} finally {
+			buffer.clear();
 		}
 	}
 
@@ -61,10 +98,10 @@ public class ProtostuffSerializer extends DefaultAbstractSerializer {
 
 	@Override
 	public void serializeRequest(OutputStream os, Object obj) throws SerializationException {
-		LinkedBuffer buffer = LinkedBuffer.allocate(1024);
+		LinkedBuffer buffer = writeBuffer.get();
 		try {
 			Schema schema = getSchema(obj.getClass());
-			os.write(ProtostuffIOUtil.toByteArray(obj, schema, buffer));
+			ProtostuffIOUtil.writeTo(os, obj, schema, buffer);
 		} catch (Throwable e) {
 			throw new SerializationException(e.getMessage(), e);
 		} finally {
@@ -121,6 +121,7 @@ public class AnnotationBean implements DisposableBean, BeanFactoryPostProcessor,
 			providerConfig.setVersion(service.version());
 			providerConfig.setSharedPool(service.useSharedPool());
 			providerConfig.setActives(service.actives());
+			providerConfig.setInline(service.inline());
 
 			ServerConfig serverConfig = new ServerConfig();
 			serverConfig.setPort(service.port());
@@ -5,13 +5,14 @@
 package com.dianping.pigeon.remoting.common.domain;
 
 import java.io.Serializable;
-import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
 
 import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.remoting.common.codec.RequestBody;
+import com.dianping.pigeon.remoting.common.exception.SerializationException;
 import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.common.util.InvocationUtils;
 import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
@@ -59,8 +60,12 @@ public class DefaultRequest implements InvocationRequest {
 
 	private String version;
 
+	// 附件只在本地传递，数量很少，按name、value交替存放，第一次设置时分配
 	@JsonIgnore
-	private transient Map<String, Object> attachments = new HashMap<String, Object>();
+	private transient Object[] attachments;
+
+	@JsonIgnore
+	private transient int attachmentSize;
 
 	private String app = ConfigManagerLoader.getConfigManager().getAppName();
 
@@ -71,6 +76,9 @@ public class DefaultRequest implements InvocationRequest {
 
 	private Map<String, Serializable> requestValues = null;
 
+	@JsonIgnore
+	private transient RequestBody body;
+
 	public DefaultRequest(String serviceName, String methodName, Object[] parameters, byte serialize, int messageType,
 			int timeout, Class<?>[] parameterClasses) {
 		this.serviceName = serviceName;
@@ -93,7 +101,7 @@ public class DefaultRequest implements InvocationRequest {
 				this.timeout = invokerConfig.getTimeout();
 				this.setVersion(invokerConfig.getVersion());
 				this.setAttachment(Constants.REQ_ATTACH_WRITE_BUFF_LIMIT, invokerConfig.isWriteBufferLimit());
-				if (Constants.CALL_ONEWAY.equalsIgnoreCase(invokerConfig.getCallType())) {
+				if (Constants.CALL_ONEWAY.equalsIgnoreCase(invokerContext.getCallType())) {
 					this.setCallType(Constants.CALLTYPE_NOREPLY);
 				} else {
 					this.setCallType(Constants.CALLTYPE_REPLY);
@@ -190,12 +198,37 @@ public class DefaultRequest implements InvocationRequest {
 
 	@Override
 	public void setAttachment(String name, Object attachment) {
-		attachments.put(name, attachment);
+		int index = indexOfAttachment(name);
+		if (index >= 0) {
+			attachments[index + 1] = attachment;
+			return;
+		}
+		if (attachments == null) {
+			attachments = new Object[8];
+		} else if (attachmentSize == attachments.length) {
+			Object[] newAttachments = new Object[attachmentSize * 2];
+			System.arraycopy(attachments, 0, newAttachments, 0, attachmentSize);
+			attachments = newAttachments;
+		}
+		attachments[attachmentSize] = name;
+		attachments[attachmentSize + 1] = attachment;
+		attachmentSize += 2;
 	}
 
 	@Override
 	public Object getAttachment(String name) {
-		return attachments.get(name);
+		int index = indexOfAttachment(name);
+		return index >= 0 ? attachments[index + 1] : null;
+	}
+
+	private int indexOfAttachment(String name) {
+		for (int i = 0; i < attachmentSize; i += 2) {
+			Object key = attachments[i];
+			if (key == name || (name != null && name.equals(key))) {
+				return i;
+			}
+		}
+		return -1;
 	}
 
 	@Override
@@ -271,4 +304,24 @@ public class DefaultRequest implements InvocationRequest {
 		this.requestValues = requestValues;
 	}
 
+	/**
+	 * IO线程只解析了请求头时，参数、版本和上下文留在body中，由处理线程调用decodeBody解码
+	 */
+	public void setBody(RequestBody body) {
+		this.body = body;
+	}
+
+	public void decodeBody() throws SerializationException {
+		RequestBody body = this.body;
+		if (body == null) {
+			return;
+		}
+		this.body = null;
+		InvocationRequest decoded = body.decode();
+		this.parameters = decoded.getParameters();
+		this.version = decoded.getVersion();
+		this.globalValues = decoded.getGlobalValues();
+		this.requestValues = decoded.getRequestValues();
+	}
+
 }
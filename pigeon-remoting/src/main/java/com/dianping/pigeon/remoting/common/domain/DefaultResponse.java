@@ -10,6 +10,7 @@ import java.util.Map;
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
 
+import com.dianping.pigeon.remoting.common.codec.compress.CompressPolicy;
 import com.dianping.pigeon.remoting.common.util.Constants;
 import com.fasterxml.jackson.annotation.JsonIdentityInfo;
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -39,6 +40,10 @@ public class DefaultResponse implements InvocationResponse {
 	@JsonIgnore
 	private transient int size;
 
+	// 调用端可以解压且服务配置了压缩时才设置
+	@JsonIgnore
+	private transient CompressPolicy compressPolicy;
+
 	private Map<String, Serializable> responseValues = null;
 
 	public DefaultResponse() {
@@ -153,6 +158,14 @@ public class DefaultResponse implements InvocationResponse {
 		this.size = size;
 	}
 
+	public CompressPolicy getCompressPolicy() {
+		return compressPolicy;
+	}
+
+	public void setCompressPolicy(CompressPolicy compressPolicy) {
+		this.compressPolicy = compressPolicy;
+	}
+
 	public Map<String, Serializable> getResponseValues() {
 		return responseValues;
 	}
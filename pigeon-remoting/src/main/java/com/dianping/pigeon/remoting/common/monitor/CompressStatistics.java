@@ -0,0 +1,111 @@
+package com.dianping.pigeon.remoting.common.monitor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.dianping.pigeon.remoting.common.codec.compress.CompressorFactory;
+
+/**
+ * 按压缩算法统计的压缩率和耗时，从进程启动开始累计
+ */
+public class CompressStatistics {
+
+	private static final ConcurrentHashMap<Byte, CompressStatistics> statistics = new ConcurrentHashMap<Byte, CompressStatistics>();
+
+	private final String name;
+
+	private final AtomicLong compressCount = new AtomicLong();
+
+	// 压缩后没有变小、按原样发送的次数
+	private final AtomicLong uselessCount = new AtomicLong();
+
+	private final AtomicLong rawBytes = new AtomicLong();
+
+	private final AtomicLong compressedBytes = new AtomicLong();
+
+	private final AtomicLong compressNanos = new AtomicLong();
+
+	private final AtomicLong decompressCount = new AtomicLong();
+
+	private final AtomicLong decompressNanos = new AtomicLong();
+
+	private CompressStatistics(String name) {
+		this.name = name;
+	}
+
+	public static CompressStatistics getStatistics(byte type) {
+		CompressStatistics stats = statistics.get(type);
+		if (stats == null) {
+			CompressStatistics newStats = new CompressStatistics(CompressorFactory.getName(type));
+			stats = statistics.putIfAbsent(type, newStats);
+			if (stats == null) {
+				stats = newStats;
+			}
+		}
+		return stats;
+	}
+
+	public static Map<Byte, CompressStatistics> getAllStatistics() {
+		return statistics;
+	}
+
+	public void recordCompress(int rawLength, int compressedLength, long nanos) {
+		compressNanos.addAndGet(nanos);
+		if (compressedLength >= rawLength) {
+			uselessCount.incrementAndGet();
+			return;
+		}
+		compressCount.incrementAndGet();
+		rawBytes.addAndGet(rawLength);
+		compressedBytes.addAndGet(compressedLength);
+	}
+
+	public void recordDecompress(long nanos) {
+		decompressCount.incrementAndGet();
+		decompressNanos.addAndGet(nanos);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getCompressCount() {
+		return compressCount.get();
+	}
+
+	public long getUselessCount() {
+		return uselessCount.get();
+	}
+
+	public long getRawBytes() {
+		return rawBytes.get();
+	}
+
+	public long getCompressedBytes() {
+		return compressedBytes.get();
+	}
+
+	/**
+	 * @return 压缩后与压缩前的字节数之比，只计算实际按压缩发送的消息
+	 */
+	public double getRatio() {
+		long raw = rawBytes.get();
+		return raw == 0 ? 1 : compressedBytes.get() * 1d / raw;
+	}
+
+	/**
+	 * 包括压缩后没有变小的消息
+	 */
+	public long getCompressNanos() {
+		return compressNanos.get();
+	}
+
+	public long getDecompressCount() {
+		return decompressCount.get();
+	}
+
+	public long getDecompressNanos() {
+		return decompressNanos.get();
+	}
+}
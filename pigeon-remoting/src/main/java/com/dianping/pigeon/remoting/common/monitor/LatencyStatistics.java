@@ -0,0 +1,70 @@
+package com.dianping.pigeon.remoting.common.monitor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.util.InvocationUtils;
+import com.dianping.pigeon.util.RollingLatencyHistogram;
+
+/**
+ * 按service#method统计的延迟分布，单位微秒。
+ *
+ * 内存上限为methods.max * windows个直方图，每个直方图按用到的区间分配，通常约1KB，最多约6KB；
+ * 默认配置下一个统计通常占用约3MB，最多约19MB
+ */
+public class LatencyStatistics {
+
+	private static final long windowMillis = ConfigManagerLoader.getConfigManager().getLongValue(
+			"pigeon.latencystat.window.millis", 10000);
+
+	private static final int windows = ConfigManagerLoader.getConfigManager().getIntValue(
+			"pigeon.latencystat.windows", 6);
+
+	// 方法名来自请求，限制统计的方法数，避免非法请求撑大内存
+	private static final int maxMethods = ConfigManagerLoader.getConfigManager().getIntValue(
+			"pigeon.latencystat.methods.max", 500);
+
+	private final String name;
+
+	private final ConcurrentHashMap<String, RollingLatencyHistogram> histograms = new ConcurrentHashMap<String, RollingLatencyHistogram>();
+
+	public LatencyStatistics(String name) {
+		this.name = name;
+	}
+
+	public void record(InvocationRequest request, long nanos) {
+		record(InvocationUtils.getMethodKey(request.getServiceName(), request.getMethodName()), nanos);
+	}
+
+	public void record(String method, long nanos) {
+		RollingLatencyHistogram histogram = histograms.get(method);
+		if (histogram == null) {
+			if (histograms.size() >= maxMethods) {
+				return;
+			}
+			RollingLatencyHistogram newHistogram = new RollingLatencyHistogram(windowMillis, windows);
+			histogram = histograms.putIfAbsent(method, newHistogram);
+			if (histogram == null) {
+				histogram = newHistogram;
+			}
+		}
+		histogram.record(System.currentTimeMillis(), nanos / 1000);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return 读取时合并的时间范围
+	 */
+	public long getRangeMillis() {
+		return windowMillis * windows;
+	}
+
+	public Map<String, RollingLatencyHistogram> getHistograms() {
+		return histograms;
+	}
+}
@@ -0,0 +1,46 @@
+/**
+ * Dianping.com Inc.
+ * Copyright (c) 2003-2013 All Rights Reserved.
+ */
+package com.dianping.pigeon.remoting.common.process;
+
+import java.util.List;
+
+import com.dianping.pigeon.remoting.common.domain.InvocationContext;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+
+/**
+ * 过滤器链上的一个节点，初始化时按过滤器顺序一次建好，调用时不再分配对象
+ */
+public final class ServiceInvocationChain implements ServiceInvocationHandler {
+
+	@SuppressWarnings("rawtypes")
+	private final ServiceInvocationFilter filter;
+
+	private final ServiceInvocationHandler next;
+
+	@SuppressWarnings("rawtypes")
+	private ServiceInvocationChain(ServiceInvocationFilter filter, ServiceInvocationHandler next) {
+		this.filter = filter;
+		this.next = next;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public InvocationResponse handle(InvocationContext invocationContext) throws Throwable {
+		return filter.invoke(next, invocationContext);
+	}
+
+	/**
+	 * @return 第一个过滤器所在的节点，没有过滤器时返回null
+	 */
+	@SuppressWarnings("rawtypes")
+	public static ServiceInvocationHandler build(List<? extends ServiceInvocationFilter> filters) {
+		ServiceInvocationFilter[] filterArray = filters.toArray(new ServiceInvocationFilter[filters.size()]);
+		ServiceInvocationHandler last = null;
+		for (int i = filterArray.length - 1; i >= 0; i--) {
+			last = new ServiceInvocationChain(filterArray[i], last);
+		}
+		return last;
+	}
+}
@@ -27,6 +27,7 @@ public final class Constants {
 	public static final String PROCESS_MODEL_DEFAULT = "default";
 	public static final String PROCESS_MODEL_THREAD = "thread";
 	public static final String PROCESS_MODEL_JACTOR = "jactor";
+	public static final String PROCESS_MODEL_SEMAPHORE = "semaphore";
 
 	public static final String CALL_SYNC = "sync";
 	public static final String CALL_CALLBACK = "callback";
@@ -48,6 +49,13 @@ public final class Constants {
 	public static final byte MESSAGE_HEAD_SECOND = 58;
 	public static final byte[] MESSAGE_HEAD = new byte[] { MESSAGE_HEAD_FIRST, MESSAGE_HEAD_SECOND };
 
+	// 消息头第3个字节的低5位是序列化类型，高位是标志
+	public static final byte MESSAGE_SERIALIZE_MASK = 0x1f;
+	public static final byte MESSAGE_FLAG_REQUEST_HEADER = 0x40;
+	public static final byte MESSAGE_FLAG_COMPRESSED = 0x20;
+	// 请求帧带上该标志表示调用端可以解压响应
+	public static final byte MESSAGE_FLAG_ACCEPT_COMPRESSED = (byte) 0x80;
+
 	public static final byte EXPAND_FLAG_FIRST = 29;
 	public static final byte EXPAND_FLAG_SECOND = 30;
 	public static final byte EXPAND_FLAG_THIRD = 31;
@@ -56,11 +64,16 @@ public final class Constants {
 	public static final int ATTACHMENT_RETRY = 1;
 	public static final int ATTACHMENT_BYTEBUFFER = 2;
 	public static final int ATTACHMENT_REQUEST_SEQ = 11;
+	public static final int ATTACHMENT_DICTIONARY = 12;
 
 	public static final String TRANSFER_NULL = "NULL";
 
 	public static final String REQ_ATTACH_FLOW = "FLOW";
 	public static final String REQ_ATTACH_WRITE_BUFF_LIMIT = "WRITE_BUFF_LIMIT";
+	public static final String REQ_ATTACH_COMPRESS = "COMPRESS";
+	public static final String REQ_ATTACH_ACCEPT_COMPRESSED = "ACCEPT_COMPRESSED";
+	public static final String REQ_ATTACH_REQUEST_HEADER = "REQUEST_HEADER";
+	public static final String REQ_ATTACH_DICTIONARY = "DICTIONARY";
 
 	public static final int VERSION_150 = 150;
 
@@ -104,6 +117,9 @@ public final class Constants {
 	public static final String KEY_WRITE_BUFFER_HIGH_WATER = "pigeon.channel.writebuff.high";
 	public static final String KEY_WRITE_BUFFER_LOW_WATER = "pigeon.channel.writebuff.low";
 	public static final String KEY_DEFAULT_WRITE_BUFF_LIMIT = "pigeon.channel.writebuff.defaultlimit";
+	public static final String KEY_INVOKER_COMPRESS_THRESHOLD = "pigeon.invoker.compress.threshold";
+	public static final String KEY_PROVIDER_COMPRESS_THRESHOLD = "pigeon.provider.compress.threshold";
+	public static final String KEY_COMPRESS_TYPE = "pigeon.codec.compress.type";
 	public static final String KEY_MANAGER_ADDRESS = "pigeon.manager.address.prefix";
 	public static final String KEY_NOTIFY_ENABLE = "pigeon.notify.enable";
 	public static final String KEY_TEST_ENABLE = "pigeon.test.enable";
@@ -16,6 +16,11 @@ public class InvocationUtils {
 
 	private static ConcurrentHashMap<String, String> remoteCallNameCache = new ConcurrentHashMap<String, String>();
 
+	private static ConcurrentHashMap<String, ConcurrentHashMap<String, String>> methodKeyCache = new ConcurrentHashMap<String, ConcurrentHashMap<String, String>>();
+
+	// 服务名和方法名来自对端请求，只缓存有限个，避免无效的名字撑大缓存
+	private static final int MAX_METHOD_KEYS = 1024;
+
 	private static ConfigManager configManager = ConfigManagerLoader.getConfigManager();
 
 	private static final int defaultStrMaxLength = configManager.getIntValue(Constants.KEY_STRING_MAXLENGTH,
@@ -32,6 +37,37 @@ public class InvocationUtils {
 		return StringizerUtils.forJson().from(obj, strMaxLength, strMaxItems);
 	}
 
+	/**
+	 * 返回service#method，同一个方法每次返回同一个字符串实例，调用路径上不需要再拼接
+	 */
+	public static String getMethodKey(String serviceName, String methodName) {
+		if (serviceName == null || methodName == null) {
+			return serviceName + "#" + methodName;
+		}
+		ConcurrentHashMap<String, String> methodKeys = methodKeyCache.get(serviceName);
+		if (methodKeys == null) {
+			if (methodKeyCache.size() >= MAX_METHOD_KEYS) {
+				return serviceName + "#" + methodName;
+			}
+			methodKeys = new ConcurrentHashMap<String, String>();
+			ConcurrentHashMap<String, String> old = methodKeyCache.putIfAbsent(serviceName, methodKeys);
+			if (old != null) {
+				methodKeys = old;
+			}
+		}
+		String key = methodKeys.get(methodName);
+		if (key == null) {
+			key = serviceName + "#" + methodName;
+			if (methodKeys.size() < MAX_METHOD_KEYS) {
+				String old = methodKeys.putIfAbsent(methodName, key);
+				if (old != null) {
+					key = old;
+				}
+			}
+		}
+		return key;
+	}
+
 	public static String getRemoteCallFullName(String serviceName, String methodName, Class<?>[] parameterTypes) {
 		if (parameterTypes != null) {
 			String[] parameterTypes_ = new String[parameterTypes.length];
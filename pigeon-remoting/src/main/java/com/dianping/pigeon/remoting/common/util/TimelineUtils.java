@@ -1,20 +1,21 @@
 package com.dianping.pigeon.remoting.common.util;
 
-import java.util.Iterator;
-import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentHashMap;
-
-import org.apache.logging.log4j.Logger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import com.dianping.pigeon.config.ConfigChangeListener;
 import com.dianping.pigeon.config.ConfigManager;
 import com.dianping.pigeon.config.ConfigManagerLoader;
-import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.remoting.common.domain.InvocationSerializable;
 import com.dianping.pigeon.util.ContextUtils;
+import com.dianping.pigeon.util.LatencyHistogram;
 
 /**
- * TODO log improvement TODO switch to turn on/off
+ * 记录请求在各阶段的时间点。
+ *
+ * 时间线保存在按序列号定位的环形数组中，槽位被新的请求覆盖即视为丢弃，不需要定时清理；
+ * 时间取自System.nanoTime，相邻阶段的间隔记入每个阶段的延迟直方图（微秒），
+ * 只有间隔超过pigeon.timeline.abnormal.threshold的时间线会被标记为异常并写入监控。
+ * 服务端的时间线在ServerSent记录之后才完整，由发送完成的回调检查和移除
  * 
  * @author enlight
  */
@@ -24,23 +25,41 @@ public class TimelineUtils {
 		Start/* 0 */, ClientEncoded/* 1 */, ClientSent/* 2 */, ClientException/* 3 */, ServerReceived/* 4 */, ServerDecoded/* 5 */, ServerException/* 6 */, BusinessStart/* 7 */, BusinessEnd/* 8 */, ServerEncoded/* 9 */, ServerSent/* 10 */, ClientReceived/* 11 */, ClientDecoded/* 12 */, End/* 13 */
 	};
 
-	private static Logger logger = LoggerLoader.getLogger(TimelineUtils.class);
+	private static final Phase[] phases = Phase.values();
+
+	// 与紧邻的前一阶段的间隔计入异常判断：编码到发送、接收到解码
+	private static final boolean[] abnormalPhases = new boolean[phases.length];
+
+	private static final LatencyHistogram[] phaseHistograms = new LatencyHistogram[phases.length];
 
-	private static volatile ConcurrentHashMap<String, Timeline> sequenceMap = new ConcurrentHashMap<String, Timeline>();
+	private static final AtomicReferenceArray<Timeline> timelines;
 
-	private static boolean enabled;
-	private static long abnormalThreshold;
-	private static long legacyThreshold;
-	private static long lastRemoveTime;
+	private static final int mask;
+
+	private static volatile boolean enabled;
+	private static volatile long abnormalThresholdNanos;
 	private static String localIp;
 
 	static {
 		ConfigManager config = ConfigManagerLoader.getConfigManager();
 		config.registerConfigChangeListener(new InnerConfigChangeListener());
 		enabled = config.getBooleanValue("pigeon.timeline.log.enabled", true);
-		abnormalThreshold = config.getLongValue("pigeon.timeline.abnormal.threshold", 50);
-		legacyThreshold = config.getLongValue("pigeon.timeline.legacy.threshold", 60000);
+		abnormalThresholdNanos = config.getLongValue("pigeon.timeline.abnormal.threshold", 50) * 1000000;
+		int size = 1;
+		int ringSize = config.getIntValue("pigeon.timeline.ring.size", 16384);
+		while (size < ringSize) {
+			size <<= 1;
+		}
+		timelines = new AtomicReferenceArray<Timeline>(size);
+		mask = size - 1;
 		localIp = config.getLocalIp();
+		abnormalPhases[Phase.ClientSent.ordinal()] = true;
+		abnormalPhases[Phase.ServerDecoded.ordinal()] = true;
+		abnormalPhases[Phase.ServerSent.ordinal()] = true;
+		abnormalPhases[Phase.ClientDecoded.ordinal()] = true;
+		for (int i = 0; i < phaseHistograms.length; i++) {
+			phaseHistograms[i] = new LatencyHistogram();
+		}
 	}
 
 	private static class InnerConfigChangeListener implements ConfigChangeListener {
@@ -54,12 +73,7 @@ public class TimelineUtils {
 				}
 			} else if (key.endsWith("pigeon.timeline.abnormal.threshold")) {
 				try {
-					abnormalThreshold = Long.valueOf(value);
-				} catch (RuntimeException e) {
-				}
-			} else if (key.endsWith("pigeon.timeline.legacy.threshold")) {
-				try {
-					legacyThreshold = Long.valueOf(value);
+					abnormalThresholdNanos = Long.valueOf(value) * 1000000;
 				} catch (RuntimeException e) {
 				}
 			}
@@ -78,35 +92,76 @@ public class TimelineUtils {
 	}
 
 	public static class Timeline {
-		private long[] timeline;
+		private final String ip;
+		private final long sequence;
+		private final long startMillis;
+		private final long startNanos;
+		// 相对startNanos的纳秒数加1，0表示该阶段未记录
+		private final long[] timeline;
+		private volatile boolean abnormal;
 
 		public Timeline() {
-			timeline = new long[Phase.values().length];
+			this(null, 0, System.nanoTime());
+		}
+
+		Timeline(String ip, long sequence, long startNanos) {
+			this.ip = ip;
+			this.sequence = sequence;
+			this.startMillis = System.currentTimeMillis() - (System.nanoTime() - startNanos) / 1000000;
+			this.startNanos = startNanos;
+			this.timeline = new long[phases.length];
 		}
 
 		public void time(Phase phase) {
-			timeline[phase.ordinal()] = System.currentTimeMillis();
+			time(phase, System.nanoTime());
 		}
 
-		public void time(Phase phase, long timestamp) {
-			timeline[phase.ordinal()] = timestamp;
+		/**
+		 * @param nanoTime
+		 *            System.nanoTime()取得的时间
+		 */
+		public void time(Phase phase, long nanoTime) {
+			record(phase, nanoTime - startNanos + 1);
+		}
+
+		private void record(Phase phase, long offset) {
+			int index = phase.ordinal();
+			timeline[index] = offset;
+			for (int i = index - 1; i >= 0; i--) {
+				if (timeline[i] != 0) {
+					long interval = offset - timeline[i];
+					phaseHistograms[index].record(interval / 1000);
+					if (abnormalPhases[index] && i == index - 1 && interval > abnormalThresholdNanos) {
+						abnormal = true;
+					}
+					return;
+				}
+			}
+		}
+
+		boolean matches(String ip, long sequence) {
+			return this.sequence == sequence && (this.ip == ip || (this.ip != null && this.ip.equals(ip)));
 		}
 
 		public long[] getTimeline() {
 			return timeline;
 		}
 
+		public boolean isAbnormal() {
+			return abnormal;
+		}
+
 		public String toString() {
 			StringBuilder sb = new StringBuilder();
-			long startTime = 0;
+			long start = 0;
 			for (int i = 0; i < timeline.length; i++) {
 				if (timeline[i] == 0)
 					continue;
-				if (startTime == 0) {
-					startTime = timeline[i];
-					sb.append(i).append(':').append(startTime);
+				if (start == 0) {
+					start = timeline[i];
+					sb.append(i).append(':').append(startMillis + (start - 1) / 1000000);
 				} else {
-					int delta = (int) (timeline[i] - startTime);
+					int delta = (int) ((timeline[i] - start) / 1000000);
 					sb.append(',').append(i).append(":+").append(delta);
 				}
 			}
@@ -127,21 +182,33 @@ public class TimelineUtils {
 		return (String) ContextUtils.getLocalContext("CLIENT_IP");
 	}
 
+	/**
+	 * @return 该阶段与前一个已记录阶段的间隔分布，单位微秒
+	 */
+	public static LatencyHistogram getPhaseHistogram(Phase phase) {
+		return phaseHistograms[phase.ordinal()];
+	}
+
 	public static void time(InvocationSerializable message, String ip, Phase phase) {
 		if (shouldTime(message)) {
-			Timeline tl = _getTimeline(ip + message.getSequence());
-			if (phase.ordinal() == 2 && tl.getTimeline()[0] == 0) {
-				sequenceMap.remove(ip + message.getSequence());
-			} else {
-				tl.time(phase);
-			}
+			time(message, ip, phase, System.nanoTime());
 		}
 	}
 
-	public static void time(InvocationSerializable message, String ip, Phase phase, long timestamp) {
+	/**
+	 * 记录已经发生的阶段，例如解码前收到数据的时间
+	 * 
+	 * @param nanoTime
+	 *            System.nanoTime()取得的时间
+	 */
+	public static void time(InvocationSerializable message, String ip, Phase phase, long nanoTime) {
 		if (shouldTime(message)) {
-			Timeline tl = _getTimeline(ip + message.getSequence());
-			tl.time(phase, timestamp);
+			// 调用端的时间线在Start创建，服务端的在收到请求时创建，其它阶段只记录到已有的时间线上
+			Timeline tl = phase == Phase.Start || phase == Phase.ServerReceived ? _getTimeline(ip,
+					message.getSequence(), nanoTime) : getTimeline(message, ip);
+			if (tl != null) {
+				tl.time(phase, nanoTime);
+			}
 		}
 	}
 
@@ -150,76 +217,44 @@ public class TimelineUtils {
 				&& message.getMessageType() != Constants.MESSAGE_TYPE_HEALTHCHECK;
 	}
 
-	private static Timeline _getTimeline(String key) {
-		Timeline tl = sequenceMap.get(key);
-		if (tl == null) {
-			tl = new Timeline();
-			Timeline _tl = sequenceMap.putIfAbsent(key, tl);
-			if (_tl != null) {
-				tl = _tl;
+	private static int slot(String ip, long sequence) {
+		int hash = (ip == null ? 0 : ip.hashCode() * 31) + (int) (sequence ^ (sequence >>> 32));
+		return hash & mask;
+	}
+
+	private static Timeline _getTimeline(String ip, long sequence, long startNanos) {
+		int slot = slot(ip, sequence);
+		Timeline current = timelines.get(slot);
+		if (current != null && current.matches(ip, sequence)) {
+			return current;
+		}
+		Timeline tl = new Timeline(ip, sequence, startNanos);
+		if (!timelines.compareAndSet(slot, current, tl)) {
+			current = timelines.get(slot);
+			if (current != null && current.matches(ip, sequence)) {
+				return current;
 			}
+			timelines.lazySet(slot, tl);
 		}
 		return tl;
 	}
 
 	public static Timeline getTimeline(InvocationSerializable message, String ip) {
-		Timeline tl = sequenceMap.get(ip + message.getSequence());
-		return tl;
-	}
-
-	public static Timeline tryRemoveTimeline(InvocationSerializable message, String ip) {
-		Timeline tl = sequenceMap.get(ip + message.getSequence());
-		if (tl != null && tl.getTimeline()[10] != 0) {
-			sequenceMap.remove(ip + message.getSequence());
-		}
-		return tl;
+		Timeline tl = timelines.get(slot(ip, message.getSequence()));
+		return tl != null && tl.matches(ip, message.getSequence()) ? tl : null;
 	}
 
 	public static Timeline removeTimeline(InvocationSerializable message, String ip) {
-		Timeline tl = sequenceMap.remove(ip + message.getSequence());
-		return tl;
-	}
-
-	public static boolean isAbnormalTimeline(InvocationSerializable message, String ip) {
-		Timeline tl = sequenceMap.get(ip + message.getSequence());
+		Timeline tl = getTimeline(message, ip);
 		if (tl != null) {
-			long[] timeline = tl.getTimeline();
-			return (timeline[2] - timeline[1] > abnormalThreshold) || (timeline[5] - timeline[4] > abnormalThreshold)
-					|| (timeline[10] - timeline[9] > abnormalThreshold)
-					|| (timeline[12] - timeline[11] > abnormalThreshold);
+			timelines.compareAndSet(slot(ip, message.getSequence()), tl, null);
 		}
-		return false;
+		return tl;
 	}
 
-	public static synchronized void removeLegacyTimelines() {
-		long now = System.currentTimeMillis();
-		if (now - lastRemoveTime < legacyThreshold) {
-			return;
-		}
-		int count = 0;
-		Iterator<Entry<String, Timeline>> it = sequenceMap.entrySet().iterator();
-		while (it.hasNext()) {
-			Entry<String, Timeline> entry = it.next();
-			if (isLegacyTimeline(entry.getValue(), lastRemoveTime)) {
-				it.remove();
-				count++;
-			}
-		}
-		if (count > 0) {
-			if (logger.isDebugEnabled()) {
-				logger.debug(String.format("removed %d legacy timelines", count));
-			}
-		}
-		lastRemoveTime = now;
+	public static boolean isAbnormalTimeline(InvocationSerializable message, String ip) {
+		Timeline tl = getTimeline(message, ip);
+		return tl != null && tl.isAbnormal();
 	}
 
-	private static boolean isLegacyTimeline(Timeline timeline, long threshold) {
-		long[] tl = timeline.getTimeline();
-		for (int i = 0; i < tl.length; i++) {
-			if (tl[i] != 0) {
-				return tl[i] < threshold;
-			}
-		}
-		return true;
-	}
 }
@@ -0,0 +1,64 @@
+/**
+ * Dianping.com Inc.
+ * Copyright (c) 2003-2013 All Rights Reserved.
+ */
+package com.dianping.pigeon.remoting.common.util;
+
+import java.util.concurrent.TimeUnit;
+
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.timer.HashedWheelTimer;
+import com.dianping.pigeon.timer.Timeout;
+import com.dianping.pigeon.timer.TimerTask;
+
+/**
+ * invoker和provider共用的请求超时时间轮
+ */
+public final class TimeoutUtils {
+
+	private static final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+
+	private static final boolean wheelEnabled = configManager.getBooleanValue("pigeon.timeout.wheel.enable", true);
+
+	private static final long tickDuration = configManager.getLongValue("pigeon.timeout.wheel.tick", 10);
+
+	private static final int ticksPerWheel = configManager.getIntValue("pigeon.timeout.wheel.size", 512);
+
+	private TimeoutUtils() {
+	}
+
+	private static class TimerHolder {
+		public static final HashedWheelTimer INSTANCE = new HashedWheelTimer("Pigeon-Timeout-Wheel", tickDuration,
+				TimeUnit.MILLISECONDS, ticksPerWheel);
+	}
+
+	public static boolean isWheelEnabled() {
+		return wheelEnabled;
+	}
+
+	/**
+	 * 按请求的createMillisTime和timeout计算剩余时间，注册到时间轮；请求没有超时设置时返回null
+	 */
+	public static Timeout newTimeout(InvocationRequest request, TimerTask task) {
+		if (!wheelEnabled || request.getTimeout() <= 0) {
+			return null;
+		}
+		long delay = request.getTimeout();
+		if (request.getCreateMillisTime() > 0) {
+			delay = request.getCreateMillisTime() + request.getTimeout() - System.currentTimeMillis();
+		}
+		return TimerHolder.INSTANCE.newTimeout(task, delay, TimeUnit.MILLISECONDS);
+	}
+
+	public static void cancel(Timeout timeout) {
+		if (timeout != null) {
+			timeout.cancel();
+		}
+	}
+
+	public static int pendingTimeouts() {
+		return wheelEnabled ? TimerHolder.INSTANCE.pendingTimeouts() : 0;
+	}
+}
@@ -23,6 +23,10 @@ public abstract class AbstractClient implements Client {
 		this.responseProcessor.processResponse(response, this);
 	}
 
+	@Override
+	public void requestCompleted(InvocationRequest request) {
+	}
+
 	public InvocationResponse write(InvocationRequest request) throws NetworkException {
 		return write(request, null);
 	}
@@ -30,6 +30,11 @@ public interface Client {
 
 	void processResponse(InvocationResponse response);
 
+	/**
+	 * 请求收到响应或者等待响应超时后调用，每个请求只会调用一次
+	 */
+	void requestCompleted(InvocationRequest request);
+
 	boolean isConnected();
 
 	boolean isActive();
@@ -109,16 +109,17 @@ public class ClientManager {
 	}
 
 	public Client getClient(InvokerConfig<?> invokerConfig, InvocationRequest request, List<Client> excludeClients) {
-		List<Client> clientList = clusterListener.getClientList(invokerConfig);
-		List<Client> clientsToRoute = new ArrayList<Client>(clientList);
-		if (excludeClients != null) {
+		List<Client> clientList = clusterListener.getRouteSnapshot(invokerConfig).getClients();
+		if (excludeClients != null && !excludeClients.isEmpty()) {
+			List<Client> clientsToRoute = new ArrayList<Client>(clientList);
 			clientsToRoute.removeAll(excludeClients);
+			clientList = clientsToRoute;
 		}
-		return routerManager.route(clientsToRoute, invokerConfig, request);
+		return routerManager.route(clientList, invokerConfig, request);
 	}
 
 	public List<Client> getAvailableClients(InvokerConfig<?> invokerConfig, InvocationRequest request) {
-		List<Client> clientList = clusterListener.getClientList(invokerConfig);
+		List<Client> clientList = clusterListener.getRouteSnapshot(invokerConfig).getClients();
 		return routerManager.getAvailableClients(clientList, invokerConfig, request);
 	}
 
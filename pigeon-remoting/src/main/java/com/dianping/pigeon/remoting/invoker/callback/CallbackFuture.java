@@ -6,7 +6,11 @@ package com.dianping.pigeon.remoting.invoker.callback;
 
 import java.io.Serializable;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 
 import org.apache.logging.log4j.Logger;
 
@@ -18,35 +22,54 @@ import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.common.exception.RpcException;
 import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.invoker.Client;
+import com.dianping.pigeon.remoting.invoker.callback.DefaultListenableFuture.WaitNode;
 import com.dianping.pigeon.remoting.invoker.exception.RequestTimeoutException;
 import com.dianping.pigeon.remoting.invoker.route.statistics.ServiceStatisticsHolder;
 import com.dianping.pigeon.remoting.invoker.util.InvokerUtils;
 import com.dianping.pigeon.util.ContextUtils;
 
+/**
+ * 同步/future调用的等待对象，完成状态由单个CAS字段表示，等待线程挂在无锁栈上用LockSupport唤醒
+ */
 public class CallbackFuture implements Callback, CallFuture {
 
 	private static final Logger logger = LoggerLoader.getLogger(CallbackFuture.class);
 
 	private static final Monitor monitor = MonitorLoader.getMonitor();
 
+	private static final int STATE_NEW = 0;
+	private static final int STATE_DONE = 1;
+	private static final int STATE_CANCELLED = 2;
+
+	private static final AtomicIntegerFieldUpdater<CallbackFuture> STATE_UPDATER = AtomicIntegerFieldUpdater
+			.newUpdater(CallbackFuture.class, "state");
+
+	private static final AtomicReferenceFieldUpdater<CallbackFuture, WaitNode> WAITERS_UPDATER = AtomicReferenceFieldUpdater
+			.newUpdater(CallbackFuture.class, WaitNode.class, "waiters");
+
 	protected InvocationResponse response;
 	private CallFuture future;
-	private boolean done = false;
-	private boolean concelled = false;
+	private volatile int state = STATE_NEW;
+	private volatile WaitNode waiters;
 	private boolean success = false;
 	protected InvocationRequest request;
 	protected Client client;
 
 	public void run() {
-		synchronized (this) {
-			this.done = true;
-			if (this.response.getMessageType() == Constants.MESSAGE_TYPE_SERVICE) {
-				this.success = true;
-			}
-			this.notifyAll();
+		// response和success在state的volatile写之前赋值，等待线程读到终态后即可见
+		this.success = this.response.getMessageType() == Constants.MESSAGE_TYPE_SERVICE;
+		if (STATE_UPDATER.compareAndSet(this, STATE_NEW, STATE_DONE)) {
+			releaseWaiters();
+			done();
 		}
 	}
 
+	/**
+	 * 响应到达后在响应处理线程中调用，子类可以在这里通知回调
+	 */
+	protected void done() {
+	}
+
 	public void callback(InvocationResponse response) {
 		this.response = response;
 	}
@@ -56,44 +79,109 @@ public class CallbackFuture implements Callback, CallFuture {
 	}
 
 	public InvocationResponse getResponse(long timeoutMillis) throws InterruptedException {
-		synchronized (this) {
-			long start = request.getCreateMillisTime();
-			while (!this.done) {
-				long timeoutMillis_ = timeoutMillis - (System.currentTimeMillis() - start);
-				if (timeoutMillis_ <= 0) {
-					StringBuilder sb = new StringBuilder();
-					sb.append("request timeout, current time:").append(System.currentTimeMillis())
-							.append("\r\nrequest:").append(request).append("\r\nhost:").append(client.getHost())
-							.append(":").append(client.getPort());
-					ServiceStatisticsHolder.flowOut(request, client.getAddress());
-					RequestTimeoutException e = new RequestTimeoutException(sb.toString());
-					throw e;
-				} else {
-					this.wait(timeoutMillis_);
-				}
-			}
-			processContext();
-
-			if (response.getMessageType() == Constants.MESSAGE_TYPE_EXCEPTION) {
-				RpcException cause = InvokerUtils.toRpcException(response);
+		if (state == STATE_NEW && !awaitDone(timeoutMillis)) {
+			StringBuilder sb = new StringBuilder();
+			sb.append("request timeout, current time:").append(System.currentTimeMillis()).append("\r\nrequest:")
+					.append(request).append("\r\nhost:").append(client.getHost()).append(":")
+					.append(client.getPort());
+			ServiceStatisticsHolder.flowOut(request, client.getAddress());
+			RequestTimeoutException e = new RequestTimeoutException(sb.toString());
+			throw e;
+		}
+		if (state == STATE_CANCELLED) {
+			throw new CancellationException("request cancelled:" + request);
+		}
+		processContext();
+
+		if (response.getMessageType() == Constants.MESSAGE_TYPE_EXCEPTION) {
+			RpcException cause = InvokerUtils.toRpcException(response);
+			StringBuilder sb = new StringBuilder();
+			sb.append("remote call exception\r\nrequest:").append(request).append("\r\nhost:")
+					.append(client.getHost()).append(":").append(client.getPort()).append("\r\nresponse:")
+					.append(response);
+			logger.error(sb.toString(), cause);
+			monitor.logError(sb.toString(), cause);
+		} else if (response.getMessageType() == Constants.MESSAGE_TYPE_SERVICE_EXCEPTION) {
+			if (Constants.LOG_INVOKER_APP_EXCEPTION) {
+				Throwable cause = InvokerUtils.toApplicationException(response);
 				StringBuilder sb = new StringBuilder();
-				sb.append("remote call exception\r\nrequest:").append(request).append("\r\nhost:")
+				sb.append("remote service exception\r\nrequest:").append(request).append("\r\nhost:")
 						.append(client.getHost()).append(":").append(client.getPort()).append("\r\nresponse:")
 						.append(response);
 				logger.error(sb.toString(), cause);
 				monitor.logError(sb.toString(), cause);
-			} else if (response.getMessageType() == Constants.MESSAGE_TYPE_SERVICE_EXCEPTION) {
-				if (Constants.LOG_INVOKER_APP_EXCEPTION) {
-					Throwable cause = InvokerUtils.toApplicationException(response);
-					StringBuilder sb = new StringBuilder();
-					sb.append("remote service exception\r\nrequest:").append(request).append("\r\nhost:")
-							.append(client.getHost()).append(":").append(client.getPort()).append("\r\nresponse:")
-							.append(response);
-					logger.error(sb.toString(), cause);
-					monitor.logError(sb.toString(), cause);
+			}
+		}
+		return this.response;
+	}
+
+	/**
+	 * 等待到请求创建时间 + timeoutMillis，返回false表示超时
+	 */
+	private boolean awaitDone(long timeoutMillis) throws InterruptedException {
+		long start = request.getCreateMillisTime();
+		WaitNode node = null;
+		boolean queued = false;
+		for (;;) {
+			if (Thread.interrupted()) {
+				removeWaiter(node);
+				throw new InterruptedException();
+			}
+			if (state != STATE_NEW) {
+				if (node != null) {
+					node.thread = null;
+				}
+				return true;
+			}
+			long timeoutMillis_ = timeoutMillis - (System.currentTimeMillis() - start);
+			if (timeoutMillis_ <= 0) {
+				removeWaiter(node);
+				return state != STATE_NEW;
+			}
+			if (node == null) {
+				node = new WaitNode();
+			} else if (!queued) {
+				queued = WAITERS_UPDATER.compareAndSet(this, node.next = waiters, node);
+			} else {
+				LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(timeoutMillis_));
+			}
+		}
+	}
+
+	private void removeWaiter(WaitNode node) {
+		if (node == null) {
+			return;
+		}
+		node.thread = null;
+		retry: for (;;) {
+			for (WaitNode pred = null, q = waiters, s; q != null; q = s) {
+				s = q.next;
+				if (q.thread != null) {
+					pred = q;
+				} else if (pred != null) {
+					pred.next = s;
+					if (pred.thread == null) {
+						continue retry;
+					}
+				} else if (!WAITERS_UPDATER.compareAndSet(this, q, s)) {
+					continue retry;
 				}
 			}
-			return this.response;
+			break;
+		}
+	}
+
+	private void releaseWaiters() {
+		WaitNode q = WAITERS_UPDATER.getAndSet(this, null);
+		while (q != null) {
+			Thread t = q.thread;
+			if (t != null) {
+				q.thread = null;
+				LockSupport.unpark(t);
+			}
+			WaitNode next = q.next;
+			q.next = null;
+			q = next;
 		}
 	}
 
@@ -114,22 +202,33 @@ public class CallbackFuture implements Callback, CallFuture {
 		return getResponse(unit.toMillis(timeout));
 	}
 
+	/**
+	 * 还没有收到响应时取消，之后到达的响应会被忽略；已经完成的调用返回false
+	 */
 	public boolean cancel() {
-		if (this.future != null) {
-			synchronized (this) {
-				this.concelled = this.future.cancel();
-				this.notifyAll();
+		if (STATE_UPDATER.compareAndSet(this, STATE_NEW, STATE_CANCELLED)) {
+			if (this.future != null) {
+				this.future.cancel();
 			}
+			releaseWaiters();
+			cancelled();
+			return true;
 		}
-		return this.concelled;
+		return state == STATE_CANCELLED;
+	}
+
+	/**
+	 * 取消成功后在调用cancel的线程中调用，子类可以在这里通知回调
+	 */
+	protected void cancelled() {
 	}
 
 	public boolean isCancelled() {
-		return this.concelled;
+		return state == STATE_CANCELLED;
 	}
 
 	public boolean isDone() {
-		return this.done;
+		return state == STATE_DONE;
 	}
 
 	public void setRequest(InvocationRequest request) {
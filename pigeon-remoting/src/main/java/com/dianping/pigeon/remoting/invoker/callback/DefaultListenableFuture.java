@@ -0,0 +1,324 @@
+/**
+ * Dianping.com Inc.
+ * Copyright (c) 2003-2013 All Rights Reserved.
+ */
+package com.dianping.pigeon.remoting.invoker.callback;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.Logger;
+
+import com.dianping.pigeon.log.LoggerLoader;
+
+/**
+ * 基于单个CAS状态的ListenableFuture实现，完成、等待和注册回调都不加锁。
+ * 等待线程和回调分别挂在两个无锁栈上，完成时一次性取走。
+ */
+public class DefaultListenableFuture<T> implements ListenableFuture<T> {
+
+	private static final Logger logger = LoggerLoader.getLogger(DefaultListenableFuture.class);
+
+	private static final int NEW = 0;
+	private static final int COMPLETING = 1;
+	private static final int SUCCESS = 2;
+	private static final int FAILURE = 3;
+	private static final int CANCELLED = 4;
+
+	private static final AtomicIntegerFieldUpdater<DefaultListenableFuture> STATE_UPDATER = AtomicIntegerFieldUpdater
+			.newUpdater(DefaultListenableFuture.class, "state");
+
+	private static final AtomicReferenceFieldUpdater<DefaultListenableFuture, WaitNode> WAITERS_UPDATER = AtomicReferenceFieldUpdater
+			.newUpdater(DefaultListenableFuture.class, WaitNode.class, "waiters");
+
+	private static final AtomicReferenceFieldUpdater<DefaultListenableFuture, ListenerNode> LISTENERS_UPDATER = AtomicReferenceFieldUpdater
+			.newUpdater(DefaultListenableFuture.class, ListenerNode.class, "listeners");
+
+	// 回调栈已经被取走的标记，之后注册的回调直接执行
+	private static final ListenerNode COMPLETED = new ListenerNode(null, null);
+
+	private volatile int state = NEW;
+
+	// 在state变为终态前写入，由state的volatile写保证可见
+	private Object outcome;
+
+	private volatile WaitNode waiters;
+
+	private volatile ListenerNode listeners;
+
+	public boolean set(T result) {
+		return complete(result, SUCCESS);
+	}
+
+	public boolean setFailure(Throwable cause) {
+		return complete(cause, FAILURE);
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		return complete(new CancellationException(), CANCELLED);
+	}
+
+	private boolean complete(Object value, int finalState) {
+		if (!STATE_UPDATER.compareAndSet(this, NEW, COMPLETING)) {
+			return false;
+		}
+		outcome = value;
+		state = finalState;
+		releaseWaiters();
+		notifyListeners();
+		return true;
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return state == CANCELLED;
+	}
+
+	@Override
+	public boolean isDone() {
+		return state > COMPLETING;
+	}
+
+	public boolean isSuccess() {
+		return state == SUCCESS;
+	}
+
+	@Override
+	public T get() throws InterruptedException, ExecutionException {
+		int s = state;
+		if (s <= COMPLETING) {
+			s = awaitDone(0L);
+		}
+		return report(s);
+	}
+
+	@Override
+	public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		int s = state;
+		if (s <= COMPLETING) {
+			long nanos = unit.toNanos(timeout);
+			s = awaitDone(nanos > 0 ? nanos : -1L);
+			if (s <= COMPLETING) {
+				throw new TimeoutException(unit.toMillis(timeout) + "ms timeout");
+			}
+		}
+		return report(s);
+	}
+
+	@SuppressWarnings("unchecked")
+	private T report(int s) throws ExecutionException {
+		Object x = outcome;
+		if (s == SUCCESS) {
+			return (T) x;
+		}
+		if (s == CANCELLED) {
+			throw (CancellationException) x;
+		}
+		throw new ExecutionException((Throwable) x);
+	}
+
+	/**
+	 * @param nanos
+	 *            0表示一直等待，负数表示已经超时
+	 */
+	private int awaitDone(long nanos) throws InterruptedException {
+		final long deadline = nanos > 0 ? System.nanoTime() + nanos : 0L;
+		WaitNode node = null;
+		boolean queued = false;
+		for (;;) {
+			if (Thread.interrupted()) {
+				removeWaiter(node);
+				throw new InterruptedException();
+			}
+			int s = state;
+			if (s > COMPLETING) {
+				if (node != null) {
+					node.thread = null;
+				}
+				return s;
+			} else if (s == COMPLETING) {
+				Thread.yield();
+			} else if (node == null) {
+				node = new WaitNode();
+			} else if (!queued) {
+				queued = WAITERS_UPDATER.compareAndSet(this, node.next = waiters, node);
+			} else if (nanos == 0L) {
+				LockSupport.park(this);
+			} else {
+				long remaining = nanos < 0 ? 0L : deadline - System.nanoTime();
+				if (remaining <= 0L) {
+					removeWaiter(node);
+					return state;
+				}
+				LockSupport.parkNanos(this, remaining);
+			}
+		}
+	}
+
+	private void removeWaiter(WaitNode node) {
+		if (node == null) {
+			return;
+		}
+		node.thread = null;
+		retry: for (;;) {
+			for (WaitNode pred = null, q = waiters, s; q != null; q = s) {
+				s = q.next;
+				if (q.thread != null) {
+					pred = q;
+				} else if (pred != null) {
+					pred.next = s;
+					if (pred.thread == null) {
+						continue retry;
+					}
+				} else if (!WAITERS_UPDATER.compareAndSet(this, q, s)) {
+					continue retry;
+				}
+			}
+			break;
+		}
+	}
+
+	private void releaseWaiters() {
+		WaitNode q = WAITERS_UPDATER.getAndSet(this, null);
+		while (q != null) {
+			Thread t = q.thread;
+			if (t != null) {
+				q.thread = null;
+				LockSupport.unpark(t);
+			}
+			WaitNode next = q.next;
+			q.next = null;
+			q = next;
+		}
+	}
+
+	@Override
+	public ListenableFuture<T> whenComplete(FutureListener<? super T> listener) {
+		return whenComplete(listener, null);
+	}
+
+	@Override
+	public ListenableFuture<T> whenComplete(FutureListener<? super T> listener, Executor executor) {
+		if (listener == null) {
+			throw new NullPointerException("listener");
+		}
+		ListenerNode node = new ListenerNode(listener, executor);
+		for (;;) {
+			ListenerNode head = listeners;
+			if (head == COMPLETED) {
+				fire(node);
+				break;
+			}
+			node.next = head;
+			if (LISTENERS_UPDATER.compareAndSet(this, head, node)) {
+				break;
+			}
+		}
+		return this;
+	}
+
+	@Override
+	public <R> ListenableFuture<R> thenApply(FutureFunction<? super T, ? extends R> function) {
+		return thenApply(function, null);
+	}
+
+	@Override
+	public <R> ListenableFuture<R> thenApply(final FutureFunction<? super T, ? extends R> function,
+			Executor executor) {
+		if (function == null) {
+			throw new NullPointerException("function");
+		}
+		final DefaultListenableFuture<R> next = new DefaultListenableFuture<R>();
+		whenComplete(new FutureListener<T>() {
+
+			@Override
+			public void onComplete(T result, Throwable cause) {
+				if (cause != null) {
+					next.setFailure(cause);
+					return;
+				}
+				try {
+					next.set(function.apply(result));
+				} catch (Throwable t) {
+					next.setFailure(t);
+				}
+			}
+		}, executor);
+		return next;
+	}
+
+	private void notifyListeners() {
+		ListenerNode head = LISTENERS_UPDATER.getAndSet(this, COMPLETED);
+		// 栈是后进先出，反转后按注册顺序回调
+		ListenerNode reversed = null;
+		while (head != null) {
+			ListenerNode next = head.next;
+			head.next = reversed;
+			reversed = head;
+			head = next;
+		}
+		while (reversed != null) {
+			ListenerNode next = reversed.next;
+			reversed.next = null;
+			fire(reversed);
+			reversed = next;
+		}
+	}
+
+	private void fire(final ListenerNode node) {
+		if (node.executor == null) {
+			invoke(node.listener);
+			return;
+		}
+		try {
+			node.executor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					invoke(node.listener);
+				}
+			});
+		} catch (Throwable t) {
+			logger.warn("failed to execute future listener, run it in current thread", t);
+			invoke(node.listener);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void invoke(FutureListener listener) {
+		int s = state;
+		try {
+			if (s == SUCCESS) {
+				listener.onComplete(outcome, null);
+			} else {
+				listener.onComplete(null, (Throwable) outcome);
+			}
+		} catch (Throwable t) {
+			logger.warn("exception from future listener " + listener, t);
+		}
+	}
+
+	static final class WaitNode {
+		volatile Thread thread = Thread.currentThread();
+		volatile WaitNode next;
+	}
+
+	static final class ListenerNode {
+		final FutureListener listener;
+		final Executor executor;
+		ListenerNode next;
+
+		ListenerNode(FutureListener listener, Executor executor) {
+			this.listener = listener;
+			this.executor = executor;
+		}
+	}
+
+}
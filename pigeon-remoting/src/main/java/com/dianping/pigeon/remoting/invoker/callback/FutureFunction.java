@@ -0,0 +1,14 @@
+/**
+ * Dianping.com Inc.
+ * Copyright (c) 2003-2013 All Rights Reserved.
+ */
+package com.dianping.pigeon.remoting.invoker.callback;
+
+/**
+ * 用于ListenableFuture.thenApply的结果转换
+ */
+public interface FutureFunction<T, R> {
+
+	R apply(T result) throws Exception;
+
+}
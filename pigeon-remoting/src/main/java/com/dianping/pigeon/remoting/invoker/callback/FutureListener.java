@@ -0,0 +1,14 @@
+/**
+ * Dianping.com Inc.
+ * Copyright (c) 2003-2013 All Rights Reserved.
+ */
+package com.dianping.pigeon.remoting.invoker.callback;
+
+/**
+ * future完成时的回调，result和cause只有一个有效
+ */
+public interface FutureListener<T> {
+
+	void onComplete(T result, Throwable cause);
+
+}
@@ -0,0 +1,25 @@
+/**
+ * Dianping.com Inc.
+ * Copyright (c) 2003-2013 All Rights Reserved.
+ */
+package com.dianping.pigeon.remoting.invoker.callback;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+/**
+ * 可以注册完成回调的future，不需要阻塞线程等待结果。
+ * 未指定executor时回调在完成future的线程（通常是响应处理线程）中执行，
+ * 如果注册时future已经完成，则在注册线程中直接执行。
+ */
+public interface ListenableFuture<T> extends Future<T> {
+
+	ListenableFuture<T> whenComplete(FutureListener<? super T> listener);
+
+	ListenableFuture<T> whenComplete(FutureListener<? super T> listener, Executor executor);
+
+	<R> ListenableFuture<R> thenApply(FutureFunction<? super T, ? extends R> function);
+
+	<R> ListenableFuture<R> thenApply(FutureFunction<? super T, ? extends R> function, Executor executor);
+
+}
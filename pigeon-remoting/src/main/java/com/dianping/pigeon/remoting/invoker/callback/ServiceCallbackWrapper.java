@@ -18,6 +18,7 @@ import com.dianping.pigeon.remoting.common.exception.InvalidParameterException;
 import com.dianping.pigeon.remoting.common.exception.RpcException;
 import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.invoker.Client;
+import com.dianping.pigeon.remoting.invoker.exception.RequestTimeoutException;
 import com.dianping.pigeon.remoting.invoker.util.InvokerUtils;
 import com.dianping.pigeon.util.ContextUtils;
 
@@ -107,9 +108,22 @@ public class ServiceCallbackWrapper implements Callback {
 		this.request = request;
 	}
 
+	/**
+	 * 请求超时后调用，通知callback失败
+	 */
 	@Override
 	public void dispose() {
-
+		StringBuilder sb = new StringBuilder();
+		sb.append("request timeout, current time:").append(System.currentTimeMillis()).append("\r\nrequest:")
+				.append(request);
+		if (client != null) {
+			sb.append("\r\nhost:").append(client.getHost()).append(":").append(client.getPort());
+		}
+		try {
+			this.callback.onFailure(new RequestTimeoutException(sb.toString()));
+		} catch (Throwable e) {
+			logger.error("error while executing service callback", e);
+		}
 	}
 
 }
@@ -39,6 +39,27 @@ public class ServiceFutureFactory {
 		return future;
 	}
 
+	/**
+	 * 获取可注册回调的future，在回调中组合多个异步调用时不需要阻塞线程等待
+	 * 
+	 * @throws IllegalStateException
+	 *             当前线程的future不支持回调
+	 */
+	public static ListenableFuture<?> getListenableFuture() {
+		return toListenableFuture(getFuture());
+	}
+
+	public static <T> ListenableFuture<T> getListenableFuture(Class<T> type) {
+		return (ListenableFuture<T>) toListenableFuture(getFuture());
+	}
+
+	private static ListenableFuture<?> toListenableFuture(Future<?> future) {
+		if (future == null || future instanceof ListenableFuture) {
+			return (ListenableFuture<?>) future;
+		}
+		throw new IllegalStateException("future is not listenable:" + future.getClass().getName());
+	}
+
 	public static void setFuture(Future<?> future) {
 		threadFuture.set(future);
 	}
@@ -5,9 +5,10 @@
 package com.dianping.pigeon.remoting.invoker.callback;
 
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import org.apache.logging.log4j.Logger;
 
@@ -23,18 +24,26 @@ import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.invoker.exception.RequestTimeoutException;
 import com.dianping.pigeon.remoting.invoker.util.InvokerUtils;
 
-public class ServiceFutureImpl extends CallbackFuture implements Future {
+public class ServiceFutureImpl extends CallbackFuture implements ListenableFuture<Object> {
 
 	private static final Logger logger = LoggerLoader.getLogger(ServiceFutureImpl.class);
 
 	private static final Monitor monitor = MonitorLoader.getMonitor();
 
+	private static final AtomicReferenceFieldUpdater<ServiceFutureImpl, DefaultListenableFuture> COMPLETION_UPDATER = AtomicReferenceFieldUpdater
+			.newUpdater(ServiceFutureImpl.class, DefaultListenableFuture.class, "completion");
+
 	private long timeout = Long.MAX_VALUE;
 
 	private Thread callerThread;
 
 	private MonitorTransaction transaction;
 
+	// 第一次注册回调时才创建，纯阻塞get的调用不会多分配对象
+	private volatile DefaultListenableFuture<Object> completion;
+
+	private volatile boolean expired = false;
+
 	public ServiceFutureImpl(long timeout) {
 		super();
 		this.timeout = timeout;
@@ -150,6 +159,106 @@ public class ServiceFutureImpl extends CallbackFuture implements Future {
 			} catch (Throwable e) {
 			}
 		}
+		expired = true;
+		DefaultListenableFuture<Object> c = completion;
+		if (c != null) {
+			c.setFailure(newTimeoutException());
+		}
+	}
+
+	@Override
+	protected void done() {
+		DefaultListenableFuture<Object> c = completion;
+		if (c != null) {
+			complete(c);
+			// 通过回调消费结果时可能没有线程调用get，由响应线程结束调用的监控
+			if (transaction != null) {
+				try {
+					transaction.complete();
+				} catch (Throwable e) {
+					monitor.logMonitorError(e);
+				}
+			}
+		}
+	}
+
+	@Override
+	protected void cancelled() {
+		DefaultListenableFuture<Object> c = completion;
+		if (c != null) {
+			c.cancel(false);
+			if (transaction != null) {
+				try {
+					transaction.complete();
+				} catch (Throwable e) {
+					monitor.logMonitorError(e);
+				}
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private DefaultListenableFuture<Object> completion() {
+		DefaultListenableFuture<Object> c = completion;
+		if (c == null) {
+			COMPLETION_UPDATER.compareAndSet(this, null, new DefaultListenableFuture<Object>());
+			c = completion;
+			// 创建前可能已经收到响应、被取消或者超时，补一次完成，重复完成会被CAS忽略
+			if (isDone()) {
+				complete(c);
+			} else if (isCancelled()) {
+				c.cancel(false);
+			} else if (expired) {
+				c.setFailure(newTimeoutException());
+			}
+		}
+		return c;
+	}
+
+	private void complete(DefaultListenableFuture<Object> c) {
+		InvocationResponse response = this.response;
+		if (response.getMessageType() == Constants.MESSAGE_TYPE_SERVICE) {
+			c.set(response.getResponse());
+		} else if (response.getMessageType() == Constants.MESSAGE_TYPE_EXCEPTION) {
+			c.setFailure(InvokerUtils.toRpcException(response));
+		} else if (response.getMessageType() == Constants.MESSAGE_TYPE_SERVICE_EXCEPTION) {
+			c.setFailure(InvokerUtils.toApplicationRuntimeException(response));
+		} else {
+			c.setFailure(new InvalidParameterException("unsupported response with message type:"
+					+ response.getMessageType()));
+		}
+	}
+
+	private RequestTimeoutException newTimeoutException() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("request timeout, current time:").append(System.currentTimeMillis()).append("\r\nrequest:")
+				.append(request);
+		if (client != null) {
+			sb.append("\r\nhost:").append(client.getHost()).append(":").append(client.getPort());
+		}
+		return new RequestTimeoutException(sb.toString());
+	}
+
+	@Override
+	public ListenableFuture<Object> whenComplete(FutureListener<? super Object> listener) {
+		completion().whenComplete(listener);
+		return this;
+	}
+
+	@Override
+	public ListenableFuture<Object> whenComplete(FutureListener<? super Object> listener, Executor executor) {
+		completion().whenComplete(listener, executor);
+		return this;
+	}
+
+	@Override
+	public <R> ListenableFuture<R> thenApply(FutureFunction<? super Object, ? extends R> function) {
+		return completion().thenApply(function);
+	}
+
+	@Override
+	public <R> ListenableFuture<R> thenApply(FutureFunction<? super Object, ? extends R> function, Executor executor) {
+		return completion().thenApply(function, executor);
 	}
 
 	@Override
@@ -48,6 +48,8 @@ public class ForkingCluster implements Cluster {
 					InvokerContext ctxt = new DefaultInvokerContext(invokerConfig, invocationContext.getMethodName(),
 							invocationContext.getParameterTypes(), invocationContext.getArguments());
 					ctxt.setClient(client);
+					ctxt.setCallType(invocationContext.getCallType());
+					ctxt.setCompressPolicy(invocationContext.getCompressPolicy());
 					ctxt.setRequest(null);
 					ctxt.setRequest(InvokerUtils.createRemoteCallRequest(ctxt, invokerConfig));
 					try {
@@ -71,7 +73,7 @@ public class ForkingCluster implements Cluster {
 		if (ret instanceof Throwable) {
 			throw (Throwable) ret;
 		} else if ((ret instanceof FutureResponse)
-				&& Constants.CALL_FUTURE.equalsIgnoreCase(invokerConfig.getCallType())) {
+				&& Constants.CALL_FUTURE.equalsIgnoreCase(invocationContext.getCallType())) {
 			ServiceFutureFactory.setFuture(((FutureResponse) ret).getServiceFuture());
 		} else if (ret == null) {
 			throw new RequestTimeoutException("timeout while waiting forking response:" + request);
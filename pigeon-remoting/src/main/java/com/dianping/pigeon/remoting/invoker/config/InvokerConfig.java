@@ -15,6 +15,7 @@ import org.apache.commons.lang.builder.ToStringStyle;
 import com.dianping.pigeon.config.ConfigManager;
 import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.codec.compress.CompressorFactory;
 import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.invoker.callback.ServiceCallback;
 import com.dianping.pigeon.remoting.invoker.route.balance.LoadBalanceManager;
@@ -33,6 +34,7 @@ public class InvokerConfig<T> {
 	public static final String SERIALIZE_PROTO = SerializerFactory.PROTO;
 	public static final String SERIALIZE_JSON = SerializerFactory.JSON;
 	public static final String SERIALIZE_FST = SerializerFactory.FST;
+	public static final String SERIALIZE_BINARY = SerializerFactory.BINARY;
 
 	private ConfigManager configManager = ConfigManagerLoader.getConfigManager();
 
@@ -73,6 +75,27 @@ public class InvokerConfig<T> {
 
 	private ClassLoader classLoader;
 
+	// 请求序列化后不小于该字节数时压缩，0表示不压缩
+	private int compressThreshold = configManager.getIntValue(Constants.KEY_INVOKER_COMPRESS_THRESHOLD, 0);
+
+	private String compressType = configManager.getStringValue(Constants.KEY_COMPRESS_TYPE, CompressorFactory.LZF);
+
+	public int getCompressThreshold() {
+		return compressThreshold;
+	}
+
+	public void setCompressThreshold(int compressThreshold) {
+		this.compressThreshold = compressThreshold;
+	}
+
+	public String getCompressType() {
+		return compressType;
+	}
+
+	public void setCompressType(String compressType) {
+		this.compressType = compressType;
+	}
+
 	public ClassLoader getClassLoader() {
 		return classLoader;
 	}
@@ -20,6 +20,17 @@ public class InvokerMethodConfig {
 
 	private String callType;
 
+	// 小于0时使用服务的配置
+	private int compressThreshold = -1;
+
+	public int getCompressThreshold() {
+		return compressThreshold;
+	}
+
+	public void setCompressThreshold(int compressThreshold) {
+		this.compressThreshold = compressThreshold;
+	}
+
 	public int getTimeout() {
 		return timeout;
 	}
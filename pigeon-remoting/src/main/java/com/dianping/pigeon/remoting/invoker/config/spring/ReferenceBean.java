@@ -62,6 +62,27 @@ public class ReferenceBean implements FactoryBean {
 
 	private List<InvokerMethodConfig> methods;
 
+	// 未配置时使用InvokerConfig的默认值
+	private Integer compressThreshold;
+
+	private String compressType;
+
+	public Integer getCompressThreshold() {
+		return compressThreshold;
+	}
+
+	public void setCompressThreshold(Integer compressThreshold) {
+		this.compressThreshold = compressThreshold;
+	}
+
+	public String getCompressType() {
+		return compressType;
+	}
+
+	public void setCompressType(String compressType) {
+		this.compressType = compressType;
+	}
+
 	private ClassLoader classLoader;
 
 	public ClassLoader getClassLoader() {
@@ -242,6 +263,12 @@ public class ReferenceBean implements FactoryBean {
 				this.serialize, this.callback, this.group, this.writeBufferLimit, this.loadBalance, this.cluster,
 				this.retries, this.timeoutRetry, this.vip, this.version, this.protocol);
 		invokerConfig.setClassLoader(classLoader);
+		if (compressThreshold != null) {
+			invokerConfig.setCompressThreshold(compressThreshold);
+		}
+		if (StringUtils.isNotBlank(compressType)) {
+			invokerConfig.setCompressType(compressType);
+		}
 
 		if (!CollectionUtils.isEmpty(methods)) {
 			Map<String, InvokerMethodConfig> methodMap = new HashMap<String, InvokerMethodConfig>();
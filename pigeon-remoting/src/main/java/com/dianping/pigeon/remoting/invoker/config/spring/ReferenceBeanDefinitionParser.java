@@ -117,6 +117,12 @@ public class ReferenceBeanDefinitionParser implements BeanDefinitionParser {
 		if (element.hasAttribute("vip")) {
 			properties.addPropertyValue("vip", resolveReference(element, "vip"));
 		}
+		if (element.hasAttribute("compressThreshold")) {
+			properties.addPropertyValue("compressThreshold", resolveReference(element, "compressThreshold"));
+		}
+		if (element.hasAttribute("compressType")) {
+			properties.addPropertyValue("compressType", resolveReference(element, "compressType"));
+		}
 		String callback = element.getAttribute("callback");
 		if (StringUtils.isNotEmpty(callback)) {
 			if (checkRefExists && !parserContext.getRegistry().containsBeanDefinition(callback)) {
@@ -157,6 +163,9 @@ public class ReferenceBeanDefinitionParser implements BeanDefinitionParser {
 		if (element.hasAttribute("callType")) {
 			properties.addPropertyValue("callType", resolveReference(element, "callType"));
 		}
+		if (element.hasAttribute("compressThreshold")) {
+			properties.addPropertyValue("compressThreshold", resolveReference(element, "compressThreshold"));
+		}
 		parserContext.getRegistry().registerBeanDefinition(id, beanDefinition);
 
 		return beanDefinition;
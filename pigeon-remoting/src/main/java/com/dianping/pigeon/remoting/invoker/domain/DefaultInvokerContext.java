@@ -7,6 +7,7 @@ package com.dianping.pigeon.remoting.invoker.domain;
 import org.apache.commons.lang.builder.ReflectionToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
 
+import com.dianping.pigeon.remoting.common.codec.compress.CompressPolicy;
 import com.dianping.pigeon.remoting.common.domain.AbstractInvocationContext;
 import com.dianping.pigeon.remoting.invoker.Client;
 import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
@@ -18,6 +19,8 @@ public class DefaultInvokerContext extends AbstractInvocationContext implements
 	private Class<?>[] parameterTypes;
 	private Object[] arguments;
 	private Client client;
+	private String callType;
+	private CompressPolicy compressPolicy;
 
 	public DefaultInvokerContext(InvokerConfig<?> invokerConfig, String methodName, Class<?>[] parameterTypes,
 			Object[] arguments) {
@@ -66,6 +69,29 @@ public class DefaultInvokerContext extends AbstractInvocationContext implements
 		this.client = client;
 	}
 
+	@Override
+	public String getCallType() {
+		if (callType == null && invokerConfig != null) {
+			return invokerConfig.getCallType();
+		}
+		return callType;
+	}
+
+	@Override
+	public void setCallType(String callType) {
+		this.callType = callType;
+	}
+
+	@Override
+	public CompressPolicy getCompressPolicy() {
+		return compressPolicy;
+	}
+
+	@Override
+	public void setCompressPolicy(CompressPolicy compressPolicy) {
+		this.compressPolicy = compressPolicy;
+	}
+
 	@Override
 	public String toString() {
 		return ReflectionToStringBuilder.toString(this, ToStringStyle.SHORT_PREFIX_STYLE);
@@ -4,6 +4,7 @@
  */
 package com.dianping.pigeon.remoting.invoker.domain;
 
+import com.dianping.pigeon.remoting.common.codec.compress.CompressPolicy;
 import com.dianping.pigeon.remoting.common.domain.InvocationContext;
 import com.dianping.pigeon.remoting.invoker.Client;
 import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
@@ -22,4 +23,18 @@ public interface InvokerContext extends InvocationContext {
 
 	void setClient(Client client);
 
+	/**
+	 * 本次调用的调用方式，未单独指定时与InvokerConfig一致
+	 */
+	String getCallType();
+
+	void setCallType(String callType);
+
+	/**
+	 * 本次调用请求的压缩配置，为null时不压缩
+	 */
+	CompressPolicy getCompressPolicy();
+
+	void setCompressPolicy(CompressPolicy compressPolicy);
+
 }
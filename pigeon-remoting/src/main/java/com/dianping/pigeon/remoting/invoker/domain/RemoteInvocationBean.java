@@ -2,10 +2,12 @@ package com.dianping.pigeon.remoting.invoker.domain;
 
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.invoker.callback.Callback;
+import com.dianping.pigeon.timer.Timeout;
 
 public class RemoteInvocationBean {
 
 	public InvocationRequest request;
 	public Callback callback;
+	public Timeout timeout;
 
 }
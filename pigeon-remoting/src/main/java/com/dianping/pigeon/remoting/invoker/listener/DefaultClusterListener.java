@@ -23,6 +23,7 @@ import com.dianping.pigeon.remoting.invoker.ClientSelector;
 import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
 import com.dianping.pigeon.remoting.invoker.domain.ConnectInfo;
 import com.dianping.pigeon.remoting.invoker.exception.ServiceUnavailableException;
+import com.dianping.pigeon.remoting.invoker.route.RouteSnapshot;
 import com.dianping.pigeon.threadpool.DefaultThreadFactory;
 import com.dianping.pigeon.util.CollectionUtils;
 import com.dianping.pigeon.util.ThreadPoolUtils;
@@ -31,8 +32,13 @@ public class DefaultClusterListener implements ClusterListener {
 
 	private static final Logger logger = LoggerLoader.getLogger(DefaultClusterListener.class);
 
+	// 每个服务的client列表写时复制，列表本身不再修改
 	private Map<String, List<Client>> serviceClients = new ConcurrentHashMap<String, List<Client>>();
 
+	private Map<String, RouteSnapshot> routeSnapshots = new ConcurrentHashMap<String, RouteSnapshot>();
+
+	private final Object clientsLock = new Object();
+
 	private Map<String, Client> allClients = new ConcurrentHashMap<String, Client>();
 
 	private HeartBeatListener heartbeatListener;
@@ -56,6 +62,7 @@ public class DefaultClusterListener implements ClusterListener {
 	public void clear() {
 		serviceClients = new ConcurrentHashMap<String, List<Client>>();
 		allClients = new ConcurrentHashMap<String, Client>();
+		routeSnapshots = new ConcurrentHashMap<String, RouteSnapshot>();
 	}
 
 	public List<Client> getClientList(InvokerConfig<?> invokerConfig) {
@@ -68,6 +75,19 @@ public class DefaultClusterListener implements ClusterListener {
 		return clientList;
 	}
 
+	/**
+	 * 服务的路由快照，client列表或可用状态、权重变化后才重建
+	 */
+	public RouteSnapshot getRouteSnapshot(InvokerConfig<?> invokerConfig) {
+		List<Client> clientList = getClientList(invokerConfig);
+		RouteSnapshot snapshot = routeSnapshots.get(invokerConfig.getUrl());
+		if (snapshot == null || !snapshot.isValid(clientList)) {
+			snapshot = RouteSnapshot.build(invokerConfig.getUrl(), clientList);
+			routeSnapshots.put(invokerConfig.getUrl(), snapshot);
+		}
+		return snapshot;
+	}
+
 	public void addConnect(ConnectInfo connectInfo) {
 		if (logger.isInfoEnabled()) {
 			logger.info("[cluster-listener] add service provider:" + connectInfo);
@@ -98,17 +118,19 @@ public class DefaultClusterListener implements ClusterListener {
 				client.connect();
 			}
 			if (client.isConnected()) {
-				for (Entry<String, Integer> sw : connectInfo.getServiceNames().entrySet()) {
-					String serviceName = sw.getKey();
-					List<Client> clientList = this.serviceClients.get(serviceName);
-					if (clientList == null) {
-						clientList = new ArrayList<Client>();
-						this.serviceClients.put(serviceName, clientList);
-					}
-					if (!clientList.contains(client)) {
-						clientList.add(client);
+				synchronized (clientsLock) {
+					for (Entry<String, Integer> sw : connectInfo.getServiceNames().entrySet()) {
+						String serviceName = sw.getKey();
+						List<Client> clientList = this.serviceClients.get(serviceName);
+						if (clientList == null || !clientList.contains(client)) {
+							List<Client> newClientList = clientList == null ? new ArrayList<Client>()
+									: new ArrayList<Client>(clientList);
+							newClientList.add(client);
+							this.serviceClients.put(serviceName, newClientList);
+						}
 					}
 				}
+				RouteSnapshot.invalidate(client.getAddress());
 			} else {
 				logger.info("[cluster-listener] remove client:" + client);
 				clusterListenerManager.removeConnect(client);
@@ -136,12 +158,17 @@ public class DefaultClusterListener implements ClusterListener {
 		if (logger.isInfoEnabled()) {
 			logger.info("[cluster-listener] remove service provider:" + client);
 		}
-		for (String serviceName : this.serviceClients.keySet()) {
-			List<Client> clientList = this.serviceClients.get(serviceName);
-			if (clientList != null && clientList.contains(client)) {
-				clientList.remove(client);
+		synchronized (clientsLock) {
+			for (String serviceName : this.serviceClients.keySet()) {
+				List<Client> clientList = this.serviceClients.get(serviceName);
+				if (clientList != null && clientList.contains(client)) {
+					List<Client> newClientList = new ArrayList<Client>(clientList);
+					newClientList.remove(client);
+					this.serviceClients.put(serviceName, newClientList);
+				}
 			}
 		}
+		RouteSnapshot.invalidate(client.getAddress());
 	}
 
 	@Override
@@ -149,19 +176,22 @@ public class DefaultClusterListener implements ClusterListener {
 		if (logger.isInfoEnabled()) {
 			logger.info("[cluster-listener] do not use service provider:" + serviceName + ":" + host + ":" + port);
 		}
-		List<Client> cs = serviceClients.get(serviceName);
-		List<Client> newCS = new ArrayList<Client>();
-		if (cs != null && !cs.isEmpty()) {
-			newCS.addAll(cs);
-		}
 		Client clientFound = null;
-		for (Client client : cs) {
-			if (client.getHost() != null && client.getHost().equals(host) && client.getPort() == port) {
-				newCS.remove(client);
-				clientFound = client;
+		synchronized (clientsLock) {
+			List<Client> cs = serviceClients.get(serviceName);
+			List<Client> newCS = new ArrayList<Client>();
+			if (cs != null && !cs.isEmpty()) {
+				newCS.addAll(cs);
+				for (Client client : cs) {
+					if (client.getHost() != null && client.getHost().equals(host) && client.getPort() == port) {
+						newCS.remove(client);
+						clientFound = client;
+					}
+				}
 			}
+			serviceClients.put(serviceName, newCS);
 		}
-		serviceClients.put(serviceName, newCS);
+		RouteSnapshot.invalidate(host + ":" + port);
 
 		// 一个client可能对应多个serviceName，仅当client不被任何serviceName使用时才关闭
 		if (clientFound != null) {
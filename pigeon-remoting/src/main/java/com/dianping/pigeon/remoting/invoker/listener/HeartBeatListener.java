@@ -35,6 +35,7 @@ import com.dianping.pigeon.remoting.invoker.Client;
 import com.dianping.pigeon.remoting.invoker.ClientManager;
 import com.dianping.pigeon.remoting.invoker.callback.CallbackFuture;
 import com.dianping.pigeon.remoting.invoker.domain.ConnectInfo;
+import com.dianping.pigeon.remoting.invoker.route.RouteSnapshot;
 import com.dianping.pigeon.remoting.invoker.util.InvokerUtils;
 import com.dianping.pigeon.remoting.provider.ProviderBootStrap;
 import com.dianping.pigeon.remoting.provider.Server;
@@ -267,6 +268,7 @@ public class HeartBeatListener implements Runnable, ClusterListener {
 				if (!client.isActive()) {
 					client.setActive(true);
 					inactiveAddresses.remove(client.getAddress());
+					RouteSnapshot.invalidate(client.getAddress());
 					logger.info("@service-activate:" + client + ", service:" + getServiceName(client)
 							+ ", inactive addresses:" + inactiveAddresses);
 
@@ -283,6 +285,7 @@ public class HeartBeatListener implements Runnable, ClusterListener {
 					if (isHeartBeatAutoPickOff && canPickOff(client)) {
 						client.setActive(false);
 						inactiveAddresses.add(client.getAddress());
+						RouteSnapshot.invalidate(client.getAddress());
 						logger.info("@service-deactivate:" + client + ", inactive addresses:" + inactiveAddresses);
 
 						if (logPickOff) {
@@ -4,7 +4,7 @@
  */
 package com.dianping.pigeon.remoting.invoker.listener;
 
-import java.util.Map;
+import java.util.List;
 
 import org.apache.logging.log4j.Logger;
 
@@ -12,19 +12,21 @@ import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.util.Constants;
-import com.dianping.pigeon.remoting.common.util.TimelineUtils;
+import com.dianping.pigeon.remoting.common.util.TimeoutUtils;
 import com.dianping.pigeon.remoting.invoker.callback.Callback;
 import com.dianping.pigeon.remoting.invoker.domain.RemoteInvocationBean;
 import com.dianping.pigeon.remoting.invoker.route.statistics.ServiceStatisticsHolder;
+import com.dianping.pigeon.remoting.invoker.service.PendingInvocationTable;
+import com.dianping.pigeon.remoting.invoker.service.PendingInvocationTable.InvocationFilter;
 
 public class InvocationTimeoutListener implements Runnable {
 
 	private static final Logger logger = LoggerLoader.getLogger(InvocationTimeoutListener.class);
-	private Map<Long, RemoteInvocationBean> invocations;
+	private PendingInvocationTable invocations;
 	private long timeoutInterval = ConfigManagerLoader.getConfigManager().getLongValue(
 			Constants.KEY_TIMEOUT_INTERVAL, Constants.DEFAULT_TIMEOUT_INTERVAL);
 
-	public InvocationTimeoutListener(Map<Long, RemoteInvocationBean> invocations) {
+	public InvocationTimeoutListener(PendingInvocationTable invocations) {
 		this.invocations = invocations;
 	}
 
@@ -33,35 +35,40 @@ public class InvocationTimeoutListener implements Runnable {
 		while (true) {
 			try {
 				Thread.sleep(timeoutInterval);
-				long currentTime = System.currentTimeMillis();
-				for (Long sequence : invocations.keySet()) {
-					RemoteInvocationBean invocationBean = invocations.get(sequence);
-					if (invocationBean != null) {
-						InvocationRequest request = invocationBean.request;
-						if (request.getTimeout() > 0 && request.getCreateMillisTime() > 0
-								&& request.getCreateMillisTime() + request.getTimeout() < currentTime) {
-							Callback callback = invocationBean.callback;
-							if (callback != null && callback.getClient() != null) {
-								ServiceStatisticsHolder.flowOut(request, callback.getClient().getAddress());
-							}
-							callback.dispose();
-							invocations.remove(sequence);
-							StringBuilder msg = new StringBuilder();
-							msg.append("remove timeout request, process time:").append(System.currentTimeMillis())
-									.append("\r\n").append("request:").append(request);
-							logger.warn(msg.toString());
-							// RequestTimeoutException e = new
-							// RequestTimeoutException(msg.toString());
-							// if (monitorLogger != null) {
-							// monitorLogger.logError(e);
-							// }
+				if (!TimeoutUtils.isWheelEnabled()) {
+					final long currentTime = System.currentTimeMillis();
+					List<RemoteInvocationBean> expired = invocations.removeIf(new InvocationFilter() {
+
+						@Override
+						public boolean accept(long sequence, RemoteInvocationBean invocationBean) {
+							InvocationRequest request = invocationBean.request;
+							return request.getTimeout() > 0 && request.getCreateMillisTime() > 0
+									&& request.getCreateMillisTime() + request.getTimeout() < currentTime;
 						}
+					});
+					for (RemoteInvocationBean invocationBean : expired) {
+						processTimeout(invocationBean);
 					}
 				}
-				TimelineUtils.removeLegacyTimelines();
 			} catch (Throwable e) {
 				logger.warn("checking remote call timeout failed", e);
 			}
 		}
 	}
+
+	public static void processTimeout(RemoteInvocationBean invocationBean) {
+		InvocationRequest request = invocationBean.request;
+		Callback callback = invocationBean.callback;
+		if (callback != null && callback.getClient() != null) {
+			// 超时的服务端按超时时间计入响应时间
+			ServiceStatisticsHolder.recordLatency(request, callback.getClient().getAddress());
+			ServiceStatisticsHolder.flowOut(request, callback.getClient().getAddress());
+			callback.getClient().requestCompleted(request);
+		}
+		callback.dispose();
+		StringBuilder msg = new StringBuilder();
+		msg.append("remove timeout request, process time:").append(System.currentTimeMillis()).append("\r\n")
+				.append("request:").append(request);
+		logger.warn(msg.toString());
+	}
 }
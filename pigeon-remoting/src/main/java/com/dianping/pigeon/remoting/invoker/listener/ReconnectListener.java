@@ -20,6 +20,7 @@ import com.dianping.pigeon.registry.RegistryManager;
 import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.invoker.Client;
 import com.dianping.pigeon.remoting.invoker.domain.ConnectInfo;
+import com.dianping.pigeon.remoting.invoker.route.RouteSnapshot;
 
 public class ReconnectListener implements Runnable, ClusterListener {
 
@@ -62,6 +63,7 @@ public class ReconnectListener implements Runnable, ClusterListener {
 							// 加回去时active设置为true
 							clusterListenerManager.addConnect(client.getConnectInfo());
 							client.setActive(true);
+							RouteSnapshot.invalidate(client.getAddress());
 							toRemovedClients.add(providerUrl);
 						}
 					}
@@ -4,14 +4,12 @@
  */
 package com.dianping.pigeon.remoting.invoker.process;
 
-import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
 import com.dianping.pigeon.config.ConfigManager;
 import com.dianping.pigeon.config.ConfigManagerLoader;
-import com.dianping.pigeon.remoting.common.domain.InvocationContext;
-import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.process.ServiceInvocationChain;
 import com.dianping.pigeon.remoting.common.process.ServiceInvocationFilter;
 import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
 import com.dianping.pigeon.remoting.common.util.Constants;
@@ -56,22 +54,7 @@ public final class InvokerProcessHandlerFactory {
 	@SuppressWarnings({ "rawtypes" })
 	private static <V extends ServiceInvocationFilter> ServiceInvocationHandler createInvocationHandler(
 			List<V> internalFilters) {
-		ServiceInvocationHandler last = null;
-		List<V> filterList = new ArrayList<V>();
-		filterList.addAll(internalFilters);
-		for (int i = filterList.size() - 1; i >= 0; i--) {
-			final V filter = filterList.get(i);
-			final ServiceInvocationHandler next = last;
-			last = new ServiceInvocationHandler() {
-				@SuppressWarnings("unchecked")
-				@Override
-				public InvocationResponse handle(InvocationContext invocationContext) throws Throwable {
-					InvocationResponse resp = filter.invoke(next, invocationContext);
-					return resp;
-				}
-			};
-		}
-		return last;
+		return ServiceInvocationChain.build(internalFilters);
 	}
 
 	public static void registerBizProcessFilter(InvocationInvokeFilter filter) {
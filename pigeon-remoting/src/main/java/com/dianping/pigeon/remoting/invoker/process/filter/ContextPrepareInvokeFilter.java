@@ -27,7 +27,15 @@ import com.dianping.pigeon.util.VersionUtils;
 public class ContextPrepareInvokeFilter extends InvocationInvokeFilter {
 
 	private static final Logger logger = LoggerLoader.getLogger(ContextPrepareInvokeFilter.class);
+	// 只对2.6.0及以上的服务端生效，旧版本服务端不认识带请求头标志的序列化类型
+	private static final boolean requestHeaderEnable = ConfigManagerLoader.getConfigManager().getBooleanValue(
+			"pigeon.codec.requestheader.enable", true);
+	// 请求头中的字符串引用连接字典，同样只对2.6.0及以上的服务端生效
+	private static final boolean dictionaryEnable = ConfigManagerLoader.getConfigManager().getBooleanValue(
+			"pigeon.codec.dictionary.enable", true);
 	private ConcurrentHashMap<String, Boolean> versionSupportedMap = new ConcurrentHashMap<String, Boolean>();
+	// 2.6.0起服务端支持binary序列化、压缩和请求头
+	private ConcurrentHashMap<String, Boolean> version260SupportedMap = new ConcurrentHashMap<String, Boolean>();
 
 	@Override
 	public InvocationResponse invoke(ServiceInvocationHandler handler, InvokerContext invocationContext)
@@ -51,6 +59,8 @@ public class ContextPrepareInvokeFilter extends InvocationInvokeFilter {
 		request.setMessageType(Constants.MESSAGE_TYPE_SERVICE);
 
 		checkSerializeSupported(invokerContext);
+		prepareCompress(invokerContext);
+		prepareRequestHeader(invokerContext);
 
 		InvokerConfig<?> invokerConfig = invokerContext.getInvokerConfig();
 		if (invokerConfig != null) {
@@ -69,7 +79,7 @@ public class ContextPrepareInvokeFilter extends InvocationInvokeFilter {
 				transaction.addData("CurrentTimeout", request.getTimeout());
 			}
 			request.setAttachment(Constants.REQ_ATTACH_WRITE_BUFF_LIMIT, invokerConfig.isWriteBufferLimit());
-			if (Constants.CALL_ONEWAY.equalsIgnoreCase(invokerConfig.getCallType())) {
+			if (Constants.CALL_ONEWAY.equalsIgnoreCase(invokerContext.getCallType())) {
 				request.setCallType(Constants.CALLTYPE_NOREPLY);
 			} else {
 				request.setCallType(Constants.CALLTYPE_REPLY);
@@ -79,24 +89,62 @@ public class ContextPrepareInvokeFilter extends InvocationInvokeFilter {
 
 	private void checkSerializeSupported(InvokerContext invokerContext) {
 		InvocationRequest request = invokerContext.getRequest();
+		String minVersion = null;
+		ConcurrentHashMap<String, Boolean> supportedMap = null;
 		if (request.getSerialize() == SerializerFactory.SERIALIZE_PROTO
 				|| request.getSerialize() == SerializerFactory.SERIALIZE_FST) {
-			Client client = invokerContext.getClient();
-			String version = RegistryManager.getInstance().getServerVersion(client.getAddress());
-			boolean supported = true;
-			if (StringUtils.isBlank(version)) {
-				supported = false;
-			} else if (versionSupportedMap.containsKey(version)) {
-				supported = versionSupportedMap.get(version);
-			} else {
-				supported = VersionUtils.compareVersion(version, "2.4.3") >= 0;
-				versionSupportedMap.putIfAbsent(version, supported);
-			}
-			if (!supported) {
-				request.setSerialize(SerializerFactory.SERIALIZE_HESSIAN);
-				invokerContext.getInvokerConfig().setSerialize(SerializerFactory.HESSIAN);
-			}
+			minVersion = "2.4.3";
+			supportedMap = versionSupportedMap;
+		} else if (request.getSerialize() == SerializerFactory.SERIALIZE_BINARY) {
+			minVersion = "2.6.0";
+			supportedMap = version260SupportedMap;
+		}
+		if (minVersion != null && !isServerSupported(invokerContext.getClient(), minVersion, supportedMap)) {
+			request.setSerialize(SerializerFactory.SERIALIZE_HESSIAN);
+			invokerContext.getInvokerConfig().setSerialize(SerializerFactory.HESSIAN);
+		}
+	}
+
+	/**
+	 * 旧版本服务端不认识压缩标志，只有2.6.0及以上的服务端才压缩请求、声明可以接收压缩的响应
+	 */
+	private void prepareCompress(InvokerContext invokerContext) {
+		if (!isServerSupported(invokerContext.getClient(), "2.6.0", version260SupportedMap)) {
+			return;
+		}
+		InvocationRequest request = invokerContext.getRequest();
+		request.setAttachment(Constants.REQ_ATTACH_ACCEPT_COMPRESSED, Boolean.TRUE);
+		if (invokerContext.getCompressPolicy() != null) {
+			request.setAttachment(Constants.REQ_ATTACH_COMPRESS, invokerContext.getCompressPolicy());
+		}
+	}
+
+	/**
+	 * 服务端支持时由编码器把服务名、方法名和app等字段写在请求头中，重试时换了服务端要重新判断
+	 */
+	private void prepareRequestHeader(InvokerContext invokerContext) {
+		if (!requestHeaderEnable) {
+			return;
+		}
+		InvocationRequest request = invokerContext.getRequest();
+		boolean supported = isServerSupported(invokerContext.getClient(), "2.6.0", version260SupportedMap);
+		request.setAttachment(Constants.REQ_ATTACH_REQUEST_HEADER, supported);
+		if (dictionaryEnable) {
+			request.setAttachment(Constants.REQ_ATTACH_DICTIONARY, supported);
+		}
+	}
+
+	private boolean isServerSupported(Client client, String minVersion, ConcurrentHashMap<String, Boolean> supportedMap) {
+		String version = RegistryManager.getInstance().getServerVersion(client.getAddress());
+		if (StringUtils.isBlank(version)) {
+			return false;
+		}
+		Boolean supported = supportedMap.get(version);
+		if (supported == null) {
+			supported = VersionUtils.compareVersion(version, minVersion) >= 0;
+			supportedMap.putIfAbsent(version, supported);
 		}
+		return supported;
 	}
 
 	private void transferContextValueToRequest(final InvokerContext invocationContext, final InvocationRequest request) {
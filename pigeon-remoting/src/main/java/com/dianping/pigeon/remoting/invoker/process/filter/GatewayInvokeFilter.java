@@ -15,7 +15,6 @@ import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
 import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.invoker.Client;
 import com.dianping.pigeon.remoting.invoker.callback.ServiceFutureFactory;
-import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
 import com.dianping.pigeon.remoting.invoker.domain.InvokerContext;
 import com.dianping.pigeon.remoting.invoker.process.statistics.InvokerStatisticsChecker;
 import com.dianping.pigeon.remoting.invoker.process.statistics.InvokerStatisticsHolder;
@@ -42,7 +41,6 @@ public class GatewayInvokeFilter extends InvocationInvokeFilter {
 		if (logger.isDebugEnabled()) {
 			logger.debug("invoke the GatewayInvokeFilter, invocationContext:" + invocationContext);
 		}
-		InvokerConfig<?> invokerConfig = invocationContext.getInvokerConfig();
 		InvocationRequest request = invocationContext.getRequest();
 		Client client = invocationContext.getClient();
 		String targetApp = RegistryManager.getInstance().getServerApp(client.getAddress());
@@ -51,7 +49,7 @@ public class GatewayInvokeFilter extends InvocationInvokeFilter {
 			try {
 				return handler.handle(invocationContext);
 			} catch (Throwable e) {
-				if (Constants.CALL_FUTURE.equalsIgnoreCase(invokerConfig.getCallType())) {
+				if (Constants.CALL_FUTURE.equalsIgnoreCase(invocationContext.getCallType())) {
 					ServiceFutureFactory.remove();
 				}
 				throw e;
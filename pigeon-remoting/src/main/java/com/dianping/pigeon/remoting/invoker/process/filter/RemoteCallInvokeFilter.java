@@ -47,7 +47,7 @@ public class RemoteCallInvokeFilter extends InvocationInvokeFilter {
 		Client client = invocationContext.getClient();
 		InvocationRequest request = invocationContext.getRequest();
 		InvokerConfig<?> invokerConfig = invocationContext.getInvokerConfig();
-		String callType = invokerConfig.getCallType();
+		String callType = invocationContext.getCallType();
 		beforeInvoke(request, client);
 		InvocationResponse response = null;
 		int timeout = request.getTimeout();
@@ -31,6 +31,7 @@ import com.dianping.pigeon.remoting.invoker.Client;
 import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
 import com.dianping.pigeon.remoting.invoker.domain.InvokerContext;
 import com.dianping.pigeon.remoting.invoker.exception.RequestTimeoutException;
+import com.dianping.pigeon.remoting.invoker.process.statistics.InvokerStatisticsHolder;
 
 public class RemoteCallMonitorInvokeFilter extends InvocationInvokeFilter {
 
@@ -114,7 +115,7 @@ public class RemoteCallMonitorInvokeFilter extends InvocationInvokeFilter {
 						invocationContext.getParameterTypes()), invocationContext);
 				if (transaction != null) {
 					transaction.setStatusOk();
-					transaction.addData("CallType", invokerConfig.getCallType());
+					transaction.addData("CallType", invocationContext.getCallType());
 					transaction.addData("Timeout", invokerConfig.getTimeout());
 					transaction.addData("Serialize", invokerConfig.getSerialize());
 
@@ -135,6 +136,7 @@ public class RemoteCallMonitorInvokeFilter extends InvocationInvokeFilter {
 			}
 		}
 		boolean error = false;
+		long start = System.nanoTime();
 		try {
 			InvocationResponse response = handler.handle(invocationContext);
 			SizeMonitor.getInstance().logSize(request.getSize(), "PigeonCall.requestSize", null);
@@ -187,13 +189,19 @@ public class RemoteCallMonitorInvokeFilter extends InvocationInvokeFilter {
 			}
 			throw e;
 		} finally {
+			// 非同步调用在这里只完成了发送，不计入延迟分布
+			if (Constants.CALL_SYNC.equals(invocationContext.getCallType())) {
+				InvokerStatisticsHolder.recordLatency(request, System.nanoTime() - start);
+			}
 			if (transaction != null) {
 				try {
 					if (TimelineUtils.isEnabled()) {
 						Timeline timeline = TimelineUtils.getTimeline(request, TimelineUtils.getLocalIp());
-						transaction.addData("Timeline", timeline);
+						if (timeline != null && timeline.isAbnormal()) {
+							transaction.addData("Timeline", timeline);
+						}
 					}
-					if (!Constants.CALL_FUTURE.equals(invokerConfig.getCallType()) || error) {
+					if (!Constants.CALL_FUTURE.equals(invocationContext.getCallType()) || error) {
 						transaction.complete();
 					}
 				} catch (Throwable e) {
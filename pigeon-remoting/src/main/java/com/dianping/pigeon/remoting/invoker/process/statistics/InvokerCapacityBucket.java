@@ -1,17 +1,15 @@
 package com.dianping.pigeon.remoting.invoker.process.statistics;
 
 import java.io.Serializable;
-import java.util.Calendar;
 import java.util.Map;
+import java.util.TimeZone;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import org.apache.logging.log4j.Logger;
-
 import com.dianping.pigeon.config.ConfigManagerLoader;
-import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.util.ContextUtils;
+import com.dianping.pigeon.util.TimeWindowCounter;
 
 public class InvokerCapacityBucket implements Serializable {
 	/**
@@ -19,15 +17,15 @@ public class InvokerCapacityBucket implements Serializable {
 	 */
 	private static final long serialVersionUID = 1L;
 
-	private static final Logger logger = LoggerLoader.getLogger(InvokerCapacityBucket.class);
-
 	private AtomicInteger requests = new AtomicInteger();
 
-	private Map<Integer, AtomicInteger> totalRequestsInSecond = new ConcurrentHashMap<Integer, AtomicInteger>();
+	private final TimeWindowCounter totalRequestsInSecond = new TimeWindowCounter(1000, 60);
 
-	private Map<Integer, AtomicInteger> totalRequestsInDay = new ConcurrentHashMap<Integer, AtomicInteger>();
+	// 按本地时区划分天
+	private final TimeWindowCounter totalRequestsInDay = new TimeWindowCounter(24 * 3600 * 1000L, 32, TimeZone
+			.getDefault().getOffset(System.currentTimeMillis()));
 
-	private Map<Integer, AtomicInteger> totalRequestsInMinute = new ConcurrentHashMap<Integer, AtomicInteger>();
+	private final TimeWindowCounter totalRequestsInMinute = new TimeWindowCounter(60 * 1000, 60);
 
 	public static final boolean enableDayStats = ConfigManagerLoader.getConfigManager().getBooleanValue(
 			"pigeon.invokerstat.day.enable", true);
@@ -44,18 +42,17 @@ public class InvokerCapacityBucket implements Serializable {
 	}
 
 	public InvokerCapacityBucket(String address) {
-		preFillData();
 	}
 
 	public void flowIn(InvocationRequest request) {
-		Calendar now = Calendar.getInstance();
+		long now = System.currentTimeMillis();
 		requests.incrementAndGet();
-		incrementTotalRequestsInSecond(now.get(Calendar.SECOND));
+		totalRequestsInSecond.increment(now);
 		if (enableMinuteStats) {
-			incrementTotalRequestsInMinute(now.get(Calendar.MINUTE));
+			totalRequestsInMinute.increment(now);
 		}
 		if (enableDayStats) {
-			incrementTotalRequestsInDay(now.get(Calendar.DATE));
+			totalRequestsInDay.increment(now);
 		}
 		if (enableMethodStats) {
 			String callUrl = request.getServiceName() + "#" + request.getMethodName();
@@ -74,136 +71,49 @@ public class InvokerCapacityBucket implements Serializable {
 		return requests.get();
 	}
 
+	/**
+	 * @return 最近60秒每秒的请求数，key为秒数
+	 */
 	public Map<Integer, AtomicInteger> getTotalRequestsInSecond() {
-		return totalRequestsInSecond;
+		long now = System.currentTimeMillis();
+		Map<Integer, AtomicInteger> requestsInSecond = new ConcurrentHashMap<Integer, AtomicInteger>();
+		for (int i = 0; i < totalRequestsInSecond.getSlots(); i++) {
+			requestsInSecond.put(totalRequestsInSecond.getSlot(now - i * 1000L),
+					new AtomicInteger(totalRequestsInSecond.get(now, i)));
+		}
+		return requestsInSecond;
 	}
 
 	public int getRequestsInLastSecond() {
-		Calendar cal = Calendar.getInstance();
-		cal.add(Calendar.SECOND, -1);
-		int lastSecond = cal.get(Calendar.SECOND);
-		AtomicInteger counter = totalRequestsInSecond.get(lastSecond);
-		return counter != null ? counter.get() : 0;
+		return totalRequestsInSecond.get(System.currentTimeMillis(), 1);
 	}
 
 	public int getRequestsInCurrentSecond() {
-		Calendar cal = Calendar.getInstance();
-		int lastSecond = cal.get(Calendar.SECOND);
-		AtomicInteger counter = totalRequestsInSecond.get(lastSecond);
-		return counter != null ? counter.get() : 0;
+		return totalRequestsInSecond.get(System.currentTimeMillis(), 0);
 	}
 
 	public int getRequestsInLastMinute() {
-		Calendar cal = Calendar.getInstance();
-		cal.add(Calendar.MINUTE, -1);
-		int lastMinute = cal.get(Calendar.MINUTE);
-		lastMinute = lastMinute >= 0 ? lastMinute : lastMinute + 60;
-		AtomicInteger counter = totalRequestsInMinute.get(lastMinute);
-		return counter != null ? counter.get() : 0;
+		return totalRequestsInMinute.get(System.currentTimeMillis(), 1);
 	}
 
 	public int getRequestsInLastDay() {
-		Calendar cal = Calendar.getInstance();
-		cal.add(Calendar.DATE, -1);
-		int lastDay = cal.get(Calendar.DATE);
-		AtomicInteger counter = totalRequestsInDay.get(lastDay);
-		return counter != null ? counter.get() : 0;
+		return totalRequestsInDay.get(System.currentTimeMillis(), 1);
 	}
 
 	public int getRequestsInToday() {
-		Calendar cal = Calendar.getInstance();
-		int day = cal.get(Calendar.DATE);
-		AtomicInteger counter = totalRequestsInDay.get(day);
-		return counter != null ? counter.get() : 0;
-	}
-
-	private void incrementTotalRequestsInDay(int day) {
-		AtomicInteger counter = totalRequestsInDay.get(day);
-		if (counter != null) {
-			counter.incrementAndGet();
-		} else {
-			logger.warn("Impossible case happended, day[" + day + "]'s request counter is null.");
-		}
-	}
-
-	private void incrementTotalRequestsInMinute(int minute) {
-		AtomicInteger counter = totalRequestsInMinute.get(minute);
-		if (counter != null) {
-			counter.incrementAndGet();
-		} else {
-			logger.warn("Impossible case happended, day[" + minute + "]'s request counter is null.");
-		}
-	}
-
-	private void incrementTotalRequestsInSecond(int second) {
-		AtomicInteger counter = totalRequestsInSecond.get(second);
-		if (counter != null) {
-			counter.incrementAndGet();
-		} else {
-			logger.warn("Impossible case happended, second[" + second + "]'s request counter is null.");
-		}
+		return totalRequestsInDay.get(System.currentTimeMillis(), 0);
 	}
 
 	/**
-	 * 重置过期的每秒请求数计数器
+	 * 请求计数按时间窗口自动失效，不需要清零
 	 */
 	public void resetRequestsInSecondCounter() {
-		int second = Calendar.getInstance().get(Calendar.SECOND);
-		int prev3Sec = second - 10;
-		for (int i = 1; i <= 30; i++) {
-			int prevSec = prev3Sec - i;
-			prevSec = prevSec >= 0 ? prevSec : prevSec + 60;
-			AtomicInteger counter = totalRequestsInSecond.get(prevSec);
-			if (counter != null) {
-				counter.set(0);
-			}
-		}
 	}
 
 	public void resetRequestsInDayCounter() {
-		if (enableDayStats) {
-			int day = Calendar.getInstance().get(Calendar.DATE);
-			int prev3Sec = day - 10;
-			for (int i = 1; i <= 15; i++) {
-				int prevSec = prev3Sec - i;
-				prevSec = prevSec >= 0 ? prevSec : prevSec + 31;
-				AtomicInteger counter = totalRequestsInDay.get(prevSec);
-				if (counter != null) {
-					counter.set(0);
-				}
-			}
-		}
 	}
 
 	public void resetRequestsInMinuteCounter() {
-		if (enableMinuteStats) {
-			int min = Calendar.getInstance().get(Calendar.MINUTE);
-			int prev3Sec = min - 10;
-			for (int i = 1; i <= 30; i++) {
-				int prevSec = prev3Sec - i;
-				prevSec = prevSec >= 0 ? prevSec : prevSec + 60;
-				AtomicInteger counter = totalRequestsInMinute.get(prevSec);
-				if (counter != null) {
-					counter.set(0);
-				}
-			}
-		}
-	}
-
-	private void preFillData() {
-		for (int sec = 0; sec < 60; sec++) {
-			totalRequestsInSecond.put(sec, new AtomicInteger());
-		}
-		if (enableMinuteStats) {
-			for (int min = 0; min < 60; min++) {
-				totalRequestsInMinute.put(min, new AtomicInteger());
-			}
-		}
-		if (enableDayStats) {
-			for (int day = 1; day < 32; day++) {
-				totalRequestsInDay.put(day, new AtomicInteger());
-			}
-		}
 	}
 
 	public String toString() {
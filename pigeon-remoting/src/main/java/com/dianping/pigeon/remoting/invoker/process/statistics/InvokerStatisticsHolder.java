@@ -8,6 +8,7 @@ import org.apache.logging.log4j.Logger;
 
 import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.monitor.LatencyStatistics;
 import com.dianping.pigeon.remoting.common.util.Constants;
 
 public final class InvokerStatisticsHolder {
@@ -19,9 +20,21 @@ public final class InvokerStatisticsHolder {
 	public static final boolean statEnable = ConfigManagerLoader.getConfigManager().getBooleanValue(
 			"pigeon.invokerstat.enable", true);
 
+	private static final LatencyStatistics latencyStatistics = new LatencyStatistics("invoker.latency");
+
 	public static void init() {
 	}
 
+	public static LatencyStatistics getLatencyStatistics() {
+		return latencyStatistics;
+	}
+
+	public static void recordLatency(InvocationRequest request, long nanos) {
+		if (checkRequestNeedStat(request)) {
+			latencyStatistics.record(request, nanos);
+		}
+	}
+
 	public static Map<String, InvokerCapacityBucket> getCapacityBuckets() {
 		return appCapacityBuckets;
 	}
@@ -24,6 +24,7 @@ import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
 import com.dianping.pigeon.remoting.invoker.exception.ServiceUnavailableException;
 import com.dianping.pigeon.remoting.invoker.listener.ClusterListenerManager;
 import com.dianping.pigeon.remoting.invoker.route.balance.AutoawareLoadBalance;
+import com.dianping.pigeon.remoting.invoker.route.balance.LeastOutstandingLoadBalance;
 import com.dianping.pigeon.remoting.invoker.route.balance.LoadBalance;
 import com.dianping.pigeon.remoting.invoker.route.balance.LoadBalanceManager;
 import com.dianping.pigeon.remoting.invoker.route.balance.RandomLoadBalance;
@@ -49,6 +50,7 @@ public class DefaultRouteManager implements RouteManager, Disposable {
 		LoadBalanceManager.register(AutoawareLoadBalance.NAME, null, AutoawareLoadBalance.instance);
 		LoadBalanceManager.register(RoundRobinLoadBalance.NAME, null, RoundRobinLoadBalance.instance);
 		LoadBalanceManager.register(WeightedAutoawareLoadBalance.NAME, null, WeightedAutoawareLoadBalance.instance);
+		LoadBalanceManager.register(LeastOutstandingLoadBalance.NAME, null, LeastOutstandingLoadBalance.instance);
 		if (enablePreferAddresses) {
 			String preferAddressesConfig = ConfigManagerLoader.getConfigManager().getStringValue(
 					"pigeon.route.preferaddresses", "");
@@ -72,6 +74,10 @@ public class DefaultRouteManager implements RouteManager, Disposable {
 		if (!selectedClient.isConnected()) {
 			selectedClient.connect();
 		}
+		if (!selectedClient.isConnected() && availableClients instanceof RouteSnapshot.ClientList) {
+			// 快照是只读的
+			availableClients = new ArrayList<Client>(availableClients);
+		}
 		while (!selectedClient.isConnected()) {
 			logger.info("[route] remove client:" + selectedClient);
 			clusterListenerManager.removeConnect(selectedClient);
@@ -103,6 +109,15 @@ public class DefaultRouteManager implements RouteManager, Disposable {
 		Boolean isWriteBufferLimit = (Boolean) request.getAttachment(Constants.REQ_ATTACH_WRITE_BUFF_LIMIT);
 		isWriteBufferLimit = (isWriteBufferLimit != null ? isWriteBufferLimit : false)
 				&& request.getCallType() == Constants.CALLTYPE_NOREPLY;
+		if (!isWriteBufferLimit && clientList instanceof RouteSnapshot.ClientList) {
+			List<Client> availableClients = ((RouteSnapshot.ClientList) clientList).getSnapshot()
+					.getAvailableClients();
+			if (availableClients.isEmpty()) {
+				throw new ServiceUnavailableException("no available server exists for service["
+						+ invokerConfig.getUrl() + "] and group[" + invokerConfig.getGroup() + "].");
+			}
+			return availableClients;
+		}
 		List<Client> filteredClients = new ArrayList<Client>(clientList.size());
 		boolean existClientBuffToLimit = false;
 		for (Client client : clientList) {
@@ -175,6 +190,7 @@ public class DefaultRouteManager implements RouteManager, Disposable {
 		@Override
 		public void hostWeightChanged(ServiceProviderChangeEvent event) {
 			RegistryManager.getInstance().setServiceWeight(event.getConnect(), event.getWeight());
+			RouteSnapshot.invalidate(event.getConnect());
 		}
 
 		@Override
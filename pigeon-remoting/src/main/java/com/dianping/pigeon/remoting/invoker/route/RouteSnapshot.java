@@ -0,0 +1,160 @@
+/**
+ * Dianping.com Inc.
+ * Copyright (c) 2003-2013 All Rights Reserved.
+ */
+package com.dianping.pigeon.remoting.invoker.route;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.dianping.pigeon.registry.RegistryManager;
+import com.dianping.pigeon.remoting.invoker.Client;
+import com.dianping.pigeon.remoting.invoker.route.balance.LoadBalanceManager;
+
+/**
+ * 某个服务的路由快照，包含全部provider、当前可用（active且权重大于0）的provider以及它们的有效权重，创建后不再修改。
+ *
+ * 某个provider心跳摘除/恢复、权重变化时调用invalidate(address)，只使包含该地址的快照过期，下次路由时按最新状态重建；
+ * provider列表变化时快照的source不再是当前列表，自然会重建。
+ * 路由时直接使用快照里的列表和权重，不再复制列表和逐个查询权重
+ */
+public final class RouteSnapshot {
+
+	// invalidate(address)的调用次数，用于发现重建期间发生的地址变化
+	private static final AtomicLong addressChanges = new AtomicLong();
+
+	// 每个服务当前在用的快照，invalidate(address)只检查这些快照
+	private static final ConcurrentHashMap<String, RouteSnapshot> snapshots = new ConcurrentHashMap<String, RouteSnapshot>();
+
+	private final List<Client> source;
+
+	private volatile boolean expired;
+
+	private final ClientList clients;
+
+	private final ClientList availableClients;
+
+	private RouteSnapshot(List<Client> source) {
+		this.source = source;
+		Client[] all = source.toArray(new Client[source.size()]);
+		Client[] available = new Client[all.length];
+		int availableCount = 0;
+		for (Client client : all) {
+			if (client.isActive() && RegistryManager.getInstance().getServiceWeightFromCache(client.getAddress()) > 0) {
+				available[availableCount++] = client;
+			}
+		}
+		this.clients = new ClientList(this, all, all.length);
+		this.availableClients = new ClientList(this, available, availableCount);
+	}
+
+	/**
+	 * 使包含该provider地址的路由快照过期
+	 */
+	public static void invalidate(String address) {
+		if (address == null) {
+			return;
+		}
+		addressChanges.incrementAndGet();
+		for (RouteSnapshot snapshot : snapshots.values()) {
+			if (!snapshot.expired && snapshot.contains(address)) {
+				snapshot.expired = true;
+			}
+		}
+	}
+
+	/**
+	 * @param key
+	 *            服务url
+	 * @param source
+	 *            provider列表，之后不能再修改
+	 */
+	public static RouteSnapshot build(String key, List<Client> source) {
+		// 先读变化次数，重建期间发生的地址变化会使新快照立即过期
+		long changes = addressChanges.get();
+		RouteSnapshot snapshot = new RouteSnapshot(source);
+		snapshots.put(key, snapshot);
+		if (addressChanges.get() != changes) {
+			snapshot.expired = true;
+		}
+		return snapshot;
+	}
+
+	public boolean isValid(List<Client> currentSource) {
+		return source == currentSource && !expired;
+	}
+
+	private boolean contains(String address) {
+		for (Client client : clients) {
+			if (address.equals(client.getAddress())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public List<Client> getClients() {
+		return clients;
+	}
+
+	public List<Client> getAvailableClients() {
+		return availableClients;
+	}
+
+	/**
+	 * 只读的provider列表，附带预先计算好的有效权重
+	 */
+	public static final class ClientList extends AbstractList<Client> implements RandomAccess {
+
+		private final RouteSnapshot snapshot;
+
+		private final Client[] clients;
+
+		private final int size;
+
+		// [w1, w2, w3, maxWeightIndex]
+		private final int[] weights;
+
+		ClientList(RouteSnapshot snapshot, Client[] clients, int size) {
+			this.snapshot = snapshot;
+			this.clients = clients;
+			this.size = size;
+			this.weights = new int[size + 1];
+			int maxWeight = Integer.MIN_VALUE;
+			for (int i = 0; i < size; i++) {
+				weights[i] = LoadBalanceManager.getEffectiveWeight(clients[i].getAddress());
+				if (weights[i] > maxWeight) {
+					maxWeight = weights[i];
+					weights[size] = i;
+				}
+			}
+		}
+
+		@Override
+		public Client get(int index) {
+			if (index >= size) {
+				throw new IndexOutOfBoundsException("index:" + index + ", size:" + size);
+			}
+			return clients[index];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		public RouteSnapshot getSnapshot() {
+			return snapshot;
+		}
+
+		/**
+		 * 所有调用共用同一个数组，不能修改
+		 */
+		public int[] getWeights() {
+			return weights;
+		}
+	}
+}
@@ -20,6 +20,7 @@ import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.invoker.Client;
 import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
 import com.dianping.pigeon.remoting.invoker.exception.ServiceUnavailableException;
+import com.dianping.pigeon.remoting.invoker.route.RouteSnapshot;
 import com.dianping.pigeon.remoting.invoker.route.statistics.ServiceStatisticsHolder;
 import com.dianping.pigeon.remoting.invoker.util.InvokerHelper;
 
@@ -58,8 +59,9 @@ public abstract class AbstractLoadBalance implements LoadBalance {
 			}
 		} else {
 			try {
-				selectedClient = doSelect(clients, invokerConfig, request,
-						getWeights(clients, request.getServiceName()));
+				int[] weights = clients instanceof RouteSnapshot.ClientList ? ((RouteSnapshot.ClientList) clients)
+						.getWeights() : getWeights(clients, request.getServiceName());
+				selectedClient = doSelect(clients, invokerConfig, request, weights);
 			} catch (Throwable e) {
 				logger.error("failed to do load balance[" + getClass().getName() + "], detail: " + e.getMessage()
 						+ ", use random instead.", e);
@@ -107,6 +109,10 @@ public abstract class AbstractLoadBalance implements LoadBalance {
 		return weights;
 	}
 
+	/**
+	 * @param weights
+	 *            可能是路由快照中共用的数组，不能修改
+	 */
 	protected abstract Client doSelect(List<Client> clients, InvokerConfig<?> invokerConfig, InvocationRequest request,
 			int[] weights);
 
@@ -0,0 +1,71 @@
+/**
+ * Dianping.com Inc.
+ * Copyright (c) 2003-2013 All Rights Reserved.
+ */
+package com.dianping.pigeon.remoting.invoker.route.balance;
+
+import java.util.List;
+
+import org.apache.logging.log4j.Logger;
+
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.invoker.Client;
+import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
+import com.dianping.pigeon.remoting.invoker.route.statistics.CapacityBucket;
+import com.dianping.pigeon.remoting.invoker.route.statistics.ServiceStatisticsHolder;
+import com.dianping.pigeon.util.LangUtils;
+
+/**
+ * 随机取两个服务端，选择负载较低的一个（power of two choices）。
+ *
+ * 负载 = (响应时间的指数移动平均 + 1) * (未返回的请求数 + 1) / 有效权重，只读取两个服务端的统计，
+ * 选择的开销与服务端数量无关，响应变慢的服务端会少分到请求
+ */
+public class LeastOutstandingLoadBalance extends AbstractLoadBalance {
+
+	private static final Logger logger = LoggerLoader.getLogger(LeastOutstandingLoadBalance.class);
+	public static final String NAME = "leastOutstanding";
+	public static final LoadBalance instance = new LeastOutstandingLoadBalance();
+
+	@Override
+	protected Client doSelect(List<Client> clients, InvokerConfig<?> invokerConfig, InvocationRequest request,
+			int[] weights) {
+		assert (clients != null && clients.size() >= 1);
+		int clientSize = clients.size();
+		if (clientSize == 1) {
+			return clients.get(0);
+		}
+		int first = random.nextInt(clientSize);
+		int second = random.nextInt(clientSize - 1);
+		if (second >= first) {
+			second++;
+		}
+		double firstScore = score(clients.get(first), weights[first]);
+		double secondScore = score(clients.get(second), weights[second]);
+		Client client;
+		if (firstScore == secondScore) {
+			client = clients.get(random.nextBoolean() ? first : second);
+		} else {
+			client = clients.get(firstScore < secondScore ? first : second);
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("candidates:" + clients.get(first).getAddress() + "("
+					+ LangUtils.toString((float) firstScore, 4) + ")," + clients.get(second).getAddress() + "("
+					+ LangUtils.toString((float) secondScore, 4) + "), select address:" + client.getAddress());
+		}
+		return client;
+	}
+
+	private double score(Client client, int weight) {
+		if (weight <= 0) {
+			return Double.MAX_VALUE;
+		}
+		CapacityBucket bucket = ServiceStatisticsHolder.getCapacityBuckets().get(client.getAddress());
+		if (bucket == null) {
+			return 1d / weight;
+		}
+		return (bucket.getLatency() + 1) * (bucket.getOutstanding() + 1) / weight;
+	}
+
+}
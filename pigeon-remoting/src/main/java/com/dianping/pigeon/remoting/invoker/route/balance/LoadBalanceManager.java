@@ -28,6 +28,7 @@ import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
 import com.dianping.pigeon.remoting.invoker.domain.ConnectInfo;
 import com.dianping.pigeon.remoting.invoker.listener.ClusterListener;
 import com.dianping.pigeon.remoting.invoker.listener.ClusterListenerManager;
+import com.dianping.pigeon.remoting.invoker.route.RouteSnapshot;
 import com.dianping.pigeon.remoting.invoker.route.statistics.CapacityChecker;
 import com.dianping.pigeon.remoting.invoker.route.statistics.ServiceStatisticsHolder;
 import com.dianping.pigeon.threadpool.DefaultThreadPool;
@@ -269,6 +270,7 @@ public class LoadBalanceManager {
 						int factor = Math.min(defaultFactor, weightFactor.getFactor() + step);
 						weightFactor.setFactor(factor);
 						weightFactor.setCurrentStepTicks(0);
+						RouteSnapshot.invalidate(entry.getKey());
 					}
 					entry.setValue(weightFactor);
 				}
@@ -292,6 +294,7 @@ public class LoadBalanceManager {
 			if ((originalWeight == null || originalWeight.intValue() == 0) && event.getWeight() > 0) {
 				weightFactors.put(event.getConnect(), new WeightFactor(initialFactor));
 			}
+			RouteSnapshot.invalidate(event.getConnect());
 		}
 
 		@Override
@@ -312,12 +315,14 @@ public class LoadBalanceManager {
 		private void addWeight(String address, int weight) {
 			weights.put(address, weight);
 			weightFactors.put(address, new WeightFactor(initialFactor));
+			RouteSnapshot.invalidate(address);
 		}
 
 		private void removeWeight(String address) {
 			weights.remove(address);
 			weightFactors.remove(address);
 			ServiceStatisticsHolder.removeCapacityBucket(address);
+			RouteSnapshot.invalidate(address);
 		}
 
 	}
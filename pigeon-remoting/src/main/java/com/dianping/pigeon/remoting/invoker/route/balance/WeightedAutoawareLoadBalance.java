@@ -35,8 +35,9 @@ public class WeightedAutoawareLoadBalance extends AbstractLoadBalance {
 		}
 		float minCapacity = Float.MAX_VALUE;
 		int clientSize = clients.size();
-		Client[] candidates = new Client[clientSize];
-		int candidateIdx = 0;
+		// 容量最小的provider中随机选一个，逐个替换不需要记录全部候选
+		Client selected = null;
+		int candidates = 0;
 		for (int i = 0; i < clientSize; i++) {
 			Client client = clients.get(i);
 			float capacity = ServiceStatisticsHolder.getCapacity(client.getAddress());
@@ -51,13 +52,13 @@ public class WeightedAutoawareLoadBalance extends AbstractLoadBalance {
 			}
 			if (capacity < minCapacity) {
 				minCapacity = capacity;
-				candidateIdx = 0;
-				candidates[candidateIdx++] = client;
-			} else if (capacity == minCapacity) {
-				candidates[candidateIdx++] = client;
+				selected = client;
+				candidates = 1;
+			} else if (capacity == minCapacity && random.nextInt(++candidates) == 0) {
+				selected = client;
 			}
 		}
-		Client client = candidateIdx == 1 ? candidates[0] : candidates[random.nextInt(candidateIdx)];
+		Client client = selected;
 		if (logger.isDebugEnabled()) {
 			logger.debug("select address:" + client.getAddress());
 		}
@@ -1,122 +1,131 @@
 package com.dianping.pigeon.remoting.invoker.route.statistics;
 
 import java.io.Serializable;
-import java.util.Calendar;
-import java.util.Collections;
 import java.util.Map;
-import java.util.Set;
+import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
-import org.apache.logging.log4j.Logger;
-
-import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.util.TimeWindowCounter;
 
 @SuppressWarnings("serial")
 public class CapacityBucket implements Serializable {
-	private static final Logger logger = LoggerLoader.getLogger(CapacityBucket.class);
+
+	// 响应时间移动平均的衰减时间
+	private static final long latencyDecayNanos = TimeUnit.MILLISECONDS.toNanos(ConfigManagerLoader.getConfigManager()
+			.getLongValue("pigeon.loadbalance.latency.decay.millis", 10000));
+
+	// 容量用定点数保存，避免浮点数累加加锁
+	private static final long CAPACITY_SCALE = 1L << 20;
 
 	private String address;
-	private volatile float capacity = 0f;
-	private Set<Long> requestSeqs = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
-	// 桶中某些容量因某些意外因素导致没有释放, 可以用这个进行Check
-	public Map<Long, Object[]> requestSeqDetails = new ConcurrentHashMap<Long, Object[]>();
+
+	private final AtomicLong capacity = new AtomicLong();
+
+	// 未返回的请求：高32位为过期时间（秒），低32位为占用的容量（定点数）。
+	// 保证每个请求只释放一次容量，桶中某些容量因意外因素没有释放时由CapacityChecker按过期时间清理
+	private final Map<Long, Long> requestSeqs = new ConcurrentHashMap<Long, Long>();
 
 	private AtomicLong totalRequest = new AtomicLong(); // total request
 														// send
 	private AtomicLong onewayRequest = new AtomicLong(); // total oneway
 															// request send
 
-	private Map<Integer, AtomicInteger> totalRequestInSecond = new ConcurrentHashMap<Integer, AtomicInteger>();
+	private final TimeWindowCounter totalRequestInSecond = new TimeWindowCounter(1000, 60);
+
+	private AtomicInteger outstanding = new AtomicInteger();
 
-	private Lock capacityLock = new ReentrantLock();
+	private volatile double latency;
+
+	private volatile long latencyTime;
 
 	public CapacityBucket(String address) {
 		this.address = address;
-		preFillData(); // 为了更优地计算每秒请求数, 使用预填数据代替同步数据结构
 	}
 
 	public void flowIn(InvocationRequest request) {
-		Calendar now = Calendar.getInstance();
+		long now = System.currentTimeMillis();
 		totalRequest.incrementAndGet();
 		if (request.getCallType() == Constants.CALLTYPE_NOREPLY) {
 			onewayRequest.incrementAndGet();
 		}
-		incrementTotalRequestInSecond(now.get(Calendar.SECOND));
+		totalRequestInSecond.increment(now);
 		if (request.getCallType() == Constants.CALLTYPE_REPLY) {
 			Float flow = (Float) request.getAttachment(Constants.REQ_ATTACH_FLOW);
-			if (flow != null) {
-				refreshCapacity(flow);
+			long flowValue = flow != null ? Math.round(flow * CAPACITY_SCALE) : 0;
+			long expireSeconds = (now + 2L * request.getTimeout()) / 1000;
+			if (requestSeqs.put(request.getSequence(), (expireSeconds << 32) | flowValue) == null) {
+				outstanding.incrementAndGet();
+				capacity.addAndGet(flowValue);
 			}
-			this.requestSeqs.add(request.getSequence());
-			this.requestSeqDetails.put(request.getSequence(),
-					new Object[] { now.getTimeInMillis(), request.getTimeout(), flow });
 		}
 	}
 
 	public void flowOut(InvocationRequest request) {
 		if (request.getCallType() == Constants.CALLTYPE_REPLY) {
-			flowOut(request.getSequence(), (Float) request.getAttachment(Constants.REQ_ATTACH_FLOW));
+			flowOut(request.getSequence());
 		}
 	}
 
-	public void flowOut(long requestSeq, Float flow) {
-		if (requestSeqs.remove(requestSeq) && flow != null) {
-			refreshCapacity(-1 * flow);
+	public void flowOut(long requestSeq) {
+		Long value = requestSeqs.remove(requestSeq);
+		if (value != null) {
+			release(value);
 		}
-		requestSeqDetails.remove(requestSeq);
 	}
 
-	public int getLastSecondRequest() {
-		int lastSecond = Calendar.getInstance().get(Calendar.SECOND) - 1;
-		lastSecond = lastSecond >= 0 ? lastSecond : lastSecond + 60;
-		AtomicInteger counter = totalRequestInSecond.get(lastSecond);
-		return counter != null ? counter.intValue() : 0;
+	private void release(long value) {
+		outstanding.decrementAndGet();
+		capacity.addAndGet(-(value & 0xFFFFFFFFL));
 	}
 
-	private void incrementTotalRequestInSecond(int second) {
-		AtomicInteger counter = totalRequestInSecond.get(second);
-		if (counter != null) {
-			counter.incrementAndGet();
-		} else {
-			logger.error("Impossible case happended, second[" + second + "]'s request counter is null.");
+	/**
+	 * 释放超过2倍超时时间仍未返回的请求占用的容量
+	 */
+	public void removeExpiredRequests(long currentTimeMillis) {
+		long currentSeconds = currentTimeMillis / 1000;
+		for (Entry<Long, Long> entry : requestSeqs.entrySet()) {
+			long value = entry.getValue();
+			if ((value >>> 32) <= currentSeconds && requestSeqs.remove(entry.getKey(), value)) {
+				release(value);
+			}
 		}
 	}
 
+	public int getLastSecondRequest() {
+		return totalRequestInSecond.get(System.currentTimeMillis(), 1);
+	}
+
 	public void refreshCapacity(float addition) {
-		capacityLock.lock();
-		try {
-			this.capacity += addition;
-		} finally {
-			capacityLock.unlock();
-		}
+		capacity.addAndGet(Math.round(addition * CAPACITY_SCALE));
 	}
 
 	/**
-	 * 重置过期的每秒请求数计数器
+	 * 按时间衰减的指数移动平均，距上次记录越久新样本的权重越大。并发记录时可能丢失个别样本，对平均值影响可以忽略
 	 */
-	public void resetRequestInSecondCounter() {
-		int second = Calendar.getInstance().get(Calendar.SECOND);
-		int prev3Sec = second - 10;
-		for (int i = 1; i <= 30; i++) {
-			int prevSec = prev3Sec - i;
-			prevSec = prevSec >= 0 ? prevSec : prevSec + 60;
-			AtomicInteger counter = totalRequestInSecond.get(prevSec);
-			if (counter != null) {
-				counter.set(0);
-			}
+	public void recordLatency(long millis) {
+		long now = System.nanoTime();
+		long last = latencyTime;
+		if (last == 0) {
+			latency = millis;
+		} else {
+			double w = Math.exp(-(double) Math.max(now - last, 0) / latencyDecayNanos);
+			latency = latency * w + millis * (1 - w);
 		}
+		latencyTime = now == 0 ? 1 : now;
 	}
 
-	private void preFillData() {
-		for (int sec = 0; sec < 60; sec++) {
-			totalRequestInSecond.put(sec, new AtomicInteger());
-		}
+	public double getLatency() {
+		return latency;
+	}
+
+	public int getOutstanding() {
+		return outstanding.get();
 	}
 
 	public String getAddress() {
@@ -124,7 +133,7 @@ public class CapacityBucket implements Serializable {
 	}
 
 	public float getCapacity() {
-		return capacity;
+		return (float) capacity.get() / CAPACITY_SCALE;
 	}
 
 	public AtomicLong getTotalRequest() {
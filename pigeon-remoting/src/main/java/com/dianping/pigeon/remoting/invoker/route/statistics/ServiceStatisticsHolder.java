@@ -10,6 +10,7 @@ import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.invoker.route.balance.AutoawareLoadBalance;
+import com.dianping.pigeon.remoting.invoker.route.balance.LeastOutstandingLoadBalance;
 
 public final class ServiceStatisticsHolder {
 
@@ -66,11 +67,21 @@ public final class ServiceStatisticsHolder {
 		}
 	}
 
+	/**
+	 * 记录从发出请求到收到响应（或超时）的时间
+	 */
+	public static void recordLatency(InvocationRequest request, String fromServer) {
+		if (checkRequestNeedStat(request) && request.getCreateMillisTime() > 0) {
+			getCapacityBucket(fromServer).recordLatency(System.currentTimeMillis() - request.getCreateMillisTime());
+		}
+	}
+
 	public static boolean checkRequestNeedStat(InvocationRequest request) {
 		if (request == null || request.getMessageType() != Constants.MESSAGE_TYPE_SERVICE) {
 			return false;
 		}
-		if (AutoawareLoadBalance.NAME.equals(request.getLoadbalance())) {
+		if (AutoawareLoadBalance.NAME.equals(request.getLoadbalance())
+				|| LeastOutstandingLoadBalance.NAME.equals(request.getLoadbalance())) {
 			return true;
 		} else {
 			return statEnable;
@@ -0,0 +1,234 @@
+/**
+ * Dianping.com Inc.
+ * Copyright (c) 2003-2013 All Rights Reserved.
+ */
+package com.dianping.pigeon.remoting.invoker.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.dianping.pigeon.remoting.invoker.domain.RemoteInvocationBean;
+
+/**
+ * 以long类型的sequence为key的分段开放寻址表，保存所有未返回的远程调用。
+ * <p>
+ * 相比ConcurrentHashMap&lt;Long, RemoteInvocationBean&gt;，put/remove不需要装箱sequence，
+ * 也不需要为每个调用分配map节点，各段之间互不竞争。
+ */
+public class PendingInvocationTable {
+
+	private static final int DEFAULT_SEGMENT_CAPACITY = 64;
+
+	private static final float LOAD_FACTOR = 0.75f;
+
+	private final Segment[] segments;
+
+	private final int segmentMask;
+
+	private final int segmentShift;
+
+	public PendingInvocationTable() {
+		this(Runtime.getRuntime().availableProcessors() * 4);
+	}
+
+	public PendingInvocationTable(int concurrencyLevel) {
+		int segmentCount = 1;
+		int shift = 0;
+		while (segmentCount < concurrencyLevel) {
+			segmentCount <<= 1;
+			shift++;
+		}
+		this.segmentMask = segmentCount - 1;
+		this.segmentShift = 32 - shift;
+		this.segments = new Segment[segmentCount];
+		for (int i = 0; i < segmentCount; i++) {
+			segments[i] = new Segment(DEFAULT_SEGMENT_CAPACITY);
+		}
+	}
+
+	/**
+	 * 调用在删除时返回true
+	 */
+	public interface InvocationFilter {
+		boolean accept(long sequence, RemoteInvocationBean invocation);
+	}
+
+	private static int hash(long sequence) {
+		int h = (int) (sequence ^ (sequence >>> 32));
+		// 相邻的sequence需要打散到不同的段和槽位
+		return h * 0x9E3779B9;
+	}
+
+	private Segment segmentFor(int hash) {
+		return segments[(hash >>> segmentShift) & segmentMask];
+	}
+
+	public void put(long sequence, RemoteInvocationBean invocation) {
+		if (invocation == null) {
+			throw new IllegalArgumentException("invocation can not be null");
+		}
+		int hash = hash(sequence);
+		segmentFor(hash).put(sequence, hash, invocation);
+	}
+
+	public RemoteInvocationBean get(long sequence) {
+		int hash = hash(sequence);
+		return segmentFor(hash).get(sequence, hash);
+	}
+
+	public RemoteInvocationBean remove(long sequence) {
+		int hash = hash(sequence);
+		return segmentFor(hash).remove(sequence, hash);
+	}
+
+	/**
+	 * 删除所有被filter接受的调用并返回，filter在段锁内执行，不能有耗时操作
+	 */
+	public List<RemoteInvocationBean> removeIf(InvocationFilter filter) {
+		List<RemoteInvocationBean> removed = null;
+		for (Segment segment : segments) {
+			removed = segment.removeIf(filter, removed);
+		}
+		if (removed == null) {
+			removed = new ArrayList<RemoteInvocationBean>(0);
+		}
+		return removed;
+	}
+
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			size += segment.size();
+		}
+		return size;
+	}
+
+	private static final class Segment {
+
+		private long[] keys;
+
+		private RemoteInvocationBean[] values;
+
+		private int size;
+
+		private int threshold;
+
+		Segment(int capacity) {
+			init(capacity);
+		}
+
+		private void init(int capacity) {
+			keys = new long[capacity];
+			values = new RemoteInvocationBean[capacity];
+			threshold = (int) (capacity * LOAD_FACTOR);
+		}
+
+		synchronized void put(long key, int hash, RemoteInvocationBean value) {
+			int mask = keys.length - 1;
+			int i = hash & mask;
+			while (values[i] != null) {
+				if (keys[i] == key) {
+					values[i] = value;
+					return;
+				}
+				i = (i + 1) & mask;
+			}
+			keys[i] = key;
+			values[i] = value;
+			if (++size > threshold) {
+				rehash();
+			}
+		}
+
+		synchronized RemoteInvocationBean get(long key, int hash) {
+			int mask = keys.length - 1;
+			int i = hash & mask;
+			RemoteInvocationBean value;
+			while ((value = values[i]) != null) {
+				if (keys[i] == key) {
+					return value;
+				}
+				i = (i + 1) & mask;
+			}
+			return null;
+		}
+
+		synchronized RemoteInvocationBean remove(long key, int hash) {
+			int mask = keys.length - 1;
+			int i = hash & mask;
+			RemoteInvocationBean value;
+			while ((value = values[i]) != null) {
+				if (keys[i] == key) {
+					delete(i);
+					return value;
+				}
+				i = (i + 1) & mask;
+			}
+			return null;
+		}
+
+		synchronized List<RemoteInvocationBean> removeIf(InvocationFilter filter, List<RemoteInvocationBean> removed) {
+			int i = 0;
+			while (i < values.length) {
+				RemoteInvocationBean value = values[i];
+				if (value != null && filter.accept(keys[i], value)) {
+					if (removed == null) {
+						removed = new ArrayList<RemoteInvocationBean>();
+					}
+					removed.add(value);
+					// 删除后后继元素可能被移动到当前槽位，需要重新检查
+					delete(i);
+				} else {
+					i++;
+				}
+			}
+			return removed;
+		}
+
+		synchronized int size() {
+			return size;
+		}
+
+		/**
+		 * 线性探测的后移删除，不留墓碑
+		 */
+		private void delete(int i) {
+			int mask = keys.length - 1;
+			int hole = i;
+			int j = i;
+			while (true) {
+				j = (j + 1) & mask;
+				if (values[j] == null) {
+					break;
+				}
+				int home = hash(keys[j]) & mask;
+				// home不在(hole, j]区间内时，j上的元素可以移动到hole
+				if ((j > hole && (home <= hole || home > j)) || (j < hole && (home <= hole && home > j))) {
+					keys[hole] = keys[j];
+					values[hole] = values[j];
+					hole = j;
+				}
+			}
+			values[hole] = null;
+			keys[hole] = 0;
+			size--;
+		}
+
+		private void rehash() {
+			long[] oldKeys = keys;
+			RemoteInvocationBean[] oldValues = values;
+			init(oldKeys.length << 1);
+			int mask = keys.length - 1;
+			for (int k = 0; k < oldKeys.length; k++) {
+				if (oldValues[k] != null) {
+					int i = hash(oldKeys[k]) & mask;
+					while (values[i] != null) {
+						i = (i + 1) & mask;
+					}
+					keys[i] = oldKeys[k];
+					values[i] = oldValues[k];
+				}
+			}
+		}
+	}
+}
@@ -6,47 +6,109 @@ package com.dianping.pigeon.remoting.invoker.service;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 
+import org.apache.commons.lang.StringUtils;
+
+import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.log.LoggerLoader;
 import org.apache.logging.log4j.Logger;
 
+import com.dianping.pigeon.remoting.common.codec.compress.CompressPolicy;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.common.exception.InvalidParameterException;
 import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
 import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.callback.DefaultListenableFuture;
+import com.dianping.pigeon.remoting.invoker.callback.ListenableFuture;
+import com.dianping.pigeon.remoting.invoker.callback.ServiceFutureFactory;
 import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
+import com.dianping.pigeon.remoting.invoker.config.InvokerMethodConfig;
 import com.dianping.pigeon.remoting.invoker.domain.DefaultInvokerContext;
 import com.dianping.pigeon.remoting.invoker.util.InvokerUtils;
+import com.dianping.pigeon.remoting.invoker.util.InvokerUtils.FutureResponse;
 
 public class ServiceInvocationProxy implements InvocationHandler {
 
 	private static final Logger logger = LoggerLoader.getLogger(ServiceInvocationProxy.class);
+
+	// 返回java.util.concurrent.Future的方法默认仍按InvokerConfig的callType调用，与之前的行为一致
+	private static final boolean isPlainFutureAsync = ConfigManagerLoader.getConfigManager().getBooleanValue(
+			"pigeon.invoker.future.plain.async", false);
+
 	private InvokerConfig<?> invokerConfig;
 	private ServiceInvocationHandler handler;
 
+	// 每个方法第一次调用时解析，之后的调用不再比较方法名或复制参数类型数组
+	private final ConcurrentHashMap<Method, InvokerMethod> invokerMethods = new ConcurrentHashMap<Method, InvokerMethod>();
+
 	public ServiceInvocationProxy(InvokerConfig<?> invokerConfig, ServiceInvocationHandler handler) {
 		this.invokerConfig = invokerConfig;
 		this.handler = handler;
 	}
 
 	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-		String methodName = method.getName();
-		Class<?>[] parameterTypes = method.getParameterTypes();
-		if (method.getDeclaringClass() == Object.class) {
-			return method.invoke(handler, args);
+		InvokerMethod invokerMethod = invokerMethods.get(method);
+		if (invokerMethod == null) {
+			invokerMethod = new InvokerMethod(method, invokerConfig);
+			invokerMethods.putIfAbsent(method, invokerMethod);
 		}
-		if ("toString".equals(methodName) && parameterTypes.length == 0) {
+		switch (invokerMethod.kind) {
+		case InvokerMethod.OBJECT:
+			return method.invoke(handler, args);
+		case InvokerMethod.TO_STRING:
 			return handler.toString();
-		}
-		if ("hashCode".equals(methodName) && parameterTypes.length == 0) {
+		case InvokerMethod.HASH_CODE:
 			return handler.hashCode();
-		}
-		if ("equals".equals(methodName) && parameterTypes.length == 1) {
+		case InvokerMethod.EQUALS:
 			return handler.equals(args[0]);
+		case InvokerMethod.FUTURE:
+			return invokeAsync(invokerMethod, args);
+		default:
+			DefaultInvokerContext invokerContext = new DefaultInvokerContext(invokerConfig, invokerMethod.name,
+					invokerMethod.parameterTypes, args);
+			if (invokerMethod.callType != null) {
+				invokerContext.setCallType(invokerMethod.callType);
+			}
+			invokerContext.setCompressPolicy(invokerMethod.compressPolicy);
+			InvocationResponse response = handler.handle(invokerContext);
+			Object responseReturn = response.getResponse();
+			if (responseReturn == null) {
+				return invokerMethod.defaultReturn;
+			}
+			return extractResult(response, invokerMethod.returnType);
+		}
+	}
+
+	/**
+	 * 返回future的方法固定按future方式调用，不依赖InvokerConfig的callType和ServiceFutureFactory的线程变量，
+	 * 同一个InvokerConfig上同步和异步方法可以混用。调用失败时返回失败的future而不是直接抛出异常
+	 */
+	private Object invokeAsync(InvokerMethod invokerMethod, Object[] args) {
+		DefaultInvokerContext invokerContext = new DefaultInvokerContext(invokerConfig, invokerMethod.name,
+				invokerMethod.parameterTypes, args);
+		invokerContext.setCallType(Constants.CALL_FUTURE);
+		invokerContext.setCompressPolicy(invokerMethod.compressPolicy);
+		try {
+			InvocationResponse response = handler.handle(invokerContext);
+			if (response instanceof FutureResponse) {
+				Future<?> future = ((FutureResponse) response).getServiceFuture();
+				if (future instanceof ListenableFuture) {
+					return future;
+				}
+			}
+			DefaultListenableFuture<Object> future = new DefaultListenableFuture<Object>();
+			future.set(extractResult(response, Object.class));
+			return future;
+		} catch (Throwable e) {
+			DefaultListenableFuture<Object> future = new DefaultListenableFuture<Object>();
+			future.setFailure(e);
+			return future;
+		} finally {
+			ServiceFutureFactory.remove();
 		}
-		return extractResult(
-				handler.handle(new DefaultInvokerContext(invokerConfig, methodName, parameterTypes, args)),
-				method.getReturnType());
 	}
 
 	public Object extractResult(InvocationResponse response, Class<?> returnType) throws Throwable {
@@ -65,7 +127,7 @@ public class ServiceInvocationProxy implements InvocationHandler {
 		return getReturn(returnType);
 	}
 
-	private Object getReturn(Class<?> returnType) {
+	private static Object getReturn(Class<?> returnType) {
 		if (returnType == byte.class) {
 			return (byte) 0;
 		} else if (returnType == short.class) {
@@ -85,4 +147,66 @@ public class ServiceInvocationProxy implements InvocationHandler {
 		}
 	}
 
+	/**
+	 * 声明返回ListenableFuture的方法按异步方式调用，返回Future的方法需要打开pigeon.invoker.future.plain.async
+	 */
+	private static boolean isFutureType(Class<?> returnType) {
+		return returnType == ListenableFuture.class || (isPlainFutureAsync && returnType == Future.class);
+	}
+
+	/**
+	 * 接口方法调用时需要的信息，在方法第一次调用时确定
+	 */
+	private static final class InvokerMethod {
+
+		static final int REMOTE = 0;
+		static final int FUTURE = 1;
+		static final int OBJECT = 2;
+		static final int TO_STRING = 3;
+		static final int HASH_CODE = 4;
+		static final int EQUALS = 5;
+
+		final int kind;
+		final String name;
+		final Class<?>[] parameterTypes;
+		final Class<?> returnType;
+		final Object defaultReturn;
+		// InvokerMethodConfig中配置的调用方式，为null时使用InvokerConfig的
+		final String callType;
+		// InvokerMethodConfig中的压缩阈值优先于InvokerConfig的
+		final CompressPolicy compressPolicy;
+
+		InvokerMethod(Method method, InvokerConfig<?> invokerConfig) {
+			this.name = method.getName();
+			this.parameterTypes = method.getParameterTypes();
+			this.returnType = method.getReturnType();
+			this.defaultReturn = getReturn(returnType);
+			if (method.getDeclaringClass() == Object.class) {
+				this.kind = OBJECT;
+			} else if ("toString".equals(name) && parameterTypes.length == 0) {
+				this.kind = TO_STRING;
+			} else if ("hashCode".equals(name) && parameterTypes.length == 0) {
+				this.kind = HASH_CODE;
+			} else if ("equals".equals(name) && parameterTypes.length == 1) {
+				this.kind = EQUALS;
+			} else if (isFutureType(returnType)) {
+				this.kind = FUTURE;
+			} else {
+				this.kind = REMOTE;
+			}
+			Map<String, InvokerMethodConfig> methods = invokerConfig.getMethods();
+			InvokerMethodConfig methodConfig = methods == null ? null : methods.get(name);
+			if (methodConfig != null && !StringUtils.isBlank(methodConfig.getCallType())) {
+				this.callType = methodConfig.getCallType().trim();
+			} else {
+				this.callType = null;
+			}
+			int compressThreshold = invokerConfig.getCompressThreshold();
+			if (methodConfig != null && methodConfig.getCompressThreshold() >= 0) {
+				compressThreshold = methodConfig.getCompressThreshold();
+			}
+			this.compressPolicy = CompressPolicy.create(invokerConfig.getCompressType(), compressThreshold);
+		}
+	}
+
 }
@@ -4,9 +4,6 @@
  */
 package com.dianping.pigeon.remoting.invoker.service;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
 import org.apache.logging.log4j.Logger;
 
 import com.dianping.pigeon.config.ConfigManagerLoader;
@@ -14,6 +11,7 @@ import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.common.util.TimelineUtils;
+import com.dianping.pigeon.remoting.common.util.TimeoutUtils;
 import com.dianping.pigeon.remoting.invoker.Client;
 import com.dianping.pigeon.remoting.invoker.callback.Callback;
 import com.dianping.pigeon.remoting.invoker.domain.RemoteInvocationBean;
@@ -21,12 +19,14 @@ import com.dianping.pigeon.remoting.invoker.listener.InvocationTimeoutListener;
 import com.dianping.pigeon.remoting.invoker.route.statistics.ServiceStatisticsHolder;
 import com.dianping.pigeon.threadpool.DefaultThreadPool;
 import com.dianping.pigeon.threadpool.ThreadPool;
+import com.dianping.pigeon.timer.Timeout;
+import com.dianping.pigeon.timer.TimerTask;
 import com.dianping.pigeon.util.ThreadPoolUtils;
 
 public class ServiceInvocationRepository {
 
 	private static final Logger logger = LoggerLoader.getLogger(ServiceInvocationRepository.class);
-	private static Map<Long, RemoteInvocationBean> invocations = new ConcurrentHashMap<Long, RemoteInvocationBean>();
+	private static PendingInvocationTable invocations = new PendingInvocationTable();
 	private static ServiceInvocationRepository instance = new ServiceInvocationRepository();
 	private static ThreadPool invocatinTimeCheckThreadPool = new DefaultThreadPool(
 			"Pigeon-Client-Invoke-Timeout-Check-ThreadPool");
@@ -39,15 +39,25 @@ public class ServiceInvocationRepository {
 
 	public void put(long sequence, RemoteInvocationBean invocation) {
 		invocations.put(sequence, invocation);
+		invocation.timeout = TimeoutUtils.newTimeout(invocation.request, new InvocationExpireTask(sequence));
 	}
 
 	public void remove(long sequence) {
-		invocations.remove(sequence);
+		RemoteInvocationBean invocationBean = invocations.remove(sequence);
+		if (invocationBean != null) {
+			TimeoutUtils.cancel(invocationBean.timeout);
+		}
+	}
+
+	public int size() {
+		return invocations.size();
 	}
 
 	public void receiveResponse(InvocationResponse response) {
-		RemoteInvocationBean invocationBean = invocations.get(response.getSequence());
+		// 先从表中摘除，保证和超时检查之间只有一方会处理该调用
+		RemoteInvocationBean invocationBean = invocations.remove(response.getSequence());
 		if (invocationBean != null) {
+			TimeoutUtils.cancel(invocationBean.timeout);
 			if (logger.isDebugEnabled()) {
 				logger.debug("received response:" + response);
 			}
@@ -57,13 +67,14 @@ public class ServiceInvocationRepository {
 				if (callback != null) {
 					Client client = callback.getClient();
 					if (client != null) {
+						ServiceStatisticsHolder.recordLatency(request, client.getAddress());
 						ServiceStatisticsHolder.flowOut(request, client.getAddress());
+						client.requestCompleted(request);
 					}
 					callback.callback(response);
 					callback.run();
 				}
 			} finally {
-				invocations.remove(response.getSequence());
 				TimelineUtils.removeTimeline(response, TimelineUtils.getLocalIp());
 			}
 		} else if (logExpiredResponse) {
@@ -78,6 +89,32 @@ public class ServiceInvocationRepository {
 		invocatinTimeCheckThreadPool.execute(invocationTimeoutCheck);
 	}
 
+	/**
+	 * 时间轮到期时调用，超时处理(可能包含用户callback)交给超时检查线程池执行
+	 */
+	private class InvocationExpireTask implements TimerTask {
+
+		private final long sequence;
+
+		public InvocationExpireTask(long sequence) {
+			this.sequence = sequence;
+		}
+
+		@Override
+		public void run(Timeout timeout) throws Exception {
+			final RemoteInvocationBean invocationBean = invocations.remove(sequence);
+			if (invocationBean != null) {
+				invocatinTimeCheckThreadPool.execute(new Runnable() {
+
+					@Override
+					public void run() {
+						InvocationTimeoutListener.processTimeout(invocationBean);
+					}
+				});
+			}
+		}
+	}
+
 	public void destroy() throws Exception {
 		ThreadPoolUtils.shutdown(invocatinTimeCheckThreadPool.getExecutor());
 	}
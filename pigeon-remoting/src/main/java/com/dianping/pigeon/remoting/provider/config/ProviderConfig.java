@@ -11,6 +11,7 @@ import org.apache.commons.lang.builder.ToStringStyle;
 
 import com.dianping.pigeon.config.ConfigManager;
 import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.remoting.common.codec.compress.CompressorFactory;
 import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.common.util.ServiceConfigUtils;
 
@@ -28,6 +29,26 @@ public class ProviderConfig<T> {
 			Constants.DEFAULT_SERVICE_SHARED);
 	private Map<String, ProviderMethodConfig> methods;
 	private int actives = 0;
+	private boolean inline = false;
+	// 响应序列化后不小于该字节数、且调用端可以解压时压缩，0表示不压缩
+	private int compressThreshold = configManager.getIntValue(Constants.KEY_PROVIDER_COMPRESS_THRESHOLD, 0);
+	private String compressType = configManager.getStringValue(Constants.KEY_COMPRESS_TYPE, CompressorFactory.LZF);
+
+	public int getCompressThreshold() {
+		return compressThreshold;
+	}
+
+	public void setCompressThreshold(int compressThreshold) {
+		this.compressThreshold = compressThreshold;
+	}
+
+	public String getCompressType() {
+		return compressType;
+	}
+
+	public void setCompressType(String compressType) {
+		this.compressType = compressType;
+	}
 
 	public int getActives() {
 		return actives;
@@ -37,6 +58,14 @@ public class ProviderConfig<T> {
 		this.actives = actives;
 	}
 
+	public boolean isInline() {
+		return inline;
+	}
+
+	public void setInline(boolean inline) {
+		this.inline = inline;
+	}
+
 	public Map<String, ProviderMethodConfig> getMethods() {
 		return methods;
 	}
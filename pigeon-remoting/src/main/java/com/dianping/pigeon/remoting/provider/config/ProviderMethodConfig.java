@@ -13,6 +13,11 @@ public class ProviderMethodConfig {
 	private String name;
 
 	private int actives = 0;
+
+	private boolean inline = false;
+
+	// 小于0时使用服务的配置
+	private int compressThreshold = -1;
 	
 	public String getName() {
 		return name;
@@ -30,4 +35,20 @@ public class ProviderMethodConfig {
 		this.actives = actives;
 	}
 
+	public int getCompressThreshold() {
+		return compressThreshold;
+	}
+
+	public void setCompressThreshold(int compressThreshold) {
+		this.compressThreshold = compressThreshold;
+	}
+
+	public boolean isInline() {
+		return inline;
+	}
+
+	public void setInline(boolean inline) {
+		this.inline = inline;
+	}
+
 }
@@ -104,6 +104,15 @@ public class ServiceBeanDefinitionParser implements BeanDefinitionParser {
 		if (element.hasAttribute("actives")) {
 			properties.addPropertyValue("actives", resolveReference(element, "actives"));
 		}
+		if (element.hasAttribute("inline")) {
+			properties.addPropertyValue("inline", resolveReference(element, "inline"));
+		}
+		if (element.hasAttribute("compressThreshold")) {
+			properties.addPropertyValue("compressThreshold", resolveReference(element, "compressThreshold"));
+		}
+		if (element.hasAttribute("compressType")) {
+			properties.addPropertyValue("compressType", resolveReference(element, "compressType"));
+		}
 		if (element.hasChildNodes()) {
 			parseMethods(url, id, element.getChildNodes(), beanDefinition, parserContext);
 		}
@@ -133,6 +142,12 @@ public class ServiceBeanDefinitionParser implements BeanDefinitionParser {
 						value.substring(2, value.length() - 1));
 			}
 		}
+		if (element.hasAttribute("inline")) {
+			properties.addPropertyValue("inline", resolveReference(element, "inline"));
+		}
+		if (element.hasAttribute("compressThreshold")) {
+			properties.addPropertyValue("compressThreshold", resolveReference(element, "compressThreshold"));
+		}
 		parserContext.getRegistry().registerBeanDefinition(id, beanDefinition);
 
 		return beanDefinition;
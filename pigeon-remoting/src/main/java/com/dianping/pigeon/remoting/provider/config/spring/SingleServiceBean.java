@@ -39,6 +39,26 @@ public class SingleServiceBean {
 	private List<ProviderMethodConfig> methods;
 	private ClassLoader classLoader;
 	private int actives;
+	private boolean inline;
+	// 未配置时使用ProviderConfig的默认值
+	private Integer compressThreshold;
+	private String compressType;
+
+	public Integer getCompressThreshold() {
+		return compressThreshold;
+	}
+
+	public void setCompressThreshold(Integer compressThreshold) {
+		this.compressThreshold = compressThreshold;
+	}
+
+	public String getCompressType() {
+		return compressType;
+	}
+
+	public void setCompressType(String compressType) {
+		this.compressType = compressType;
+	}
 
 	public int getActives() {
 		return actives;
@@ -48,6 +68,14 @@ public class SingleServiceBean {
 		this.actives = actives;
 	}
 
+	public boolean isInline() {
+		return inline;
+	}
+
+	public void setInline(boolean inline) {
+		this.inline = inline;
+	}
+
 	public ClassLoader getClassLoader() {
 		return classLoader;
 	}
@@ -143,6 +171,13 @@ public class SingleServiceBean {
 			}
 		}
 		providerConfig.setActives(actives);
+		providerConfig.setInline(inline);
+		if (compressThreshold != null) {
+			providerConfig.setCompressThreshold(compressThreshold);
+		}
+		if (StringUtils.isNotBlank(compressType)) {
+			providerConfig.setCompressType(compressType);
+		}
 		if (serverBean != null) {
 			providerConfig.setServerConfig(serverBean.init());
 		}
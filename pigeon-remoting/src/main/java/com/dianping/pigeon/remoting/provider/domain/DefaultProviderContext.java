@@ -5,18 +5,27 @@
 package com.dianping.pigeon.remoting.provider.domain;
 
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import com.dianping.pigeon.remoting.common.domain.AbstractInvocationContext;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.invoker.callback.ListenableFuture;
 import com.dianping.pigeon.remoting.provider.service.method.ServiceMethod;
+import com.dianping.pigeon.timer.Timeout;
 
 public class DefaultProviderContext extends AbstractInvocationContext implements ProviderContext {
 
+	private static final AtomicIntegerFieldUpdater<DefaultProviderContext> ASYNC_COMPLETED_UPDATER = AtomicIntegerFieldUpdater
+			.newUpdater(DefaultProviderContext.class, "asyncCompleted");
+
 	private Throwable serviceError;
 	private ProviderChannel channel;
 	private Future<?> future;
 	private Thread thread;
 	private ServiceMethod serviceMethod;
+	private Timeout timeout;
+	private volatile ListenableFuture<?> asyncFuture;
+	private volatile int asyncCompleted;
 
 	public DefaultProviderContext(InvocationRequest request, ProviderChannel channel) {
 		super(request);
@@ -65,4 +74,29 @@ public class DefaultProviderContext extends AbstractInvocationContext implements
 		return serviceMethod;
 	}
 
+	@Override
+	public void setTimeout(Timeout timeout) {
+		this.timeout = timeout;
+	}
+
+	@Override
+	public Timeout getTimeout() {
+		return timeout;
+	}
+
+	@Override
+	public void setAsyncFuture(ListenableFuture<?> asyncFuture) {
+		this.asyncFuture = asyncFuture;
+	}
+
+	@Override
+	public ListenableFuture<?> getAsyncFuture() {
+		return asyncFuture;
+	}
+
+	@Override
+	public boolean tryCompleteAsync() {
+		return ASYNC_COMPLETED_UPDATER.compareAndSet(this, 0, 1);
+	}
+
 }
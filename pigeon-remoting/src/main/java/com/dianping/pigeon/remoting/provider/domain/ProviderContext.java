@@ -7,7 +7,9 @@ package com.dianping.pigeon.remoting.provider.domain;
 import java.util.concurrent.Future;
 
 import com.dianping.pigeon.remoting.common.domain.InvocationContext;
+import com.dianping.pigeon.remoting.invoker.callback.ListenableFuture;
 import com.dianping.pigeon.remoting.provider.service.method.ServiceMethod;
+import com.dianping.pigeon.timer.Timeout;
 
 public interface ProviderContext extends InvocationContext {
 
@@ -28,4 +30,20 @@ public interface ProviderContext extends InvocationContext {
 	void setServiceMethod(ServiceMethod serviceMethod);
 	
 	ServiceMethod getServiceMethod();
+
+	void setTimeout(Timeout timeout);
+
+	Timeout getTimeout();
+
+	/**
+	 * 服务方法返回的ListenableFuture，不为空时响应在future完成后写回
+	 */
+	void setAsyncFuture(ListenableFuture<?> asyncFuture);
+
+	ListenableFuture<?> getAsyncFuture();
+
+	/**
+	 * 异步响应只能写回一次，future完成和超时处理谁先调用谁写，之后的调用返回false
+	 */
+	boolean tryCompleteAsync();
 }
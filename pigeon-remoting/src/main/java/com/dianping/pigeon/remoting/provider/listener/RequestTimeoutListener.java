@@ -18,13 +18,15 @@ import com.dianping.pigeon.monitor.Monitor;
 import com.dianping.pigeon.monitor.MonitorLoader;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.util.Constants;
-import com.dianping.pigeon.remoting.common.util.TimelineUtils;
+import com.dianping.pigeon.remoting.common.util.TimeoutUtils;
+import com.dianping.pigeon.remoting.invoker.callback.ListenableFuture;
 import com.dianping.pigeon.remoting.provider.ProviderBootStrap;
 import com.dianping.pigeon.remoting.provider.Server;
 import com.dianping.pigeon.remoting.provider.domain.ProviderContext;
 import com.dianping.pigeon.remoting.provider.exception.ProcessTimeoutException;
 import com.dianping.pigeon.remoting.provider.exception.RequestAbortedException;
 import com.dianping.pigeon.remoting.provider.process.RequestProcessor;
+import com.dianping.pigeon.remoting.provider.util.ProviderHelper;
 
 public class RequestTimeoutListener implements Runnable {
 
@@ -32,6 +34,7 @@ public class RequestTimeoutListener implements Runnable {
 	private static final Monitor monitor = MonitorLoader.getMonitor();
 	private Map<InvocationRequest, ProviderContext> requestContextMap;
 	private RequestProcessor requestProcessor;
+	private volatile RequestProcessor processor;
 	private static ConfigManager configManager = ConfigManagerLoader.getConfigManager();
 	private long timeoutInterval = configManager.getLongValue(Constants.KEY_TIMEOUT_INTERVAL,
 			Constants.DEFAULT_TIMEOUT_INTERVAL);
@@ -74,75 +77,98 @@ public class RequestTimeoutListener implements Runnable {
 	}
 
 	public void run() {
-		Map<String, Server> servers = ProviderBootStrap.getServersMap();
-		RequestProcessor processor = null;
-		for (Server server : servers.values()) {
-			if (Constants.PROTOCOL_DEFAULT.equals(server.getProtocol())) {
-				processor = server.getRequestProcessor();
-			}
-		}
 		while (true) {
 			try {
 				Thread.sleep(timeoutInterval);
-				long currentTime = System.currentTimeMillis();
-				for (InvocationRequest request : requestContextMap.keySet()) {
-					if (request.getTimeout() > 0 && request.getCreateMillisTime() > 0
-							&& (request.getCreateMillisTime() + request.getTimeout()) < currentTime) {
-						try {
-							ProviderContext rc = requestContextMap.get(request);
-							if (rc != null) {
-								boolean cancelTimeout = defaultCancelTimeout;
-								if (interruptBusy && processor != null) {
-									cancelTimeout = processor.needCancelRequest(request);
-								}
-								if (request.getMessageType() == Constants.MESSAGE_TYPE_HEART) {
-									Future<?> future = rc.getFuture();
-									if (future != null && !future.isCancelled()) {
-										future.cancel(cancelTimeout);
-									}
+				if (!TimeoutUtils.isWheelEnabled()) {
+					long currentTime = System.currentTimeMillis();
+					for (InvocationRequest request : requestContextMap.keySet()) {
+						if (request.getTimeout() > 0 && request.getCreateMillisTime() > 0
+								&& (request.getCreateMillisTime() + request.getTimeout()) < currentTime) {
+							try {
+								ProviderContext rc = requestContextMap.get(request);
+								if (rc != null) {
+									processTimeout(request, rc);
 								} else {
-									StringBuilder msg = new StringBuilder();
-									msg.append("timeout while processing request, from:")
-											.append(rc.getChannel() == null ? "" : rc.getChannel().getRemoteAddress())
-											.append(", to:")
-											.append(ConfigManagerLoader.getConfigManager().getLocalIp())
-											.append(", process time:").append(System.currentTimeMillis())
-											.append("\r\nrequest:").append(request)
-											.append("\r\nprocessor stats:interrupt:").append(cancelTimeout).append(",")
-											.append(this.requestProcessor.getProcessorStatistics(request));
-									Exception te = null;
-									Thread t = rc.getThread();
-									if (t == null) {
-										msg.append("\r\nthe request has not been executed");
-										te = new RequestAbortedException(msg.toString());
-										te.setStackTrace(new StackTraceElement[] {});
-									} else {
-										te = new ProcessTimeoutException(msg.toString());
-										te.setStackTrace(t.getStackTrace());
-									}
-									logger.error(te.getMessage(), te);
-									if (monitor != null) {
-										monitor.logError(te);
-									}
-									Future<?> future = rc.getFuture();
-									if (future != null && !future.isCancelled()) {
-										if (future.cancel(cancelTimeout)) {
-										}
-									}
+									logger.error("provider context is null with request:" + request);
 								}
-							} else {
-								logger.error("provider context is null with request:" + request);
+							} finally {
+								requestContextMap.remove(request);
 							}
-						} finally {
-							requestContextMap.remove(request);
 						}
 					}
 				}
-				TimelineUtils.removeLegacyTimelines();
 			} catch (Throwable e) {
 				logger.warn(e.getMessage(), e);
 			}
 		}
 	}
 
+	private RequestProcessor getDefaultProcessor() {
+		if (processor == null) {
+			Map<String, Server> servers = ProviderBootStrap.getServersMap();
+			for (Server server : servers.values()) {
+				if (Constants.PROTOCOL_DEFAULT.equals(server.getProtocol())) {
+					processor = server.getRequestProcessor();
+				}
+			}
+		}
+		return processor;
+	}
+
+	/**
+	 * 处理已超时的请求，由轮询或时间轮到期时调用
+	 */
+	public void processTimeout(InvocationRequest request, ProviderContext rc) {
+		try {
+			RequestProcessor processor = getDefaultProcessor();
+			boolean cancelTimeout = defaultCancelTimeout;
+			if (interruptBusy && processor != null) {
+				cancelTimeout = processor.needCancelRequest(request);
+			}
+			if (request.getMessageType() == Constants.MESSAGE_TYPE_HEART) {
+				Future<?> future = rc.getFuture();
+				if (future != null && !future.isCancelled()) {
+					future.cancel(cancelTimeout);
+				}
+			} else {
+				StringBuilder msg = new StringBuilder();
+				msg.append("timeout while processing request, from:")
+						.append(rc.getChannel() == null ? "" : rc.getChannel().getRemoteAddress()).append(", to:")
+						.append(ConfigManagerLoader.getConfigManager().getLocalIp()).append(", process time:")
+						.append(System.currentTimeMillis()).append("\r\nrequest:").append(request)
+						.append("\r\nprocessor stats:interrupt:").append(cancelTimeout).append(",")
+						.append(this.requestProcessor.getProcessorStatistics(request));
+				Exception te = null;
+				Thread t = rc.getThread();
+				ListenableFuture<?> asyncFuture = rc.getAsyncFuture();
+				if (asyncFuture != null) {
+					msg.append("\r\nthe request is waiting for asynchronous result");
+					te = new ProcessTimeoutException(msg.toString());
+					te.setStackTrace(new StackTraceElement[] {});
+					// 不依赖future取消后能否通知回调，直接写回超时响应并结束统计，之后回调中的写回会被忽略
+					ProviderHelper.writeAsyncTimeoutResponse(rc, te);
+					asyncFuture.cancel(cancelTimeout);
+				} else if (t == null) {
+					msg.append("\r\nthe request has not been executed");
+					te = new RequestAbortedException(msg.toString());
+					te.setStackTrace(new StackTraceElement[] {});
+				} else {
+					te = new ProcessTimeoutException(msg.toString());
+					te.setStackTrace(t.getStackTrace());
+				}
+				logger.error(te.getMessage(), te);
+				if (monitor != null) {
+					monitor.logError(te);
+				}
+				Future<?> future = rc.getFuture();
+				if (future != null && !future.isCancelled()) {
+					future.cancel(cancelTimeout);
+				}
+			}
+		} catch (Throwable e) {
+			logger.warn(e.getMessage(), e);
+		}
+	}
+
 }
@@ -13,15 +13,25 @@ import org.apache.logging.log4j.Logger;
 import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.monitor.Monitor;
 import com.dianping.pigeon.monitor.MonitorLoader;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.exception.SerializationException;
 import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
+import com.dianping.pigeon.remoting.common.util.TimeoutUtils;
+import com.dianping.pigeon.remoting.invoker.callback.DefaultListenableFuture;
+import com.dianping.pigeon.remoting.invoker.callback.FutureListener;
+import com.dianping.pigeon.remoting.invoker.callback.ListenableFuture;
+import com.dianping.pigeon.remoting.provider.config.ProviderConfig;
 import com.dianping.pigeon.remoting.provider.domain.ProviderContext;
 import com.dianping.pigeon.remoting.provider.listener.RequestTimeoutListener;
 import com.dianping.pigeon.remoting.provider.process.threadpool.RequestThreadPoolProcessor;
 import com.dianping.pigeon.remoting.provider.util.ProviderUtils;
 import com.dianping.pigeon.threadpool.DefaultThreadPool;
 import com.dianping.pigeon.threadpool.ThreadPool;
+import com.dianping.pigeon.timer.Timeout;
+import com.dianping.pigeon.timer.TimerTask;
 import com.dianping.pigeon.util.ThreadPoolUtils;
 
 public abstract class AbstractRequestProcessor implements RequestProcessor {
@@ -34,6 +44,10 @@ public abstract class AbstractRequestProcessor implements RequestProcessor {
 
 	private static final Monitor monitor = MonitorLoader.getMonitor();
 
+	private RequestTimeoutListener requestTimeoutListener;
+
+	protected final InlineExecutionPolicy inlinePolicy = new InlineExecutionPolicy();
+
 	public AbstractRequestProcessor() {
 	}
 
@@ -43,7 +57,8 @@ public abstract class AbstractRequestProcessor implements RequestProcessor {
 	public abstract void doStart();
 
 	public void start() {
-		timeCheckThreadPool.execute(new RequestTimeoutListener(this, requestContextMap));
+		requestTimeoutListener = new RequestTimeoutListener(this, requestContextMap);
+		timeCheckThreadPool.execute(requestTimeoutListener);
 		doStart();
 	}
 
@@ -54,10 +69,123 @@ public abstract class AbstractRequestProcessor implements RequestProcessor {
 		doStop();
 	}
 
+	public abstract <T> void doAddService(ProviderConfig<T> providerConfig);
+
+	public <T> void addService(ProviderConfig<T> providerConfig) {
+		inlinePolicy.addService(providerConfig);
+		doAddService(providerConfig);
+	}
+
+	public abstract <T> void doRemoveService(ProviderConfig<T> providerConfig);
+
+	public <T> void removeService(ProviderConfig<T> providerConfig) {
+		inlinePolicy.removeService(providerConfig);
+		doRemoveService(providerConfig);
+	}
+
 	public Map<InvocationRequest, ProviderContext> getRequestContextMap() {
 		return requestContextMap;
 	}
 
+	protected void addRequestContext(final InvocationRequest request, ProviderContext providerContext) {
+		requestContextMap.put(request, providerContext);
+		providerContext.setTimeout(TimeoutUtils.newTimeout(request, new TimerTask() {
+
+			@Override
+			public void run(Timeout timeout) throws Exception {
+				final ProviderContext rc = requestContextMap.remove(request);
+				if (rc != null && requestTimeoutListener != null) {
+					timeCheckThreadPool.execute(new Runnable() {
+
+						@Override
+						public void run() {
+							requestTimeoutListener.processTimeout(request, rc);
+						}
+					});
+				}
+			}
+		}));
+	}
+
+	protected void removeRequestContext(InvocationRequest request) {
+		ProviderContext providerContext = requestContextMap.remove(request);
+		if (providerContext != null) {
+			TimeoutUtils.cancel(providerContext.getTimeout());
+		}
+	}
+
+	/**
+	 * 处理线程结束时调用，异步方法的请求在future完成后才从requestContextMap中移除，超时检查覆盖整个等待过程
+	 */
+	protected void releaseRequestContext(final InvocationRequest request, ProviderContext providerContext) {
+		ListenableFuture<?> asyncFuture = providerContext.getAsyncFuture();
+		if (asyncFuture == null) {
+			removeRequestContext(request);
+		} else {
+			asyncFuture.whenComplete(new FutureListener<Object>() {
+
+				@Override
+				public void onComplete(Object result, Throwable cause) {
+					removeRequestContext(request);
+				}
+			});
+		}
+	}
+
+	/**
+	 * 在当前线程中执行请求，统计的执行耗时用于判断方法是否可以在IO线程中直接执行
+	 */
+	protected InvocationResponse handleRequest(InvocationRequest request, ProviderContext providerContext)
+			throws Throwable {
+		ServiceInvocationHandler invocationHandler = ProviderProcessHandlerFactory.selectInvocationHandler(request
+				.getMessageType());
+		if (invocationHandler == null) {
+			return null;
+		}
+		if (!decodeBody(request, providerContext)) {
+			return null;
+		}
+		providerContext.setThread(Thread.currentThread());
+		long start = System.nanoTime();
+		try {
+			return invocationHandler.handle(providerContext);
+		} finally {
+			inlinePolicy.record(request, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * 只解析了请求头的请求在这里解码参数，被拒绝的请求不需要反序列化
+	 */
+	private boolean decodeBody(InvocationRequest request, ProviderContext providerContext) {
+		if (!(request instanceof DefaultRequest)) {
+			return true;
+		}
+		try {
+			((DefaultRequest) request).decodeBody();
+			return true;
+		} catch (Throwable e) {
+			String msg = "decode request body failed:" + request;
+			logger.error(msg, e);
+			if (request.getCallType() == Constants.CALLTYPE_REPLY) {
+				providerContext.getChannel().write(ProviderUtils.createThrowableResponse(request.getSequence(),
+						request.getSerialize(), new SerializationException(msg, e)));
+			}
+			return false;
+		}
+	}
+
+	private Future<InvocationResponse> processInline(InvocationRequest request, ProviderContext providerContext) {
+		DefaultListenableFuture<InvocationResponse> future = new DefaultListenableFuture<InvocationResponse>();
+		try {
+			future.set(handleRequest(request, providerContext));
+		} catch (Throwable t) {
+			logger.error("Process request failed with invocation handler, you should never be here.", t);
+			future.setFailure(t);
+		}
+		return future;
+	}
+
 	public Future<InvocationResponse> processRequest(final InvocationRequest request,
 			final ProviderContext providerContext) {
 		if (request.getCreateMillisTime() == 0) {
@@ -65,7 +193,11 @@ public abstract class AbstractRequestProcessor implements RequestProcessor {
 		}
 		Future<InvocationResponse> invocationResponse = null;
 		try {
-			invocationResponse = doProcessRequest(request, providerContext);
+			if (inlinePolicy.isInline(request)) {
+				invocationResponse = processInline(request, providerContext);
+			} else {
+				invocationResponse = doProcessRequest(request, providerContext);
+			}
 		} catch (Throwable e) {
 			String msg = "process request failed:" + request;
 			if (request.getCallType() == Constants.CALLTYPE_REPLY
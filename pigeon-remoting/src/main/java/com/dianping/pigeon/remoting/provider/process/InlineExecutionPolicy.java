@@ -0,0 +1,174 @@
+/**
+ * Dianping.com Inc.
+ * Copyright (c) 2003-2013 All Rights Reserved.
+ */
+package com.dianping.pigeon.remoting.provider.process;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.Logger;
+
+import com.dianping.pigeon.config.ConfigManager;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.common.util.InvocationUtils;
+import com.dianping.pigeon.remoting.provider.config.ProviderConfig;
+import com.dianping.pigeon.remoting.provider.config.ProviderMethodConfig;
+import com.dianping.pigeon.remoting.provider.service.method.ServiceMethodCache;
+import com.dianping.pigeon.remoting.provider.service.method.ServiceMethodFactory;
+import com.dianping.pigeon.util.CollectionUtils;
+
+/**
+ * 决定请求是否直接在IO线程中执行，省掉提交到业务线程池的开销。
+ *
+ * 心跳默认直接执行；配置了inline的服务/方法直接执行；开启自适应后，未配置的方法在业务线程池中执行时
+ * 统计耗时，p99低于阈值的方法自动改为直接执行。直接执行的方法p99超过阈值后退回业务线程池。
+ * p99按每个统计窗口内超过阈值的请求是否多于1%判断，不需要记录耗时分布。
+ *
+ * 直接执行的请求不经过服务/方法的线程池或信号量，配置了actives的服务/方法即使配置了inline也不会直接执行
+ */
+public class InlineExecutionPolicy {
+
+	private static final Logger logger = LoggerLoader.getLogger(InlineExecutionPolicy.class);
+
+	private static final ConfigManager configManager = ConfigManagerLoader.getConfigManager();
+
+	private static final boolean inlineHeartbeat = configManager.getBooleanValue("pigeon.provider.inline.heartbeat",
+			true);
+
+	private static final boolean adaptiveEnable = configManager.getBooleanValue(
+			"pigeon.provider.inline.adaptive.enable", false);
+
+	private static final long thresholdNanos = TimeUnit.MICROSECONDS.toNanos(configManager.getIntValue(
+			"pigeon.provider.inline.threshold.micros", 500));
+
+	private static final int windowSize = configManager.getIntValue("pigeon.provider.inline.window", 1000);
+
+	private final ConcurrentHashMap<String, MethodStats> methodStats = new ConcurrentHashMap<String, MethodStats>();
+
+	// 配置了actives的方法，不参与自适应
+	private final Set<String> limitedMethods = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	public boolean isInline(InvocationRequest request) {
+		int messageType = request.getMessageType();
+		if (messageType == Constants.MESSAGE_TYPE_HEART) {
+			return inlineHeartbeat;
+		}
+		if (messageType != Constants.MESSAGE_TYPE_SERVICE || methodStats.isEmpty()) {
+			return false;
+		}
+		MethodStats stats = methodStats.get(getKey(request));
+		return stats != null && stats.inline;
+	}
+
+	/**
+	 * 记录一次服务方法的执行耗时（不含排队时间）
+	 */
+	public void record(InvocationRequest request, long nanos) {
+		if (request.getMessageType() != Constants.MESSAGE_TYPE_SERVICE || (!adaptiveEnable && methodStats.isEmpty())) {
+			return;
+		}
+		String key = getKey(request);
+		MethodStats stats = methodStats.get(key);
+		if (stats == null) {
+			if (!adaptiveEnable || limitedMethods.contains(key)) {
+				return;
+			}
+			MethodStats newStats = new MethodStats(key, false);
+			stats = methodStats.putIfAbsent(key, newStats);
+			if (stats == null) {
+				stats = newStats;
+			}
+		}
+		stats.record(nanos);
+	}
+
+	public <T> void addService(ProviderConfig<T> providerConfig) {
+		String url = providerConfig.getUrl();
+		Map<String, ProviderMethodConfig> methodConfigs = providerConfig.getMethods();
+		// 与请求处理器一致，配置了方法时服务级别的actives不生效
+		boolean serviceLimited = providerConfig.getActives() > 0 && CollectionUtils.isEmpty(methodConfigs);
+		if (!providerConfig.isInline() && !serviceLimited && CollectionUtils.isEmpty(methodConfigs)) {
+			return;
+		}
+		ServiceMethodCache methodCache = ServiceMethodFactory.getServiceMethodCache(url);
+		for (String name : methodCache.getMethodMap().keySet()) {
+			ProviderMethodConfig methodConfig = methodConfigs == null ? null : methodConfigs.get(name);
+			String key = InvocationUtils.getMethodKey(url, name);
+			boolean inline = providerConfig.isInline() || (methodConfig != null && methodConfig.isInline());
+			if (serviceLimited || (methodConfig != null && methodConfig.getActives() > 0)) {
+				limitedMethods.add(key);
+				if (inline) {
+					logger.warn("inline is ignored for method with actives limit:" + key);
+				}
+			} else if (inline) {
+				methodStats.put(key, new MethodStats(key, true));
+			}
+		}
+	}
+
+	public <T> void removeService(ProviderConfig<T> providerConfig) {
+		String prefix = providerConfig.getUrl() + "#";
+		Set<String> toRemoveKeys = new HashSet<String>();
+		for (String key : methodStats.keySet()) {
+			if (key.startsWith(prefix)) {
+				toRemoveKeys.add(key);
+			}
+		}
+		for (String key : toRemoveKeys) {
+			methodStats.remove(key);
+		}
+		for (String key : limitedMethods) {
+			if (key.startsWith(prefix)) {
+				limitedMethods.remove(key);
+			}
+		}
+	}
+
+	// 在IO线程中调用，使用缓存的key，不再每个请求拼接字符串
+	private String getKey(InvocationRequest request) {
+		return InvocationUtils.getMethodKey(request.getServiceName(), request.getMethodName());
+	}
+
+	static final class MethodStats {
+
+		private final String key;
+
+		volatile boolean inline;
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		private final AtomicInteger slowCount = new AtomicInteger();
+
+		MethodStats(String key, boolean inline) {
+			this.key = key;
+			this.inline = inline;
+		}
+
+		void record(long nanos) {
+			if (nanos > thresholdNanos) {
+				slowCount.incrementAndGet();
+			}
+			int n = count.incrementAndGet();
+			if (n >= windowSize && count.compareAndSet(n, 0)) {
+				int slow = slowCount.getAndSet(0);
+				boolean fast = slow * 100 <= n;
+				if (inline != fast) {
+					inline = fast;
+					if (logger.isInfoEnabled()) {
+						logger.info("method " + key + (fast ? " runs on io thread" : " moved back to request pool")
+								+ ", slow requests:" + slow + "/" + n);
+					}
+				}
+			}
+		}
+	}
+}
@@ -4,7 +4,6 @@
  */
 package com.dianping.pigeon.remoting.provider.process;
 
-import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -14,8 +13,7 @@ import com.dianping.pigeon.config.ConfigManager;
 import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.remoting.common.domain.Disposable;
-import com.dianping.pigeon.remoting.common.domain.InvocationContext;
-import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.process.ServiceInvocationChain;
 import com.dianping.pigeon.remoting.common.process.ServiceInvocationFilter;
 import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
 import com.dianping.pigeon.remoting.common.util.Constants;
@@ -80,23 +78,9 @@ public final class ProviderProcessHandlerFactory {
 	}
 
 	@SuppressWarnings({ "rawtypes" })
-	private static <K, V extends ServiceInvocationFilter> ServiceInvocationHandler createInvocationHandler(
+	private static <V extends ServiceInvocationFilter> ServiceInvocationHandler createInvocationHandler(
 			List<V> internalFilters) {
-		ServiceInvocationHandler last = null;
-		List<V> filterList = new ArrayList<V>();
-		filterList.addAll(internalFilters);
-		for (int i = filterList.size() - 1; i >= 0; i--) {
-			final V filter = filterList.get(i);
-			final ServiceInvocationHandler next = last;
-			last = new ServiceInvocationHandler() {
-				@SuppressWarnings("unchecked")
-				@Override
-				public InvocationResponse handle(InvocationContext invocationContext) throws Throwable {
-					return filter.invoke(next, invocationContext);
-				}
-			};
-		}
-		return last;
+		return ServiceInvocationChain.build(internalFilters);
 	}
 
 	private static void registerBizProcessFilter(ServiceInvocationFilter<ProviderContext> filter) {
@@ -7,6 +7,7 @@ package com.dianping.pigeon.remoting.provider.process;
 import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.provider.config.ServerConfig;
+import com.dianping.pigeon.remoting.provider.process.semaphore.RequestSemaphoreProcessor;
 import com.dianping.pigeon.remoting.provider.process.threadpool.RequestThreadPoolProcessor;
 
 public class RequestProcessorFactory {
@@ -15,6 +16,9 @@ public class RequestProcessorFactory {
 			"pigeon.provider.processmodel", Constants.PROCESS_MODEL_THREAD);
 
 	public static RequestProcessor selectProcessor(ServerConfig serverConfig) {
+		if (Constants.PROCESS_MODEL_SEMAPHORE.equals(PROCESS_TYPE)) {
+			return new RequestSemaphoreProcessor(serverConfig);
+		}
 		return new RequestThreadPoolProcessor(serverConfig);
 	}
 }
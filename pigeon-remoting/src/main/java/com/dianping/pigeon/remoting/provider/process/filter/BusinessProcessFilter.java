@@ -17,6 +17,8 @@ import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
 import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.common.util.TimelineUtils;
 import com.dianping.pigeon.remoting.common.util.TimelineUtils.Phase;
+import com.dianping.pigeon.remoting.invoker.callback.FutureListener;
+import com.dianping.pigeon.remoting.invoker.callback.ListenableFuture;
 import com.dianping.pigeon.remoting.provider.domain.ProviderContext;
 import com.dianping.pigeon.remoting.provider.exception.RequestAbortedException;
 import com.dianping.pigeon.remoting.provider.process.ProviderProcessInterceptor;
@@ -55,6 +57,7 @@ public class BusinessProcessFilter implements ServiceInvocationFilter<ProviderCo
 			ServiceMethod method = invocationContext.getServiceMethod();
 			if (method == null) {
 				method = ServiceMethodFactory.getMethod(request);
+				invocationContext.setServiceMethod(method);
 			}
 			if (Constants.REPLY_MANUAL && request.getCallType() == Constants.CALLTYPE_REPLY) {
 				request.setCallType(Constants.CALLTYPE_NOREPLY);
@@ -70,7 +73,21 @@ public class BusinessProcessFilter implements ServiceInvocationFilter<ProviderCo
 			}
 			// TIMELINE_biz_end
 			if (request.getCallType() == Constants.CALLTYPE_REPLY) {
-				response = ProviderUtils.createSuccessResponse(request, returnObj);
+				if (returnObj instanceof ListenableFuture) {
+					// 异步方法：释放当前线程，future完成后再写回响应
+					final ProviderContext providerContext = invocationContext;
+					ListenableFuture<?> asyncFuture = (ListenableFuture<?>) returnObj;
+					providerContext.setAsyncFuture(asyncFuture);
+					asyncFuture.whenComplete(new FutureListener<Object>() {
+
+						@Override
+						public void onComplete(Object result, Throwable cause) {
+							ProviderHelper.writeAsyncResponse(providerContext, result, cause);
+						}
+					});
+				} else {
+					response = ProviderUtils.createSuccessResponse(request, returnObj, method);
+				}
 			}
 			return response;
 		}
@@ -98,7 +98,7 @@ public class GatewayProcessFilter implements ServiceInvocationFilter<ProviderCon
 			response = handler.handle(invocationContext);
 			return response;
 		} finally {
-			if (!Constants.REPLY_MANUAL) {
+			if (!Constants.REPLY_MANUAL && invocationContext.getAsyncFuture() == null) {
 				ProviderStatisticsHolder.flowOut(request);
 			}
 		}
@@ -23,10 +23,9 @@ import com.dianping.pigeon.remoting.common.process.ServiceInvocationFilter;
 import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
 import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.common.util.InvocationUtils;
-import com.dianping.pigeon.remoting.common.util.TimelineUtils;
-import com.dianping.pigeon.remoting.common.util.TimelineUtils.Timeline;
 import com.dianping.pigeon.remoting.provider.domain.ProviderChannel;
 import com.dianping.pigeon.remoting.provider.domain.ProviderContext;
+import com.dianping.pigeon.remoting.provider.process.statistics.ProviderStatisticsHolder;
 import com.dianping.pigeon.remoting.provider.service.method.ServiceMethod;
 import com.dianping.pigeon.remoting.provider.service.method.ServiceMethodFactory;
 import com.dianping.pigeon.util.ContextUtils;
@@ -87,6 +86,7 @@ public class MonitorProcessFilter implements ServiceInvocationFilter<ProviderCon
 			}
 		}
 		InvocationResponse response = null;
+		long start = System.nanoTime();
 		try {
 			try {
 				response = handler.handle(invocationContext);
@@ -128,15 +128,12 @@ public class MonitorProcessFilter implements ServiceInvocationFilter<ProviderCon
 				}
 			}
 		} finally {
+			ProviderStatisticsHolder.recordLatency(request, System.nanoTime() - start);
 			if (invocationContext.getServiceError() != null) {
 				monitor.logError(invocationContext.getServiceError());
 			}
 			if (transaction != null) {
 				try {
-					if (TimelineUtils.isEnabled()) {
-						Timeline timeline = TimelineUtils.tryRemoveTimeline(request, TimelineUtils.getRemoteIp());
-						transaction.addData("Timeline", timeline);
-					}
 					transaction.complete();
 					if (isAccessLogEnabled) {
 						accessLogger.info(new StringBuilder().append(request.getApp()).append("@").append(fromIp)
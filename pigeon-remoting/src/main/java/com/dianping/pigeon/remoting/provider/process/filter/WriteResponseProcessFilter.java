@@ -33,6 +33,10 @@ public class WriteResponseProcessFilter implements ServiceInvocationFilter<Provi
 			ProviderChannel channel = invocationContext.getChannel();
 			InvocationRequest request = invocationContext.getRequest();
 			InvocationResponse response = handler.handle(invocationContext);
+			if (invocationContext.getAsyncFuture() != null) {
+				// 异步方法的响应由ProviderHelper.writeAsyncResponse写回
+				return response;
+			}
 			if (request.getCallType() == Constants.CALLTYPE_REPLY) {
 				channel.write(response);
 			}
@@ -0,0 +1,300 @@
+/**
+ * Dianping.com Inc.
+ * Copyright (c) 2003-2013 All Rights Reserved.
+ */
+package com.dianping.pigeon.remoting.provider.process.semaphore;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.apache.logging.log4j.Logger;
+
+import com.dianping.pigeon.config.ConfigChangeListener;
+import com.dianping.pigeon.config.ConfigManagerLoader;
+import com.dianping.pigeon.log.LoggerLoader;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.exception.RejectedException;
+import com.dianping.pigeon.remoting.common.util.InvocationUtils;
+import com.dianping.pigeon.remoting.invoker.callback.FutureListener;
+import com.dianping.pigeon.remoting.invoker.callback.ListenableFuture;
+import com.dianping.pigeon.remoting.provider.config.ProviderConfig;
+import com.dianping.pigeon.remoting.provider.config.ProviderMethodConfig;
+import com.dianping.pigeon.remoting.provider.config.ServerConfig;
+import com.dianping.pigeon.remoting.provider.domain.ProviderContext;
+import com.dianping.pigeon.remoting.provider.process.AbstractRequestProcessor;
+import com.dianping.pigeon.remoting.provider.process.threadpool.RequestThreadPoolProcessor;
+import com.dianping.pigeon.remoting.provider.service.method.ServiceMethodCache;
+import com.dianping.pigeon.remoting.provider.service.method.ServiceMethodFactory;
+import com.dianping.pigeon.threadpool.DefaultThreadPool;
+import com.dianping.pigeon.threadpool.ThreadPool;
+import com.dianping.pigeon.util.CollectionUtils;
+
+/**
+ * 所有请求共用一个线程池，服务和方法级别的actives用信号量限制，不再为每个服务/方法单独创建线程池。
+ *
+ * 配置pigeon.provider.processmodel=semaphore启用。超过actives的请求直接拒绝，
+ * 返回ListenableFuture的异步方法在future完成后才释放信号量
+ */
+public class RequestSemaphoreProcessor extends AbstractRequestProcessor {
+
+	private static final Logger logger = LoggerLoader.getLogger(RequestSemaphoreProcessor.class);
+
+	private static final String poolStrategy = ConfigManagerLoader.getConfigManager().getStringValue(
+			"pigeon.provider.pool.strategy", "shared");
+
+	private static int DEFAULT_METHOD_ACTIVES = ConfigManagerLoader.getConfigManager().getIntValue(
+			"pigeon.provider.pool.actives", 60);
+
+	private static float cancelRatio = ConfigManagerLoader.getConfigManager().getFloatValue(
+			"pigeon.timeout.cancelratio", 1f);
+
+	private final ThreadPool requestProcessThreadPool;
+
+	private final ConcurrentHashMap<String, ActivesSemaphore> serviceSemaphores = new ConcurrentHashMap<String, ActivesSemaphore>();
+
+	private final ConcurrentHashMap<String, ActivesSemaphore> methodSemaphores = new ConcurrentHashMap<String, ActivesSemaphore>();
+
+	public RequestSemaphoreProcessor(ServerConfig serverConfig) {
+		ConfigManagerLoader.getConfigManager().registerConfigChangeListener(new InnerConfigChangeListener());
+		requestProcessThreadPool = new DefaultThreadPool("Pigeon-Server-Request-Processor-"
+				+ serverConfig.getProtocol() + "-" + serverConfig.getActualPort(), serverConfig.getCorePoolSize(),
+				serverConfig.getMaxPoolSize(), new LinkedBlockingQueue<Runnable>(serverConfig.getWorkQueueSize()));
+	}
+
+	@Override
+	public void doStart() {
+	}
+
+	@Override
+	public void doStop() {
+	}
+
+	@Override
+	public Future<InvocationResponse> doProcessRequest(final InvocationRequest request,
+			final ProviderContext providerContext) {
+		final ActivesSemaphore semaphore = selectSemaphore(request);
+		if (semaphore != null && !semaphore.tryAcquire()) {
+			throw new RejectedException(getProcessorStatistics(request));
+		}
+		addRequestContext(request, providerContext);
+		Callable<InvocationResponse> requestExecutor = new Callable<InvocationResponse>() {
+
+			@Override
+			public InvocationResponse call() throws Exception {
+				try {
+					return handleRequest(request, providerContext);
+				} catch (Throwable t) {
+					logger.error("Process request failed with invocation handler, you should never be here.", t);
+				} finally {
+					releaseRequestContext(request, providerContext);
+					releaseSemaphore(semaphore, providerContext);
+				}
+				return null;
+			}
+		};
+		try {
+			return requestProcessThreadPool.submit(requestExecutor);
+		} catch (RejectedExecutionException e) {
+			removeRequestContext(request);
+			if (semaphore != null) {
+				semaphore.release();
+			}
+			throw new RejectedException(getProcessorStatistics(request), e);
+		}
+	}
+
+	private void releaseSemaphore(final ActivesSemaphore semaphore, ProviderContext providerContext) {
+		if (semaphore == null) {
+			return;
+		}
+		ListenableFuture<?> asyncFuture = providerContext.getAsyncFuture();
+		if (asyncFuture == null) {
+			semaphore.release();
+		} else {
+			asyncFuture.whenComplete(new FutureListener<Object>() {
+
+				@Override
+				public void onComplete(Object result, Throwable cause) {
+					semaphore.release();
+				}
+			});
+		}
+	}
+
+	private ActivesSemaphore selectSemaphore(InvocationRequest request) {
+		ActivesSemaphore semaphore = null;
+		if (!methodSemaphores.isEmpty()) {
+			semaphore = methodSemaphores.get(InvocationUtils.getMethodKey(request.getServiceName(),
+					request.getMethodName()));
+		}
+		if (semaphore == null && !serviceSemaphores.isEmpty()) {
+			semaphore = serviceSemaphores.get(request.getServiceName());
+		}
+		return semaphore;
+	}
+
+	private boolean needActivesLimit(ProviderConfig<?> providerConfig) {
+		return !providerConfig.isUseSharedPool() || "method".equals(poolStrategy);
+	}
+
+	@Override
+	public <T> void doAddService(ProviderConfig<T> providerConfig) {
+		if (!needActivesLimit(providerConfig)) {
+			return;
+		}
+		String url = providerConfig.getUrl();
+		Map<String, ProviderMethodConfig> methodConfigs = providerConfig.getMethods();
+		if (providerConfig.getActives() > 0 && CollectionUtils.isEmpty(methodConfigs)) {
+			serviceSemaphores.putIfAbsent(url, new ActivesSemaphore(providerConfig.getActives()));
+		} else if (!CollectionUtils.isEmpty(methodConfigs)) {
+			ServiceMethodCache methodCache = ServiceMethodFactory.getServiceMethodCache(url);
+			for (String name : methodCache.getMethodMap().keySet()) {
+				ProviderMethodConfig methodConfig = methodConfigs.get(name);
+				if (methodConfig == null) {
+					continue;
+				}
+				int actives = methodConfig.getActives() > 0 ? methodConfig.getActives() : DEFAULT_METHOD_ACTIVES;
+				methodSemaphores.putIfAbsent(InvocationUtils.getMethodKey(url, name), new ActivesSemaphore(actives));
+			}
+		}
+	}
+
+	@Override
+	public <T> void doRemoveService(ProviderConfig<T> providerConfig) {
+		String url = providerConfig.getUrl();
+		Set<String> toRemoveKeys = new HashSet<String>();
+		for (String key : methodSemaphores.keySet()) {
+			if (key.startsWith(url + "#")) {
+				toRemoveKeys.add(key);
+			}
+		}
+		for (String key : toRemoveKeys) {
+			methodSemaphores.remove(key);
+		}
+		serviceSemaphores.remove(url);
+	}
+
+	@Override
+	public boolean needCancelRequest(InvocationRequest request) {
+		ActivesSemaphore semaphore = selectSemaphore(request);
+		if (semaphore != null) {
+			return semaphore.getActives() >= semaphore.getLimit() * cancelRatio;
+		}
+		ThreadPoolExecutor e = requestProcessThreadPool.getExecutor();
+		return e.getPoolSize() >= e.getMaximumPoolSize() * cancelRatio;
+	}
+
+	@Override
+	public String getProcessorStatistics() {
+		StringBuilder stats = new StringBuilder();
+		stats.append("[shared=").append(getThreadPoolStatistics()).append("]");
+		for (Map.Entry<String, ActivesSemaphore> entry : serviceSemaphores.entrySet()) {
+			stats.append(",[").append(entry.getKey()).append("=").append(entry.getValue()).append("]");
+		}
+		for (Map.Entry<String, ActivesSemaphore> entry : methodSemaphores.entrySet()) {
+			stats.append(",[").append(entry.getKey()).append("=").append(entry.getValue()).append("]");
+		}
+		return stats.toString();
+	}
+
+	@Override
+	public String getProcessorStatistics(InvocationRequest request) {
+		ActivesSemaphore semaphore = selectSemaphore(request);
+		if (semaphore == null) {
+			return getThreadPoolStatistics();
+		}
+		return semaphore + "," + getThreadPoolStatistics();
+	}
+
+	private String getThreadPoolStatistics() {
+		ThreadPoolExecutor e = requestProcessThreadPool.getExecutor();
+		return String.format(
+				"request pool size:%d(active:%d,core:%d,max:%d,largest:%d),task count:%d(completed:%d),queue size:%d",
+				e.getPoolSize(), e.getActiveCount(), e.getCorePoolSize(), e.getMaximumPoolSize(),
+				e.getLargestPoolSize(), e.getTaskCount(), e.getCompletedTaskCount(), e.getQueue().size());
+	}
+
+	/**
+	 * 可以动态调整许可数的信号量
+	 */
+	static final class ActivesSemaphore extends Semaphore {
+
+		private static final long serialVersionUID = -4036413961283614391L;
+
+		private volatile int limit;
+
+		ActivesSemaphore(int limit) {
+			super(limit);
+			this.limit = limit;
+		}
+
+		int getLimit() {
+			return limit;
+		}
+
+		int getActives() {
+			return limit - availablePermits();
+		}
+
+		synchronized void setLimit(int newLimit) {
+			int delta = newLimit - limit;
+			limit = newLimit;
+			if (delta > 0) {
+				release(delta);
+			} else if (delta < 0) {
+				reducePermits(-delta);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "actives:" + getActives() + "(max:" + limit + ")";
+		}
+	}
+
+	private class InnerConfigChangeListener implements ConfigChangeListener {
+
+		@Override
+		public void onKeyUpdated(String key, String value) {
+			if (key.endsWith("pigeon.timeout.cancelratio")) {
+				cancelRatio = Float.valueOf(value);
+			} else {
+				for (Map.Entry<String, String> entry : RequestThreadPoolProcessor.methodPoolConfigKeys.entrySet()) {
+					if (!key.endsWith(entry.getValue())) {
+						continue;
+					}
+					try {
+						ActivesSemaphore semaphore = methodSemaphores.get(entry.getKey());
+						int actives = Integer.valueOf(value);
+						if (semaphore != null && actives >= 0 && actives != semaphore.getLimit()) {
+							semaphore.setLimit(actives);
+							if (logger.isInfoEnabled()) {
+								logger.info("changed method actives, key:" + entry.getKey() + ", value:" + actives);
+							}
+						}
+					} catch (RuntimeException e) {
+						logger.error("error while changing method actives, key:" + key + ", value:" + value, e);
+					}
+				}
+			}
+		}
+
+		@Override
+		public void onKeyAdded(String key, String value) {
+		}
+
+		@Override
+		public void onKeyRemoved(String key) {
+		}
+
+	}
+}
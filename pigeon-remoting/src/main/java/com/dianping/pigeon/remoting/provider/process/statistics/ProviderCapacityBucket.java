@@ -1,29 +1,25 @@
 package com.dianping.pigeon.remoting.provider.process.statistics;
 
 import java.io.Serializable;
-import java.util.Calendar;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import org.apache.logging.log4j.Logger;
-
 import com.dianping.pigeon.config.ConfigManagerLoader;
-import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.provider.process.RequestProcessorFactory;
+import com.dianping.pigeon.util.TimeWindowCounter;
 
 public class ProviderCapacityBucket implements Serializable {
-	private static final Logger logger = LoggerLoader.getLogger(ProviderCapacityBucket.class);
 
 	private AtomicInteger requests = new AtomicInteger();
 
-	private Map<Integer, AtomicInteger> totalRequestsInSecond = new ConcurrentHashMap<Integer, AtomicInteger>();
+	private final TimeWindowCounter totalRequestsInSecond = new TimeWindowCounter(1000, 60);
 
-	private Map<Integer, AtomicInteger> totalRequestsInMinute = new ConcurrentHashMap<Integer, AtomicInteger>();
+	private final TimeWindowCounter totalRequestsInMinute = new TimeWindowCounter(60 * 1000, 60);
 
 	public static final boolean enableMinuteStats = ConfigManagerLoader.getConfigManager().getBooleanValue(
 			"pigeon.providerstat.minute.enable", true);
@@ -41,16 +37,17 @@ public class ProviderCapacityBucket implements Serializable {
 	}
 
 	public void flowIn(InvocationRequest request) {
-		Calendar now = Calendar.getInstance();
+		long now = System.currentTimeMillis();
 		requests.incrementAndGet();
-		int second = now.get(Calendar.SECOND);
-		incrementTotalRequestsInSecond(second);
+		totalRequestsInSecond.increment(now);
 		if (enableThreadsStats && !Constants.PROCESS_MODEL_THREAD.equals(RequestProcessorFactory.PROCESS_TYPE)) {
-			incrementTotalThreadsInSecond(second);
+			Set<String> threads = totalThreadsInSecond.get(totalRequestsInSecond.getSlot(now));
+			if (threads != null) {
+				threads.add(Thread.currentThread().getName());
+			}
 		}
 		if (enableMinuteStats) {
-			int minute = now.get(Calendar.MINUTE);
-			incrementTotalRequestsInMinute(minute);
+			totalRequestsInMinute.increment(now);
 		}
 	}
 
@@ -62,84 +59,43 @@ public class ProviderCapacityBucket implements Serializable {
 		return requests.get();
 	}
 
+	/**
+	 * @return 最近60秒每秒的请求数，key为秒数
+	 */
 	public Map<Integer, AtomicInteger> getTotalRequestsInSecond() {
-		return totalRequestsInSecond;
+		long now = System.currentTimeMillis();
+		Map<Integer, AtomicInteger> requestsInSecond = new ConcurrentHashMap<Integer, AtomicInteger>();
+		for (int i = 0; i < totalRequestsInSecond.getSlots(); i++) {
+			requestsInSecond.put(totalRequestsInSecond.getSlot(now - i * 1000L),
+					new AtomicInteger(totalRequestsInSecond.get(now, i)));
+		}
+		return requestsInSecond;
 	}
 
 	public int getRequestsInCurrentSecond() {
-		Calendar cal = Calendar.getInstance();
-		int lastSecond = cal.get(Calendar.SECOND);
-		AtomicInteger counter = totalRequestsInSecond.get(lastSecond);
-		return counter != null ? counter.get() : 0;
+		return totalRequestsInSecond.get(System.currentTimeMillis(), 0);
 	}
 
 	public int getRequestsInLastSecond() {
-		Calendar cal = Calendar.getInstance();
-		cal.add(Calendar.SECOND, -1);
-		int lastSecond = cal.get(Calendar.SECOND);
-		AtomicInteger counter = totalRequestsInSecond.get(lastSecond);
-		return counter != null ? counter.get() : 0;
+		return totalRequestsInSecond.get(System.currentTimeMillis(), 1);
 	}
 
 	public int getRequestsInLastMinute() {
-		Calendar cal = Calendar.getInstance();
-		cal.add(Calendar.MINUTE, -1);
-		int lastMinute = cal.get(Calendar.MINUTE);
-		lastMinute = lastMinute >= 0 ? lastMinute : lastMinute + 60;
-		AtomicInteger counter = totalRequestsInMinute.get(lastMinute);
-		return counter != null ? counter.get() : 0;
+		return totalRequestsInMinute.get(System.currentTimeMillis(), 1);
 	}
 
 	public Set<String> getThreadsInLastSecond() {
-		Calendar cal = Calendar.getInstance();
-		cal.add(Calendar.SECOND, -1);
-		int lastSecond = cal.get(Calendar.SECOND);
-		lastSecond = lastSecond >= 0 ? lastSecond : lastSecond + 60;
-		return totalThreadsInSecond.get(lastSecond);
-	}
-
-	private void incrementTotalRequestsInSecond(int second) {
-		AtomicInteger counter = totalRequestsInSecond.get(second);
-		if (counter != null) {
-			counter.incrementAndGet();
-		} else {
-			logger.warn("Impossible case happended, second[" + second + "]'s request counter is null.");
-		}
-	}
-
-	private void incrementTotalRequestsInMinute(int minute) {
-		AtomicInteger counter = totalRequestsInMinute.get(minute);
-		if (counter != null) {
-			counter.incrementAndGet();
-		} else {
-			logger.warn("Impossible case happended, day[" + minute + "]'s request counter is null.");
-		}
-	}
-
-	private void incrementTotalThreadsInSecond(int second) {
-		Set<String> threads = totalThreadsInSecond.get(second);
-		if (threads != null) {
-			threads.add(Thread.currentThread().getName());
-		} else {
-			logger.warn("Impossible case happended, second[" + second + "]'s thread counter is null.");
-		}
+		return totalThreadsInSecond.get(totalRequestsInSecond.getSlot(System.currentTimeMillis() - 1000));
 	}
 
 	/**
-	 * 重置过期的每秒请求数计数器
+	 * 清空过期的每秒线程集合，请求计数按时间窗口自动失效，不需要清零
 	 */
 	public void resetRequestsInSecondCounter() {
-		int second = Calendar.getInstance().get(Calendar.SECOND);
-		int prev3Sec = second - 10;
-		for (int i = 1; i <= 30; i++) {
-			int prevSec = prev3Sec - i;
-			prevSec = prevSec >= 0 ? prevSec : prevSec + 60;
-			AtomicInteger counter = totalRequestsInSecond.get(prevSec);
-			if (counter != null) {
-				counter.set(0);
-			}
-			if (enableThreadsStats) {
-				Set<String> threads = totalThreadsInSecond.get(prevSec);
+		if (enableThreadsStats) {
+			long now = System.currentTimeMillis();
+			for (int i = 11; i <= 40; i++) {
+				Set<String> threads = totalThreadsInSecond.get(totalRequestsInSecond.getSlot(now - i * 1000L));
 				if (threads != null) {
 					threads.clear();
 				}
@@ -148,34 +104,14 @@ public class ProviderCapacityBucket implements Serializable {
 	}
 
 	public void resetRequestsInMinuteCounter() {
-		if (enableMinuteStats) {
-			int min = Calendar.getInstance().get(Calendar.MINUTE);
-			int prev3Sec = min - 10;
-			for (int i = 1; i <= 30; i++) {
-				int prevSec = prev3Sec - i;
-				prevSec = prevSec >= 0 ? prevSec : prevSec + 60;
-				AtomicInteger counter = totalRequestsInMinute.get(prevSec);
-				if (counter != null) {
-					counter.set(0);
-				}
-			}
-		}
 	}
 
 	private void preFillData() {
-		for (int sec = 0; sec < 60; sec++) {
-			totalRequestsInSecond.put(sec, new AtomicInteger());
-		}
 		if (enableThreadsStats) {
 			for (int sec = 0; sec < 60; sec++) {
 				totalThreadsInSecond.put(sec, new HashSet<String>());
 			}
 		}
-		if (enableMinuteStats) {
-			for (int min = 0; min < 60; min++) {
-				totalRequestsInMinute.put(min, new AtomicInteger());
-			}
-		}
 	}
 
 	public String toString() {
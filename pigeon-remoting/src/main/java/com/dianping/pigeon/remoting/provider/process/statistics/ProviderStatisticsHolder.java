@@ -8,6 +8,7 @@ import org.apache.logging.log4j.Logger;
 import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.monitor.LatencyStatistics;
 import com.dianping.pigeon.remoting.common.util.Constants;
 
 public final class ProviderStatisticsHolder {
@@ -19,9 +20,33 @@ public final class ProviderStatisticsHolder {
 	public static final boolean statEnable = ConfigManagerLoader.getConfigManager().getBooleanValue(
 			"pigeon.providerstat.enable", true);
 
+	private static final LatencyStatistics latencyStatistics = new LatencyStatistics("provider.latency");
+
+	private static final LatencyStatistics queueWaitStatistics = new LatencyStatistics("provider.queuewait");
+
 	public static void init() {
 	}
-	
+
+	public static LatencyStatistics getLatencyStatistics() {
+		return latencyStatistics;
+	}
+
+	public static LatencyStatistics getQueueWaitStatistics() {
+		return queueWaitStatistics;
+	}
+
+	public static void recordLatency(InvocationRequest request, long nanos) {
+		if (checkRequestNeedStat(request)) {
+			latencyStatistics.record(request, nanos);
+		}
+	}
+
+	public static void recordQueueWait(InvocationRequest request, long nanos) {
+		if (checkRequestNeedStat(request)) {
+			queueWaitStatistics.record(request, nanos);
+		}
+	}
+
 	public static Map<String, ProviderCapacityBucket> getCapacityBuckets() {
 		return appCapacityBuckets;
 	}
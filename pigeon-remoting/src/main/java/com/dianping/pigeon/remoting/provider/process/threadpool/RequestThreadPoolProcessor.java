@@ -25,13 +25,12 @@ import com.dianping.pigeon.log.LoggerLoader;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.common.exception.RejectedException;
-import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
 import com.dianping.pigeon.remoting.provider.config.ProviderConfig;
 import com.dianping.pigeon.remoting.provider.config.ProviderMethodConfig;
 import com.dianping.pigeon.remoting.provider.config.ServerConfig;
 import com.dianping.pigeon.remoting.provider.domain.ProviderContext;
 import com.dianping.pigeon.remoting.provider.process.AbstractRequestProcessor;
-import com.dianping.pigeon.remoting.provider.process.ProviderProcessHandlerFactory;
+import com.dianping.pigeon.remoting.provider.process.statistics.ProviderStatisticsHolder;
 import com.dianping.pigeon.remoting.provider.service.method.ServiceMethodCache;
 import com.dianping.pigeon.remoting.provider.service.method.ServiceMethodFactory;
 import com.dianping.pigeon.threadpool.DefaultThreadPool;
@@ -89,22 +88,19 @@ public class RequestThreadPoolProcessor extends AbstractRequestProcessor {
 
 	public Future<InvocationResponse> doProcessRequest(final InvocationRequest request,
 			final ProviderContext providerContext) {
-		requestContextMap.put(request, providerContext);
+		addRequestContext(request, providerContext);
+		final long submitTime = System.nanoTime();
 		Callable<InvocationResponse> requestExecutor = new Callable<InvocationResponse>() {
 
 			@Override
 			public InvocationResponse call() throws Exception {
+				ProviderStatisticsHolder.recordQueueWait(request, System.nanoTime() - submitTime);
 				try {
-					ServiceInvocationHandler invocationHandler = ProviderProcessHandlerFactory
-							.selectInvocationHandler(providerContext.getRequest().getMessageType());
-					if (invocationHandler != null) {
-						providerContext.setThread(Thread.currentThread());
-						return invocationHandler.handle(providerContext);
-					}
+					return handleRequest(request, providerContext);
 				} catch (Throwable t) {
 					logger.error("Process request failed with invocation handler, you should never be here.", t);
 				} finally {
-					requestContextMap.remove(request);
+					releaseRequestContext(request, providerContext);
 				}
 				return null;
 			}
@@ -114,7 +110,7 @@ public class RequestThreadPoolProcessor extends AbstractRequestProcessor {
 		try {
 			return pool.submit(requestExecutor);
 		} catch (RejectedExecutionException e) {
-			requestContextMap.remove(request);
+			removeRequestContext(request);
 			throw new RejectedException(getProcessorStatistics(request), e);
 		}
 	}
@@ -165,7 +161,7 @@ public class RequestThreadPoolProcessor extends AbstractRequestProcessor {
 	}
 
 	@Override
-	public synchronized <T> void addService(ProviderConfig<T> providerConfig) {
+	public synchronized <T> void doAddService(ProviderConfig<T> providerConfig) {
 		if (needStandalonePool(providerConfig)) {
 			if (methodThreadPools == null) {
 				methodThreadPools = new ConcurrentHashMap<String, ThreadPool>();
@@ -235,7 +231,7 @@ public class RequestThreadPoolProcessor extends AbstractRequestProcessor {
 	}
 
 	@Override
-	public synchronized <T> void removeService(ProviderConfig<T> providerConfig) {
+	public synchronized <T> void doRemoveService(ProviderConfig<T> providerConfig) {
 		if (needStandalonePool(providerConfig)) {
 			Set<String> toRemoveKeys = new HashSet<String>();
 			for (String key : methodThreadPools.keySet()) {
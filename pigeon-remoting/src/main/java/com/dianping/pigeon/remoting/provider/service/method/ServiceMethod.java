@@ -10,6 +10,8 @@ import java.lang.reflect.Method;
 import org.apache.commons.lang.builder.ReflectionToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
 
+import com.dianping.pigeon.remoting.common.codec.compress.CompressPolicy;
+
 public class ServiceMethod {
 
 	private Method method;
@@ -20,14 +22,16 @@ public class ServiceMethod {
 
 	private Class<?>[] parameterClasses;
 
-	private boolean needCastParameterClasses = false;
+	// 服务端参数类型为Float/Short时，调用端可能传来Double/Integer（如hessian、json序列化），
+	// 发布服务时确定需要转换的参数，为null表示没有
+	private byte[] casts;
 
-	public boolean isNeedCastParameterClasses() {
-		return needCastParameterClasses;
-	}
+	private static final byte CAST_FLOAT = 1;
+
+	private static final byte CAST_SHORT = 2;
 
-	public void setNeedCastParameterClasses(boolean needCastParameterClasses) {
-		this.needCastParameterClasses = needCastParameterClasses;
+	public boolean isNeedCastParameterClasses() {
+		return casts != null;
 	}
 
 	public Class<?>[] getParameterClasses() {
@@ -44,6 +48,9 @@ public class ServiceMethod {
 
 	private int parameterLength;
 
+	// 发布服务时按ProviderConfig/ProviderMethodConfig确定，为null时响应不压缩
+	private volatile CompressPolicy compressPolicy;
+
 	public ServiceMethod(Object service, Method method) {
 
 		this.service = service;
@@ -51,6 +58,23 @@ public class ServiceMethod {
 		this.parameterClasses = regulateTypes(this.method.getParameterTypes());
 		this.originalParameterClasses = this.method.getParameterTypes();
 		this.parameterLength = this.parameterClasses.length;
+		byte[] casts = new byte[this.parameterLength];
+		boolean needCast = false;
+		for (int i = 0; i < this.parameterLength; i++) {
+			if (this.parameterClasses[i] == Float.class) {
+				casts[i] = CAST_FLOAT;
+				needCast = true;
+			} else if (this.parameterClasses[i] == Short.class) {
+				casts[i] = CAST_SHORT;
+				needCast = true;
+			}
+		}
+		this.casts = needCast ? casts : null;
+	}
+
+	static boolean canCast(Class<?> argClass, Class<?> parameterClass) {
+		return (argClass == Double.class && parameterClass == Float.class)
+				|| (argClass == Integer.class && parameterClass == Short.class);
 	}
 
 	private Class<?>[] regulateTypes(Class<?>[] types) {
@@ -90,33 +114,34 @@ public class ServiceMethod {
 		return service;
 	}
 
+	public CompressPolicy getCompressPolicy() {
+		return compressPolicy;
+	}
+
+	public void setCompressPolicy(CompressPolicy compressPolicy) {
+		this.compressPolicy = compressPolicy;
+	}
+
 	@Override
 	public String toString() {
 		return ReflectionToStringBuilder.toString(this, ToStringStyle.SHORT_PREFIX_STYLE);
 	}
 
+	/**
+	 * 需要转换的参数直接在arguments中替换，不另外分配数组
+	 */
 	public Object invoke(Object[] arguments) throws IllegalArgumentException, IllegalAccessException,
 			InvocationTargetException {
-		if (needCastParameterClasses && arguments != null && parameterClasses != null) {
-			if (parameterClasses.length == arguments.length) {
-				Object[] argumentsCast = new Object[arguments.length];
-				for (int i = 0; i < arguments.length; i++) {
-					Object arg = arguments[i];
-					if (arg != null) {
-						Class<?> argClass = arg.getClass();
-						if (argClass != parameterClasses[i]) {
-							if (argClass.equals(Double.class) && parameterClasses[i].equals(Float.class)) {
-								arg = ((Double) arg).floatValue();
-							} else if (argClass.equals(Integer.class) && parameterClasses[i].equals(Short.class)) {
-								arg = ((Integer) arg).shortValue();
-							}
-						}
-					}
-					argumentsCast[i] = arg;
+		if (casts != null && arguments != null && arguments.length == parameterLength) {
+			for (int i = 0; i < parameterLength; i++) {
+				Object arg = arguments[i];
+				if (casts[i] == CAST_FLOAT && arg instanceof Double) {
+					arguments[i] = ((Double) arg).floatValue();
+				} else if (casts[i] == CAST_SHORT && arg instanceof Integer) {
+					arguments[i] = ((Integer) arg).shortValue();
 				}
-				return this.getMethod().invoke(this.getService(), argumentsCast);
 			}
 		}
-		return this.getMethod().invoke(this.getService(), arguments);
+		return this.method.invoke(this.service, arguments);
 	}
 }
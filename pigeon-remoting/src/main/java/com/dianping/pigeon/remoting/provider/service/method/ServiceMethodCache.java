@@ -5,15 +5,22 @@
 package com.dianping.pigeon.remoting.provider.service.method;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 
-import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.provider.exception.InvocationFailureException;
-import com.dianping.pigeon.util.ClassUtils;
 
+/**
+ * 服务的方法集合，发布服务时建立，调用时只读，不需要加锁。
+ * 
+ * 没有重载的方法按方法名直接取得，只检查参数对象的类型；重载的方法按参数对象的类型在同名、同参数个数的方法中匹配，
+ * 不需要加载参数类，匹配结果按参数类型缓存
+ */
 public class ServiceMethodCache {
 
 	/**
@@ -21,7 +28,18 @@ public class ServiceMethodCache {
 	 */
 	private Map<String, Map<Integer, List<ServiceMethod>>> methods = new ConcurrentHashMap<String, Map<Integer, List<ServiceMethod>>>();
 
-	private Map<String, Map<ServiceParam, ServiceMethod>> bestMacthMethod = new ConcurrentHashMap<String, Map<ServiceParam, ServiceMethod>>();
+	/**
+	 * 没有重载的方法，每次增加方法后整体替换
+	 */
+	private volatile Map<String, ServiceMethod> uniqueMethods = Collections.emptyMap();
+
+	/**
+	 * 重载方法按参数类型匹配的结果
+	 */
+	private final ConcurrentHashMap<String, Map<ParameterTypes, ServiceMethod>> bestMatchMethods = new ConcurrentHashMap<String, Map<ParameterTypes, ServiceMethod>>();
+
+	// 参数类型来自请求，限制每个方法缓存的参数类型组合数
+	private static final int MAX_BEST_MATCH_METHODS = 64;
 
 	private ServiceMethod currentMethod;
 
@@ -40,7 +58,7 @@ public class ServiceMethodCache {
 		return currentMethod;
 	}
 
-	void addMethod(String methodName, ServiceMethod method) {
+	synchronized void addMethod(String methodName, ServiceMethod method) {
 		if (this.currentMethod == null) {
 			this.currentMethod = method;
 		}
@@ -56,54 +74,79 @@ public class ServiceMethodCache {
 		}
 		methodList.add(method);
 		methodSize++;
+
+		Map<String, ServiceMethod> unique = new HashMap<String, ServiceMethod>();
+		for (Entry<String, Map<Integer, List<ServiceMethod>>> entry : this.methods.entrySet()) {
+			if (entry.getValue().size() == 1) {
+				List<ServiceMethod> list = entry.getValue().values().iterator().next();
+				if (list.size() == 1) {
+					unique.put(entry.getKey(), list.get(0));
+				}
+			}
+		}
+		this.uniqueMethods = unique;
+		this.bestMatchMethods.clear();
 	}
 
-	public ServiceMethod getMethod(String methodName, ServiceParam paramNames) throws InvocationFailureException {
+	public ServiceMethod getMethod(String methodName, Object[] parameters) throws InvocationFailureException {
 		if (methodSize == 1) {
 			return this.currentMethod;
-		} else {
-			ServiceMethod method = getBestMatchMethodForCache(methodName, paramNames);
-			if (method == null) {
-				synchronized (this) {
-					method = getBestMatchMethodForCache(methodName, paramNames);
-					if (method == null) {
-						method = getBestMatchMethod(methodName, paramNames);
-						this.bestMacthMethod.get(methodName).put(paramNames, method);
-					}
-				}
+		}
+		int length = parameters == null ? 0 : parameters.length;
+		ServiceMethod method = this.uniqueMethods.get(methodName);
+		if (method != null && method.getParameterSize() == length) {
+			if (length > 0 && matching(method, parameters, true) < 0) {
+				throw new InvocationFailureException("the service " + this.service + " is not matched with method:"
+						+ methodName + " for parameter class types");
 			}
 			return method;
 		}
+		return getBestMatchMethodForCache(methodName, parameters, length);
 	}
 
-	private ServiceMethod getBestMatchMethodForCache(String methodName, ServiceParam paramNames) {
-		Map<ServiceParam, ServiceMethod> paramMethodMap = this.bestMacthMethod.get(methodName);
+	private ServiceMethod getBestMatchMethodForCache(String methodName, Object[] parameters, int length)
+			throws InvocationFailureException {
+		Map<ParameterTypes, ServiceMethod> paramMethodMap = this.bestMatchMethods.get(methodName);
 		if (paramMethodMap == null) {
-			paramMethodMap = new HashMap<ServiceParam, ServiceMethod>();
-			this.bestMacthMethod.put(methodName, paramMethodMap);
+			if (!this.methods.containsKey(methodName)) {
+				return getBestMatchMethod(methodName, parameters, length);
+			}
+			paramMethodMap = new ConcurrentHashMap<ParameterTypes, ServiceMethod>();
+			Map<ParameterTypes, ServiceMethod> old = this.bestMatchMethods.putIfAbsent(methodName, paramMethodMap);
+			if (old != null) {
+				paramMethodMap = old;
+			}
 		}
-		return paramMethodMap.get(paramNames);
+		ParameterTypes parameterTypes = new ParameterTypes(parameters, length);
+		ServiceMethod method = paramMethodMap.get(parameterTypes);
+		if (method == null) {
+			method = getBestMatchMethod(methodName, parameters, length);
+			if (paramMethodMap.size() < MAX_BEST_MATCH_METHODS) {
+				paramMethodMap.put(parameterTypes, method);
+			}
+		}
+		return method;
 	}
 
-	private ServiceMethod getBestMatchMethod(String methodName, ServiceParam paramNames)
+	private ServiceMethod getBestMatchMethod(String methodName, Object[] parameters, int length)
 			throws InvocationFailureException {
 		Map<Integer, List<ServiceMethod>> methodMap = this.methods.get(methodName);
 		if (methodMap == null) {
 			throw new InvocationFailureException("the service " + this.service + " is not matched with method:"
 					+ methodName);
 		}
-		List<ServiceMethod> methodList = methodMap.get(paramNames.getLength());
+		List<ServiceMethod> methodList = methodMap.get(length);
 		if (methodList == null || methodList.size() == 0) {
 			throw new InvocationFailureException("the service " + this.service + " is not matched with method:"
-					+ methodName + " for " + paramNames.getLength() + " parameters");
+					+ methodName + " for " + length + " parameters");
 		}
-		if (paramNames.getLength() == 0) {
+		if (length == 0) {
 			return methodList.get(0);
 		}
 		int matchingValue = -1;
 		ServiceMethod bestMethod = null;
 		for (ServiceMethod m : methodList) {
-			int mv = matching(m, paramNames.getParamNames(), false);
+			int mv = matching(m, parameters, false);
 			if (mv > matchingValue) {
 				matchingValue = mv;
 				bestMethod = m;
@@ -111,15 +154,12 @@ public class ServiceMethodCache {
 		}
 		if (matchingValue < 0) {
 			for (ServiceMethod m : methodList) {
-				int mv = matching(m, paramNames.getParamNames(), true);
+				int mv = matching(m, parameters, true);
 				if (mv > matchingValue) {
 					matchingValue = mv;
 					bestMethod = m;
 				}
 			}
-			if (matchingValue >= 0) {
-				bestMethod.setNeedCastParameterClasses(true);
-			}
 		}
 		if (matchingValue < 0) {
 			throw new InvocationFailureException("the service " + this.service + " is not matched with method:"
@@ -132,36 +172,22 @@ public class ServiceMethodCache {
 	 * 
 	 * 返回匹配度 如果返回值等于参数个数，表示完全匹配 如果返回值为0---参数个数，表示部分匹配 如果返回-1，表示有不匹配项
 	 * 
-	 * @param paramClassNames
+	 * @param parameters
 	 * @return
-	 * @throws InvocationFailureException
 	 */
-	private int matching(ServiceMethod method, String[] paramClassNames, boolean cast)
-			throws InvocationFailureException {
+	private int matching(ServiceMethod method, Object[] parameters, boolean cast) {
+		Class<?>[] parameterClasses = method.getParameterClasses();
 		int k = 0;
-		for (int i = 0; i < paramClassNames.length; i++) {
-			if (paramClassNames[i].equals(Constants.TRANSFER_NULL)) {
+		for (int i = 0; i < parameters.length; i++) {
+			if (parameters[i] == null) {
 				continue;
 			}
-			Class<?> paramClass = null;
-			try {
-				paramClass = ClassUtils.loadClass(paramClassNames[i]);
-			} catch (ClassNotFoundException e) {
-				throw new InvocationFailureException("no class found for parameter:" + paramClassNames[i]);
-			}
-			if (paramClass == method.getParameterClasses()[i]) {
+			Class<?> paramClass = parameters[i].getClass();
+			if (paramClass == parameterClasses[i]) {
 				k++;
-			} else if (cast) {
-				if (paramClassNames[i].equals(Double.class.getName())) {
-					paramClass = Float.class;
-				} else if (paramClassNames[i].equals(Integer.class.getName())) {
-					paramClass = Short.class;
-				} 
-				if (paramClass == method.getParameterClasses()[i]) {
-					k++;
-				}
-			}
-			if (!method.getParameterClasses()[i].isAssignableFrom(paramClass)) {
+			} else if (cast && ServiceMethod.canCast(paramClass, parameterClasses[i])) {
+				k++;
+			} else if (!parameterClasses[i].isAssignableFrom(paramClass)) {
 				return -1;
 			}
 		}
@@ -171,4 +197,34 @@ public class ServiceMethodCache {
 	public Map<String, Map<Integer, List<ServiceMethod>>> getMethodMap() {
 		return methods;
 	}
+
+	/**
+	 * 参数对象的类型，null参数的类型为null
+	 */
+	private static final class ParameterTypes {
+
+		private final Class<?>[] types;
+
+		private final int hashCode;
+
+		ParameterTypes(Object[] parameters, int length) {
+			this.types = new Class<?>[length];
+			for (int i = 0; i < length; i++) {
+				if (parameters[i] != null) {
+					this.types[i] = parameters[i].getClass();
+				}
+			}
+			this.hashCode = Arrays.hashCode(this.types);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof ParameterTypes && Arrays.equals(types, ((ParameterTypes) obj).types);
+		}
+	}
 }
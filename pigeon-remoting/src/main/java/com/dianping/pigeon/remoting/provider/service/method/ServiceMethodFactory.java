@@ -5,17 +5,24 @@
 package com.dianping.pigeon.remoting.provider.service.method;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang.StringUtils;
+import com.dianping.pigeon.config.ConfigManagerLoader;
 import com.dianping.pigeon.log.LoggerLoader;
 import org.apache.logging.log4j.Logger;
 
+import com.dianping.pigeon.remoting.common.codec.compress.CompressPolicy;
+import com.dianping.pigeon.remoting.common.codec.protostuff.ProtostuffSerializer;
 import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.provider.config.ProviderConfig;
+import com.dianping.pigeon.remoting.provider.config.ProviderMethodConfig;
 import com.dianping.pigeon.remoting.provider.exception.InvocationFailureException;
 import com.dianping.pigeon.remoting.provider.process.filter.ContextTransferProcessFilter;
 import com.dianping.pigeon.remoting.provider.service.ServiceProviderFactory;
@@ -28,6 +35,13 @@ public final class ServiceMethodFactory {
 
 	private static Set<String> ingoreMethods = new HashSet<String>();
 
+	private static final boolean warmupSchema = ConfigManagerLoader.getConfigManager().getBooleanValue(
+			"pigeon.provider.proto.warmup", true);
+
+	// 调用方使用proto序列化的服务，逗号分隔，只为这些服务预先生成schema
+	private static final String protoServices = ConfigManagerLoader.getConfigManager().getStringValue(
+			"pigeon.provider.proto.services", "");
+
 	static {
 		Method[] objectMethodArray = Object.class.getMethods();
 		for (Method method : objectMethodArray) {
@@ -46,7 +60,6 @@ public final class ServiceMethodFactory {
 		if (StringUtils.isBlank(methodName)) {
 			throw new IllegalArgumentException("method name is required");
 		}
-		String[] paramClassNames = request.getParamClassName();
 		String version = request.getVersion();
 		String newUrl = ServiceProviderFactory.getServiceUrlWithVersion(serviceName, version);
 		if (logger.isDebugEnabled()) {
@@ -63,7 +76,7 @@ public final class ServiceMethodFactory {
 		if (serviceMethodCache == null) {
 			throw new InvocationFailureException("cannot find service for request:" + request);
 		}
-		return serviceMethodCache.getMethod(methodName, new ServiceParam(paramClassNames));
+		return serviceMethodCache.getMethod(methodName, request.getParameters());
 	}
 
 	public static ServiceMethodCache getServiceMethodCache(String url) {
@@ -72,14 +85,10 @@ public final class ServiceMethodFactory {
 			Map<String, ProviderConfig<?>> services = ServiceProviderFactory.getAllServiceProviders();
 			ProviderConfig<?> providerConfig = services.get(url);
 			if (providerConfig != null) {
-				Object service = providerConfig.getService();
-				Method[] methodArray = service.getClass().getMethods();
-				serviceMethodCache = new ServiceMethodCache(url, service);
-				for (Method method : methodArray) {
-					if (!ingoreMethods.contains(method.getName())) {
-						method.setAccessible(true);
-						serviceMethodCache.addMethod(method.getName(), new ServiceMethod(service, method));
-					}
+				serviceMethodCache = createServiceMethodCache(url, providerConfig.getService());
+				initCompressPolicy(serviceMethodCache, providerConfig);
+				if (warmupSchema && isProtoService(url)) {
+					initSchemas(serviceMethodCache);
 				}
 				methods.put(url, serviceMethodCache);
 			}
@@ -87,6 +96,73 @@ public final class ServiceMethodFactory {
 		return serviceMethodCache;
 	}
 
+	public static ServiceMethodCache createServiceMethodCache(String url, Object service) {
+		Method[] methodArray = service.getClass().getMethods();
+		ServiceMethodCache serviceMethodCache = new ServiceMethodCache(url, service);
+		for (Method method : methodArray) {
+			if (!ingoreMethods.contains(method.getName())) {
+				method.setAccessible(true);
+				serviceMethodCache.addMethod(method.getName(), new ServiceMethod(service, method));
+			}
+		}
+		return serviceMethodCache;
+	}
+
+	private static void initCompressPolicy(ServiceMethodCache serviceMethodCache, ProviderConfig<?> providerConfig) {
+		Map<String, ProviderMethodConfig> methodConfigs = providerConfig.getMethods();
+		for (Map.Entry<String, Map<Integer, List<ServiceMethod>>> entry : serviceMethodCache.getMethodMap()
+				.entrySet()) {
+			int threshold = providerConfig.getCompressThreshold();
+			ProviderMethodConfig methodConfig = methodConfigs == null ? null : methodConfigs.get(entry.getKey());
+			if (methodConfig != null && methodConfig.getCompressThreshold() >= 0) {
+				threshold = methodConfig.getCompressThreshold();
+			}
+			CompressPolicy compressPolicy = CompressPolicy.create(providerConfig.getCompressType(), threshold);
+			for (List<ServiceMethod> serviceMethods : entry.getValue().values()) {
+				for (ServiceMethod serviceMethod : serviceMethods) {
+					serviceMethod.setCompressPolicy(compressPolicy);
+				}
+			}
+		}
+	}
+
+	private static boolean isProtoService(String url) {
+		for (String service : protoServices.split(",")) {
+			if (StringUtils.isNotBlank(service) && service.trim().equals(url)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void initSchemas(ServiceMethodCache serviceMethodCache) {
+		for (Map<Integer, List<ServiceMethod>> methodMap : serviceMethodCache.getMethodMap().values()) {
+			for (List<ServiceMethod> serviceMethods : methodMap.values()) {
+				for (ServiceMethod serviceMethod : serviceMethods) {
+					Method method = serviceMethod.getMethod();
+					for (Type type : method.getGenericParameterTypes()) {
+						registerSchema(type);
+					}
+					registerSchema(method.getGenericReturnType());
+				}
+			}
+		}
+	}
+
+	// 数组、集合等泛型类型的元素类型也一并注册
+	private static void registerSchema(Type type) {
+		if (type instanceof Class && ((Class<?>) type).isArray()) {
+			registerSchema(((Class<?>) type).getComponentType());
+		} else if (type instanceof Class) {
+			ProtostuffSerializer.registerClass((Class<?>) type);
+		} else if (type instanceof ParameterizedType) {
+			registerSchema(((ParameterizedType) type).getRawType());
+			for (Type argument : ((ParameterizedType) type).getActualTypeArguments()) {
+				registerSchema(argument);
+			}
+		}
+	}
+
 	public static void init(String url) {
 		getServiceMethodCache(url);
 	}
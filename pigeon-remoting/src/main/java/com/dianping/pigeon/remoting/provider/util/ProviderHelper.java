@@ -32,7 +32,8 @@ public final class ProviderHelper {
 	public static void writeSuccessResponse(ProviderContext context, Object returnObj) {
 		if (Constants.REPLY_MANUAL) {
 			InvocationRequest request = context.getRequest();
-			InvocationResponse response = ProviderUtils.createSuccessResponse(request, returnObj);
+			InvocationResponse response = ProviderUtils.createSuccessResponse(request, returnObj,
+					context.getServiceMethod());
 			ProviderChannel channel = context.getChannel();
 			channel.write(response);
 			if (response != null) {
@@ -46,6 +47,55 @@ public final class ProviderHelper {
 		}
 	}
 
+	/**
+	 * 服务方法返回的ListenableFuture完成后写回响应，并结束请求的统计和拦截器调用，已经超时写回过的请求会被忽略
+	 */
+	public static void writeAsyncResponse(ProviderContext context, Object returnObj, Throwable cause) {
+		if (!context.tryCompleteAsync()) {
+			return;
+		}
+		InvocationRequest request = context.getRequest();
+		InvocationResponse response = null;
+		try {
+			if (cause == null) {
+				response = ProviderUtils.createSuccessResponse(request, returnObj, context.getServiceMethod());
+			} else {
+				context.setServiceError(cause);
+				response = ProviderUtils.createServiceExceptionResponse(request, cause);
+			}
+			ProviderChannel channel = context.getChannel();
+			channel.write(response);
+			SizeMonitor.getInstance().logSize(response.getSize(), "PigeonService.responseSize", null);
+		} finally {
+			postAsyncInvoke(request, response);
+		}
+	}
+
+	/**
+	 * 等待异步结果超时，写回失败响应并结束统计，之后future完成时不再写回
+	 */
+	public static void writeAsyncTimeoutResponse(ProviderContext context, Throwable cause) {
+		if (!context.tryCompleteAsync()) {
+			return;
+		}
+		InvocationRequest request = context.getRequest();
+		InvocationResponse response = null;
+		try {
+			response = ProviderUtils.createFailResponse(request, cause);
+			context.getChannel().write(response);
+		} finally {
+			postAsyncInvoke(request, response);
+		}
+	}
+
+	private static void postAsyncInvoke(InvocationRequest request, InvocationResponse response) {
+		ProviderStatisticsHolder.flowOut(request);
+		List<ProviderProcessInterceptor> interceptors = ProviderProcessInterceptorFactory.getInterceptors();
+		for (ProviderProcessInterceptor interceptor : interceptors) {
+			interceptor.postInvoke(request, response);
+		}
+	}
+
 	public static void writeFailureResponse(ProviderContext context, Throwable exeption) {
 		if (Constants.REPLY_MANUAL) {
 			InvocationRequest request = context.getRequest();
@@ -15,6 +15,7 @@ import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
 import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
 import com.dianping.pigeon.remoting.common.util.Constants;
 import com.dianping.pigeon.remoting.provider.domain.ProviderContext;
+import com.dianping.pigeon.remoting.provider.service.method.ServiceMethod;
 import com.dianping.pigeon.util.LangUtils;
 import com.dianping.pigeon.util.VersionUtils;
 
@@ -78,6 +79,19 @@ public final class ProviderUtils {
 		return response;
 	}
 
+	/**
+	 * 调用端声明可以解压、且服务方法配置了压缩时，响应按方法的配置压缩
+	 */
+	public static InvocationResponse createSuccessResponse(InvocationRequest request, Object returnObj,
+			ServiceMethod method) {
+		InvocationResponse response = createSuccessResponse(request, returnObj);
+		if (method != null && method.getCompressPolicy() != null && response instanceof DefaultResponse
+				&& request.getAttachment(Constants.REQ_ATTACH_ACCEPT_COMPRESSED) != null) {
+			((DefaultResponse) response).setCompressPolicy(method.getCompressPolicy());
+		}
+		return response;
+	}
+
 	public static InvocationResponse createHeartResponse(InvocationRequest request) {
 		InvocationResponse response = new DefaultResponse(Constants.MESSAGE_TYPE_HEART, request.getSerialize());
 		response.setSequence(request.getSequence());
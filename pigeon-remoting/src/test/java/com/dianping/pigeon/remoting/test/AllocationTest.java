@@ -0,0 +1,122 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.util.ContextUtils;
+
+/**
+ * 统计请求路径上附件和本地上下文的内存分配，依赖HotSpot的线程分配计数。
+ * 对象大小与JVM有关，只和原来按HashMap实现的分配量比较
+ */
+public class AllocationTest {
+
+	private static final int ITERATIONS = 100000;
+
+	private static final Float FLOW = 0.1f;
+
+	@Test
+	public void testAttachments() {
+		DefaultRequest request = new DefaultRequest();
+		Assert.assertNull(request.getAttachment(Constants.REQ_ATTACH_FLOW));
+		for (int i = 0; i < 10; i++) {
+			request.setAttachment("key" + i, i);
+		}
+		request.setAttachment("key3", 33);
+		Assert.assertEquals(33, request.getAttachment("key3"));
+		Assert.assertEquals(9, request.getAttachment("key9"));
+		Assert.assertNull(request.getAttachment("key10"));
+	}
+
+	@Test
+	public void testAttachmentAllocation() {
+		Assume.assumeTrue(isAllocationCountingSupported());
+		DefaultRequest[] requests = new DefaultRequest[ITERATIONS];
+		for (int i = 0; i < ITERATIONS; i++) {
+			requests[i] = new DefaultRequest();
+		}
+		long begin = allocatedBytes();
+		for (DefaultRequest request : requests) {
+			request.setAttachment(Constants.REQ_ATTACH_WRITE_BUFF_LIMIT, Boolean.FALSE);
+			request.setAttachment(Constants.REQ_ATTACH_FLOW, FLOW);
+			request.getAttachment(Constants.REQ_ATTACH_FLOW);
+		}
+		long bytes = (allocatedBytes() - begin) / ITERATIONS;
+
+		// 原来每个请求一个HashMap
+		Object[] maps = new Object[ITERATIONS];
+		begin = allocatedBytes();
+		for (int i = 0; i < ITERATIONS; i++) {
+			Map<String, Object> attachments = new HashMap<String, Object>();
+			attachments.put(Constants.REQ_ATTACH_WRITE_BUFF_LIMIT, Boolean.FALSE);
+			attachments.put(Constants.REQ_ATTACH_FLOW, FLOW);
+			attachments.get(Constants.REQ_ATTACH_FLOW);
+			maps[i] = attachments;
+		}
+		long mapBytes = (allocatedBytes() - begin) / ITERATIONS;
+		System.out.println("attachments: " + bytes + " bytes/request, HashMap: " + mapBytes + " bytes/request");
+		Assert.assertTrue(bytes < mapBytes);
+	}
+
+	@Test
+	public void testLocalContextAllocation() {
+		Assume.assumeTrue(isAllocationCountingSupported());
+		for (int i = 0; i < ITERATIONS; i++) {
+			putAndClearLocalContext();
+		}
+		long begin = allocatedBytes();
+		for (int i = 0; i < ITERATIONS; i++) {
+			putAndClearLocalContext();
+		}
+		long bytes = (allocatedBytes() - begin) / ITERATIONS;
+
+		// 原来每个请求重新分配map和table
+		Object[] maps = new Object[ITERATIONS];
+		for (int i = 0; i < ITERATIONS; i++) {
+			maps[i] = putLocalContextMap();
+		}
+		begin = allocatedBytes();
+		for (int i = 0; i < ITERATIONS; i++) {
+			maps[i] = putLocalContextMap();
+		}
+		long mapBytes = (allocatedBytes() - begin) / ITERATIONS;
+		System.out.println("local context: " + bytes + " bytes/request, HashMap: " + mapBytes + " bytes/request");
+		Assert.assertTrue(bytes < mapBytes);
+	}
+
+	private void putAndClearLocalContext() {
+		ContextUtils.putLocalContext("CLIENT_IP", "127.0.0.1");
+		ContextUtils.putLocalContext("CLIENT_APP", "test");
+		ContextUtils.clearLocalContext();
+		ContextUtils.clearRequestContext();
+		ContextUtils.clearGlobalContext();
+	}
+
+	private Map<String, Object> putLocalContextMap() {
+		Map<String, Object> context = new HashMap<String, Object>();
+		context.put("CLIENT_IP", "127.0.0.1");
+		context.put("CLIENT_APP", "test");
+		return context;
+	}
+
+	private boolean isAllocationCountingSupported() {
+		try {
+			return ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean
+					&& allocatedBytes() >= 0;
+		} catch (Throwable t) {
+			return false;
+		}
+	}
+
+	private long allocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread
+				.currentThread().getId());
+	}
+}
@@ -0,0 +1,106 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.codec.Serializer;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.DefaultResponse;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.exception.SerializationException;
+import com.dianping.pigeon.remoting.common.util.Constants;
+
+public class BinarySerializerTest {
+
+	@Test
+	public void testRoundTrip() {
+		Serializer serializer = SerializerFactory.getSerializer(SerializerFactory.SERIALIZE_BINARY);
+		DefaultRequest request = createRequest();
+		InvocationRequest decoded = (InvocationRequest) serializer.deserializeRequest(new ByteArrayInputStream(
+				encodeRequest(serializer, request)));
+		Assert.assertEquals(request.getSequence(), decoded.getSequence());
+		Assert.assertEquals(request.getServiceName(), decoded.getServiceName());
+		Assert.assertEquals(request.getMethodName(), decoded.getMethodName());
+		Assert.assertEquals(request.getApp(), decoded.getApp());
+		Assert.assertEquals(request.getVersion(), decoded.getVersion());
+		Assert.assertEquals(request.getTimeout(), decoded.getTimeout());
+		Assert.assertEquals(request.getCallType(), decoded.getCallType());
+		Assert.assertEquals(request.getGlobalValues(), decoded.getGlobalValues());
+		Assert.assertNull(decoded.getRequestValues());
+		Assert.assertEquals(2, decoded.getParameters().length);
+		Assert.assertEquals(request.getParameters()[1], decoded.getParameters()[1]);
+
+		DefaultResponse response = createResponse();
+		InvocationResponse decodedResponse = (InvocationResponse) serializer
+				.deserializeResponse(new ByteArrayInputStream(encodeResponse(serializer, response)));
+		Assert.assertEquals(response.getSequence(), decodedResponse.getSequence());
+		Assert.assertEquals(response.getMessageType(), decodedResponse.getMessageType());
+		Assert.assertEquals(response.getResponse(), decodedResponse.getResponse());
+	}
+
+	@Test
+	public void testInvalidLength() {
+		Serializer serializer = SerializerFactory.getSerializer(SerializerFactory.SERIALIZE_BINARY);
+		// 服务名的长度为Integer.MAX_VALUE，后面没有内容
+		byte[] request = new byte[] { 1, 0, 0, 0, 0, 0, 0, 0, 1, 1, 2, 100, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+				(byte) 0xff, 0x07 };
+		try {
+			serializer.deserializeRequest(new ByteArrayInputStream(request));
+			Assert.fail();
+		} catch (SerializationException e) {
+		}
+		// 返回值为对象，长度为负数
+		byte[] response = new byte[] { 1, 0, 0, 0, 0, 0, 0, 0, 1, 2, 0, 2, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+				(byte) 0xff, 0x0f };
+		try {
+			serializer.deserializeResponse(new ByteArrayInputStream(response));
+			Assert.fail();
+		} catch (SerializationException e) {
+		}
+	}
+
+	static byte[] encodeRequest(Serializer serializer, InvocationRequest request) {
+		ByteArrayOutputStream os = new ByteArrayOutputStream(512);
+		serializer.serializeRequest(os, request);
+		return os.toByteArray();
+	}
+
+	static byte[] encodeResponse(Serializer serializer, InvocationResponse response) {
+		ByteArrayOutputStream os = new ByteArrayOutputStream(512);
+		serializer.serializeResponse(os, response);
+		return os.toByteArray();
+	}
+
+	static DefaultRequest createRequest() {
+		DefaultRequest request = new DefaultRequest("http://service.dianping.com/testService/UserService_1.0.0",
+				"getUser", new Object[] { 10086L, "zh_CN" }, SerializerFactory.SERIALIZE_BINARY,
+				Constants.MESSAGE_TYPE_SERVICE, 1000, null);
+		request.setSequence(12345);
+		request.setApp("test-app");
+		request.setVersion("1.0.0");
+		Map<String, Serializable> globalValues = new HashMap<String, Serializable>();
+		globalValues.put(Constants.CONTEXT_KEY_SOURCE_APP, "test-app");
+		globalValues.put(Constants.CONTEXT_KEY_SOURCE_IP, "10.1.2.3");
+		request.setGlobalValues(globalValues);
+		return request;
+	}
+
+	static DefaultResponse createResponse() {
+		User user = new User();
+		user.setId(10086L);
+		user.setName("pigeon");
+		user.setTags(new ArrayList<String>());
+		user.getTags().add("rpc");
+		user.getTags().add("netty");
+		return new DefaultResponse(SerializerFactory.SERIALIZE_BINARY, 12345, Constants.MESSAGE_TYPE_SERVICE, user);
+	}
+}
@@ -0,0 +1,192 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.DefaultResponse;
+import com.dianping.pigeon.remoting.common.exception.RpcException;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.callback.CallbackFuture;
+import com.dianping.pigeon.remoting.invoker.callback.FutureListener;
+import com.dianping.pigeon.remoting.invoker.callback.ServiceFutureImpl;
+import com.dianping.pigeon.remoting.invoker.exception.RequestTimeoutException;
+
+public class CallbackFutureTest {
+
+	@Test
+	public void testDone() throws Exception {
+		CallbackFuture future = newFuture(new CallbackFuture());
+		DefaultResponse response = newResponse(Constants.MESSAGE_TYPE_SERVICE, "ok");
+		future.callback(response);
+		future.run();
+		Assert.assertTrue(future.isDone());
+		Assert.assertFalse(future.cancel());
+		Assert.assertFalse(future.isCancelled());
+		Assert.assertSame(response, future.getResponse(1000));
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		CallbackFuture future = newFuture(new CallbackFuture());
+		Assert.assertTrue(future.cancel());
+		Assert.assertTrue(future.isCancelled());
+		Assert.assertTrue(future.cancel());
+		future.callback(newResponse(Constants.MESSAGE_TYPE_SERVICE, "late"));
+		future.run();
+		Assert.assertFalse(future.isDone());
+		try {
+			future.getResponse(1000);
+			Assert.fail();
+		} catch (CancellationException e) {
+		}
+	}
+
+	@Test
+	public void testCancelReleasesWaiter() throws Exception {
+		final CallbackFuture future = newFuture(new CallbackFuture());
+		final AtomicReference<Throwable> thrown = new AtomicReference<Throwable>();
+		Thread waiter = new Thread() {
+			public void run() {
+				try {
+					future.getResponse(60000);
+				} catch (Throwable t) {
+					thrown.set(t);
+				}
+			}
+		};
+		waiter.start();
+		Thread.sleep(50);
+		Assert.assertTrue(future.cancel());
+		waiter.join(5000);
+		Assert.assertFalse(waiter.isAlive());
+		Assert.assertTrue(thrown.get() instanceof CancellationException);
+	}
+
+	@Test
+	public void testRaceBetweenResponseAndCancel() throws Exception {
+		for (int i = 0; i < 200; i++) {
+			final CallbackFuture future = newFuture(new CallbackFuture());
+			future.callback(newResponse(Constants.MESSAGE_TYPE_SERVICE, "ok"));
+			final CountDownLatch start = new CountDownLatch(1);
+			final AtomicInteger cancelled = new AtomicInteger();
+			Thread canceller = new Thread() {
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+					}
+					if (future.cancel()) {
+						cancelled.incrementAndGet();
+					}
+				}
+			};
+			canceller.start();
+			start.countDown();
+			future.run();
+			canceller.join();
+			Assert.assertTrue(future.isDone() ^ future.isCancelled());
+			Assert.assertEquals(future.isCancelled() ? 1 : 0, cancelled.get());
+		}
+	}
+
+	@Test
+	public void testListenerOnSuccess() throws Exception {
+		ServiceFutureImpl future = newFuture(new ServiceFutureImpl(1000));
+		RecordingListener listener = new RecordingListener();
+		future.whenComplete(listener);
+		future.callback(newResponse(Constants.MESSAGE_TYPE_SERVICE, "ok"));
+		future.run();
+		Assert.assertEquals(1, listener.calls.get());
+		Assert.assertEquals("ok", listener.result);
+		Assert.assertNull(listener.cause);
+	}
+
+	@Test
+	public void testListenerOnFailure() throws Exception {
+		ServiceFutureImpl future = newFuture(new ServiceFutureImpl(1000));
+		RecordingListener listener = new RecordingListener();
+		future.whenComplete(listener);
+		future.callback(newResponse(Constants.MESSAGE_TYPE_EXCEPTION, new RpcException("remote failure")));
+		future.run();
+		Assert.assertEquals(1, listener.calls.get());
+		Assert.assertTrue(listener.cause instanceof RpcException);
+	}
+
+	@Test
+	public void testListenerOnTimeout() throws Exception {
+		ServiceFutureImpl future = newFuture(new ServiceFutureImpl(1000));
+		RecordingListener listener = new RecordingListener();
+		future.whenComplete(listener);
+		future.dispose();
+		Assert.assertEquals(1, listener.calls.get());
+		Assert.assertTrue(listener.cause instanceof RequestTimeoutException);
+	}
+
+	@Test
+	public void testListenerOnCancel() throws Exception {
+		ServiceFutureImpl future = newFuture(new ServiceFutureImpl(1000));
+		RecordingListener listener = new RecordingListener();
+		future.whenComplete(listener);
+		Assert.assertTrue(future.cancel(false));
+		Assert.assertEquals(1, listener.calls.get());
+		Assert.assertTrue(listener.cause instanceof CancellationException);
+
+		future.callback(newResponse(Constants.MESSAGE_TYPE_SERVICE, "late"));
+		future.run();
+		Assert.assertEquals(1, listener.calls.get());
+	}
+
+	@Test
+	public void testListenerAfterCompletion() throws Exception {
+		ServiceFutureImpl done = newFuture(new ServiceFutureImpl(1000));
+		done.callback(newResponse(Constants.MESSAGE_TYPE_SERVICE, "ok"));
+		done.run();
+		RecordingListener listener = new RecordingListener();
+		done.whenComplete(listener);
+		Assert.assertEquals("ok", listener.result);
+
+		ServiceFutureImpl cancelled = newFuture(new ServiceFutureImpl(1000));
+		cancelled.cancel(false);
+		listener = new RecordingListener();
+		cancelled.whenComplete(listener);
+		Assert.assertTrue(listener.cause instanceof CancellationException);
+
+		ServiceFutureImpl expired = newFuture(new ServiceFutureImpl(1000));
+		expired.dispose();
+		listener = new RecordingListener();
+		expired.whenComplete(listener);
+		Assert.assertTrue(listener.cause instanceof RequestTimeoutException);
+	}
+
+	private static <F extends CallbackFuture> F newFuture(F future) {
+		DefaultRequest request = new DefaultRequest();
+		request.setCreateMillisTime(System.currentTimeMillis());
+		future.setRequest(request);
+		return future;
+	}
+
+	private static DefaultResponse newResponse(int messageType, Object value) {
+		return new DefaultResponse(SerializerFactory.SERIALIZE_HESSIAN, 1, messageType, value);
+	}
+
+	private static class RecordingListener implements FutureListener<Object> {
+
+		private final AtomicInteger calls = new AtomicInteger();
+		private volatile Object result;
+		private volatile Throwable cause;
+
+		@Override
+		public void onComplete(Object result, Throwable cause) {
+			this.result = result;
+			this.cause = cause;
+			calls.incrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.process.statistics.InvokerCapacityBucket;
+import com.dianping.pigeon.remoting.invoker.route.statistics.CapacityBucket;
+import com.dianping.pigeon.remoting.provider.process.statistics.ProviderCapacityBucket;
+
+/**
+ * 多线程调用各统计桶flowIn/flowOut的单次耗时
+ */
+public class CapacityBucketBenchmarkTest {
+
+	private static final int THREADS = 8;
+	private static final int REQUESTS_PER_THREAD = 200000;
+
+	@Test
+	public void benchmark() throws Exception {
+		final CapacityBucket capacityBucket = new CapacityBucket("127.0.0.1:4040");
+		final ProviderCapacityBucket providerBucket = new ProviderCapacityBucket("127.0.0.1:4040");
+		final InvokerCapacityBucket invokerBucket = new InvokerCapacityBucket("127.0.0.1:4040");
+		run("CapacityBucket", new Flow() {
+
+			@Override
+			public void flow(InvocationRequest request) {
+				capacityBucket.flowIn(request);
+				capacityBucket.flowOut(request);
+			}
+		});
+		run("ProviderCapacityBucket", new Flow() {
+
+			@Override
+			public void flow(InvocationRequest request) {
+				providerBucket.flowIn(request);
+				providerBucket.flowOut(request);
+			}
+		});
+		run("InvokerCapacityBucket", new Flow() {
+
+			@Override
+			public void flow(InvocationRequest request) {
+				invokerBucket.flowIn(request);
+				invokerBucket.flowOut(request);
+			}
+		});
+		Assert.assertEquals(0, capacityBucket.getOutstanding());
+		Assert.assertEquals(0, providerBucket.getCurrentRequests());
+		Assert.assertEquals(0, invokerBucket.getCurrentRequests());
+	}
+
+	private void run(String name, final Flow flow) throws Exception {
+		// warm up
+		execute(flow);
+		long cost = execute(flow);
+		System.out.println(name + " flowIn+flowOut: " + (cost / (THREADS * (long) REQUESTS_PER_THREAD)) + " ns/op");
+	}
+
+	private long execute(final Flow flow) throws Exception {
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(THREADS);
+		for (int t = 0; t < THREADS; t++) {
+			final InvocationRequest[] requests = createRequests(t * (long) REQUESTS_PER_THREAD, REQUESTS_PER_THREAD);
+			new Thread() {
+
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (InvocationRequest request : requests) {
+							flow.flow(request);
+						}
+					} catch (InterruptedException e) {
+					} finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		long begin = System.nanoTime();
+		start.countDown();
+		done.await();
+		return System.nanoTime() - begin;
+	}
+
+	private InvocationRequest[] createRequests(long firstSequence, int count) {
+		InvocationRequest[] requests = new InvocationRequest[count];
+		for (int i = 0; i < count; i++) {
+			DefaultRequest request = new DefaultRequest();
+			request.setServiceName("http://service.dianping.com/testService");
+			request.setMethodName("echo");
+			request.setMessageType(Constants.MESSAGE_TYPE_SERVICE);
+			request.setCallType(Constants.CALLTYPE_REPLY);
+			request.setTimeout(1000);
+			request.setSequence(firstSequence + i);
+			request.setAttachment(Constants.REQ_ATTACH_FLOW, 0.1f);
+			requests[i] = request;
+		}
+		return requests;
+	}
+
+	private interface Flow {
+		void flow(InvocationRequest request);
+	}
+}
@@ -0,0 +1,93 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.process.statistics.InvokerCapacityBucket;
+import com.dianping.pigeon.remoting.invoker.route.statistics.CapacityBucket;
+import com.dianping.pigeon.remoting.provider.process.statistics.ProviderCapacityBucket;
+
+public class CapacityBucketTest {
+
+	private static final int THREADS = 4;
+	private static final int REQUESTS_PER_THREAD = 5000;
+
+	@Test
+	public void testCapacity() {
+		CapacityBucket bucket = new CapacityBucket("127.0.0.1:4040");
+		InvocationRequest[] requests = createRequests(0, 3);
+		for (InvocationRequest request : requests) {
+			bucket.flowIn(request);
+		}
+		Assert.assertEquals(3, bucket.getOutstanding());
+		Assert.assertEquals(0.3f, bucket.getCapacity(), 0.0001f);
+		bucket.flowOut(requests[0]);
+		bucket.flowOut(requests[0]);
+		Assert.assertEquals(2, bucket.getOutstanding());
+		Assert.assertEquals(0.2f, bucket.getCapacity(), 0.0001f);
+		bucket.removeExpiredRequests(System.currentTimeMillis() + 10000);
+		Assert.assertEquals(0, bucket.getOutstanding());
+		Assert.assertEquals(0f, bucket.getCapacity(), 0.0001f);
+	}
+
+	@Test
+	public void testConcurrentFlow() throws Exception {
+		final CapacityBucket capacityBucket = new CapacityBucket("127.0.0.1:4040");
+		final ProviderCapacityBucket providerBucket = new ProviderCapacityBucket("127.0.0.1:4040");
+		final InvokerCapacityBucket invokerBucket = new InvokerCapacityBucket("127.0.0.1:4040");
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(THREADS);
+		for (int t = 0; t < THREADS; t++) {
+			final InvocationRequest[] requests = createRequests(t * (long) REQUESTS_PER_THREAD, REQUESTS_PER_THREAD);
+			new Thread() {
+
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (InvocationRequest request : requests) {
+							capacityBucket.flowIn(request);
+							providerBucket.flowIn(request);
+							invokerBucket.flowIn(request);
+						}
+						for (InvocationRequest request : requests) {
+							capacityBucket.flowOut(request);
+							providerBucket.flowOut(request);
+							invokerBucket.flowOut(request);
+						}
+					} catch (InterruptedException e) {
+					} finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		start.countDown();
+		done.await();
+		Assert.assertEquals(0, capacityBucket.getOutstanding());
+		Assert.assertEquals(0f, capacityBucket.getCapacity(), 0.0001f);
+		Assert.assertEquals(0, providerBucket.getCurrentRequests());
+		Assert.assertEquals(0, invokerBucket.getCurrentRequests());
+	}
+
+	private InvocationRequest[] createRequests(long firstSequence, int count) {
+		InvocationRequest[] requests = new InvocationRequest[count];
+		for (int i = 0; i < count; i++) {
+			DefaultRequest request = new DefaultRequest();
+			request.setServiceName("http://service.dianping.com/testService");
+			request.setMethodName("echo");
+			request.setMessageType(Constants.MESSAGE_TYPE_SERVICE);
+			request.setCallType(Constants.CALLTYPE_REPLY);
+			request.setTimeout(1000);
+			request.setSequence(firstSequence + i);
+			request.setAttachment(Constants.REQ_ATTACH_FLOW, 0.1f);
+			requests[i] = request;
+		}
+		return requests;
+	}
+}
@@ -0,0 +1,46 @@
+package com.dianping.pigeon.remoting.test;
+
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.codec.compress.Compressor;
+import com.dianping.pigeon.remoting.common.codec.compress.CompressorFactory;
+
+/**
+ * 不同大小的列表响应在各压缩算法下的压缩率和耗时，以及按跨机房带宽估算的传输时间，看压缩从多大开始划算
+ */
+public class CompressBenchmarkTest {
+
+	private static final int[] ITEMS = new int[] { 10, 100, 1000, 10000 };
+
+	// 跨机房专线按100Mbps估算每字节的传输时间
+	private static final double NANOS_PER_BYTE = 80;
+
+	@Test
+	public void benchmark() throws Exception {
+		for (int items : ITEMS) {
+			byte[] data = CompressorTest.serialize(CompressorTest.createResponse(items));
+			int iterations = Math.max(20, 2000000 / data.length);
+			for (byte type : CompressorTest.COMPRESSORS) {
+				Compressor compressor = CompressorFactory.getCompressor(type);
+				byte[] compressed = compressor.compress(data, 0, data.length);
+				for (int i = 0; i < iterations; i++) {
+					compressor.decompress(compressor.compress(data, 0, data.length), 0, compressed.length, data.length);
+				}
+				long begin = System.nanoTime();
+				for (int i = 0; i < iterations; i++) {
+					compressor.compress(data, 0, data.length);
+				}
+				long compress = (System.nanoTime() - begin) / iterations;
+				begin = System.nanoTime();
+				for (int i = 0; i < iterations; i++) {
+					compressor.decompress(compressed, 0, compressed.length, data.length);
+				}
+				long decompress = (System.nanoTime() - begin) / iterations;
+				long saved = (long) ((data.length - compressed.length) * NANOS_PER_BYTE);
+				System.out.println(CompressorFactory.getName(type) + ": " + data.length + " -> " + compressed.length
+						+ " bytes, compress " + compress + " ns, decompress " + decompress + " ns, transfer saved "
+						+ saved + " ns at 100Mbps" + (saved > compress + decompress ? ", pays off" : ""));
+			}
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.codec.compress.Compressor;
+import com.dianping.pigeon.remoting.common.codec.compress.CompressorFactory;
+import com.dianping.pigeon.remoting.common.domain.DefaultResponse;
+import com.dianping.pigeon.remoting.common.util.Constants;
+
+public class CompressorTest {
+
+	static final byte[] COMPRESSORS = new byte[] { CompressorFactory.COMPRESS_LZF, CompressorFactory.COMPRESS_DEFLATE };
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		byte[] data = serialize(createResponse(1000));
+		for (byte type : COMPRESSORS) {
+			Compressor compressor = CompressorFactory.getCompressor(type);
+			byte[] padded = new byte[data.length + 10];
+			System.arraycopy(data, 0, padded, 5, data.length);
+			byte[] compressed = compressor.compress(padded, 5, data.length);
+			Assert.assertTrue(compressed.length < data.length);
+			byte[] decompressed = compressor.decompress(compressed, 0, compressed.length, data.length);
+			Assert.assertArrayEquals(data, decompressed);
+			try {
+				compressor.decompress(compressed, 0, compressed.length, data.length + 1);
+				Assert.fail("length mismatch should be detected");
+			} catch (Exception e) {
+			}
+		}
+		Assert.assertEquals(CompressorFactory.COMPRESS_LZF, CompressorFactory.getCompressType("LZF"));
+	}
+
+	static byte[] serialize(DefaultResponse response) {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		SerializerFactory.getSerializer(SerializerFactory.SERIALIZE_HESSIAN).serializeResponse(os, response);
+		return os.toByteArray();
+	}
+
+	static DefaultResponse createResponse(int items) {
+		List<Item> list = new ArrayList<Item>();
+		for (int i = 0; i < items; i++) {
+			Item item = new Item();
+			item.id = 100000L + i;
+			item.name = "shop-" + (i % 500);
+			item.city = i % 3 == 0 ? "shanghai" : "beijing";
+			item.score = (i * 7) % 50 / 10d;
+			list.add(item);
+		}
+		return new DefaultResponse(SerializerFactory.SERIALIZE_HESSIAN, 1, Constants.MESSAGE_TYPE_SERVICE, list);
+	}
+
+	public static class Item implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private long id;
+
+		private String name;
+
+		private String city;
+
+		private double score;
+
+		public long getId() {
+			return id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getCity() {
+			return city;
+		}
+
+		public double getScore() {
+			return score;
+		}
+	}
+}
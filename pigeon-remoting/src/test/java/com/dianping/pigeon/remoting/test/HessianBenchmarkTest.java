@@ -0,0 +1,81 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.caucho.hessian.io.HessianInput;
+import com.caucho.hessian.io.HessianOutput;
+import com.dianping.pigeon.remoting.common.codec.Serializer;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.codec.hessian.HessianSerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.DefaultResponse;
+
+/**
+ * hessian1序列化器按线程复用HessianInput/HessianOutput前后的编解码耗时，旧实现按原来的写法在这里重现。
+ * hessian2每个消息新建实例，没有可比较的复用路径
+ */
+public class HessianBenchmarkTest {
+
+	private static final int ITERATIONS = 20000;
+
+	private final HessianSerializerFactory serializerFactory = new HessianSerializerFactory();
+
+	@Test
+	public void benchmark() throws IOException {
+		Serializer serializer = SerializerFactory.getSerializer(SerializerFactory.SERIALIZE_HESSIAN1);
+		for (int size : new int[] { 1, 10, 100 }) {
+			DefaultResponse response = HessianSerializerTest.createResponse(size);
+			byte[] bytes = HessianSerializerTest.encode(serializer, response);
+			int iterations = Math.max(500, ITERATIONS / size);
+			for (int i = 0; i < iterations; i++) {
+				HessianSerializerTest.encode(serializer, response);
+				legacyEncode(response);
+				serializer.deserializeResponse(new ByteArrayInputStream(bytes));
+				legacyDecode(bytes);
+			}
+			long begin = System.nanoTime();
+			for (int i = 0; i < iterations; i++) {
+				legacyEncode(response);
+			}
+			long legacyEncode = (System.nanoTime() - begin) / iterations;
+			begin = System.nanoTime();
+			for (int i = 0; i < iterations; i++) {
+				HessianSerializerTest.encode(serializer, response);
+			}
+			long encode = (System.nanoTime() - begin) / iterations;
+			begin = System.nanoTime();
+			for (int i = 0; i < iterations; i++) {
+				legacyDecode(bytes);
+			}
+			long legacyDecode = (System.nanoTime() - begin) / iterations;
+			begin = System.nanoTime();
+			for (int i = 0; i < iterations; i++) {
+				serializer.deserializeResponse(new ByteArrayInputStream(bytes));
+			}
+			long decode = (System.nanoTime() - begin) / iterations;
+			System.out.println("hessian1 " + size + " users, " + bytes.length + " bytes: encode " + legacyEncode
+					+ " -> " + encode + " ns/call, decode " + legacyDecode + " -> " + decode + " ns/call");
+		}
+	}
+
+	private byte[] legacyEncode(DefaultResponse response) throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream(512);
+		HessianOutput hout = new HessianOutput(os);
+		hout.setSerializerFactory(serializerFactory);
+		hout.writeObject(response);
+		hout.flush();
+		hout.close();
+		return os.toByteArray();
+	}
+
+	private Object legacyDecode(byte[] bytes) throws IOException {
+		HessianInput hin = new HessianInput(new ByteArrayInputStream(bytes));
+		hin.setSerializerFactory(serializerFactory);
+		Object obj = hin.readObject();
+		hin.close();
+		return obj;
+	}
+}
@@ -0,0 +1,64 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.codec.Serializer;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.DefaultResponse;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.exception.SerializationException;
+import com.dianping.pigeon.remoting.common.util.Constants;
+
+public class HessianSerializerTest {
+
+	@Test
+	public void testReuse() {
+		for (byte type : new byte[] { SerializerFactory.SERIALIZE_HESSIAN, SerializerFactory.SERIALIZE_HESSIAN1 }) {
+			Serializer serializer = SerializerFactory.getSerializer(type);
+			// 同一个对象在多个消息中出现，引用表没有重置时后面的消息会写出指向前一个消息的引用
+			DefaultResponse first = createResponse(3);
+			DefaultResponse second = createResponse(1);
+			second.setResponse(first.getResponse());
+			byte[] firstBytes = encode(serializer, first);
+			byte[] secondBytes = encode(serializer, second);
+			Assert.assertArrayEquals(firstBytes, secondBytes);
+			try {
+				serializer.deserializeResponse(new ByteArrayInputStream(firstBytes, 0, firstBytes.length / 2));
+				Assert.fail("truncated message should not be decoded");
+			} catch (SerializationException e) {
+			}
+			for (byte[] bytes : new byte[][] { firstBytes, secondBytes }) {
+				InvocationResponse decoded = (InvocationResponse) serializer
+						.deserializeResponse(new ByteArrayInputStream(bytes));
+				Assert.assertEquals(first.getResponse(), decoded.getResponse());
+			}
+		}
+	}
+
+	static byte[] encode(Serializer serializer, DefaultResponse response) {
+		ByteArrayOutputStream os = new ByteArrayOutputStream(512);
+		serializer.serializeResponse(os, response);
+		return os.toByteArray();
+	}
+
+	static DefaultResponse createResponse(int size) {
+		List<String> tags = new ArrayList<String>();
+		tags.add("rpc");
+		tags.add("netty");
+		List<User> users = new ArrayList<User>();
+		for (int i = 0; i < size; i++) {
+			User user = new User();
+			user.setId(10086L + i);
+			user.setName("pigeon-" + i);
+			user.setTags(tags);
+			users.add(user);
+		}
+		return new DefaultResponse(SerializerFactory.SERIALIZE_HESSIAN, 12345, Constants.MESSAGE_TYPE_SERVICE, users);
+	}
+}
@@ -0,0 +1,108 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.provider.config.ProviderConfig;
+import com.dianping.pigeon.remoting.provider.config.ProviderMethodConfig;
+import com.dianping.pigeon.remoting.provider.process.InlineExecutionPolicy;
+import com.dianping.pigeon.remoting.provider.service.ServiceProviderFactory;
+
+public class InlineExecutionPolicyTest {
+
+	private static final String URL_PREFIX = "http://service.dianping.com/test/InlineService_";
+
+	@Test
+	public void testServiceInline() throws Exception {
+		ProviderConfig<InlineService> providerConfig = newProviderConfig("service");
+		providerConfig.setInline(true);
+		InlineExecutionPolicy policy = new InlineExecutionPolicy();
+		policy.addService(providerConfig);
+		Assert.assertTrue(policy.isInline(newRequest(providerConfig, "fast")));
+		Assert.assertTrue(policy.isInline(newRequest(providerConfig, "slow")));
+
+		policy.removeService(providerConfig);
+		Assert.assertFalse(policy.isInline(newRequest(providerConfig, "fast")));
+	}
+
+	@Test
+	public void testServiceActivesDisablesInline() throws Exception {
+		ProviderConfig<InlineService> providerConfig = newProviderConfig("actives");
+		providerConfig.setInline(true);
+		providerConfig.setActives(10);
+		InlineExecutionPolicy policy = new InlineExecutionPolicy();
+		policy.addService(providerConfig);
+		Assert.assertFalse(policy.isInline(newRequest(providerConfig, "fast")));
+		Assert.assertFalse(policy.isInline(newRequest(providerConfig, "slow")));
+	}
+
+	@Test
+	public void testMethodInline() throws Exception {
+		ProviderConfig<InlineService> providerConfig = newProviderConfig("method");
+		Map<String, ProviderMethodConfig> methods = new HashMap<String, ProviderMethodConfig>();
+		methods.put("fast", newMethodConfig("fast", true, 0));
+		methods.put("slow", newMethodConfig("slow", true, 10));
+		providerConfig.setMethods(methods);
+		InlineExecutionPolicy policy = new InlineExecutionPolicy();
+		policy.addService(providerConfig);
+		Assert.assertTrue(policy.isInline(newRequest(providerConfig, "fast")));
+		// 配置了actives的方法不直接执行
+		Assert.assertFalse(policy.isInline(newRequest(providerConfig, "slow")));
+	}
+
+	@Test
+	public void testHeartbeat() {
+		InlineExecutionPolicy policy = new InlineExecutionPolicy();
+		DefaultRequest request = new DefaultRequest();
+		request.setMessageType(Constants.MESSAGE_TYPE_HEART);
+		Assert.assertTrue(policy.isInline(request));
+	}
+
+	private static ProviderConfig<InlineService> newProviderConfig(String name) throws Exception {
+		ProviderConfig<InlineService> providerConfig = new ProviderConfig<InlineService>(InlineService.class,
+				new InlineServiceImpl());
+		providerConfig.setUrl(URL_PREFIX + name);
+		ServiceProviderFactory.addService(providerConfig);
+		return providerConfig;
+	}
+
+	private static ProviderMethodConfig newMethodConfig(String name, boolean inline, int actives) {
+		ProviderMethodConfig methodConfig = new ProviderMethodConfig();
+		methodConfig.setName(name);
+		methodConfig.setInline(inline);
+		methodConfig.setActives(actives);
+		return methodConfig;
+	}
+
+	private static InvocationRequest newRequest(ProviderConfig<?> providerConfig, String methodName) {
+		return new DefaultRequest(providerConfig.getUrl(), methodName, new Object[0],
+				SerializerFactory.SERIALIZE_HESSIAN, Constants.MESSAGE_TYPE_SERVICE, 1000, new Class<?>[0]);
+	}
+
+	public interface InlineService {
+
+		int fast();
+
+		int slow();
+	}
+
+	public static class InlineServiceImpl implements InlineService {
+
+		@Override
+		public int fast() {
+			return 0;
+		}
+
+		@Override
+		public int slow() {
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.lang.reflect.Proxy;
+
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.domain.DefaultResponse;
+import com.dianping.pigeon.remoting.common.domain.InvocationContext;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
+import com.dianping.pigeon.remoting.invoker.domain.DefaultInvokerContext;
+import com.dianping.pigeon.remoting.invoker.domain.InvokerContext;
+import com.dianping.pigeon.remoting.invoker.service.ServiceInvocationProxy;
+
+/**
+ * 调用端代理的单次耗时（不含过滤器链），与直接调用handler对比
+ */
+public class InvocationProxyBenchmarkTest {
+
+	private static final int ITERATIONS = 5000000;
+
+	@Test
+	public void benchmark() throws Throwable {
+		EchoHandler handler = new EchoHandler();
+		EchoService service = createProxy(handler);
+		InvokerConfig<EchoService> invokerConfig = new InvokerConfig<EchoService>(EchoService.class);
+		for (int round = 0; round < 2; round++) {
+			long begin = System.nanoTime();
+			for (int i = 0; i < ITERATIONS; i++) {
+				service.echo("echo");
+			}
+			long proxy = System.nanoTime() - begin;
+			begin = System.nanoTime();
+			for (int i = 0; i < ITERATIONS; i++) {
+				handler.handle(new DefaultInvokerContext(invokerConfig, "echo", new Class<?>[] { String.class },
+						new Object[] { "echo" }));
+			}
+			long direct = System.nanoTime() - begin;
+			System.out.println("proxy: " + proxy / ITERATIONS + " ns/op, handler: " + direct / ITERATIONS + " ns/op");
+		}
+	}
+
+	private EchoService createProxy(ServiceInvocationHandler handler) {
+		InvokerConfig<EchoService> invokerConfig = new InvokerConfig<EchoService>(EchoService.class);
+		return (EchoService) Proxy.newProxyInstance(EchoService.class.getClassLoader(),
+				new Class<?>[] { EchoService.class }, new ServiceInvocationProxy(invokerConfig, handler));
+	}
+
+	public interface EchoService {
+
+		String echo(String message);
+
+		int count();
+	}
+
+	private static class EchoHandler implements ServiceInvocationHandler {
+
+		@Override
+		public InvocationResponse handle(InvocationContext invocationContext) throws Throwable {
+			InvokerContext invokerContext = (InvokerContext) invocationContext;
+			Object[] arguments = invokerContext.getArguments();
+			Object result = arguments != null && arguments.length > 0 ? arguments[0] : null;
+			return new DefaultResponse((byte) 0, 0, Constants.MESSAGE_TYPE_SERVICE, result);
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.domain.DefaultResponse;
+import com.dianping.pigeon.remoting.common.domain.InvocationContext;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.exception.RpcException;
+import com.dianping.pigeon.remoting.common.process.ServiceInvocationHandler;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.callback.ListenableFuture;
+import com.dianping.pigeon.remoting.invoker.config.InvokerConfig;
+import com.dianping.pigeon.remoting.invoker.domain.InvokerContext;
+import com.dianping.pigeon.remoting.invoker.service.ServiceInvocationProxy;
+
+public class InvocationProxyTest {
+
+	@Test
+	public void testListenableFutureIsAsync() throws Exception {
+		RecordingHandler handler = new RecordingHandler("ok");
+		AsyncService service = createProxy(handler);
+		ListenableFuture<String> future = service.listenable("ok");
+		Assert.assertEquals(Constants.CALL_FUTURE, handler.callType);
+		Assert.assertTrue(future.isDone());
+		Assert.assertEquals("ok", future.get());
+	}
+
+	@Test
+	public void testListenableFutureFailure() throws Exception {
+		RecordingHandler handler = new RecordingHandler(null);
+		handler.failure = new RpcException("send failed");
+		AsyncService service = createProxy(handler);
+		ListenableFuture<String> future = service.listenable("ok");
+		Assert.assertTrue(future.isDone());
+		try {
+			future.get();
+			Assert.fail();
+		} catch (ExecutionException e) {
+			Assert.assertSame(handler.failure, e.getCause());
+		}
+	}
+
+	@Test
+	public void testPlainFutureUsesConfiguredCallType() throws Exception {
+		RecordingHandler handler = new RecordingHandler(null);
+		AsyncService service = createProxy(handler);
+		// 默认不打开pigeon.invoker.future.plain.async，返回Future的方法按InvokerConfig的callType调用
+		Assert.assertNull(service.plain("ok"));
+		Assert.assertEquals(Constants.CALL_SYNC, handler.callType);
+	}
+
+	@Test
+	public void testSyncMethod() throws Exception {
+		RecordingHandler handler = new RecordingHandler("ok");
+		AsyncService service = createProxy(handler);
+		Assert.assertEquals("ok", service.sync("ok"));
+		Assert.assertEquals(Constants.CALL_SYNC, handler.callType);
+	}
+
+	@Test
+	public void testPrimitiveAndObjectMethods() throws Exception {
+		RecordingHandler handler = new RecordingHandler(null);
+		AsyncService service = createProxy(handler);
+		// 返回null时基本类型返回默认值
+		Assert.assertEquals(0, service.count());
+		Assert.assertTrue(service.toString().length() > 0);
+	}
+
+	private AsyncService createProxy(ServiceInvocationHandler handler) {
+		InvokerConfig<AsyncService> invokerConfig = new InvokerConfig<AsyncService>(AsyncService.class);
+		return (AsyncService) Proxy.newProxyInstance(AsyncService.class.getClassLoader(),
+				new Class<?>[] { AsyncService.class }, new ServiceInvocationProxy(invokerConfig, handler));
+	}
+
+	public interface AsyncService {
+
+		ListenableFuture<String> listenable(String message);
+
+		Future<String> plain(String message);
+
+		String sync(String message);
+
+		int count();
+	}
+
+	private static class RecordingHandler implements ServiceInvocationHandler {
+
+		private final Object result;
+		private volatile String callType;
+		private volatile RuntimeException failure;
+
+		RecordingHandler(Object result) {
+			this.result = result;
+		}
+
+		@Override
+		public InvocationResponse handle(InvocationContext invocationContext) throws Throwable {
+			callType = ((InvokerContext) invocationContext).getCallType();
+			if (failure != null) {
+				throw failure;
+			}
+			return new DefaultResponse((byte) 0, 0, Constants.MESSAGE_TYPE_SERVICE, result);
+		}
+	}
+}
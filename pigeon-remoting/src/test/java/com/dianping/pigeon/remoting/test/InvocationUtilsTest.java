@@ -0,0 +1,18 @@
+package com.dianping.pigeon.remoting.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.util.InvocationUtils;
+
+public class InvocationUtilsTest {
+
+	@Test
+	public void testGetMethodKey() {
+		String service = "http://service.dianping.com/testService/UserService_1.0.0";
+		String key = InvocationUtils.getMethodKey(service, "getUser");
+		Assert.assertEquals(service + "#getUser", key);
+		Assert.assertSame(key, InvocationUtils.getMethodKey(new String(service), new String("getUser")));
+		Assert.assertEquals(service + "#null", InvocationUtils.getMethodKey(service, null));
+	}
+}
@@ -0,0 +1,93 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.invoker.domain.RemoteInvocationBean;
+import com.dianping.pigeon.remoting.invoker.service.PendingInvocationTable;
+
+/**
+ * 多线程put/remove时PendingInvocationTable与ConcurrentHashMap的单次耗时
+ */
+public class PendingInvocationTableBenchmarkTest {
+
+	private static final int THREADS = 8;
+	private static final int CALLS_PER_THREAD = 500000;
+	private static final int OUTSTANDING = 20000;
+
+	@Test
+	public void benchmark() throws Exception {
+		final PendingInvocationTable table = new PendingInvocationTable();
+		final Map<Long, RemoteInvocationBean> map = new ConcurrentHashMap<Long, RemoteInvocationBean>();
+		Store tableStore = new Store() {
+
+			@Override
+			public void put(long seq, RemoteInvocationBean bean) {
+				table.put(seq, bean);
+			}
+
+			@Override
+			public RemoteInvocationBean remove(long seq) {
+				return table.remove(seq);
+			}
+		};
+		Store mapStore = new Store() {
+
+			@Override
+			public void put(long seq, RemoteInvocationBean bean) {
+				map.put(seq, bean);
+			}
+
+			@Override
+			public RemoteInvocationBean remove(long seq) {
+				return map.remove(seq);
+			}
+		};
+		// warm up
+		run(mapStore);
+		run(tableStore);
+		System.out.println("ConcurrentHashMap: " + run(mapStore) + " ns/call");
+		System.out.println("PendingInvocationTable: " + run(tableStore) + " ns/call");
+		Assert.assertEquals(0, table.size());
+	}
+
+	private long run(final Store store) throws InterruptedException {
+		final AtomicLong sequenceMaker = new AtomicLong();
+		final RemoteInvocationBean bean = new RemoteInvocationBean();
+		final CountDownLatch latch = new CountDownLatch(THREADS);
+		long start = System.nanoTime();
+		for (int t = 0; t < THREADS; t++) {
+			new Thread() {
+				public void run() {
+					long[] window = new long[OUTSTANDING];
+					for (int i = 0; i < CALLS_PER_THREAD; i++) {
+						int slot = i % OUTSTANDING;
+						if (i >= OUTSTANDING) {
+							store.remove(window[slot]);
+						}
+						long seq = sequenceMaker.incrementAndGet() * -1;
+						store.put(seq, bean);
+						window[slot] = seq;
+					}
+					for (int i = 0; i < OUTSTANDING; i++) {
+						store.remove(window[i]);
+					}
+					latch.countDown();
+				}
+			}.start();
+		}
+		latch.await();
+		return (System.nanoTime() - start) / ((long) THREADS * CALLS_PER_THREAD);
+	}
+
+	private interface Store {
+		void put(long seq, RemoteInvocationBean bean);
+
+		RemoteInvocationBean remove(long seq);
+	}
+}
@@ -0,0 +1,84 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.invoker.domain.RemoteInvocationBean;
+import com.dianping.pigeon.remoting.invoker.service.PendingInvocationTable;
+import com.dianping.pigeon.remoting.invoker.service.PendingInvocationTable.InvocationFilter;
+
+public class PendingInvocationTableTest {
+
+	private static final int THREADS = 4;
+	private static final int CALLS_PER_THREAD = 20000;
+	private static final int OUTSTANDING = 1000;
+
+	@Test
+	public void testPutRemove() {
+		PendingInvocationTable table = new PendingInvocationTable(4);
+		RemoteInvocationBean[] beans = new RemoteInvocationBean[10000];
+		for (int i = 0; i < beans.length; i++) {
+			beans[i] = new RemoteInvocationBean();
+			table.put(-i - 1, beans[i]);
+		}
+		Assert.assertEquals(beans.length, table.size());
+		for (int i = 0; i < beans.length; i += 2) {
+			Assert.assertSame(beans[i], table.remove(-i - 1));
+		}
+		Assert.assertNull(table.remove(-1));
+		for (int i = 1; i < beans.length; i += 2) {
+			Assert.assertSame(beans[i], table.get(-i - 1));
+		}
+		List<RemoteInvocationBean> removed = table.removeIf(new InvocationFilter() {
+
+			@Override
+			public boolean accept(long sequence, RemoteInvocationBean invocation) {
+				return sequence % 4 == 0;
+			}
+		});
+		Assert.assertEquals(2500, removed.size());
+		Assert.assertEquals(2500, table.size());
+		for (int i = 1; i < beans.length; i += 2) {
+			Assert.assertEquals((i + 1) % 4 == 0 ? null : beans[i], table.get(-i - 1));
+		}
+	}
+
+	@Test
+	public void testConcurrentPutRemove() throws Exception {
+		final PendingInvocationTable table = new PendingInvocationTable();
+		final AtomicLong sequenceMaker = new AtomicLong();
+		final AtomicLong lost = new AtomicLong();
+		final CountDownLatch latch = new CountDownLatch(THREADS);
+		for (int t = 0; t < THREADS; t++) {
+			new Thread() {
+				public void run() {
+					RemoteInvocationBean[] beans = new RemoteInvocationBean[OUTSTANDING];
+					long[] window = new long[OUTSTANDING];
+					for (int i = 0; i < CALLS_PER_THREAD; i++) {
+						int slot = i % OUTSTANDING;
+						if (i >= OUTSTANDING && table.remove(window[slot]) != beans[slot]) {
+							lost.incrementAndGet();
+						}
+						long seq = sequenceMaker.incrementAndGet() * -1;
+						beans[slot] = new RemoteInvocationBean();
+						table.put(seq, beans[slot]);
+						window[slot] = seq;
+					}
+					for (int i = 0; i < OUTSTANDING; i++) {
+						if (table.remove(window[i]) != beans[i]) {
+							lost.incrementAndGet();
+						}
+					}
+					latch.countDown();
+				}
+			}.start();
+		}
+		latch.await();
+		Assert.assertEquals(0, lost.get());
+		Assert.assertEquals(0, table.size());
+	}
+}
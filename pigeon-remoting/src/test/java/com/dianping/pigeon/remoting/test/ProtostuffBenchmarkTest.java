@@ -0,0 +1,69 @@
+package com.dianping.pigeon.remoting.test;
+
+import io.protostuff.ProtostuffIOUtil;
+import io.protostuff.Schema;
+import io.protostuff.runtime.RuntimeSchema;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.codec.Serializer;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.DefaultResponse;
+
+/**
+ * protostuff序列化器流式编码、复用线程本地缓冲区前后的编解码耗时，旧实现按原来的写法在这里重现
+ */
+public class ProtostuffBenchmarkTest {
+
+	private static final int ITERATIONS = 20000;
+
+	private final Serializer serializer = SerializerFactory.getSerializer(SerializerFactory.SERIALIZE_PROTO);
+
+	private final Schema<DefaultResponse> schema = RuntimeSchema.getSchema(DefaultResponse.class);
+
+	@Test
+	public void benchmark() throws IOException {
+		for (int size : new int[] { 1, 10, 1000 }) {
+			DefaultResponse response = ProtostuffSerializerTest.createResponse(size);
+			byte[] bytes = ProtostuffSerializerTest.encode(response);
+			int iterations = Math.max(200, ITERATIONS / size);
+			for (int i = 0; i < iterations; i++) {
+				ProtostuffSerializerTest.encode(response);
+				ProtostuffSerializerTest.legacyEncode(response);
+				serializer.deserializeResponse(new ByteArrayInputStream(bytes));
+				legacyDecode(bytes);
+			}
+			long begin = System.nanoTime();
+			for (int i = 0; i < iterations; i++) {
+				ProtostuffSerializerTest.legacyEncode(response);
+			}
+			long legacyEncode = (System.nanoTime() - begin) / iterations;
+			begin = System.nanoTime();
+			for (int i = 0; i < iterations; i++) {
+				ProtostuffSerializerTest.encode(response);
+			}
+			long encode = (System.nanoTime() - begin) / iterations;
+			begin = System.nanoTime();
+			for (int i = 0; i < iterations; i++) {
+				legacyDecode(bytes);
+			}
+			long legacyDecode = (System.nanoTime() - begin) / iterations;
+			begin = System.nanoTime();
+			for (int i = 0; i < iterations; i++) {
+				serializer.deserializeResponse(new ByteArrayInputStream(bytes));
+			}
+			long decode = (System.nanoTime() - begin) / iterations;
+			System.out.println("protostuff " + size + " users, " + bytes.length + " bytes: encode " + legacyEncode
+					+ " -> " + encode + " ns/call, decode " + legacyDecode + " -> " + decode + " ns/call");
+		}
+	}
+
+	private Object legacyDecode(byte[] bytes) throws IOException {
+		DefaultResponse response = new DefaultResponse();
+		ProtostuffIOUtil.mergeFrom(new ByteArrayInputStream(bytes), response, schema);
+		return response;
+	}
+}
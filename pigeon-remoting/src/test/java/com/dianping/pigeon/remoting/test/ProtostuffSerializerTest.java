@@ -0,0 +1,76 @@
+package com.dianping.pigeon.remoting.test;
+
+import io.protostuff.LinkedBuffer;
+import io.protostuff.ProtostuffIOUtil;
+import io.protostuff.Schema;
+import io.protostuff.runtime.RuntimeSchema;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.codec.Serializer;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.codec.protostuff.ProtostuffSerializer;
+import com.dianping.pigeon.remoting.common.domain.DefaultResponse;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.util.Constants;
+
+public class ProtostuffSerializerTest {
+
+	private static final Serializer serializer = SerializerFactory.getSerializer(SerializerFactory.SERIALIZE_PROTO);
+
+	private static final Schema<DefaultResponse> schema = RuntimeSchema.getSchema(DefaultResponse.class);
+
+	@Test
+	public void testRoundTrip() {
+		ProtostuffSerializer.registerClass(User.class);
+		ProtostuffSerializer.registerClass(List.class);
+		for (int size : new int[] { 1, 1000 }) {
+			DefaultResponse response = createResponse(size);
+			byte[] bytes = encode(response);
+			Assert.assertArrayEquals(legacyEncode(response), bytes);
+			InvocationResponse decoded = (InvocationResponse) serializer.deserializeResponse(new ByteArrayInputStream(
+					bytes));
+			Assert.assertEquals(response.getSequence(), decoded.getSequence());
+			Assert.assertEquals(response.getResponse(), decoded.getResponse());
+		}
+	}
+
+	static byte[] encode(DefaultResponse response) {
+		ByteArrayOutputStream os = new ByteArrayOutputStream(512);
+		serializer.serializeResponse(os, response);
+		return os.toByteArray();
+	}
+
+	static byte[] legacyEncode(DefaultResponse response) {
+		ByteArrayOutputStream os = new ByteArrayOutputStream(512);
+		LinkedBuffer buffer = LinkedBuffer.allocate(1024);
+		try {
+			os.write(ProtostuffIOUtil.toByteArray(response, schema, buffer));
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		} finally {
+			buffer.clear();
+		}
+		return os.toByteArray();
+	}
+
+	static DefaultResponse createResponse(int size) {
+		List<User> users = new ArrayList<User>();
+		for (int i = 0; i < size; i++) {
+			User user = new User();
+			user.setId(10086L + i);
+			user.setName("pigeon-" + i);
+			user.setTags(new ArrayList<String>());
+			user.getTags().add("rpc");
+			users.add(user);
+		}
+		return new DefaultResponse(SerializerFactory.SERIALIZE_PROTO, 12345, Constants.MESSAGE_TYPE_SERVICE, users);
+	}
+}
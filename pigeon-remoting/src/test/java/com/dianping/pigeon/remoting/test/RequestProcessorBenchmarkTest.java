@@ -0,0 +1,171 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.callback.DefaultListenableFuture;
+import com.dianping.pigeon.remoting.invoker.callback.ListenableFuture;
+import com.dianping.pigeon.remoting.provider.config.ProviderConfig;
+import com.dianping.pigeon.remoting.provider.config.ServerConfig;
+import com.dianping.pigeon.remoting.provider.domain.DefaultProviderContext;
+import com.dianping.pigeon.remoting.provider.domain.ProviderChannel;
+import com.dianping.pigeon.remoting.provider.process.ProviderProcessHandlerFactory;
+import com.dianping.pigeon.remoting.provider.process.RequestProcessor;
+import com.dianping.pigeon.remoting.provider.process.semaphore.RequestSemaphoreProcessor;
+import com.dianping.pigeon.remoting.provider.process.threadpool.RequestThreadPoolProcessor;
+import com.dianping.pigeon.remoting.provider.service.ServiceProviderFactory;
+
+/**
+ * 线程池模型和信号量模型处理IO型服务的吞吐量和线程数对比。
+ * 服务方法耗时固定为LATENCY_MILLIS，线程池模型下同步方法阻塞处理线程，信号量模型下异步方法在等待期间不占用处理线程，
+ * 两种模型的并发都限制为ACTIVES
+ */
+public class RequestProcessorBenchmarkTest {
+
+	private static final String URL = "http://service.dianping.com/test/ProcessorBenchmarkService_1.0.0";
+
+	private static final int ACTIVES = 200;
+
+	private static final int IN_FLIGHT = ACTIVES / 2;
+
+	private static final int REQUESTS = 20000;
+
+	private static final long LATENCY_MILLIS = 5;
+
+	private static final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+
+	private static ProviderConfig<LatencyService> providerConfig;
+
+	@BeforeClass
+	public static void init() throws Exception {
+		ProviderProcessHandlerFactory.init();
+		providerConfig = new ProviderConfig<LatencyService>(LatencyService.class, new LatencyServiceImpl());
+		providerConfig.setUrl(URL);
+		providerConfig.setSharedPool(false);
+		providerConfig.setActives(ACTIVES);
+		ServiceProviderFactory.addService(providerConfig);
+	}
+
+	@AfterClass
+	public static void destroy() {
+		scheduler.shutdownNow();
+	}
+
+	@Test
+	public void benchmark() throws Exception {
+		for (int round = 0; round < 2; round++) {
+			run("threadpool/block", newProcessor(false), "block");
+			run("semaphore/block", newProcessor(true), "block");
+			run("semaphore/async", newProcessor(true), "async");
+		}
+	}
+
+	private RequestProcessor newProcessor(boolean semaphore) {
+		ServerConfig serverConfig = new ServerConfig();
+		serverConfig.setProtocol(Constants.PROTOCOL_DEFAULT);
+		serverConfig.setCorePoolSize(16);
+		serverConfig.setMaxPoolSize(ACTIVES);
+		serverConfig.setWorkQueueSize(REQUESTS);
+		RequestProcessor processor = semaphore ? new RequestSemaphoreProcessor(serverConfig)
+				: new RequestThreadPoolProcessor(serverConfig);
+		processor.start();
+		processor.addService(providerConfig);
+		return processor;
+	}
+
+	private void run(String name, RequestProcessor processor, String methodName) throws Exception {
+		BenchmarkChannel channel = new BenchmarkChannel(REQUESTS);
+		long begin = System.nanoTime();
+		for (int i = 0; i < REQUESTS; i++) {
+			channel.window.acquire();
+			DefaultRequest request = new DefaultRequest(URL, methodName, new Object[] { "echo" },
+					SerializerFactory.SERIALIZE_HESSIAN, Constants.MESSAGE_TYPE_SERVICE, 10000,
+					new Class<?>[] { String.class });
+			request.setSequence(i + 1);
+			request.setCallType(Constants.CALLTYPE_REPLY);
+			processor.processRequest(request, new DefaultProviderContext(request, channel));
+		}
+		Assert.assertTrue(channel.latch.await(60, TimeUnit.SECONDS));
+		long elapsed = System.nanoTime() - begin;
+		System.out.println(name + ": " + (REQUESTS * 1000000000L / elapsed) + " req/s, failed: "
+				+ channel.failed.get() + ", " + processor.getProcessorStatistics());
+	}
+
+	public interface LatencyService {
+
+		String block(String message);
+
+		ListenableFuture<String> async(String message);
+	}
+
+	public static class LatencyServiceImpl implements LatencyService {
+
+		@Override
+		public String block(String message) {
+			try {
+				Thread.sleep(LATENCY_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return message;
+		}
+
+		@Override
+		public ListenableFuture<String> async(final String message) {
+			final DefaultListenableFuture<String> future = new DefaultListenableFuture<String>();
+			scheduler.schedule(new Runnable() {
+
+				@Override
+				public void run() {
+					future.set(message);
+				}
+			}, LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+			return future;
+		}
+	}
+
+	private static class BenchmarkChannel implements ProviderChannel {
+
+		private final Semaphore window = new Semaphore(IN_FLIGHT);
+
+		private final CountDownLatch latch;
+
+		private final AtomicInteger failed = new AtomicInteger();
+
+		BenchmarkChannel(int requests) {
+			latch = new CountDownLatch(requests);
+		}
+
+		@Override
+		public void write(InvocationResponse response) {
+			if (response.getMessageType() != Constants.MESSAGE_TYPE_SERVICE) {
+				failed.incrementAndGet();
+			}
+			window.release();
+			latch.countDown();
+		}
+
+		@Override
+		public String getRemoteAddress() {
+			return "127.0.0.1:4040";
+		}
+
+		@Override
+		public String getProtocol() {
+			return Constants.PROTOCOL_DEFAULT;
+		}
+	}
+}
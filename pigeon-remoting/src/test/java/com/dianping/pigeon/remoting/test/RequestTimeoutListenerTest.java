@@ -0,0 +1,164 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.callback.DefaultListenableFuture;
+import com.dianping.pigeon.remoting.invoker.callback.FutureListener;
+import com.dianping.pigeon.remoting.provider.config.ProviderConfig;
+import com.dianping.pigeon.remoting.provider.domain.DefaultProviderContext;
+import com.dianping.pigeon.remoting.provider.domain.ProviderChannel;
+import com.dianping.pigeon.remoting.provider.domain.ProviderContext;
+import com.dianping.pigeon.remoting.provider.exception.ProcessTimeoutException;
+import com.dianping.pigeon.remoting.provider.listener.RequestTimeoutListener;
+import com.dianping.pigeon.remoting.provider.process.RequestProcessor;
+import com.dianping.pigeon.remoting.provider.util.ProviderHelper;
+
+public class RequestTimeoutListenerTest {
+
+	@Test
+	public void testAsyncTimeoutWritesResponse() {
+		RecordingChannel channel = new RecordingChannel();
+		ProviderContext context = newAsyncContext(channel, new DefaultListenableFuture<Object>());
+		DefaultListenableFuture<?> asyncFuture = (DefaultListenableFuture<?>) context.getAsyncFuture();
+
+		newListener().processTimeout(context.getRequest(), context);
+
+		Assert.assertEquals(1, channel.responses.size());
+		InvocationResponse response = channel.responses.get(0);
+		Assert.assertEquals(Constants.MESSAGE_TYPE_EXCEPTION, response.getMessageType());
+		Assert.assertTrue(response.getResponse() instanceof ProcessTimeoutException);
+		Assert.assertTrue(asyncFuture.isCancelled());
+	}
+
+	@Test
+	public void testAsyncTimeoutWhenCancelIsIgnored() {
+		RecordingChannel channel = new RecordingChannel();
+		// 取消不会通知回调的future，超时处理也要写回响应
+		DefaultListenableFuture<Object> asyncFuture = new DefaultListenableFuture<Object>() {
+
+			@Override
+			public boolean cancel(boolean mayInterruptIfRunning) {
+				return false;
+			}
+		};
+		ProviderContext context = newAsyncContext(channel, asyncFuture);
+
+		newListener().processTimeout(context.getRequest(), context);
+		Assert.assertEquals(1, channel.responses.size());
+		Assert.assertEquals(Constants.MESSAGE_TYPE_EXCEPTION, channel.responses.get(0).getMessageType());
+
+		// 超时之后才完成的结果不再写回
+		asyncFuture.set("late");
+		Assert.assertEquals(1, channel.responses.size());
+	}
+
+	@Test
+	public void testAsyncCompletedBeforeTimeout() {
+		RecordingChannel channel = new RecordingChannel();
+		DefaultListenableFuture<Object> asyncFuture = new DefaultListenableFuture<Object>();
+		ProviderContext context = newAsyncContext(channel, asyncFuture);
+		asyncFuture.set("ok");
+		Assert.assertEquals(1, channel.responses.size());
+		Assert.assertEquals(Constants.MESSAGE_TYPE_SERVICE, channel.responses.get(0).getMessageType());
+
+		newListener().processTimeout(context.getRequest(), context);
+		Assert.assertEquals(1, channel.responses.size());
+	}
+
+	private static ProviderContext newAsyncContext(ProviderChannel channel, DefaultListenableFuture<Object> asyncFuture) {
+		DefaultRequest request = new DefaultRequest();
+		request.setServiceName("http://service.dianping.com/test/TimeoutService_1.0.0");
+		request.setMethodName("echo");
+		request.setSequence(1);
+		request.setSerialize(SerializerFactory.SERIALIZE_HESSIAN);
+		request.setMessageType(Constants.MESSAGE_TYPE_SERVICE);
+		request.setCallType(Constants.CALLTYPE_REPLY);
+		request.setCreateMillisTime(System.currentTimeMillis());
+		final ProviderContext context = new DefaultProviderContext(request, channel);
+		context.setAsyncFuture(asyncFuture);
+		// 与BusinessProcessFilter中异步方法的处理一致
+		asyncFuture.whenComplete(new FutureListener<Object>() {
+
+			@Override
+			public void onComplete(Object result, Throwable cause) {
+				ProviderHelper.writeAsyncResponse(context, result, cause);
+			}
+		});
+		return context;
+	}
+
+	private static RequestTimeoutListener newListener() {
+		return new RequestTimeoutListener(new StubRequestProcessor(),
+				new ConcurrentHashMap<InvocationRequest, ProviderContext>());
+	}
+
+	private static class RecordingChannel implements ProviderChannel {
+
+		private final List<InvocationResponse> responses = new CopyOnWriteArrayList<InvocationResponse>();
+
+		@Override
+		public void write(InvocationResponse response) {
+			responses.add(response);
+		}
+
+		@Override
+		public String getRemoteAddress() {
+			return "127.0.0.1:4040";
+		}
+
+		@Override
+		public String getProtocol() {
+			return Constants.PROTOCOL_DEFAULT;
+		}
+	}
+
+	private static class StubRequestProcessor implements RequestProcessor {
+
+		@Override
+		public void start() {
+		}
+
+		@Override
+		public void stop() {
+		}
+
+		@Override
+		public Future<InvocationResponse> processRequest(InvocationRequest request, ProviderContext providerContext) {
+			return null;
+		}
+
+		@Override
+		public String getProcessorStatistics() {
+			return "";
+		}
+
+		@Override
+		public String getProcessorStatistics(InvocationRequest request) {
+			return "";
+		}
+
+		@Override
+		public <T> void addService(ProviderConfig<T> providerConfig) {
+		}
+
+		@Override
+		public <T> void removeService(ProviderConfig<T> providerConfig) {
+		}
+
+		@Override
+		public boolean needCancelRequest(InvocationRequest request) {
+			return false;
+		}
+	}
+}
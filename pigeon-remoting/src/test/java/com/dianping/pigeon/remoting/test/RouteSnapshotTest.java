@@ -0,0 +1,177 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.registry.RegistryManager;
+import com.dianping.pigeon.remoting.common.domain.InvocationRequest;
+import com.dianping.pigeon.remoting.common.domain.InvocationResponse;
+import com.dianping.pigeon.remoting.common.util.Constants;
+import com.dianping.pigeon.remoting.invoker.Client;
+import com.dianping.pigeon.remoting.invoker.callback.Callback;
+import com.dianping.pigeon.remoting.invoker.domain.ConnectInfo;
+import com.dianping.pigeon.remoting.invoker.route.RouteSnapshot;
+
+public class RouteSnapshotTest {
+
+	private static final String URL_PREFIX = "http://service.dianping.com/test/RouteService_";
+
+	@Test
+	public void testRebuildOnInvalidate() {
+		List<Client> source = newClients(3, 4101);
+		RouteSnapshot snapshot = RouteSnapshot.build(URL_PREFIX + "invalidate", source);
+		Assert.assertTrue(snapshot.isValid(source));
+
+		RouteSnapshot.invalidate(source.get(1).getAddress());
+		Assert.assertFalse(snapshot.isValid(source));
+
+		RouteSnapshot rebuilt = RouteSnapshot.build(URL_PREFIX + "invalidate", source);
+		Assert.assertTrue(rebuilt.isValid(source));
+	}
+
+	@Test
+	public void testInvalidateOtherAddress() {
+		List<Client> source = newClients(2, 4201);
+		List<Client> otherSource = newClients(2, 4301);
+		RouteSnapshot snapshot = RouteSnapshot.build(URL_PREFIX + "keep", source);
+		RouteSnapshot otherSnapshot = RouteSnapshot.build(URL_PREFIX + "other", otherSource);
+
+		// 只有包含该地址的快照过期
+		RouteSnapshot.invalidate(otherSource.get(0).getAddress());
+		Assert.assertTrue(snapshot.isValid(source));
+		Assert.assertFalse(otherSnapshot.isValid(otherSource));
+	}
+
+	@Test
+	public void testSourceChanged() {
+		List<Client> source = newClients(2, 4401);
+		RouteSnapshot snapshot = RouteSnapshot.build(URL_PREFIX + "source", source);
+		List<Client> newSource = new ArrayList<Client>(source);
+		newSource.remove(0);
+		Assert.assertFalse(snapshot.isValid(newSource));
+	}
+
+	@Test
+	public void testAvailableClients() {
+		List<Client> source = newClients(3, 4501);
+		source.get(0).setActive(false);
+		String zeroWeightAddress = source.get(1).getAddress();
+		RegistryManager.getInstance().addServiceAddress(URL_PREFIX + "available", "127.0.0.1", 4502, 1);
+		RegistryManager.getInstance().setServiceWeight(zeroWeightAddress, 0);
+
+		RouteSnapshot snapshot = RouteSnapshot.build(URL_PREFIX + "available", source);
+		Assert.assertEquals(3, snapshot.getClients().size());
+		List<Client> availableClients = snapshot.getAvailableClients();
+		Assert.assertEquals(1, availableClients.size());
+		Assert.assertSame(source.get(2), availableClients.get(0));
+	}
+
+	private static List<Client> newClients(int count, int port) {
+		List<Client> clients = new ArrayList<Client>();
+		for (int i = 0; i < count; i++) {
+			clients.add(new StubClient("127.0.0.1", port + i));
+		}
+		return clients;
+	}
+
+	private static class StubClient implements Client {
+
+		private final String host;
+
+		private final int port;
+
+		private volatile boolean active = true;
+
+		StubClient(String host, int port) {
+			this.host = host;
+			this.port = port;
+		}
+
+		@Override
+		public ConnectInfo getConnectInfo() {
+			return null;
+		}
+
+		@Override
+		public void connect() {
+		}
+
+		@Override
+		public InvocationResponse write(InvocationRequest request, Callback callback) {
+			return null;
+		}
+
+		@Override
+		public InvocationResponse write(InvocationRequest request) {
+			return null;
+		}
+
+		@Override
+		public void connectionException(Object attachment, Throwable e) {
+		}
+
+		@Override
+		public void processResponse(InvocationResponse response) {
+		}
+
+		@Override
+		public void requestCompleted(InvocationRequest request) {
+		}
+
+		@Override
+		public boolean isConnected() {
+			return true;
+		}
+
+		@Override
+		public boolean isActive() {
+			return active;
+		}
+
+		@Override
+		public void setActive(boolean active) {
+			this.active = active;
+		}
+
+		@Override
+		public boolean isWritable() {
+			return true;
+		}
+
+		@Override
+		public String getHost() {
+			return host;
+		}
+
+		@Override
+		public String getAddress() {
+			return host + ":" + port;
+		}
+
+		@Override
+		public int getPort() {
+			return port;
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public boolean isDisposable() {
+			return false;
+		}
+
+		@Override
+		public void dispose() {
+		}
+
+		@Override
+		public String getProtocol() {
+			return Constants.PROTOCOL_DEFAULT;
+		}
+	}
+}
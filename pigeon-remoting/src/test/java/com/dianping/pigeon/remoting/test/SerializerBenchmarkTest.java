@@ -0,0 +1,60 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.io.ByteArrayInputStream;
+
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.common.codec.Serializer;
+import com.dianping.pigeon.remoting.common.codec.SerializerFactory;
+import com.dianping.pigeon.remoting.common.domain.DefaultRequest;
+import com.dianping.pigeon.remoting.common.domain.DefaultResponse;
+
+/**
+ * 各序列化器编码同一个请求和响应的字节数及编解码耗时
+ */
+public class SerializerBenchmarkTest {
+
+	private static final int ITERATIONS = 20000;
+
+	private static final byte[] SERIALIZERS = new byte[] { SerializerFactory.SERIALIZE_HESSIAN,
+			SerializerFactory.SERIALIZE_HESSIAN1, SerializerFactory.SERIALIZE_JAVA, SerializerFactory.SERIALIZE_PROTO,
+			SerializerFactory.SERIALIZE_FST, SerializerFactory.SERIALIZE_JSON, SerializerFactory.SERIALIZE_BINARY };
+
+	@Test
+	public void benchmark() {
+		DefaultRequest request = BinarySerializerTest.createRequest();
+		DefaultResponse response = BinarySerializerTest.createResponse();
+		for (byte type : SERIALIZERS) {
+			try {
+				run(type, SerializerFactory.getSerializer(type), request, response);
+			} catch (RuntimeException e) {
+				System.out.println("serializer " + type + ": not supported, " + e.getMessage());
+			}
+		}
+	}
+
+	private void run(byte type, Serializer serializer, DefaultRequest request, DefaultResponse response) {
+		request.setSerialize(type);
+		byte[] requestBytes = BinarySerializerTest.encodeRequest(serializer, request);
+		byte[] responseBytes = BinarySerializerTest.encodeResponse(serializer, response);
+		for (int i = 0; i < ITERATIONS; i++) {
+			BinarySerializerTest.encodeRequest(serializer, request);
+			serializer.deserializeRequest(new ByteArrayInputStream(requestBytes));
+		}
+		long begin = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			BinarySerializerTest.encodeRequest(serializer, request);
+			BinarySerializerTest.encodeResponse(serializer, response);
+		}
+		long encode = System.nanoTime() - begin;
+		begin = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			serializer.deserializeRequest(new ByteArrayInputStream(requestBytes));
+			serializer.deserializeResponse(new ByteArrayInputStream(responseBytes));
+		}
+		long decode = System.nanoTime() - begin;
+		System.out.println(serializer.getClass().getSimpleName() + ": request " + requestBytes.length
+				+ " bytes, response " + responseBytes.length + " bytes, encode " + encode / ITERATIONS
+				+ " ns/call, decode " + decode / ITERATIONS + " ns/call");
+	}
+}
@@ -0,0 +1,41 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.lang.reflect.Method;
+
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.provider.service.method.ServiceMethodCache;
+import com.dianping.pigeon.remoting.provider.service.method.ServiceMethodFactory;
+import com.dianping.pigeon.remoting.test.ServiceMethodCacheTest.TestService;
+
+/**
+ * 服务端查找方法并调用的单次耗时，与直接调用Method.invoke对比
+ */
+public class ServiceMethodBenchmarkTest {
+
+	private static final int ITERATIONS = 2000000;
+
+	@Test
+	public void benchmark() throws Exception {
+		TestService service = new TestService();
+		ServiceMethodCache cache = ServiceMethodFactory.createServiceMethodCache("testService", service);
+		Method echo = TestService.class.getMethod("echo", String.class);
+		Method sum = TestService.class.getMethod("sum", float.class, float.class);
+		for (int round = 0; round < 2; round++) {
+			long begin = System.nanoTime();
+			for (int i = 0; i < ITERATIONS; i++) {
+				echo.invoke(service, new Object[] { "a" });
+				sum.invoke(service, new Object[] { 1.5f, 2.5f });
+			}
+			long reflect = System.nanoTime() - begin;
+			begin = System.nanoTime();
+			for (int i = 0; i < ITERATIONS; i++) {
+				ServiceMethodCacheTest.invoke(cache, "echo", "a");
+				ServiceMethodCacheTest.invoke(cache, "sum", 1.5d, 2.5d);
+			}
+			long cached = System.nanoTime() - begin;
+			System.out.println("Method.invoke: " + reflect / (2L * ITERATIONS) + " ns/op, lookup+invoke: " + cached
+					/ (2L * ITERATIONS) + " ns/op");
+		}
+	}
+}
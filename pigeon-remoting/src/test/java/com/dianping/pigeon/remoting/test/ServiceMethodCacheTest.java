@@ -0,0 +1,97 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dianping.pigeon.remoting.provider.exception.InvocationFailureException;
+import com.dianping.pigeon.remoting.provider.service.method.ServiceMethod;
+import com.dianping.pigeon.remoting.provider.service.method.ServiceMethodCache;
+import com.dianping.pigeon.remoting.provider.service.method.ServiceMethodFactory;
+
+public class ServiceMethodCacheTest {
+
+	@Test
+	public void testMatching() throws Exception {
+		ServiceMethodCache cache = ServiceMethodFactory.createServiceMethodCache("testService", new TestService());
+		Assert.assertEquals("a", invoke(cache, "echo", "a"));
+		Assert.assertEquals(4.0f, invoke(cache, "sum", 1.5d, 2.5d));
+		Assert.assertEquals(3, invoke(cache, "sum", 1, 2));
+		Assert.assertEquals((short) 3, invoke(cache, "sum", (short) 1, (short) 2));
+		Assert.assertEquals("a[]", invoke(cache, "echo", "a", new ArrayList<Object>()));
+		Assert.assertEquals(0L, invoke(cache, "size", new ArrayList<Object>()));
+	}
+
+	@Test
+	public void testCachedOverload() throws Exception {
+		ServiceMethodCache cache = ServiceMethodFactory.createServiceMethodCache("testService", new TestService());
+		ServiceMethod intSum = cache.getMethod("sum", new Object[] { 1, 2 });
+		Assert.assertSame(intSum, cache.getMethod("sum", new Object[] { 3, 4 }));
+		ServiceMethod floatSum = cache.getMethod("sum", new Object[] { 1.5f, 2.5f });
+		Assert.assertNotSame(intSum, floatSum);
+		Assert.assertSame(floatSum, cache.getMethod("sum", new Object[] { 1.5d, 2.5d }));
+		// null参数不参与类型匹配
+		Assert.assertEquals("anull", invoke(cache, "echo", "a", null));
+	}
+
+	@Test(expected = InvocationFailureException.class)
+	public void testUniqueMethodTypeMismatch() throws Exception {
+		ServiceMethodCache cache = ServiceMethodFactory.createServiceMethodCache("testService", new TestService());
+		cache.getMethod("size", new Object[] { "a" });
+	}
+
+	@Test(expected = InvocationFailureException.class)
+	public void testOverloadTypeMismatch() throws Exception {
+		ServiceMethodCache cache = ServiceMethodFactory.createServiceMethodCache("testService", new TestService());
+		cache.getMethod("echo", new Object[] { "a", "b" });
+	}
+
+	@Test(expected = InvocationFailureException.class)
+	public void testParameterCountMismatch() throws Exception {
+		ServiceMethodCache cache = ServiceMethodFactory.createServiceMethodCache("testService", new TestService());
+		cache.getMethod("size", new Object[0]);
+	}
+
+	@Test(expected = InvocationFailureException.class)
+	public void testUnknownMethod() throws Exception {
+		ServiceMethodCache cache = ServiceMethodFactory.createServiceMethodCache("testService", new TestService());
+		cache.getMethod("unknown", new Object[] { "a" });
+	}
+
+	static Object invoke(ServiceMethodCache cache, String methodName, Object... parameters) throws Exception {
+		ServiceMethod method = cache.getMethod(methodName, parameters);
+		return method.invoke(parameters);
+	}
+
+	public static class TestService {
+
+		public String echo(String s) {
+			return s;
+		}
+
+		public String echo(String s, List<?> list) {
+			return s + list;
+		}
+
+		public float sum(float a, float b) {
+			return a + b;
+		}
+
+		public short sum(short a, short b) {
+			return (short) (a + b);
+		}
+
+		public int sum(int a, int b) {
+			return a + b;
+		}
+
+		public long size(List<?> list) {
+			return list.size();
+		}
+
+		public void ping() {
+		}
+	}
+}
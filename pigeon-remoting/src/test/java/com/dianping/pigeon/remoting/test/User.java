@@ -0,0 +1,53 @@
+package com.dianping.pigeon.remoting.test;
+
+import java.io.Serializable;
+import java.util.List;
+
+public class User implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private long id;
+
+	private String name;
+
+	private List<String> tags;
+
+	public long getId() {
+		return id;
+	}
+
+	public void setId(long id) {
+		this.id = id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public List<String> getTags() {
+		return tags;
+	}
+
+	public void setTags(List<String> tags) {
+		this.tags = tags;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof User)) {
+			return false;
+		}
+		User other = (User) obj;
+		return id == other.id && name.equals(other.name) && tags.equals(other.tags);
+	}
+
+	@Override
+	public int hashCode() {
+		return (int) id;
+	}
+}